@@ -4,6 +4,7 @@ import com.seibel.lod.core.a7.datatype.full.ChunkSizedData;
 import com.seibel.lod.core.a7.level.IClientLevel;
 import com.seibel.lod.core.a7.render.LodQuadTree;
 import com.seibel.lod.core.a7.render.RenderBuffer;
+import com.seibel.lod.core.a7.render.RenderBufferReclaimer;
 import com.seibel.lod.core.a7.save.io.render.RenderMetaFile;
 import com.seibel.lod.core.objects.DHChunkPos;
 
@@ -32,13 +33,33 @@ public class EmptyRenderSource implements LodRenderSource {
     public void dispose() {
     }
 
+    @Override
+    public void release() {
+    }
+
+    @Override
+    public boolean hasUnsavedChanges() {
+        return false;
+    }
+
+    @Override
+    public boolean isPartiallyLoaded() {
+        return false;
+    }
+
+    @Override
+    public byte getMinGenMode() {
+        return 0;
+    }
+
     @Override
     public byte getDetailOffset() {
         return 0;
     }
 
     @Override
-    public boolean trySwapRenderBuffer(LodQuadTree quadTree, AtomicReference<RenderBuffer> referenceSlot) {
+    public boolean trySwapRenderBuffer(LodQuadTree quadTree, AtomicReference<RenderBuffer> referenceSlot,
+                                       RenderBufferReclaimer reclaimer) {
         return false;
     }
 
@@ -48,11 +69,21 @@ public class EmptyRenderSource implements LodRenderSource {
     }
 
     @Override
-    public void update(ChunkSizedData chunkData) {
+    public void update(ChunkSizedData chunkData, IClientLevel level) {
     }
 
     @Override
     public byte getRenderVersion() {
         return 0;
     }
+
+    @Override
+    public int getMinY() {
+        return Integer.MAX_VALUE;
+    }
+
+    @Override
+    public int getMaxY() {
+        return Integer.MIN_VALUE;
+    }
 }
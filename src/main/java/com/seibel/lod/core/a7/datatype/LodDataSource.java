@@ -18,6 +18,11 @@ public interface LodDataSource {
     byte getDataVersion();
 
     void update(DHChunkPos chunkPos, ChunkSizedData data);
+    /**
+     * @return the lowest {@link com.seibel.lod.core.enums.config.EDistanceGenerationMode#complexity} of the section's columns,
+     * or 0 if any of them has no data yet
+     */
+    byte getMinGenMode();
 
     // Saving related
     void saveData(ILevel level, DataMetaFile file, OutputStream dataStream) throws IOException;
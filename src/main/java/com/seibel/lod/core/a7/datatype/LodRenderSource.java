@@ -6,6 +6,7 @@ import com.seibel.lod.core.a7.level.ILevel;
 import com.seibel.lod.core.a7.pos.DhSectionPos;
 import com.seibel.lod.core.a7.render.LodQuadTree;
 import com.seibel.lod.core.a7.render.RenderBuffer;
+import com.seibel.lod.core.a7.render.RenderBufferReclaimer;
 import com.seibel.lod.core.a7.save.io.file.DataMetaFile;
 import com.seibel.lod.core.a7.save.io.render.RenderMetaFile;
 import com.seibel.lod.core.objects.DHChunkPos;
@@ -19,20 +20,44 @@ public interface LodRenderSource {
     void enableRender(IClientLevel level, LodQuadTree quadTree);
     void disableRender();
     boolean isRenderReady();
+    /** @return true while a render buffer is being built, which {@link #trySwapRenderBuffer} will swap in once done */
+    default boolean isBuildingRenderBuffer() { return false; }
+    /**
+     * Sets what to call, from any thread, when {@link #isRenderReady} or {@link #isBuildingRenderBuffer} may have changed
+     * on their own, e.g. when a build finished. Null removes it.
+     */
+    default void setChangeListener(Runnable listener) { }
     void dispose(); // notify the container that the parent lodSection is now disposed (can be in loaded or unloaded state)
+    /** Frees the source's memory once it is evicted from the cache. It must not be used afterwards. */
+    void release();
+    /** @return true if the source changed since it was last saved */
+    boolean hasUnsavedChanges();
+    /** @return true if only the top of each column was read so far, see {@link RenderSourceLoader#loadRemaining} */
+    boolean isPartiallyLoaded();
     byte getDetailOffset();
+    /**
+     * @return the lowest {@link com.seibel.lod.core.enums.config.EDistanceGenerationMode#complexity} of the section's columns,
+     * or 0 if any of them has no data yet
+     */
+    byte getMinGenMode();
 
     /**
      * Try and swap in new render buffer for this section. Note that before this call, there should be no other
      *  places storing or referencing the render buffer.
      * @param referenceSlot The slot for swapping in the new buffer.
+     * @param reclaimer where the buffer swapped out is retired to, as the render thread may still be drawing it
      * @return True if the swap was successful. False if swap is not needed or if it is in progress.
      */
-    boolean trySwapRenderBuffer(LodQuadTree quadTree, AtomicReference<RenderBuffer> referenceSlot);
+    boolean trySwapRenderBuffer(LodQuadTree quadTree, AtomicReference<RenderBuffer> referenceSlot, RenderBufferReclaimer reclaimer);
 
     void saveRender(IClientLevel level, RenderMetaFile file, OutputStream dataStream) throws IOException;
 
-    void update(ChunkSizedData chunkData);
+    /** Writes the chunk's data directly into this render source, if it covers the chunk. */
+    void update(ChunkSizedData chunkData, IClientLevel level);
 
     byte getRenderVersion();
+
+    /** Height bounds of the renderable data in block y, usable for culling. Min is above max if there is nothing to render. */
+    int getMinY();
+    int getMaxY();
 }
@@ -54,6 +54,20 @@ public abstract class RenderSourceLoader {
 
     // Can return null as meaning the file is out of date or something
     public abstract LodRenderSource loadRender(RenderMetaFile renderFile, InputStream data, IClientLevel level) throws IOException;
+    /**
+     * Only reads the top maxVerticalSlices entries of each column, if the format allows it.
+     * Loaders that can't read part of the data load all of it.
+     */
+    public LodRenderSource loadRender(RenderMetaFile renderFile, InputStream data, IClientLevel level, int maxVerticalSlices) throws IOException {
+        return loadRender(renderFile, data, level);
+    }
+    /** Reads the rest of a partially loaded render source, from the same file it was loaded from. */
+    public void loadRemaining(RenderMetaFile renderFile, LodRenderSource render, InputStream data, IClientLevel level) throws IOException {
+    }
+    /** @return false if {@link #createRender} can't use the data, so it isn't worth queueing a transform for it */
+    public boolean canCreateRender(LodDataSource dataSource) {
+        return true;
+    }
     public abstract LodRenderSource createRender(LodDataSource dataSource, IClientLevel level);
 
 
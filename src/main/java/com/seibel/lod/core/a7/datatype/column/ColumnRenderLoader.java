@@ -4,6 +4,8 @@ import com.seibel.lod.core.a7.datatype.LodDataSource;
 import com.seibel.lod.core.a7.level.IClientLevel;
 import com.seibel.lod.core.a7.datatype.LodRenderSource;
 import com.seibel.lod.core.a7.datatype.RenderSourceLoader;
+import com.seibel.lod.core.a7.datatype.full.FullDataSource;
+import com.seibel.lod.core.a7.datatype.transform.FullToColumnTransformer;
 import com.seibel.lod.core.a7.save.io.render.RenderMetaFile;
 
 import java.io.DataInputStream;
@@ -12,7 +14,7 @@ import java.io.InputStream;
 
 public class ColumnRenderLoader extends RenderSourceLoader {
     public ColumnRenderLoader() {
-        super(ColumnRenderSource.class, ColumnRenderSource.TYPE_ID, new byte[]{ColumnRenderSource.LATEST_VERSION}, ColumnRenderSource.SECTION_SIZE_OFFSET);
+        super(ColumnRenderSource.class, ColumnRenderSource.TYPE_ID, new byte[]{1, 2, ColumnRenderSource.LATEST_VERSION}, ColumnRenderSource.SECTION_SIZE_OFFSET);
     }
 
     @Override
@@ -25,10 +27,35 @@ public class ColumnRenderLoader extends RenderSourceLoader {
         }
     }
 
+    @Override
+    public LodRenderSource loadRender(RenderMetaFile dataFile, InputStream data, IClientLevel level, int maxVerticalSlices) throws IOException {
+        try (
+                //TODO: Add decompressor here
+                DataInputStream dis = new DataInputStream(data);
+        ) {
+            return new ColumnRenderSource(dataFile.pos, dis, dataFile.loaderVersion, level, maxVerticalSlices);
+        }
+    }
+
+    @Override
+    public void loadRemaining(RenderMetaFile dataFile, LodRenderSource render, InputStream data, IClientLevel level) throws IOException {
+        try (
+                //TODO: Add decompressor here
+                DataInputStream dis = new DataInputStream(data);
+        ) {
+            ((ColumnRenderSource) render).loadRemainingSlices(dis, dataFile.loaderVersion);
+        }
+    }
+
+    @Override
+    public boolean canCreateRender(LodDataSource dataSource) {
+        return FullToColumnTransformer.canTransform(dataSource);
+    }
+
     @Override
     public LodRenderSource createRender(LodDataSource dataSource, IClientLevel level) {
-        //TODO
-        return null;
+        if (!canCreateRender(dataSource)) return null;
+        return FullToColumnTransformer.transformFullDataToColumnData(level, (FullDataSource) dataSource);
     }
 
 
@@ -2,13 +2,21 @@ package com.seibel.lod.core.a7.datatype.column;
 
 import com.seibel.lod.core.a7.datatype.column.accessor.ColumnArrayView;
 import com.seibel.lod.core.a7.datatype.column.accessor.ColumnQuadView;
+import com.seibel.lod.core.a7.datatype.column.accessor.HeapColumnStorage;
+import com.seibel.lod.core.a7.datatype.column.accessor.IColumnStorage;
 import com.seibel.lod.core.a7.datatype.column.accessor.IColumnDatatype;
+import com.seibel.lod.core.a7.datatype.column.accessor.OffHeapColumnStorage;
 import com.seibel.lod.core.a7.datatype.column.render.ColumnRenderBuffer;
 import com.seibel.lod.core.a7.datatype.full.ChunkSizedData;
+import com.seibel.lod.core.a7.datatype.transform.FullDataDownsampler;
+import com.seibel.lod.core.a7.datatype.transform.FullToColumnTransformer;
 import com.seibel.lod.core.a7.level.IClientLevel;
+import com.seibel.lod.core.a7.pos.DhBlockPos2D;
 import com.seibel.lod.core.a7.pos.DhSectionPos;
 import com.seibel.lod.core.a7.render.RenderBuffer;
+import com.seibel.lod.core.a7.render.RenderBufferReclaimer;
 import com.seibel.lod.core.a7.save.io.render.RenderMetaFile;
+import com.seibel.lod.core.config.Config;
 import com.seibel.lod.core.enums.ELodDirection;
 import com.seibel.lod.core.objects.LodDataView;
 import com.seibel.lod.core.a7.level.ILevel;
@@ -22,24 +30,45 @@ import java.io.IOException;
 import java.io.OutputStream;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.util.Arrays;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 public class ColumnRenderSource implements LodRenderSource, IColumnDatatype {
     public static final boolean DO_SAFETY_CHECKS = true;
     public static final byte SECTION_SIZE_OFFSET = 6;
     public static final int SECTION_SIZE = 1 << SECTION_SIZE_OFFSET;
-    public static final byte LATEST_VERSION = 1;
+    public static final byte LATEST_VERSION = 3;
     public static final long TYPE_ID = "ColumnRenderSource".hashCode();
-    public static final int AIR_LODS_SIZE = 16;
-    public static final int AIR_SECTION_SIZE = SECTION_SIZE/AIR_LODS_SIZE;
+    public static final byte TILE_SIZE_OFFSET = 2;
+    public static final int TILE_SIZE = 1 << TILE_SIZE_OFFSET;
+    public static final int TILES_PER_SIDE = SECTION_SIZE / TILE_SIZE;
 
     public final int verticalSize;
     public final DhSectionPos sectionPos;
     public final int yOffset;
 
-    public final long[] dataContainer;
-    public final int[] airDataContainer;
+    public final IColumnStorage dataContainer;
+
+    /** One bit per column (bit z of word x), set if the column has any data, even if it is only void. */
+    private final long[] existingColumns = new long[SECTION_SIZE];
+    /**
+     * Lowest depth and highest height of the renderable data in each 4x4 tile, relative to yOffset.
+     * Tiles without any renderable data have a min above their max.
+     */
+    private final short[] tileMinDepth = new short[TILES_PER_SIDE * TILES_PER_SIDE];
+    private final short[] tileMaxHeight = new short[TILES_PER_SIDE * TILES_PER_SIDE];
+    /** Lowest gen mode of each 4x4 tile's columns, 0 if any of them doesn't exist. */
+    private final byte[] tileMinGenMode = new byte[TILES_PER_SIDE * TILES_PER_SIDE];
+
+    // The number of entries of each column read so far, less than verticalSize until loadRemainingSlices() is done
+    private volatile int loadedSlices;
+    // Columns written since the partial load (bit z of word x), which loadRemainingSlices() must not overwrite
+    private long[] changedSinceLoad = null;
 
     /**
      * Constructor of the ColumnDataType
@@ -47,37 +76,118 @@ public class ColumnRenderSource implements LodRenderSource, IColumnDatatype {
      */
     public ColumnRenderSource(DhSectionPos sectionPos, int maxVerticalSize, int yOffset) {
         verticalSize = maxVerticalSize;
-        dataContainer = new long[SECTION_SIZE * SECTION_SIZE * verticalSize];
-        airDataContainer = new int[AIR_SECTION_SIZE * AIR_SECTION_SIZE * verticalSize];
+        loadedSlices = verticalSize;
+        dataContainer = allocateStorage(SECTION_SIZE * SECTION_SIZE * verticalSize);
         this.sectionPos = sectionPos;
         this.yOffset = yOffset;
+        Arrays.fill(tileMinDepth, Short.MAX_VALUE);
+        Arrays.fill(tileMaxHeight, Short.MIN_VALUE);
+    }
+
+    /** Allocates in direct memory if enabled and within budget, on the heap otherwise. */
+    private static IColumnStorage allocateStorage(int length) {
+        if (Config.Client.Advanced.Buffers.offHeapRenderData.get()) {
+            IColumnStorage storage = OffHeapColumnStorage.tryAllocate(length,
+                    Config.Client.Advanced.Buffers.offHeapRenderDataBudgetInMB.get() * 1024L * 1024L);
+            if (storage != null) return storage;
+        } else if (OffHeapColumnStorage.getKeptBytes() != 0) {
+            // Turned off, so what was kept for reuse never will be
+            OffHeapColumnStorage.dropKeptBuffers();
+        }
+        return HeapColumnStorage.borrow(length);
     }
 
-    private long[] loadData(DataInputStream inputData, int version, int verticalSize) throws IOException {
+    private IColumnStorage loadData(DataInputStream inputData, int version, int verticalSize, int maxVerticalSlices) throws IOException {
         switch (version) {
             case 1:
                 return readDataV1(inputData, verticalSize);
+            case 2:
+                return readDataV2(inputData, verticalSize);
+            case 3:
+                return readDataV3(inputData, verticalSize, maxVerticalSlices);
             default:
                 throw new IOException("Invalid Data: The version of the data is not supported");
         }
     }
-    private long[] readDataV1(DataInputStream inputData, int tempMaxVerticalData) throws IOException {
+    private IColumnStorage readDataV1(DataInputStream inputData, int tempMaxVerticalData) throws IOException {
         int x = SECTION_SIZE * SECTION_SIZE * tempMaxVerticalData;
         byte[] data = new byte[x * Long.BYTES];
         short tempMinHeight = Short.reverseBytes(inputData.readShort());
         ByteBuffer bb = ByteBuffer.wrap(data).order(ByteOrder.LITTLE_ENDIAN);
         inputData.readFully(data);
-        long[] result = new long[x];
-        bb.asLongBuffer().get(result);
-        if (tempMinHeight != yOffset) {
-            for (int i=0; i<result.length; i++) {
-                result[i] = ColumnFormat.shiftHeightAndDepth(result[i], (short) (tempMinHeight - yOffset));
+        IColumnStorage result = allocateStorage(x);
+        LongBuffer longs = bb.asLongBuffer();
+        for (int i=0; i<x; i++) {
+            result.set(i, tempMinHeight != yOffset
+                    ? ColumnFormat.shiftHeightAndDepth(longs.get(i), (short) (tempMinHeight - yOffset)) : longs.get(i));
+        }
+        return result;
+    }
+    // Same as V1, except only the existing columns are stored, after a bitmap of which ones exist
+    private IColumnStorage readDataV2(DataInputStream inputData, int tempMaxVerticalData) throws IOException {
+        short tempMinHeight = Short.reverseBytes(inputData.readShort());
+        long[] existing = new long[SECTION_SIZE];
+        for (int x = 0; x < SECTION_SIZE; x++) {
+            existing[x] = Long.reverseBytes(inputData.readLong());
+        }
+        IColumnStorage result = allocateStorage(SECTION_SIZE * SECTION_SIZE * tempMaxVerticalData);
+        for (int x = 0; x < SECTION_SIZE; x++) {
+            long remaining = existing[x];
+            while (remaining != 0) {
+                int z = Long.numberOfTrailingZeros(remaining);
+                remaining &= remaining - 1;
+                int index = x * SECTION_SIZE * tempMaxVerticalData + z * tempMaxVerticalData;
+                for (int i = 0; i < tempMaxVerticalData; i++) {
+                    long data = Long.reverseBytes(inputData.readLong());
+                    result.set(index + i, tempMinHeight != yOffset
+                            ? ColumnFormat.shiftHeightAndDepth(data, (short) (tempMinHeight - yOffset)) : data);
+                }
             }
         }
         return result;
     }
+    // Same as V2, except the data is slice major: the first entry of every existing column, then the second, and so on.
+    // So the top slices can be read on their own.
+    private IColumnStorage readDataV3(DataInputStream inputData, int tempMaxVerticalData, int maxVerticalSlices) throws IOException {
+        short tempMinHeight = Short.reverseBytes(inputData.readShort());
+        long[] existing = readExistingColumns(inputData);
+        IColumnStorage result = allocateStorage(SECTION_SIZE * SECTION_SIZE * tempMaxVerticalData);
+        loadedSlices = Math.min(maxVerticalSlices, tempMaxVerticalData);
+        readSlices(inputData, result, existing, 0, loadedSlices, tempMinHeight, null);
+        return result;
+    }
+    private static long[] readExistingColumns(DataInputStream inputData) throws IOException {
+        long[] existing = new long[SECTION_SIZE];
+        for (int x = 0; x < SECTION_SIZE; x++) {
+            existing[x] = Long.reverseBytes(inputData.readLong());
+        }
+        return existing;
+    }
+    private void readSlices(DataInputStream inputData, IColumnStorage target, long[] existing, int fromSlice, int toSlice,
+                            short tempMinHeight, long[] skippedColumns) throws IOException {
+        for (int i = fromSlice; i < toSlice; i++) {
+            for (int x = 0; x < SECTION_SIZE; x++) {
+                long remaining = existing[x];
+                while (remaining != 0) {
+                    int z = Long.numberOfTrailingZeros(remaining);
+                    remaining &= remaining - 1;
+                    long data = Long.reverseBytes(inputData.readLong());
+                    if (skippedColumns != null && (skippedColumns[x] & (1L << z)) != 0) continue;
+                    target.set(x * SECTION_SIZE * verticalSize + z * verticalSize + i, tempMinHeight != yOffset
+                            ? ColumnFormat.shiftHeightAndDepth(data, (short) (tempMinHeight - yOffset)) : data);
+                }
+            }
+        }
+    }
     // Load from data stream with maxVerticalSize loaded from the data stream
     public ColumnRenderSource(DhSectionPos sectionPos, DataInputStream inputData, int version, ILevel level) throws IOException {
+        this(sectionPos, inputData, version, level, Integer.MAX_VALUE);
+    }
+    /**
+     * Only reads the top maxVerticalSlices entries of each column, if the version stores them separately.
+     * The rest can then be read with {@link #loadRemainingSlices}.
+     */
+    public ColumnRenderSource(DhSectionPos sectionPos, DataInputStream inputData, int version, ILevel level, int maxVerticalSlices) throws IOException {
         this.sectionPos = sectionPos;
         yOffset = level.getMinY();
         byte detailLevel = inputData.readByte();
@@ -85,23 +195,76 @@ public class ColumnRenderSource implements LodRenderSource, IColumnDatatype {
             throw new IOException("Invalid data: detail level does not match");
         }
         verticalSize = inputData.readByte() & 0b01111111;
-        dataContainer = loadData(inputData, version, verticalSize);
-        airDataContainer = new int[AIR_SECTION_SIZE * AIR_SECTION_SIZE * verticalSize];
+        loadedSlices = verticalSize;
+        dataContainer = loadData(inputData, version, verticalSize, maxVerticalSlices);
+        refreshSummary(0, 0, SECTION_SIZE - 1, SECTION_SIZE - 1);
+        if (isPartiallyLoaded()) changedSinceLoad = new long[SECTION_SIZE];
+    }
+
+    @Override
+    public boolean isPartiallyLoaded() {
+        return loadedSlices < verticalSize;
+    }
+
+    /**
+     * Reads the entries skipped by the partial load, from the same data it was loaded from.
+     * Columns written since then are kept as they are.
+     */
+    public void loadRemainingSlices(DataInputStream inputData, int version) throws IOException {
+        // Locked like update(), as chunk updates and buffer builds run on other threads than the file reads
+        boolean loaded;
+        dataLock.writeLock().lock();
+        try {
+            loaded = readRemainingSlices(inputData, version);
+        } finally {
+            dataLock.writeLock().unlock();
+        }
+        // Only the buffer is outdated, the saved data already has these slices
+        if (loaded) {
+            bufferDirty.set(true);
+            notifyChanged();
+        }
+    }
+
+    /** @return false if nothing was left to read */
+    private boolean readRemainingSlices(DataInputStream inputData, int version) throws IOException {
+        if (!isPartiallyLoaded()) return false;
+        if (version != 3) throw new IOException("Invalid Data: version " + version + " can't be partially loaded");
+        if (inputData.readByte() != getDataDetail() || (inputData.readByte() & 0b01111111) != verticalSize) {
+            throw new IOException("Invalid data: the data changed since it was partially loaded");
+        }
+        short tempMinHeight = Short.reverseBytes(inputData.readShort());
+        long[] existing = readExistingColumns(inputData);
+        int existingCount = 0;
+        for (long bits : existing) existingCount += Long.bitCount(bits);
+        long toSkip = (long) loadedSlices * existingCount * Long.BYTES;
+        while (toSkip > 0) {
+            int skipped = inputData.skipBytes((int) Math.min(toSkip, Integer.MAX_VALUE));
+            if (skipped == 0) throw new IOException("Invalid data: failed to skip the loaded slices");
+            toSkip -= skipped;
+        }
+        readSlices(inputData, dataContainer, existing, loadedSlices, verticalSize, tempMinHeight, changedSinceLoad);
+        loadedSlices = verticalSize;
+        changedSinceLoad = null;
+        refreshSummary(0, 0, SECTION_SIZE - 1, SECTION_SIZE - 1);
+        return true;
     }
 
     @Override
     public void clear(int posX, int posZ)
     {
         for (int verticalIndex = 0; verticalIndex < verticalSize; verticalIndex++)
-            dataContainer[posX * SECTION_SIZE * verticalSize + posZ * verticalSize + verticalIndex] =
-                    ColumnFormat.EMPTY_DATA;
+            dataContainer.set(posX * SECTION_SIZE * verticalSize + posZ * verticalSize + verticalIndex,
+                    ColumnFormat.EMPTY_DATA);
+        refreshSummary(posX, posZ, posX, posZ);
     }
 
 
     @Override
     public boolean addData(long data, int posX, int posZ, int verticalIndex)
     {
-        dataContainer[posX * SECTION_SIZE * verticalSize + posZ * verticalSize + verticalIndex] = data;
+        dataContainer.set(posX * SECTION_SIZE * verticalSize + posZ * verticalSize + verticalIndex, data);
+        refreshSummary(posX, posZ, posX, posZ);
         return true;
     }
 
@@ -116,20 +279,21 @@ public class ColumnRenderSource implements LodRenderSource, IColumnDatatype {
                 throw new IllegalArgumentException("Z position is out of bounds");
         }
         int index = posX * SECTION_SIZE * verticalSize + posZ * verticalSize;
-        int compare = ColumnFormat.compareDatapointPriority(data.get(0), dataContainer[index]);
+        int compare = ColumnFormat.compareDatapointPriority(data.get(0), dataContainer.get(index));
         if (override) {
             if (compare<0) return false;
         } else {
             if (compare<=0) return false;
         }
-        data.copyTo(dataContainer, index);
+        for (int i = 0; i < verticalSize; i++) dataContainer.set(index + i, data.get(i));
+        refreshSummary(posX, posZ, posX, posZ);
         return true;
     }
 
     @Override
     public long getData(int posX, int posZ, int verticalIndex)
     {
-        return dataContainer[posX * SECTION_SIZE * verticalSize + posZ * verticalSize + verticalIndex];
+        return dataContainer.get(posX * SECTION_SIZE * verticalSize + posZ * verticalSize + verticalIndex);
     }
 
     @Override
@@ -137,7 +301,7 @@ public class ColumnRenderSource implements LodRenderSource, IColumnDatatype {
     {
         long[] result = new long[verticalSize];
         int index = posX * SECTION_SIZE * verticalSize + posZ * verticalSize;
-        System.arraycopy(dataContainer, index, result, 0, verticalSize);
+        dataContainer.copyTo(index, result, 0, verticalSize);
         return result;
     }
 
@@ -168,12 +332,199 @@ public class ColumnRenderSource implements LodRenderSource, IColumnDatatype {
         return ColumnFormat.doesItExist(getSingleData(posX, posZ));
     }
 
+    /** @return true if no column of the tile has renderable (existing and non void) data */
+    public boolean isTileEmpty(int tileX, int tileZ) {
+        int tile = tileX * TILES_PER_SIDE + tileZ;
+        return tileMinDepth[tile] > tileMaxHeight[tile];
+    }
+
+    @FunctionalInterface
+    public interface ColumnPosConsumer {
+        void accept(int x, int z);
+    }
+
+    /**
+     * Calls the consumer for every column whose first entry is renderable (existing and non void).
+     * The columns of empty tiles are skipped without being read.
+     */
+    public void forEachRenderableColumn(ColumnPosConsumer consumer) {
+        for (int tileX = 0; tileX < TILES_PER_SIDE; tileX++) {
+            for (int tileZ = 0; tileZ < TILES_PER_SIDE; tileZ++) {
+                if (isTileEmpty(tileX, tileZ)) continue;
+                for (int x = tileX * TILE_SIZE; x < (tileX + 1) * TILE_SIZE; x++) {
+                    for (int z = tileZ * TILE_SIZE; z < (tileZ + 1) * TILE_SIZE; z++) {
+                        long first = getData(x, z, 0);
+                        if (ColumnFormat.doesItExist(first) && !ColumnFormat.isVoid(first)) consumer.accept(x, z);
+                    }
+                }
+            }
+        }
+    }
+
+    @Override
+    public int getMinY() {
+        int min = Integer.MAX_VALUE;
+        for (int tile = 0; tile < tileMinDepth.length; tile++) {
+            if (tileMinDepth[tile] <= tileMaxHeight[tile]) min = Math.min(min, tileMinDepth[tile] + yOffset);
+        }
+        return min;
+    }
+
+    @Override
+    public int getMaxY() {
+        int max = Integer.MIN_VALUE;
+        for (int tile = 0; tile < tileMaxHeight.length; tile++) {
+            if (tileMinDepth[tile] <= tileMaxHeight[tile]) max = Math.max(max, tileMaxHeight[tile] + yOffset);
+        }
+        return max;
+    }
+
+    /**
+     * Updates the occupancy bitmap and tile height bounds of the given region (inclusive).
+     * Must be called after writing columns through a view, and not concurrently for the same tiles.
+     */
+    public void refreshSummary(int minX, int minZ, int maxX, int maxZ) {
+        long[] changed = changedSinceLoad;
+        for (int x = minX; x <= maxX; x++) {
+            long bits = existingColumns[x];
+            for (int z = minZ; z <= maxZ; z++) {
+                if (ColumnFormat.doesItExist(dataContainer.get(x * SECTION_SIZE * verticalSize + z * verticalSize))) {
+                    bits |= 1L << z;
+                } else {
+                    bits &= ~(1L << z);
+                }
+            }
+            existingColumns[x] = bits;
+            if (changed != null) changed[x] |= (-1L >>> (63 - maxZ + minZ)) << minZ;
+        }
+        for (int tileX = minX >> TILE_SIZE_OFFSET; tileX <= maxX >> TILE_SIZE_OFFSET; tileX++) {
+            for (int tileZ = minZ >> TILE_SIZE_OFFSET; tileZ <= maxZ >> TILE_SIZE_OFFSET; tileZ++) {
+                refreshTile(tileX, tileZ);
+            }
+        }
+    }
+
+    private void refreshTile(int tileX, int tileZ) {
+        short minDepth = Short.MAX_VALUE;
+        short maxHeight = Short.MIN_VALUE;
+        byte minGenMode = Byte.MAX_VALUE;
+        for (int x = tileX * TILE_SIZE; x < (tileX + 1) * TILE_SIZE; x++) {
+            for (int z = tileZ * TILE_SIZE; z < (tileZ + 1) * TILE_SIZE; z++) {
+                int index = x * SECTION_SIZE * verticalSize + z * verticalSize;
+                long first = dataContainer.get(index);
+                minGenMode = (byte) Math.min(minGenMode, ColumnFormat.doesItExist(first) ? ColumnFormat.getGenerationMode(first) : 0);
+                for (int i = 0; i < verticalSize; i++) {
+                    long data = dataContainer.get(index + i);
+                    if (!ColumnFormat.doesItExist(data) || ColumnFormat.isVoid(data)) break;
+                    minDepth = (short) Math.min(minDepth, ColumnFormat.getDepth(data));
+                    maxHeight = (short) Math.max(maxHeight, ColumnFormat.getHeight(data));
+                }
+            }
+        }
+        int tile = tileX * TILES_PER_SIDE + tileZ;
+        tileMinDepth[tile] = minDepth;
+        tileMaxHeight[tile] = maxHeight;
+        tileMinGenMode[tile] = minGenMode;
+    }
+
+    @Override
+    public byte getMinGenMode() {
+        byte min = Byte.MAX_VALUE;
+        for (byte genMode : tileMinGenMode) min = (byte) Math.min(min, genMode);
+        return min;
+    }
+
     @Override
     public void generateData(IColumnDatatype lowerDataContainer, int posX, int posZ)
     {
         ColumnQuadView quadView = lowerDataContainer.getDataInQuad(posX*2, posZ*2, 2,2);
         ColumnArrayView outputView = getVerticalDataView(posX, posZ);
         outputView.mergeMultiDataFrom(quadView);
+        refreshSummary(posX, posZ, posX, posZ);
+    }
+
+    /**
+     * Regenerates the quarter of this source covered by the given child, merging each 2x2 block of its columns.
+     * @param child0to3 the index of the child, as used by {@link DhSectionPos#getChild}
+     */
+    public void generateFromChild(ColumnRenderSource child, int child0to3) {
+        generateFromChild(child, child0to3, 0, 0, SECTION_SIZE - 1, SECTION_SIZE - 1);
+    }
+
+    /**
+     * Regenerates the columns in the given region (inclusive, in this source's column coordinates)
+     * that are covered by the given child. Columns outside of the child's quarter are left untouched.
+     */
+    public void generateFromChild(ColumnRenderSource child, int child0to3, int minX, int minZ, int maxX, int maxZ) {
+        if (DO_SAFETY_CHECKS && !child.sectionPos.equals(sectionPos.getChild(child0to3)))
+            throw new IllegalArgumentException("Section " + child.sectionPos + " isn't child " + child0to3 + " of " + sectionPos);
+        int halfSize = SECTION_SIZE / 2;
+        int quarterX = (child0to3 & 1) * halfSize;
+        int quarterZ = ((child0to3 & 2) / 2) * halfSize;
+        int startX = Math.max(minX, quarterX);
+        int startZ = Math.max(minZ, quarterZ);
+        int endX = Math.min(maxX, quarterX + halfSize - 1);
+        int endZ = Math.min(maxZ, quarterZ + halfSize - 1);
+        if (startX > endX || startZ > endZ) return;
+        // Parent before child, the only order two sources are ever locked in
+        dataLock.writeLock().lock();
+        child.dataLock.readLock().lock();
+        try {
+            generateColumnsFromChild(child, quarterX, quarterZ, startX, startZ, endX, endZ);
+        } finally {
+            child.dataLock.readLock().unlock();
+            dataLock.writeLock().unlock();
+        }
+        markBufferDirty();
+    }
+
+    private void generateColumnsFromChild(ColumnRenderSource child, int quarterX, int quarterZ,
+                                          int startX, int startZ, int endX, int endZ) {
+        for (int x = startX; x <= endX; x++) {
+            for (int z = startZ; z <= endZ; z++) {
+                int childX = (x - quarterX) * 2;
+                int childZ = (z - quarterZ) * 2;
+                ColumnArrayView column = getVerticalDataView(x, z);
+                // Each 2x2 block lies within one child tile, so an empty tile only needs the existence bits checked
+                if (child.isTileEmpty(childX >> TILE_SIZE_OFFSET, childZ >> TILE_SIZE_OFFSET)) {
+                    column.fill(ColumnFormat.EMPTY_DATA);
+                    long firstData = child.dataContainer.get(childX * SECTION_SIZE * child.verticalSize + childZ * child.verticalSize);
+                    if (child.doesItExist(childX, childZ) || child.doesItExist(childX, childZ + 1)
+                            || child.doesItExist(childX + 1, childZ) || child.doesItExist(childX + 1, childZ + 1)) {
+                        column.set(0, ColumnFormat.createVoidDataPoint(ColumnFormat.getGenerationMode(firstData)));
+                    }
+                    continue;
+                }
+                column.mergeMultiDataFrom(child.getDataInQuad(childX, childZ, 2, 2));
+            }
+        }
+        refreshSummary(startX, startZ, endX, endZ);
+    }
+
+    /**
+     * Replaces all columns with the ones of another source of the same section, e.g. one transformed again with new colors.
+     * Slices that weren't read yet by a partial load are dropped, as the other source is complete.
+     */
+    public void replaceData(ColumnRenderSource other) {
+        if (DO_SAFETY_CHECKS && !other.sectionPos.equals(sectionPos))
+            throw new IllegalArgumentException("Section " + other.sectionPos + " can't replace the data of " + sectionPos);
+        // The only other pair of sources locked together, other is never locked for writing while it is locked here
+        dataLock.writeLock().lock();
+        other.dataLock.readLock().lock();
+        try {
+            for (int x = 0; x < SECTION_SIZE; x++) {
+                for (int z = 0; z < SECTION_SIZE; z++) {
+                    getVerticalDataView(x, z).changeVerticalSizeFrom(other.getVerticalDataView(x, z));
+                }
+            }
+            loadedSlices = verticalSize;
+            changedSinceLoad = null;
+            refreshSummary(0, 0, SECTION_SIZE - 1, SECTION_SIZE - 1);
+        } finally {
+            other.dataLock.readLock().unlock();
+            dataLock.writeLock().unlock();
+        }
+        markBufferDirty();
     }
 
     boolean writeData(DataOutputStream output) throws IOException {
@@ -183,16 +534,26 @@ public class ColumnRenderSource implements LodRenderSource, IColumnDatatype {
         output.writeByte((byte) (yOffset & 0xFF));
         output.writeByte((byte) ((yOffset >> 8) & 0xFF));
         boolean allGenerated = true;
-        int x = SECTION_SIZE * SECTION_SIZE;
-        for (int i = 0; i < x; i++)
+        for (int x = 0; x < SECTION_SIZE; x++)
+        {
+            output.writeLong(Long.reverseBytes(existingColumns[x]));
+            if (existingColumns[x] != -1L)
+                allGenerated = false;
+        }
+        // Only the existing columns are written, the others are all EMPTY_DATA.
+        // Slice major, so the top entries of the columns can be read without the rest.
+        for (int j = 0; j < verticalSize; j++)
         {
-            for (int j = 0; j < verticalSize; j++)
+            for (int x = 0; x < SECTION_SIZE; x++)
             {
-                long current = dataContainer[i * verticalSize + j];
-                output.writeLong(Long.reverseBytes(current));
+                long remaining = existingColumns[x];
+                while (remaining != 0)
+                {
+                    int z = Long.numberOfTrailingZeros(remaining);
+                    remaining &= remaining - 1;
+                    output.writeLong(Long.reverseBytes(dataContainer.get(x * SECTION_SIZE * verticalSize + z * verticalSize + j)));
+                }
             }
-            if (!ColumnFormat.doesItExist(dataContainer[i]))
-                allGenerated = false;
         }
         return allGenerated;
     }
@@ -231,7 +592,7 @@ public class ColumnRenderSource implements LodRenderSource, IColumnDatatype {
     @Override
     public long getRoughRamUsage()
     {
-        return (long) dataContainer.length * Long.BYTES;
+        return (long) dataContainer.length() * Long.BYTES;
     }
 
     public DhSectionPos getSectionPos() {
@@ -247,8 +608,40 @@ public class ColumnRenderSource implements LodRenderSource, IColumnDatatype {
         return SECTION_SIZE_OFFSET;
     }
 
+    // Buffer builds and saves read the columns under the read lock, every change to them takes the write lock
+    private final ReentrantReadWriteLock dataLock = new ReentrantReadWriteLock();
     private CompletableFuture<ColumnRenderBuffer> inBuildRenderBuffer = null;
-    private ColumnRenderBuffer usedBuffer = null;
+    // The build itself, which keeps reading dataContainer even after inBuildRenderBuffer is cancelled
+    private CompletableFuture<ColumnRenderBuffer> lastBuild = null;
+    // A buffer swapped out earlier that the render thread is done with, which the next build can upload into
+    private final AtomicReference<ColumnRenderBuffer> reusableBuffer = new AtomicReference<>();
+    // Set when the data changed after the last buffer build started, so the buffer has to be rebuilt
+    private final AtomicBoolean bufferDirty = new AtomicBoolean(false);
+    private volatile boolean unsavedChanges = false;
+    private final AtomicBoolean released = new AtomicBoolean(false);
+    private volatile Runnable changeListener = null;
+
+    /** Held by {@link ColumnRenderBuffer#build} while it reads this source's columns. */
+    public Lock getReadLock() {
+        return dataLock.readLock();
+    }
+
+    /** Requests a rebuild of this section's render buffer. Only this section is rebuilt, not its neighbours. */
+    public void markBufferDirty() {
+        bufferDirty.set(true);
+        unsavedChanges = true;
+        notifyChanged();
+    }
+
+    private void notifyChanged() {
+        Runnable listener = changeListener;
+        if (listener != null) listener.run();
+    }
+
+    @Override
+    public void setChangeListener(Runnable listener) {
+        changeListener = listener;
+    }
 
 
     private void tryBuildBuffer(IClientLevel level, LodQuadTree quadTree) {
@@ -260,13 +653,32 @@ public class ColumnRenderSource implements LodRenderSource, IColumnDatatype {
                     data[direction.ordinal()-2] = ((ColumnRenderSource) section.getRenderContainer());
                 }
             }
-            inBuildRenderBuffer = ColumnRenderBuffer.build(level, usedBuffer, this, data);
+            bufferDirty.set(false);
+            lastBuild = ColumnRenderBuffer.build(level, reusableBuffer.getAndSet(null), this, data);
+            // Cancelling a dependent stage leaves lastBuild alone, so release() can still wait for it
+            inBuildRenderBuffer = lastBuild.thenApply((buffer) -> buffer);
+            inBuildRenderBuffer.whenComplete((buffer, e) -> notifyChanged());
         }
     }
     private void cancelBuildBuffer() {
         if (inBuildRenderBuffer != null) {
             inBuildRenderBuffer.cancel(false);
             inBuildRenderBuffer = null;
+            // The render thread never saw the buffer of a build that wasn't swapped in, so it can be closed right away
+            lastBuild.thenAccept((buffer) -> {
+                if (buffer != null) buffer.close();
+            });
+        }
+    }
+
+    /** Takes back a buffer this source swapped out once the render thread is done with it, see {@link RenderBufferReclaimer}. */
+    private void reclaimBuffer(RenderBuffer buffer) {
+        if (!(buffer instanceof ColumnRenderBuffer) || released.get()
+                || !reusableBuffer.compareAndSet(null, (ColumnRenderBuffer) buffer)) {
+            buffer.close();
+        } else if (released.get() && reusableBuffer.compareAndSet((ColumnRenderBuffer) buffer, null)) {
+            // Released while it was being put back
+            buffer.close();
         }
     }
 
@@ -284,7 +696,16 @@ public class ColumnRenderSource implements LodRenderSource, IColumnDatatype {
 
     @Override
     public boolean isRenderReady() {
-        return (inBuildRenderBuffer != null && inBuildRenderBuffer.isDone());
+        if (inBuildRenderBuffer == null) {
+            // Ready to start a rebuild, which trySwapRenderBuffer() will do
+            return level != null && bufferDirty.get();
+        }
+        return inBuildRenderBuffer.isDone();
+    }
+
+    @Override
+    public boolean isBuildingRenderBuffer() {
+        return inBuildRenderBuffer != null && !inBuildRenderBuffer.isDone();
     }
 
     @Override
@@ -292,13 +713,38 @@ public class ColumnRenderSource implements LodRenderSource, IColumnDatatype {
         cancelBuildBuffer();
     }
 
+    @Override
+    public void release() {
+        if (!released.compareAndSet(false, true)) return;
+        cancelBuildBuffer();
+        ColumnRenderBuffer reusable = reusableBuffer.getAndSet(null);
+        if (reusable != null) reusable.close();
+        CompletableFuture<ColumnRenderBuffer> build = lastBuild;
+        if (build == null) {
+            dataContainer.free();
+        } else {
+            build.handle((buffer, e) -> {
+                dataContainer.free();
+                return null;
+            });
+        }
+    }
+
+    @Override
+    public boolean hasUnsavedChanges() {
+        return unsavedChanges;
+    }
+
 
     @Override
-    public boolean trySwapRenderBuffer(LodQuadTree quadTree, AtomicReference<RenderBuffer> referenceSlot) {
+    public boolean trySwapRenderBuffer(LodQuadTree quadTree, AtomicReference<RenderBuffer> referenceSlot,
+                                       RenderBufferReclaimer reclaimer) {
         if (inBuildRenderBuffer != null && inBuildRenderBuffer.isDone()) {
-            RenderBuffer oldBuffer = referenceSlot.getAndSet(inBuildRenderBuffer.join());
-            if (oldBuffer instanceof ColumnRenderBuffer) usedBuffer = (ColumnRenderBuffer) oldBuffer;
+            ColumnRenderBuffer newBuffer = inBuildRenderBuffer.join();
             inBuildRenderBuffer = null;
+            // A failed build keeps the old buffer
+            if (newBuffer == null) return false;
+            reclaimer.retire(referenceSlot.getAndSet(newBuffer), this::reclaimBuffer);
             return true;
         } else {
             tryBuildBuffer(level, quadTree);
@@ -308,14 +754,64 @@ public class ColumnRenderSource implements LodRenderSource, IColumnDatatype {
 
     @Override
     public void saveRender(IClientLevel level, RenderMetaFile file, OutputStream dataStream) throws IOException {
+        unsavedChanges = false;
+        dataLock.readLock().lock();
         try (DataOutputStream dos = new DataOutputStream(dataStream)) {
             writeData(dos);
+        } finally {
+            dataLock.readLock().unlock();
         }
     }
 
+    /**
+     * Rewrites only the columns covered by the chunk. The parent levels are
+     * updated separately, see {@link com.seibel.lod.core.a7.save.io.render.ParentRenderScheduler}.
+     */
     @Override
-    public void update(ChunkSizedData chunkData) {
-        //TODO Update render data directly
+    public void update(ChunkSizedData chunkData, IClientLevel level) {
+        boolean changed;
+        // Waits for a buffer build reading the columns, the build started after this one sees the new data
+        dataLock.writeLock().lock();
+        try {
+            changed = updateColumns(chunkData, level);
+        } finally {
+            dataLock.writeLock().unlock();
+        }
+        if (changed) markBufferDirty();
+    }
+
+    private boolean updateColumns(ChunkSizedData chunkData, IClientLevel level) {
+        byte dataDetail = getDataDetail();
+        if (dataDetail > 4) return false; // The chunk only covers part of a column, so it is built from the children instead
+        DhBlockPos2D blockOffset = chunkData.pos.getMinBlockPos().subtract(sectionPos.getSectionBBoxPos().getCorner());
+        int offsetX = blockOffset.x >> dataDetail;
+        int offsetZ = blockOffset.z >> dataDetail;
+        int chunkWidth = 16 >> dataDetail;
+        if (offsetX < 0 || offsetZ < 0 || offsetX + chunkWidth > SECTION_SIZE || offsetZ + chunkWidth > SECTION_SIZE) {
+            return false;
+        }
+        // The chunk's columns were all written by the same earlier chunk, so checking one of them is enough
+        long existing = getSingleData(offsetX, offsetZ);
+        if (ColumnFormat.doesItExist(existing) && ColumnFormat.getGenerationMode(existing) > chunkData.genMode) return false;
+
+        int[] paletteColors = level.getColorResolver().resolvePalette(chunkData.getMapping());
+        if (dataDetail == 0) {
+            for (int x = 0; x < 16; x++) {
+                for (int z = 0; z < 16; z++) {
+                    ColumnArrayView column = getVerticalDataView(offsetX + x, offsetZ + z);
+                    column.fill(ColumnFormat.EMPTY_DATA);
+                    FullToColumnTransformer.convertColumnData(paletteColors, chunkData.genMode, column, chunkData.get(x, z));
+                }
+            }
+        } else {
+            FullDataDownsampler.downsample(chunkData, 1 << dataDetail, (x, z, fullColumn, length) -> {
+                ColumnArrayView column = getVerticalDataView(offsetX + x, offsetZ + z);
+                column.fill(ColumnFormat.EMPTY_DATA);
+                FullToColumnTransformer.convertColumnData(paletteColors, chunkData.genMode, column, fullColumn, length);
+            });
+        }
+        refreshSummary(offsetX, offsetZ, offsetX + chunkWidth - 1, offsetZ + chunkWidth - 1);
+        return true;
     }
 
     @Override
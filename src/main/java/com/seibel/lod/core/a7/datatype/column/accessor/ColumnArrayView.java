@@ -3,15 +3,16 @@ package com.seibel.lod.core.a7.datatype.column.accessor;
 
 import com.seibel.lod.core.a7.datatype.column.ColumnFormat;
 
-import java.util.Arrays;
-
 public final class ColumnArrayView implements IColumnDataView {
-    private final long[] data;
+    private final IColumnStorage data;
     private final int size; // size in longs
     private final int offset; // offset in longs
     private final int vertSize; // vertical size in longs
 
     public ColumnArrayView(long[] data, int size, int offset, int vertSize) {
+        this(new HeapColumnStorage(data), size, offset, vertSize);
+    }
+    public ColumnArrayView(IColumnStorage data, int size, int offset, int vertSize) {
         this.data = data;
         this.size = size;
         this.offset = offset;
@@ -19,10 +20,10 @@ public final class ColumnArrayView implements IColumnDataView {
     }
     @Override
     public long get(int index) {
-        return data[index + offset];
+        return data.get(index + offset);
     }
     public void set(int index, long value) {
-        data[index + offset] = value;
+        data.set(index + offset, value);
     }
     @Override
     public int size() {
@@ -44,7 +45,7 @@ public final class ColumnArrayView implements IColumnDataView {
     }
 
     public void fill(long value) {
-        Arrays.fill(data, offset, offset + size, value);
+        data.fill(offset, offset + size, value);
     }
 
     public void copyFrom(IColumnDataView source, int outputDataIndexOffset) {
@@ -54,8 +55,7 @@ public final class ColumnArrayView implements IColumnDataView {
             for (int i = 0; i < source.dataCount(); i++) {
                 int outputOffset = offset + outputDataIndexOffset * vertSize + i * vertSize;
                 source.subView(i, 1).copyTo(data, outputOffset);
-                Arrays.fill(data, outputOffset + source.verticalSize(),
-                        outputOffset + vertSize, 0);
+                data.fill(outputOffset + source.verticalSize(), outputOffset + vertSize, 0);
             }
         } else {
             source.copyTo(data, offset + outputDataIndexOffset * vertSize);
@@ -67,7 +67,11 @@ public final class ColumnArrayView implements IColumnDataView {
 
     @Override
     public void copyTo(long[] target, int offset) {
-        System.arraycopy(data, this.offset, target, offset, size);
+        data.copyTo(this.offset, target, offset, size);
+    }
+    @Override
+    public void copyTo(IColumnStorage target, int offset) {
+        data.copyTo(this.offset, target, offset, size);
     }
 
     public boolean mergeWith(ColumnArrayView source, boolean override) {
@@ -82,12 +86,12 @@ public final class ColumnArrayView implements IColumnDataView {
             if (override) {
                 if (ColumnFormat.compareDatapointPriority(source.get(o), get(o)) >= 0) {
                     anyChange = true;
-                    System.arraycopy(source.data, source.offset+o, data, offset+o, vertSize);
+                    source.data.copyTo(source.offset+o, data, offset+o, vertSize);
                 }
             } else {
                 if (ColumnFormat.compareDatapointPriority(source.get(o), get(o)) > 0) {
                     anyChange = true;
-                    System.arraycopy(source.data, source.offset+o, data, offset+o, vertSize);
+                    source.data.copyTo(source.offset+o, data, offset+o, vertSize);
                 }
             }
         }
@@ -1,7 +1,7 @@
 package com.seibel.lod.core.a7.datatype.column.accessor;
 
 public class ColumnQuadView implements IColumnDataView {
-    private final long[] data;
+    private final IColumnStorage data;
     private final int perColumnOffset; // per column (of columns of data) offset in longs
     private final int xSize; // x size in datapoints
     private final int zSize; // x size in datapoints
@@ -9,16 +9,19 @@ public class ColumnQuadView implements IColumnDataView {
     private final int vertSize; // vertical size in longs
 
     public ColumnQuadView(long[] data, int dataZWidth, int dataVertSize, int viewXOffset, int viewZOffset, int xSize, int zSize) {
-        if (viewXOffset + xSize > (data.length / (dataZWidth* dataVertSize)) || viewZOffset + zSize > dataZWidth)
+        this(new HeapColumnStorage(data), dataZWidth, dataVertSize, viewXOffset, viewZOffset, xSize, zSize);
+    }
+    public ColumnQuadView(IColumnStorage data, int dataZWidth, int dataVertSize, int viewXOffset, int viewZOffset, int xSize, int zSize) {
+        if (viewXOffset + xSize > (data.length() / (dataZWidth* dataVertSize)) || viewZOffset + zSize > dataZWidth)
             throw new IllegalArgumentException("View is out of bounds");
         this.data = data;
         this.xSize = xSize;
         this.zSize = zSize;
         this.vertSize = dataVertSize;
         this.perColumnOffset = dataZWidth * dataVertSize;
-        this.offset = (viewXOffset * perColumnOffset + viewZOffset) * dataVertSize;
+        this.offset = viewXOffset * perColumnOffset + viewZOffset * dataVertSize;
     }
-    private ColumnQuadView(long[] data, int perColumnOffset, int offset, int vertSize, int xSize, int zSize) {
+    private ColumnQuadView(IColumnStorage data, int perColumnOffset, int offset, int vertSize, int xSize, int zSize) {
         this.data = data;
         this.perColumnOffset = perColumnOffset;
         this.offset = offset;
@@ -29,18 +32,19 @@ public class ColumnQuadView implements IColumnDataView {
 
     @Override
     public long get(int index) {
-        int x = index / perColumnOffset;
-        int z = (index % perColumnOffset) / vertSize;
+        // Same order as copyTo(): columns are x major, each one vertSize long
+        int column = index / vertSize;
         int v = index % vertSize;
-        return get(x, z, v);
+        return get(column / zSize, column % zSize, v);
     }
 
     public long get(int x, int z, int v) {
-        return data[offset + x * perColumnOffset + z * vertSize + v];
+        return data.get(offset + x * perColumnOffset + z * vertSize + v);
     }
 
     public long set(int x, int z, int v, long value) {
-        return data[offset + x * perColumnOffset + z * vertSize + v] = value;
+        data.set(offset + x * perColumnOffset + z * vertSize + v, value);
+        return value;
     }
 
     public ColumnArrayView get(int x, int z) {
@@ -75,8 +79,8 @@ public class ColumnQuadView implements IColumnDataView {
     @Override
     public IColumnDataView subView(int dataIndexStart, int dataCount) {
         if (dataCount != 1) throw new UnsupportedOperationException("Fixme: subView for QUadView only support one data point!");
-        int x = dataIndexStart % xSize;
-        int z = dataIndexStart / xSize;
+        int x = dataIndexStart / zSize;
+        int z = dataIndexStart % zSize;
         return new ColumnArrayView(data, vertSize, offset + x * perColumnOffset + z * vertSize, vertSize);
     }
 
@@ -88,7 +92,13 @@ public class ColumnQuadView implements IColumnDataView {
     @Override
     public void copyTo(long[] target, int offset) {
         for (int x = 0; x < xSize; x++) {
-            System.arraycopy(data, this.offset + x * perColumnOffset, target, offset + x * xSize * vertSize, zSize * vertSize);
+            data.copyTo(this.offset + x * perColumnOffset, target, offset + x * zSize * vertSize, zSize * vertSize);
+        }
+    }
+    @Override
+    public void copyTo(IColumnStorage target, int offset) {
+        for (int x = 0; x < xSize; x++) {
+            data.copyTo(this.offset + x * perColumnOffset, target, offset + x * zSize * vertSize, zSize * vertSize);
         }
     }
 
@@ -0,0 +1,80 @@
+package com.seibel.lod.core.a7.datatype.column.accessor;
+
+import com.seibel.lod.core.a7.util.LongArrayPool;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+public final class HeapColumnStorage implements IColumnStorage {
+    final long[] array;
+    private final LongArrayPool pool;
+    private final AtomicBoolean released = new AtomicBoolean(false);
+
+    /** Wraps the array. Freeing leaves it alone. */
+    public HeapColumnStorage(long[] array) {
+        this(array, null);
+    }
+    private HeapColumnStorage(long[] array, LongArrayPool pool) {
+        this.array = array;
+        this.pool = pool;
+    }
+
+    /** @return a zeroed storage borrowed from {@link LongArrayPool}, which it is released back to once freed */
+    public static HeapColumnStorage borrow(int length) {
+        return borrow(LongArrayPool.INSTANCE, length);
+    }
+    public static HeapColumnStorage borrow(LongArrayPool pool, int length) {
+        // Render sources are cached softly, so the GC may drop them without them ever being freed
+        return new HeapColumnStorage(pool.borrowCollectable(length), pool);
+    }
+
+    @Override
+    public int length() {
+        return array.length;
+    }
+
+    @Override
+    public long get(int index) {
+        return array[index];
+    }
+
+    @Override
+    public void set(int index, long value) {
+        array[index] = value;
+    }
+
+    @Override
+    public void fill(int fromIndex, int toIndex, long value) {
+        Arrays.fill(array, fromIndex, toIndex, value);
+    }
+
+    @Override
+    public void copyTo(int index, long[] target, int targetIndex, int length) {
+        System.arraycopy(array, index, target, targetIndex, length);
+    }
+
+    @Override
+    public void copyTo(int index, IColumnStorage target, int targetIndex, int length) {
+        if (target instanceof HeapColumnStorage) {
+            System.arraycopy(array, index, ((HeapColumnStorage) target).array, targetIndex, length);
+        } else {
+            target.copyFrom(array, index, targetIndex, length);
+        }
+    }
+
+    @Override
+    public void copyFrom(long[] source, int sourceIndex, int index, int length) {
+        System.arraycopy(source, sourceIndex, array, index, length);
+    }
+
+    @Override
+    public boolean isOffHeap() {
+        return false;
+    }
+
+    @Override
+    public void free() {
+        // Only released once, as a second release would let two borrowers share the array
+        if (pool != null && released.compareAndSet(false, true)) pool.release(array);
+    }
+}
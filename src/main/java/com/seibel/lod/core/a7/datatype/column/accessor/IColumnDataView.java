@@ -31,4 +31,5 @@ public interface IColumnDataView {
 
     @Deprecated //This is unsafe for quadViews. And its a mess for multi-columns!
     void copyTo(long[] target, int offset);
+    void copyTo(IColumnStorage target, int offset);
 }
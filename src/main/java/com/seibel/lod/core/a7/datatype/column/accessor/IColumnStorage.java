@@ -0,0 +1,22 @@
+package com.seibel.lod.core.a7.datatype.column.accessor;
+
+/**
+ * The memory column data is stored in, either a heap array or native memory.
+ * Views read and write through it, so they work the same on both.
+ */
+public interface IColumnStorage {
+    /** @return the size in longs */
+    int length();
+    long get(int index);
+    void set(int index, long value);
+    void fill(int fromIndex, int toIndex, long value);
+
+    void copyTo(int index, long[] target, int targetIndex, int length);
+    /** The ranges must not overlap if target is this storage. */
+    void copyTo(int index, IColumnStorage target, int targetIndex, int length);
+    void copyFrom(long[] source, int sourceIndex, int index, int length);
+
+    boolean isOffHeap();
+    /** Frees the memory. The storage must not be used afterwards. */
+    void free();
+}
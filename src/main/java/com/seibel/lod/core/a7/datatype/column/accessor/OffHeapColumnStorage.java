@@ -0,0 +1,143 @@
+package com.seibel.lod.core.a7.datatype.column.accessor;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Column storage in direct memory, so it isn't scanned or copied by the garbage collector. <br>
+ * Freed buffers are kept for reuse by the next allocation of the same length, up to {@link #MAX_KEPT_BYTES}.
+ * All buffers, used or kept, count against the budget given when allocating. Kept buffers are dropped once the budget
+ * runs out or {@link #dropKeptBuffers} is called, after which their memory is returned whenever the garbage collector gets to them.
+ */
+public final class OffHeapColumnStorage implements IColumnStorage {
+    public static final long MAX_KEPT_BYTES = 64L << 20;
+
+    private static final AtomicLong reservedBytes = new AtomicLong();
+    private static final AtomicLong keptBytes = new AtomicLong();
+    private static final ConcurrentHashMap<Integer, ConcurrentLinkedQueue<LongBuffer>> keptByLength = new ConcurrentHashMap<>();
+
+    private LongBuffer buffer;
+
+    private OffHeapColumnStorage(LongBuffer buffer) {
+        this.buffer = buffer;
+    }
+
+    /** @return a zeroed storage, or null if it doesn't fit in the budget */
+    public static OffHeapColumnStorage tryAllocate(int length, long budgetBytes) {
+        ConcurrentLinkedQueue<LongBuffer> kept = keptByLength.get(length);
+        LongBuffer buffer = kept == null ? null : kept.poll();
+        if (buffer != null) {
+            keptBytes.addAndGet(-(long) length * Long.BYTES);
+            for (int i = 0; i < length; i++) buffer.put(i, 0);
+            return new OffHeapColumnStorage(buffer);
+        }
+        if (!tryReserve((long) length * Long.BYTES, budgetBytes)) {
+            dropKeptBuffers();
+            if (!tryReserve((long) length * Long.BYTES, budgetBytes)) return null;
+        }
+        return new OffHeapColumnStorage(ByteBuffer.allocateDirect(length * Long.BYTES).order(ByteOrder.nativeOrder()).asLongBuffer());
+    }
+
+    private static boolean tryReserve(long bytes, long budgetBytes) {
+        while (true) {
+            long reserved = reservedBytes.get();
+            if (reserved + bytes > budgetBytes) return false;
+            if (reservedBytes.compareAndSet(reserved, reserved + bytes)) return true;
+        }
+    }
+
+    /** Lets go of all kept buffers, for when direct memory won't be allocated anymore. */
+    public static void dropKeptBuffers() {
+        for (ConcurrentLinkedQueue<LongBuffer> kept : keptByLength.values()) {
+            LongBuffer buffer;
+            while ((buffer = kept.poll()) != null) {
+                long bytes = (long) buffer.capacity() * Long.BYTES;
+                keptBytes.addAndGet(-bytes);
+                reservedBytes.addAndGet(-bytes);
+            }
+        }
+    }
+
+    /** @return the bytes of direct memory in use or kept for reuse */
+    public static long getReservedBytes() {
+        return reservedBytes.get();
+    }
+    /** @return the bytes of direct memory kept for reuse */
+    public static long getKeptBytes() {
+        return keptBytes.get();
+    }
+
+    @Override
+    public int length() {
+        return buffer.capacity();
+    }
+
+    @Override
+    public long get(int index) {
+        return buffer.get(index);
+    }
+
+    @Override
+    public void set(int index, long value) {
+        buffer.put(index, value);
+    }
+
+    @Override
+    public void fill(int fromIndex, int toIndex, long value) {
+        for (int i = fromIndex; i < toIndex; i++) buffer.put(i, value);
+    }
+
+    @Override
+    public void copyTo(int index, long[] target, int targetIndex, int length) {
+        LongBuffer source = buffer.duplicate();
+        source.position(index);
+        source.get(target, targetIndex, length);
+    }
+
+    @Override
+    public void copyTo(int index, IColumnStorage target, int targetIndex, int length) {
+        if (target instanceof HeapColumnStorage) {
+            copyTo(index, ((HeapColumnStorage) target).array, targetIndex, length);
+        } else if (target instanceof OffHeapColumnStorage) {
+            LongBuffer source = buffer.duplicate();
+            source.limit(index + length);
+            source.position(index);
+            LongBuffer destination = ((OffHeapColumnStorage) target).buffer.duplicate();
+            destination.position(targetIndex);
+            destination.put(source);
+        } else {
+            for (int i = 0; i < length; i++) target.set(targetIndex + i, get(index + i));
+        }
+    }
+
+    @Override
+    public void copyFrom(long[] source, int sourceIndex, int index, int length) {
+        LongBuffer destination = buffer.duplicate();
+        destination.position(index);
+        destination.put(source, sourceIndex, length);
+    }
+
+    @Override
+    public boolean isOffHeap() {
+        return true;
+    }
+
+    @Override
+    public void free() {
+        LongBuffer freed = buffer;
+        if (freed == null) return;
+        // Later reads throw instead of seeing the next owner's data
+        buffer = null;
+        long bytes = (long) freed.capacity() * Long.BYTES;
+        if (keptBytes.addAndGet(bytes) > MAX_KEPT_BYTES) {
+            keptBytes.addAndGet(-bytes);
+            reservedBytes.addAndGet(-bytes);
+            return;
+        }
+        keptByLength.computeIfAbsent(freed.capacity(), (length) -> new ConcurrentLinkedQueue<>()).offer(freed);
+    }
+}
@@ -183,6 +183,11 @@ public class ColumnRenderBuffer extends RenderBuffer {
     }
 
 
+    /**
+     * @param usedBuffer a buffer to upload into instead of making a new one, or null. It belongs to the build from
+     *                   then on: it is the result, or it is closed if the build fails.
+     * @return the built buffer, or null if the build failed
+     */
     public static CompletableFuture<ColumnRenderBuffer> build(IClientLevel clientLevel, ColumnRenderBuffer usedBuffer, ColumnRenderSource data, ColumnRenderSource[] adjData) {
         EVENT_LOGGER.trace("RenderRegion startBuild @ {}", data.sectionPos);
         return CompletableFuture.supplyAsync(() -> {
@@ -193,7 +198,13 @@ public class ColumnRenderBuffer extends RenderBuffer {
                         skyLightCullingBelow = Math.max(skyLightCullingBelow, clientLevel.getMinY());
                         LodQuadBuilder builder = new LodQuadBuilder(true,
                                 (short) (skyLightCullingBelow - clientLevel.getMinY()));
-                        makeLodRenderData(builder, data, adjData);
+                        // Only the own columns are locked, the edges read from adjData may be a bit stale
+                        data.getReadLock().lock();
+                        try {
+                            makeLodRenderData(builder, data, adjData);
+                        } finally {
+                            data.getReadLock().unlock();
+                        }
                         EVENT_LOGGER.trace("RenderRegion end QuadBuild @ {}", data.sectionPos);
                         return builder;
                     } catch (UncheckedInterruptedException e) {
@@ -217,7 +228,8 @@ public class ColumnRenderBuffer extends RenderBuffer {
                             EVENT_LOGGER.trace("RenderRegion end Upload @ {}", data.sectionPos);
                             return buffer;
                         } catch (Exception e) {
-                            buffer.close();
+                            // A reused buffer is closed below, along with the other failures
+                            if (buffer != usedBuffer) buffer.close();
                             throw e;
                         } finally {
                             glProxy.setGlContext(oldContext);
@@ -230,7 +242,8 @@ public class ColumnRenderBuffer extends RenderBuffer {
                     }
                 }, BUFFER_UPLOADER).handle((v, e) -> {
                     if (e != null) {
-                        usedBuffer.close();
+                        // usedBuffer was handed over by its source to be reused, so it is in no render slot anymore
+                        if (usedBuffer != null) usedBuffer.close();
                         return null;
                     } else {
                         return v;
@@ -246,99 +259,94 @@ public class ColumnRenderBuffer extends RenderBuffer {
         EDebugMode debugMode = Config.Client.Advanced.Debugging.debugMode.get();
 
         byte detailLevel = region.getDataDetail();
-        int dataSize = 1 << detailLevel;
-        for (int x = 0; x < dataSize; x++) {
-            for (int z = 0; z < dataSize; z++) {
-                UncheckedInterruptedException.throwIfInterrupted();
-
-                ColumnArrayView posData = region.getVerticalDataView(x, z);
-                if (posData.size() == 0 || !DataPointUtil.doesItExist(posData.get(0))
-                        || DataPointUtil.isVoid(posData.get(0)))
-                    continue;
-
-                ColumnArrayView[][] adjData = new ColumnArrayView[4][];
-                // We extract the adj data in the four cardinal direction
-
-                // we first reset the adjShadeDisabled. This is used to disable the shade on the
-                // border when we have transparent block like water or glass
-                // to avoid having a "darker border" underground
-                // Arrays.fill(adjShadeDisabled, false);
-
-                // We check every adj block in each direction
-
-                // If the adj block is rendered in the same region and with same detail
-                // and is positioned in a place that is not going to be rendered by vanilla game
-                // then we can set this position as adj
-                // We avoid cases where the adjPosition is in player chunk while the position is
-                // not
-                // to always have a wall underwater
-                for (ELodDirection lodDirection : ELodDirection.ADJ_DIRECTIONS) {
-                    try {
-                        int xAdj = x + lodDirection.getNormal().x;
-                        int zAdj = z + lodDirection.getNormal().z;
-                        boolean isCrossRegionBoundary = (xAdj < 0 || xAdj >= dataSize) ||
-                                (zAdj < 0 || zAdj >= dataSize);
-                        ColumnRenderSource adjRegion;
-                        byte adjDetail;
-
-                        //we check if the detail of the adjPos is equal to the correct one (region border fix)
-                        //or if the detail is wrong by 1 value (region+circle border fix)
-                        if (isCrossRegionBoundary) {
-                            //we compute at which detail that position should be rendered
-                            adjRegion = adjRegions[lodDirection.ordinal()-2];
-                            if(adjRegion == null) continue;
-                            adjDetail = adjRegion.getDataDetail();
-                            if (adjDetail != detailLevel) {
-                                //TODO: Implement this
-                            } else {
-                                if (xAdj < 0) xAdj += dataSize;
-                                if (zAdj < 0) zAdj += dataSize;
-                                if (xAdj >= dataSize) xAdj -= dataSize;
-                                if (zAdj >= dataSize) zAdj -= dataSize;
-                            }
+        int dataSize = ColumnRenderSource.SECTION_SIZE;
+        region.forEachRenderableColumn((x, z) -> {
+            UncheckedInterruptedException.throwIfInterrupted();
+
+            ColumnArrayView posData = region.getVerticalDataView(x, z);
+
+            ColumnArrayView[][] adjData = new ColumnArrayView[4][];
+            // We extract the adj data in the four cardinal direction
+
+            // we first reset the adjShadeDisabled. This is used to disable the shade on the
+            // border when we have transparent block like water or glass
+            // to avoid having a "darker border" underground
+            // Arrays.fill(adjShadeDisabled, false);
+
+            // We check every adj block in each direction
+
+            // If the adj block is rendered in the same region and with same detail
+            // and is positioned in a place that is not going to be rendered by vanilla game
+            // then we can set this position as adj
+            // We avoid cases where the adjPosition is in player chunk while the position is
+            // not
+            // to always have a wall underwater
+            for (ELodDirection lodDirection : ELodDirection.ADJ_DIRECTIONS) {
+                try {
+                    int xAdj = x + lodDirection.getNormal().x;
+                    int zAdj = z + lodDirection.getNormal().z;
+                    boolean isCrossRegionBoundary = (xAdj < 0 || xAdj >= dataSize) ||
+                            (zAdj < 0 || zAdj >= dataSize);
+                    ColumnRenderSource adjRegion;
+                    byte adjDetail;
+
+                    //we check if the detail of the adjPos is equal to the correct one (region border fix)
+                    //or if the detail is wrong by 1 value (region+circle border fix)
+                    if (isCrossRegionBoundary) {
+                        //we compute at which detail that position should be rendered
+                        adjRegion = adjRegions[lodDirection.ordinal()-2];
+                        if(adjRegion == null) continue;
+                        adjDetail = adjRegion.getDataDetail();
+                        if (adjDetail != detailLevel) {
+                            //TODO: Implement this
                         } else {
-                            adjRegion = region;
-                            adjDetail = detailLevel;
+                            if (xAdj < 0) xAdj += dataSize;
+                            if (zAdj < 0) zAdj += dataSize;
+                            if (xAdj >= dataSize) xAdj -= dataSize;
+                            if (zAdj >= dataSize) zAdj -= dataSize;
                         }
+                    } else {
+                        adjRegion = region;
+                        adjDetail = detailLevel;
+                    }
 
-                        if (adjDetail < detailLevel-1 || adjDetail > detailLevel+1) {
-                            continue;
-                        }
+                    if (adjDetail < detailLevel-1 || adjDetail > detailLevel+1) {
+                        continue;
+                    }
 
-                        if (adjDetail == detailLevel || adjDetail > detailLevel) {
-                            adjData[lodDirection.ordinal() - 2] = new ColumnArrayView[1];
-                            adjData[lodDirection.ordinal() - 2][0] = adjRegion.getVerticalDataView(xAdj, zAdj);
-                        } else {
-                            adjData[lodDirection.ordinal() - 2] = new ColumnArrayView[2];
-                            adjData[lodDirection.ordinal() - 2][0] = adjRegion.getVerticalDataView(xAdj, zAdj);
-                            adjData[lodDirection.ordinal() - 2][1] =  adjRegion.getVerticalDataView(
-                                    xAdj + (lodDirection.getAxis()== ELodDirection.Axis.X ? 0 : 1),
-                                    zAdj + (lodDirection.getAxis()== ELodDirection.Axis.Z ? 0 : 1));
-                        }
-                    } catch (RuntimeException e) {
-                        EVENT_LOGGER.warn("Failed to get adj data for [{}:{},{}] at [{}]", detailLevel, x, z, lodDirection);
-                        EVENT_LOGGER.warn("Detail exception: ", e);
+                    if (adjDetail == detailLevel || adjDetail > detailLevel) {
+                        adjData[lodDirection.ordinal() - 2] = new ColumnArrayView[1];
+                        adjData[lodDirection.ordinal() - 2][0] = adjRegion.getVerticalDataView(xAdj, zAdj);
+                    } else {
+                        adjData[lodDirection.ordinal() - 2] = new ColumnArrayView[2];
+                        adjData[lodDirection.ordinal() - 2][0] = adjRegion.getVerticalDataView(xAdj, zAdj);
+                        adjData[lodDirection.ordinal() - 2][1] =  adjRegion.getVerticalDataView(
+                                xAdj + (lodDirection.getAxis()== ELodDirection.Axis.X ? 0 : 1),
+                                zAdj + (lodDirection.getAxis()== ELodDirection.Axis.Z ? 0 : 1));
                     }
+                } catch (RuntimeException e) {
+                    EVENT_LOGGER.warn("Failed to get adj data for [{}:{},{}] at [{}]", detailLevel, x, z, lodDirection);
+                    EVENT_LOGGER.warn("Detail exception: ", e);
                 }
+            }
 
-                // We render every vertical lod present in this position
-                // We only stop when we find a block that is void or non-existing block
-                for (int i = 0; i < posData.size(); i++) {
-                    long data = posData.get(i);
-                    // If the data is not renderable (Void or non-existing) we stop since there is
-                    // no data left in this position
-                    if (DataPointUtil.isVoid(data) || !DataPointUtil.doesItExist(data))
-                        break;
-
-                    long adjDataTop = i - 1 >= 0 ? posData.get(i - 1) : DataPointUtil.EMPTY_DATA;
-                    long adjDataBot = i + 1 < posData.size() ? posData.get(i + 1) : DataPointUtil.EMPTY_DATA;
-
-                    // We send the call to create the vertices
-                    CubicLodTemplate.addLodToBuffer(data, adjDataTop, adjDataBot, adjData, detailLevel,
-                            x, z, quadBuilder, debugMode);
-                }
+            // We render every vertical lod present in this position
+            // We only stop when we find a block that is void or non-existing block
+            for (int i = 0; i < posData.size(); i++) {
+                long data = posData.get(i);
+                // If the data is not renderable (Void or non-existing) we stop since there is
+                // no data left in this position
+                if (DataPointUtil.isVoid(data) || !DataPointUtil.doesItExist(data))
+                    break;
+
+                long adjDataTop = i - 1 >= 0 ? posData.get(i - 1) : DataPointUtil.EMPTY_DATA;
+                long adjDataBot = i + 1 < posData.size() ? posData.get(i + 1) : DataPointUtil.EMPTY_DATA;
+
+                // We send the call to create the vertices
+                CubicLodTemplate.addLodToBuffer(data, adjDataTop, adjDataBot, adjData, detailLevel,
+                        x, z, quadBuilder, debugMode);
             }
-        }
+        });
         quadBuilder.mergeQuads();
     }
 }
@@ -1,13 +1,25 @@
 package com.seibel.lod.core.a7.datatype.full;
 
 import com.seibel.lod.core.a7.datatype.full.accessor.FullArrayView;
+import com.seibel.lod.core.enums.config.EDistanceGenerationMode;
+import com.seibel.lod.core.objects.DHChunkPos;
 
 public class ChunkSizedData extends FullArrayView {
-    public ChunkSizedData() {
+    public final DHChunkPos pos;
+    /** The {@link EDistanceGenerationMode#complexity} the chunk was generated with */
+    public final byte genMode;
+
+    /** For chunks that were fully generated by the game */
+    public ChunkSizedData(DHChunkPos pos) {
+        this(pos, EDistanceGenerationMode.FULL.complexity);
+    }
+    public ChunkSizedData(DHChunkPos pos, byte genMode) {
         super(new IdBiomeBlockStateMap(), new long[16*16][0], 16);
+        this.pos = pos;
+        this.genMode = genMode;
     }
 
     public void setSingleColumn(long[] data, int x, int z) {
         dataArrays[x*16+z] = data;
     }
-}
\ No newline at end of file
+}
@@ -2,6 +2,7 @@ package com.seibel.lod.core.a7.datatype.full;
 
 import com.seibel.lod.core.a7.datatype.column.ColumnRenderSource;
 import com.seibel.lod.core.a7.datatype.full.accessor.FullArrayView;
+import com.seibel.lod.core.a7.datatype.transform.FullDataDownsampler;
 import com.seibel.lod.core.a7.level.ILevel;
 import com.seibel.lod.core.a7.pos.DhBlockPos2D;
 import com.seibel.lod.core.a7.save.io.file.DataMetaFile;
@@ -11,23 +12,63 @@ import com.seibel.lod.core.a7.pos.DhSectionPos;
 import com.seibel.lod.core.objects.DHChunkPos;
 import com.seibel.lod.core.wrapperInterfaces.chunk.IChunkWrapper;
 
+import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 
 public class FullDataSource extends FullArrayView implements LodDataSource { // 1 chunk
     public static final byte SECTION_SIZE_OFFSET = ColumnRenderSource.SECTION_SIZE_OFFSET;
     public static final int SECTION_SIZE = 1 << SECTION_SIZE_OFFSET;
-    public static final byte LATEST_VERSION = 0;
+    /** The coarsest data detail a single chunk can be downsampled into, where one column covers the whole chunk. */
+    public static final byte MAX_CHUNK_DATA_DETAIL = 4;
+    public static final byte LATEST_VERSION = 2;
+    public static final long TYPE_ID = "FullDataSource".hashCode();
     private final DhSectionPos sectionPos;
     private int localVersion = 0;
+    /** The gen mode of each column (x * SECTION_SIZE + z), 0 for columns without data */
+    private final byte[] genModes = new byte[SECTION_SIZE * SECTION_SIZE];
+    private volatile byte minGenMode = 0;
     protected FullDataSource(DhSectionPos sectionPos) {
-        super(new IdBiomeBlockStateMap(), new long[SECTION_SIZE*SECTION_SIZE][0], SECTION_SIZE);
+        super(new IdBiomeBlockStateMap(), new long[SECTION_SIZE*SECTION_SIZE][0], SECTION_SIZE, true);
         this.sectionPos = sectionPos;
     }
 
+    private FullDataSource(DhSectionPos sectionPos, IdBiomeBlockStateMap mapping, long[][] data, byte[] genModes) {
+        super(mapping, data, SECTION_SIZE, true);
+        this.sectionPos = sectionPos;
+        System.arraycopy(genModes, 0, this.genModes, 0, genModes.length);
+        minGenMode = getMinGenMode(0, 0, SECTION_SIZE);
+    }
+
+    public static FullDataSource createEmpty(DhSectionPos pos) {
+        return new FullDataSource(pos);
+    }
+
+    /** Reads a source written by {@link #saveData}. */
+    public static FullDataSource loadData(DhSectionPos pos, DataInputStream dis, int version) throws IOException {
+        if (version != LATEST_VERSION) throw new IOException("Unsupported full data version: " + version);
+        int size = dis.readInt();
+        if (size != SECTION_SIZE) throw new IOException("Section size mismatch: " + size + " != " + SECTION_SIZE);
+        IdBiomeBlockStateMap mapping = IdBiomeBlockStateMap.deserialize(dis);
+        long[][] data = new long[SECTION_SIZE * SECTION_SIZE][];
+        for (int i = 0; i < data.length; i++) {
+            int length = dis.readInt();
+            if (length < 0) throw new IOException("Invalid column length: " + length);
+            long[] column = new long[length];
+            for (int j = 0; j < length; j++) {
+                column[j] = dis.readLong();
+            }
+            data[i] = column;
+        }
+        byte[] genModes = new byte[SECTION_SIZE * SECTION_SIZE];
+        dis.readFully(genModes);
+        return new FullDataSource(pos, mapping, data, genModes);
+    }
+
     @Override
     public DhSectionPos getSectionPos() {
         return sectionPos;
@@ -48,21 +89,79 @@ public class FullDataSource extends FullArrayView implements LodDataSource { //
         return LATEST_VERSION;
     }
 
+    /** @return the {@link com.seibel.lod.core.enums.config.EDistanceGenerationMode#complexity} of the column, or 0 if it has no data */
+    public byte getGenMode(int x, int z) {
+        return genModes[x * SECTION_SIZE + z];
+    }
+
+    /** @return the lowest gen mode of the columns in the square of the given width */
+    public byte getMinGenMode(int x, int z, int width) {
+        byte min = Byte.MAX_VALUE;
+        for (int ox = x; ox < x + width; ox++) {
+            for (int oz = z; oz < z + width; oz++) {
+                min = (byte) Math.min(min, genModes[ox * SECTION_SIZE + oz]);
+            }
+        }
+        return min;
+    }
+
+    @Override
+    public byte getMinGenMode() {
+        return minGenMode;
+    }
+
+    private void setGenMode(int x, int z, int width, byte genMode) {
+        for (int ox = x; ox < x + width; ox++) {
+            Arrays.fill(genModes, ox * SECTION_SIZE + z, ox * SECTION_SIZE + z + width, genMode);
+        }
+        minGenMode = getMinGenMode(0, 0, SECTION_SIZE);
+    }
+
     @Override
     public void update(DHChunkPos chunkPos, ChunkSizedData data) {
         if (getDataDetail() == 0) {
             DhBlockPos2D blockOffset = chunkPos.getMinBlockPos().subtract(sectionPos.getSectionBBoxPos().getCorner());
+            // The chunk's columns were all written by the same earlier chunk, so checking one of them is enough
+            if (getGenMode(blockOffset.x, blockOffset.z) > data.genMode) return; // Don't replace better data
             data.shadowCopyTo(this.subView(16, blockOffset.x, blockOffset.z));
+            setGenMode(blockOffset.x, blockOffset.z, 16, data.genMode);
+        } else if (getDataDetail() <= MAX_CHUNK_DATA_DETAIL) {
+            // Each of our columns covers a 2^detail wide block of the chunk's columns
+            int factor = 1 << getDataDetail();
+            DhBlockPos2D blockOffset = chunkPos.getMinBlockPos().subtract(sectionPos.getSectionBBoxPos().getCorner());
+            int offsetX = blockOffset.x >> getDataDetail();
+            int offsetZ = blockOffset.z >> getDataDetail();
+            if (getGenMode(offsetX, offsetZ) > data.genMode) return; // Don't replace better data
+            int[] map = mapping.equals(data.getMapping()) ? null : mapping.computeAndMergeMapFrom(data.getMapping());
+            FullDataDownsampler.downsample(data, factor, (x, z, column, length) -> {
+                long[] newColumn = new long[length];
+                for (int i = 0; i < length; i++) {
+                    newColumn[i] = map == null ? column[i] : FullFormat.remap(map, column[i]);
+                }
+                get(offsetX + x, offsetZ + z).setNew(newColumn);
+            });
+            setGenMode(offsetX, offsetZ, 16 / factor, data.genMode);
         } else {
-            //TODO;
+            // A chunk only covers part of one of our columns here, so it can't be downsampled on its own.
+            throw new IllegalArgumentException("Chunk " + chunkPos + " can't update data detail " + getDataDetail()
+                    + ", it must be written to its section at data detail " + MAX_CHUNK_DATA_DETAIL + " or below");
         }
     }
 
     @Override
     public void saveData(ILevel level, DataMetaFile file, OutputStream dataStream) throws IOException {
-        //TODO
         try (DataOutputStream dos = new DataOutputStream(dataStream)) {
             dos.writeInt(size);
+            // The packed ids index into the mapping, so it has to be stored with them
+            mapping.serialize(dos);
+            // Columns are already in the packed layout, so they are written as is.
+            for (long[] column : dataArrays) {
+                dos.writeInt(column.length);
+                for (long l : column) {
+                    dos.writeLong(l);
+                }
+            }
+            dos.write(genModes);
         }
     }
 }
@@ -12,6 +12,14 @@ package com.seibel.lod.core.a7.datatype.full;
 // ID ID ID ID  ID ID IO ID
 // ID ID ID ID  ID ID IO ID
 // ID ID ID ID  ID ID IO ID <-- Bottom bits
+//
+// =======Packed layout=======
+// Used by packed storages (See FullArrayView.isPacked()). Each column is a bit stream in a long[]:
+//   Header (first PACKED_HEADER_BITS bits of word 0): entry count (16 bits), then id width (8 bits)
+//   Entries (PACKED_HEADER_BITS + i * entryWidth): ID (idBits), then DP, Y, BL, SL as above
+// Entries may straddle two words. idBits = ceil(log2(paletteSize)), so most sections only need
+// 32 + 8 bits per entry instead of 64. Each column stores its own idBits, so a column packed
+// before the palette grew stays valid, and is only repacked when it is written to again.
 
 import org.jetbrains.annotations.Contract;
 
@@ -27,6 +35,12 @@ public class FullFormat {
     public static final int LIGHT_OFFSET = Y_OFFSET + Y_WIDTH;
 
 
+    public static final int PACKED_COUNT_WIDTH = 16;
+    public static final int PACKED_ID_BITS_WIDTH = 8;
+    public static final int PACKED_HEADER_BITS = PACKED_COUNT_WIDTH + PACKED_ID_BITS_WIDTH;
+    public static final int PACKED_PAYLOAD_WIDTH = DP_WIDTH + Y_WIDTH + LIGHT_WIDTH;
+    public static final int PACKED_MAX_ID_BITS = 31;
+
     public static final long ID_MASK = Integer.MAX_VALUE;
     public static final long INVERSE_ID_MASK = ~ID_MASK;
     public static final int DP_MASK = (int)Math.pow(2, DP_WIDTH) - 1;
@@ -46,19 +60,168 @@ public class FullFormat {
     }
 
     public static int getDepth(long data) {
-        return (int) (data << (64 - DP_OFFSET - DP_WIDTH) >> DP_OFFSET);
+        return (int) (data << (64 - DP_OFFSET - DP_WIDTH) >> (64 - DP_WIDTH));
     }
 
     public static int getY(long data) {
-        return (int) (data << (64 - Y_OFFSET - Y_WIDTH) >> Y_OFFSET);
+        return (int) (data << (64 - Y_OFFSET - Y_WIDTH) >> (64 - Y_WIDTH));
     }
 
     public static byte getLight(long data) {
-        return (byte) (data << (64 - LIGHT_OFFSET - LIGHT_WIDTH) >> LIGHT_OFFSET);
+        return (byte) (data << (64 - LIGHT_OFFSET - LIGHT_WIDTH) >> (64 - LIGHT_WIDTH));
     }
 
     @Contract(pure = true)
     public static long remap(int[] mapping, long data) {
         return (data & INVERSE_ID_MASK) | mapping[(int)data];
     }
+
+    // ========== Packed layout ==========
+
+    public static int idBitsForPaletteSize(int paletteSize) {
+        if (paletteSize <= 2) return 1;
+        return Math.min(32 - Integer.numberOfLeadingZeros(paletteSize - 1), PACKED_MAX_ID_BITS);
+    }
+
+    public static int packedEntryWidth(int idBits) {
+        return idBits + PACKED_PAYLOAD_WIDTH;
+    }
+
+    public static int getPackedCount(long[] packed) {
+        if (packed.length == 0) return 0;
+        return (int) (packed[0] & ((1 << PACKED_COUNT_WIDTH) - 1));
+    }
+
+    public static int getPackedIdBits(long[] packed) {
+        if (packed.length == 0) return 0;
+        return (int) ((packed[0] >>> PACKED_COUNT_WIDTH) & ((1 << PACKED_ID_BITS_WIDTH) - 1));
+    }
+
+    public static long[] allocatePacked(int count, int idBits) {
+        if (count == 0) return new long[0];
+        if (count >= 1 << PACKED_COUNT_WIDTH)
+            throw new IllegalArgumentException("Too many entries for a packed column: " + count);
+        if (idBits < 1 || idBits > PACKED_MAX_ID_BITS)
+            throw new IllegalArgumentException("Invalid packed id width: " + idBits);
+        long totalBits = PACKED_HEADER_BITS + (long) count * packedEntryWidth(idBits);
+        long[] packed = new long[(int) ((totalBits + 63) >>> 6)];
+        packed[0] = count | ((long) idBits << PACKED_COUNT_WIDTH);
+        return packed;
+    }
+
+    private static long readBits(long[] array, long bitIndex, int width) {
+        int word = (int) (bitIndex >>> 6);
+        int bit = (int) (bitIndex & 63);
+        long value = array[word] >>> bit;
+        if (bit + width > 64) value |= array[word + 1] << (64 - bit);
+        return width == 64 ? value : value & ((1L << width) - 1);
+    }
+
+    private static void writeBits(long[] array, long bitIndex, int width, long value) {
+        long mask = width == 64 ? -1L : (1L << width) - 1;
+        value &= mask;
+        int word = (int) (bitIndex >>> 6);
+        int bit = (int) (bitIndex & 63);
+        array[word] = (array[word] & ~(mask << bit)) | (value << bit);
+        if (bit + width > 64) {
+            int written = 64 - bit;
+            array[word + 1] = (array[word + 1] & ~(mask >>> written)) | (value >>> written);
+        }
+    }
+
+    private static long entryBitIndex(int index, int idBits) {
+        return PACKED_HEADER_BITS + (long) index * packedEntryWidth(idBits);
+    }
+
+    /** Returns the packed entry at index, converted back into the normal (unpacked) format */
+    public static long getPacked(long[] packed, int index) {
+        int idBits = getPackedIdBits(packed);
+        long entry = readBits(packed, entryBitIndex(index, idBits), packedEntryWidth(idBits));
+        return ((entry >>> idBits) << DP_OFFSET) | (entry & ((1L << idBits) - 1));
+    }
+
+    public static int getPackedId(long[] packed, int index) {
+        int idBits = getPackedIdBits(packed);
+        return (int) readBits(packed, entryBitIndex(index, idBits), idBits);
+    }
+
+    public static boolean fitsPacked(long[] packed, long data) {
+        return getId(data) < (1L << getPackedIdBits(packed));
+    }
+
+    /** Note: The caller must ensure the id of data fits in the column's idBits. (See fitsPacked()) */
+    public static void setPacked(long[] packed, int index, long data) {
+        int idBits = getPackedIdBits(packed);
+        long entry = ((data >>> DP_OFFSET) << idBits) | (data & ID_MASK);
+        writeBits(packed, entryBitIndex(index, idBits), packedEntryWidth(idBits), entry);
+    }
+
+    public static long[] pack(long[] data, int idBits) {
+        long[] packed = allocatePacked(data.length, idBits);
+        for (int i = 0; i < data.length; i++) {
+            setPacked(packed, i, data[i]);
+        }
+        return packed;
+    }
+
+    public static long[] unpack(long[] packed) {
+        long[] data = new long[getPackedCount(packed)];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = getPacked(packed, i);
+        }
+        return data;
+    }
+
+    /**
+     * Remaps the ids of a packed column, and writes the result with newIdBits.
+     * The DP/Y/light payload is moved as is, without decoding it.
+     * @param mapping the id mapping to apply, or null to only repack the column
+     */
+    @Contract(pure = true)
+    public static long[] remapPacked(int[] mapping, long[] packed, int newIdBits) {
+        int count = getPackedCount(packed);
+        int idBits = getPackedIdBits(packed);
+        if (mapping == null && idBits == newIdBits) return packed.clone();
+        long[] result = allocatePacked(count, newIdBits);
+        int width = packedEntryWidth(idBits);
+        int newWidth = packedEntryWidth(newIdBits);
+        long idMask = (1L << idBits) - 1;
+        for (int i = 0; i < count; i++) {
+            long entry = readBits(packed, entryBitIndex(i, idBits), width);
+            long id = entry & idMask;
+            if (mapping != null) id = mapping[(int) id];
+            writeBits(result, entryBitIndex(i, newIdBits), newWidth, ((entry >>> idBits) << newIdBits) | id);
+        }
+        return result;
+    }
+
+    /**
+     * Converts a column between the packed and unpacked layout, optionally remapping its ids.
+     * @param mapping the id mapping to apply, or null if the ids stay the same
+     * @param targetIdBits the id width to use if the target is packed
+     */
+    @Contract(pure = true)
+    public static long[] convertColumn(long[] source, boolean sourcePacked, int[] mapping,
+                                       boolean targetPacked, int targetIdBits) {
+        if (sourcePacked && targetPacked) return remapPacked(mapping, source, targetIdBits);
+        if (sourcePacked) {
+            long[] data = unpack(source);
+            if (mapping != null) {
+                for (int i = 0; i < data.length; i++) data[i] = remap(mapping, data[i]);
+            }
+            return data;
+        }
+        if (targetPacked) {
+            long[] packed = allocatePacked(source.length, targetIdBits);
+            for (int i = 0; i < source.length; i++) {
+                setPacked(packed, i, mapping == null ? source[i] : remap(mapping, source[i]));
+            }
+            return packed;
+        }
+        long[] data = new long[source.length];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = mapping == null ? source[i] : remap(mapping, source[i]);
+        }
+        return data;
+    }
 }
@@ -5,6 +5,8 @@ import com.seibel.lod.core.wrapperInterfaces.IWrapperFactory;
 import com.seibel.lod.core.wrapperInterfaces.block.IBlockStateWrapper;
 import com.seibel.lod.core.wrapperInterfaces.world.IBiomeWrapper;
 
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -13,6 +15,7 @@ import java.util.Objects;
 // WARNING: This is not THREAD-SAFE!
 public class IdBiomeBlockStateMap {
     public static final IWrapperFactory FACTORY = SingletonHandler.get(IWrapperFactory.class);
+    private static final String NULL_STRING = "null";
 
     public static final class Entry {
         public final IBiomeWrapper biome;
@@ -29,18 +32,20 @@ public class IdBiomeBlockStateMap {
         public boolean equals(Object other) {
             if (other == this) return true;
             if (!(other instanceof Entry)) return false;
-            return ((Entry) other).biome.equals(biome) && ((Entry) other).blockState.equals(blockState);
+            return Objects.equals(((Entry) other).biome, biome) && Objects.equals(((Entry) other).blockState, blockState);
         }
 
         public String serialize() {
-            return biome.serialize() + " " + blockState.serialize();
+            // Air has no block state wrapper (See IBlockStateWrapper.AIR)
+            return (biome == null ? NULL_STRING : biome.serialize()) + " "
+                    + (blockState == null ? NULL_STRING : blockState.serialize());
         }
 
         public static Entry deserialize(String str) throws IOException {
             String[] strs = str.split(" ");
             if (strs.length != 2) throw new IOException("Failed to deserialize BiomeBlockStateEntry");
-            IBiomeWrapper biome = FACTORY.deserializeBiomeWrapper(strs[0]);
-            IBlockStateWrapper blockState = FACTORY.deserializeBlockStateWrapper(strs[1]);
+            IBiomeWrapper biome = strs[0].equals(NULL_STRING) ? null : FACTORY.deserializeBiomeWrapper(strs[0]);
+            IBlockStateWrapper blockState = strs[1].equals(NULL_STRING) ? null : FACTORY.deserializeBlockStateWrapper(strs[1]);
             return new Entry(biome, blockState);
         }
     }
@@ -53,6 +58,10 @@ public class IdBiomeBlockStateMap {
         return entries.get(id);
     }
 
+    public int size() {
+        return entries.size();
+    }
+
     public int setAndGetId(IBiomeWrapper biome, IBlockStateWrapper blockState) {
         return idMap.computeIfAbsent(new Entry(biome, blockState), (e) -> {
             int id = entries.size();
@@ -77,5 +86,24 @@ public class IdBiomeBlockStateMap {
         return mapper;
     }
 
-    //TODO: Serialization & Deserialization
+    /** Writes the entries in id order, so that {@link #deserialize} gives every entry its old id back. */
+    public void serialize(DataOutputStream dos) throws IOException {
+        dos.writeInt(entries.size());
+        for (Entry entry : entries) {
+            dos.writeUTF(entry.serialize());
+        }
+    }
+
+    public static IdBiomeBlockStateMap deserialize(DataInputStream dis) throws IOException {
+        int size = dis.readInt();
+        if (size < 0) throw new IOException("Invalid mapping size: " + size);
+        IdBiomeBlockStateMap map = new IdBiomeBlockStateMap();
+        for (int i = 0; i < size; i++) {
+            // Entries may come back equal if their blocks or biomes no longer exist, but they keep their own ids
+            Entry entry = Entry.deserialize(dis.readUTF());
+            map.entries.add(entry);
+            map.idMap.putIfAbsent(entry, i);
+        }
+        return map;
+    }
 }
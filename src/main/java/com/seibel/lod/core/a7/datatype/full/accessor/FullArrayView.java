@@ -8,14 +8,20 @@ public class FullArrayView implements IFullDataView {
     protected final int offset;
     protected final int size;
     protected final IdBiomeBlockStateMap mapping;
+    // If true, each column is stored in the packed layout. (See FullFormat)
+    protected final boolean packed;
 
     public FullArrayView(IdBiomeBlockStateMap mapping, long[][] dataArrays, int size) {
+        this(mapping, dataArrays, size, false);
+    }
+    public FullArrayView(IdBiomeBlockStateMap mapping, long[][] dataArrays, int size, boolean packed) {
         if (dataArrays.length != size*size)
             throw new IllegalArgumentException(
                     "tried constructing dataArrayView with invalid input!");
         this.dataArrays = dataArrays;
         this.size = size;
         this.mapping = mapping;
+        this.packed = packed;
         offset = 0;
     }
     public FullArrayView(FullArrayView source, int size, int offsetX, int offsetZ) {
@@ -25,9 +31,14 @@ public class FullArrayView implements IFullDataView {
         dataArrays = source.dataArrays;
         this.size = size;
         mapping = source.mapping;
+        packed = source.packed;
         offset = source.offset + offsetX * size + offsetZ;
     }
 
+    public boolean isPacked() {
+        return packed;
+    }
+
     @Override
     public IdBiomeBlockStateMap getMapping() {
         return mapping;
@@ -35,12 +46,12 @@ public class FullArrayView implements IFullDataView {
 
     @Override
     public SingleFullArrayView get(int index) {
-        return new SingleFullArrayView(mapping, dataArrays, index + offset);
+        return new SingleFullArrayView(mapping, dataArrays, index + offset, packed);
     }
 
     @Override
     public SingleFullArrayView get(int x, int z) {
-        return new SingleFullArrayView(mapping, dataArrays, x*size + z + offset);
+        return new SingleFullArrayView(mapping, dataArrays, x*size + z + offset, packed);
     }
 
     @Override
@@ -57,22 +68,20 @@ public class FullArrayView implements IFullDataView {
     public void shadowCopyTo(FullArrayView target) {
         if (target.size != size)
             throw new IllegalArgumentException("Target view must have same size as this view");
-        if (target.mapping.equals(mapping)) {
+        if (target.mapping.equals(mapping) && target.packed == packed) {
             for (int x = 0; x < size; x++) {
                 System.arraycopy(dataArrays, offset + x * size,
                         target.dataArrays, offset + x * size, size);
             }
         }
         else {
-            int[] map = target.mapping.computeAndMergeMapFrom(mapping);
+            int[] map = target.mapping.equals(mapping) ? null : target.mapping.computeAndMergeMapFrom(mapping);
+            // Computed after the merge, so that the packed columns have room for the newly added ids
+            int targetIdBits = FullFormat.idBitsForPaletteSize(target.mapping.size());
             for (int x = 0; x < size; x++) {
                 for (int o=x*size; o<x*size+size; o++) {
-                    long[] sourceData = dataArrays[offset+o];
-                    long[] newData = new long[sourceData.length];
-                    for (int i = 0; i < newData.length; i++) {
-                        newData[i] = FullFormat.remap(map, sourceData[i]);
-                    }
-                    target.dataArrays[target.offset+o] = newData;
+                    target.dataArrays[target.offset+o] = FullFormat.convertColumn(
+                            dataArrays[offset+o], packed, map, target.packed, targetIdBits);
                 }
             }
         }
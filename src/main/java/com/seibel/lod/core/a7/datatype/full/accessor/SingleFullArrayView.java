@@ -7,10 +7,19 @@ public class SingleFullArrayView implements IFullDataView {
     private final long[][] dataArrays;
     private final int offset;
     private final IdBiomeBlockStateMap mapping;
+    private final boolean packed;
     public SingleFullArrayView(IdBiomeBlockStateMap mapping, long[][] dataArrays, int offset) {
+        this(mapping, dataArrays, offset, false);
+    }
+    public SingleFullArrayView(IdBiomeBlockStateMap mapping, long[][] dataArrays, int offset, boolean packed) {
         this.dataArrays = dataArrays;
         this.offset = offset;
         this.mapping = mapping;
+        this.packed = packed;
+    }
+
+    public boolean isPacked() {
+        return packed;
     }
 
     public boolean doesItExist() {
@@ -34,17 +43,43 @@ public class SingleFullArrayView implements IFullDataView {
         return this;
     }
 
+    // Note: Always returns the data in the unpacked format, even if the storage is packed.
     public long getSingle(int yIndex) {
+        if (packed) return FullFormat.getPacked(dataArrays[offset], yIndex);
         return dataArrays[offset][yIndex];
     }
+    public int getSingleId(int yIndex) {
+        if (packed) return FullFormat.getPackedId(dataArrays[offset], yIndex);
+        return FullFormat.getId(dataArrays[offset][yIndex]);
+    }
     public void setSingle(int yIndex, long value) {
-        dataArrays[offset][yIndex] = value;
+        if (packed) {
+            long[] column = dataArrays[offset];
+            if (!FullFormat.fitsPacked(column, value)) {
+                // The palette grew past what this column was packed with. Repack it wider first.
+                int newIdBits = Math.max(FullFormat.idBitsForPaletteSize(mapping.size()),
+                        FullFormat.idBitsForPaletteSize(FullFormat.getId(value) + 1));
+                column = FullFormat.remapPacked(null, column, newIdBits);
+                dataArrays[offset] = column;
+            }
+            FullFormat.setPacked(column, yIndex, value);
+        } else {
+            dataArrays[offset][yIndex] = value;
+        }
     }
+    // Note: newArray should always be in the unpacked format. It will be packed if needed.
     public void setNew(long[] newArray) {
-        dataArrays[offset] = newArray;
+        if (packed) {
+            dataArrays[offset] = FullFormat.pack(newArray, FullFormat.idBitsForPaletteSize(mapping.size()));
+        } else {
+            dataArrays[offset] = newArray;
+        }
     }
 
-    public int getSingleLength() { return dataArrays[offset].length; }
+    public int getSingleLength() {
+        if (packed) return FullFormat.getPackedCount(dataArrays[offset]);
+        return dataArrays[offset].length;
+    }
 
     @Override
     public int width() {
@@ -60,17 +95,13 @@ public class SingleFullArrayView implements IFullDataView {
 
     //WARNING: It will potentially share the underlying array object!
     public void shadowCopyTo(SingleFullArrayView target) {
-        if (target.mapping.equals(mapping)) {
+        if (target.mapping.equals(mapping) && target.packed == packed) {
             target.dataArrays[target.offset] = dataArrays[offset];
         }
         else {
-            int[] map = target.mapping.computeAndMergeMapFrom(mapping);
-            long[] sourceData = dataArrays[offset];
-            long[] newData = new long[sourceData.length];
-            for (int i = 0; i < newData.length; i++) {
-                newData[i] = FullFormat.remap(map, sourceData[i]);
-            }
-            target.dataArrays[target.offset] = newData;
+            int[] map = target.mapping.equals(mapping) ? null : target.mapping.computeAndMergeMapFrom(mapping);
+            target.dataArrays[target.offset] = FullFormat.convertColumn(dataArrays[offset], packed, map,
+                    target.packed, FullFormat.idBitsForPaletteSize(target.mapping.size()));
         }
     }
 }
@@ -0,0 +1,72 @@
+package com.seibel.lod.core.a7.datatype.transform;
+
+import com.google.common.collect.MapMaker;
+import com.seibel.lod.core.a7.datatype.full.IdBiomeBlockStateMap;
+import com.seibel.lod.core.wrapperInterfaces.block.IBlockStateWrapper;
+import com.seibel.lod.core.wrapperInterfaces.world.IBiomeWrapper;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Per level cache of the base color of each biome and blockState pair. <br>
+ * A section's whole palette is resolved once before it gets converted, so
+ * looking up the color of a datapoint is a single array load by palette id. <br>
+ * The cached colors depend on the loaded resource packs, so {@link #invalidate()}
+ * must be called when they change.
+ */
+public class ColorResolver {
+    @FunctionalInterface
+    public interface IBaseColorComputer {
+        int computeBaseColor(IBiomeWrapper biome, IBlockStateWrapper block);
+    }
+
+    private final IBaseColorComputer computer;
+
+    private static class Caches {
+        // The resolved palette of each mapping. Mappings only ever get new ids appended, so a shorter array is extended.
+        // Weak identity keys, so the palette goes away with its section.
+        final ConcurrentMap<IdBiomeBlockStateMap, int[]> palettes = new MapMaker().weakKeys().makeMap();
+        // Only used for the ids a palette doesn't have yet, as most entries are shared by many sections
+        final ConcurrentHashMap<IdBiomeBlockStateMap.Entry, Integer> colors = new ConcurrentHashMap<>();
+    }
+    // Replaced instead of cleared on invalidate, so a resolve running at the same time can't put an old color back
+    private volatile Caches caches = new Caches();
+
+    public ColorResolver(IBaseColorComputer computer) {
+        this.computer = computer;
+    }
+
+    /**
+     * Resolves the color of every entry in the palette.
+     * @return the colors, indexed by palette id. It is shared by every call for the same mapping, so it must not be modified,
+     *         and may be longer than the mapping if ids were added to it concurrently.
+     */
+    public int[] resolvePalette(IdBiomeBlockStateMap mapping) {
+        Caches current = caches;
+        int size = mapping.size();
+        int[] cached = current.palettes.get(mapping);
+        if (cached != null && cached.length >= size) return cached;
+
+        int resolvedCount = cached == null ? 0 : cached.length;
+        int[] palette = cached == null ? new int[size] : Arrays.copyOf(cached, size);
+        for (int id = resolvedCount; id < size; id++) {
+            IdBiomeBlockStateMap.Entry entry = mapping.get(id);
+            Integer color = current.colors.get(entry);
+            if (color == null) {
+                color = computer.computeBaseColor(entry.biome, entry.blockState);
+                current.colors.put(entry, color);
+            }
+            palette[id] = color;
+        }
+        // A concurrent resolve of the same mapping computes the same colors, so whichever is stored last is fine
+        current.palettes.put(mapping, palette);
+        return palette;
+    }
+
+    /** Drops all cached colors. Sections resolved afterwards will recompute them. */
+    public void invalidate() {
+        caches = new Caches();
+    }
+}
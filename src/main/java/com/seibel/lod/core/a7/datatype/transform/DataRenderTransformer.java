@@ -2,29 +2,216 @@ package com.seibel.lod.core.a7.datatype.transform;
 
 import com.seibel.lod.core.a7.datatype.LodDataSource;
 import com.seibel.lod.core.a7.datatype.LodRenderSource;
+import com.seibel.lod.core.a7.datatype.RenderSourceLoader;
 import com.seibel.lod.core.a7.datatype.column.ColumnRenderLoader;
 import com.seibel.lod.core.a7.datatype.column.ColumnRenderSource;
 import com.seibel.lod.core.a7.level.IClientLevel;
-import com.seibel.lod.core.util.LodUtil;
+import com.seibel.lod.core.a7.pos.DhSectionPos;
+import com.seibel.lod.core.config.Config;
+import com.seibel.lod.core.logging.DhLoggerBuilder;
+import com.seibel.lod.core.util.LodThreadFactory;
+import org.apache.logging.log4j.Logger;
 
+import java.util.ArrayList;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
-public class DataRenderTransformer {
-    public static final ExecutorService TRANSFORMER_THREADS
-            = LodUtil.makeSingleThreadPool("Data/Render Transformer");
+/**
+ * Transforms data sources into render sources for one level. <br>
+ * All levels share one pool, sized by {@link Config.Client.Advanced.Threading#numberOfDataTransformerThreads},
+ * which is shut down once the last transformer is closed.
+ * Each free thread takes the queued transform of the section nearest to the player at that moment,
+ * so the order follows the player as they move. A section only has one transform in flight at a time,
+ * and transforms of sections that left the tree before they started are cancelled.
+ */
+public class DataRenderTransformer implements AutoCloseable {
+    private static final Logger LOGGER = DhLoggerBuilder.getLogger();
 
-    public static CompletableFuture<LodRenderSource> transformDataSource(LodDataSource data, IClientLevel level) {
-        return CompletableFuture.supplyAsync(() -> transform(data, level), TRANSFORMER_THREADS);
+    @FunctionalInterface
+    public interface SectionPriority {
+        /** @return the distance of the section to the player, nearer sections are transformed first */
+        double getDistanceToPlayer(DhSectionPos pos);
+        /** @return false once the section left the tree, so its transform is no longer needed */
+        default boolean isSectionInTree(DhSectionPos pos) {
+            return true;
+        }
     }
 
-    public static CompletableFuture<LodRenderSource> asyncTransformDataSource(CompletableFuture<LodDataSource> data, IClientLevel level) {
-        return data.thenApplyAsync((d) -> transform(d, level), TRANSFORMER_THREADS);
+    private static ThreadPoolExecutor transformerThreads = null;
+    private static int transformerCount = 0;
+
+    private final IClientLevel level;
+    private final ThreadPoolExecutor threads;
+    private final ConcurrentHashMap<DhSectionPos, CompletableFuture<LodRenderSource>> inFlight = new ConcurrentHashMap<>();
+    // Unsorted, as the distances change with the player. It only holds the sections loading at the moment, so it stays short.
+    private final ArrayList<TransformTask> queue = new ArrayList<>();
+    // Breaks distance ties in submission order
+    private long nextSequence = 0;
+    private boolean isClosed = false;
+    private volatile SectionPriority priority = (pos) -> 0;
+
+    public DataRenderTransformer(IClientLevel level) {
+        this.level = level;
+        this.threads = acquireThreads();
+    }
+
+    public void setSectionPriority(SectionPriority priority) {
+        this.priority = priority;
+    }
+
+    /**
+     * Transforms the data once it is loaded. If the section already has a transform in flight, that one is returned instead.
+     * @return the render source, or a future completed with a {@link CancellationException} if the section left the tree first
+     */
+    public CompletableFuture<LodRenderSource> transform(DhSectionPos pos, CompletableFuture<LodDataSource> data) {
+        CompletableFuture<LodRenderSource> future = new CompletableFuture<>();
+        CompletableFuture<LodRenderSource> existing = inFlight.putIfAbsent(pos, future);
+        if (existing != null) return existing;
+
+        data.whenComplete((dataSource, e) -> {
+            if (e != null) {
+                inFlight.remove(pos, future);
+                future.completeExceptionally(e);
+                return;
+            }
+            if (dataSource != null && !getLoader().canCreateRender(dataSource)) {
+                // Rejected here instead of failing on a transformer thread
+                inFlight.remove(pos, future);
+                future.completeExceptionally(new IllegalArgumentException("Can't create a render source at " + pos
+                        + " from " + dataSource.getClass().getSimpleName() + " of detail " + dataSource.getDataDetail()));
+                return;
+            }
+            synchronized (queue) {
+                if (isClosed) {
+                    inFlight.remove(pos, future);
+                    future.completeExceptionally(new CancellationException("The transformer of " + pos + " was closed"));
+                    return;
+                }
+                queue.add(new TransformTask(pos, dataSource, future, nextSequence++));
+            }
+            updatePoolSize(threads);
+            threads.execute(this::runNearestTask);
+        });
+        return future;
     }
 
-    private static LodRenderSource transform(LodDataSource dataSource, IClientLevel level) {
+    /** Creates the render source, on a transformer thread. */
+    protected LodRenderSource createRender(LodDataSource dataSource) {
         if (dataSource == null) return null;
-        return ColumnRenderLoader.loaderRegistry.get(ColumnRenderSource.class)
-                .stream().findFirst().get().createRender(dataSource, level);
+        return getLoader().createRender(dataSource, level);
+    }
+
+    // Each queued task submits one of these, so there are never fewer runs than tasks
+    private void runNearestTask() {
+        TransformTask nearest = null;
+        synchronized (queue) {
+            SectionPriority currentPriority = priority;
+            double nearestDistance = Double.MAX_VALUE;
+            int nearestIndex = -1;
+            for (int i = 0; i < queue.size(); i++) {
+                TransformTask task = queue.get(i);
+                double distance = currentPriority.getDistanceToPlayer(task.pos);
+                if (nearestIndex == -1 || distance < nearestDistance
+                        || (distance == nearestDistance && task.sequence < nearest.sequence)) {
+                    nearest = task;
+                    nearestDistance = distance;
+                    nearestIndex = i;
+                }
+            }
+            if (nearestIndex == -1) return;
+            // Order doesn't matter, so the last task fills the gap
+            queue.set(nearestIndex, queue.get(queue.size() - 1));
+            queue.remove(queue.size() - 1);
+        }
+        nearest.run();
+    }
+
+    /** Cancels the queued transforms. Transforms that already started still complete. */
+    @Override
+    public void close() {
+        ArrayList<TransformTask> cancelled;
+        synchronized (queue) {
+            if (isClosed) return;
+            isClosed = true;
+            cancelled = new ArrayList<>(queue);
+            queue.clear();
+        }
+        for (TransformTask task : cancelled) {
+            inFlight.remove(task.pos, task.future);
+            task.future.completeExceptionally(new CancellationException("The transformer of " + task.pos + " was closed"));
+        }
+        releaseThreads();
+    }
+
+    private static RenderSourceLoader getLoader() {
+        return ColumnRenderLoader.loaderRegistry.get(ColumnRenderSource.class).stream().findFirst().get();
+    }
+
+    private static int getThreadCount() {
+        return Config.Client.Advanced.Threading.numberOfDataTransformerThreads.get();
+    }
+
+    private static synchronized ThreadPoolExecutor acquireThreads() {
+        if (transformerThreads == null) {
+            transformerThreads = new ThreadPoolExecutor(getThreadCount(), getThreadCount(), 0L, TimeUnit.MILLISECONDS,
+                    new LinkedBlockingQueue<>(), new LodThreadFactory("Data/Render Transformer", Thread.NORM_PRIORITY));
+        }
+        transformerCount++;
+        return transformerThreads;
+    }
+
+    private static synchronized void releaseThreads() {
+        transformerCount--;
+        if (transformerCount == 0) {
+            transformerThreads.shutdown();
+            transformerThreads = null;
+        }
+    }
+
+    private static synchronized void updatePoolSize(ThreadPoolExecutor threads) {
+        int threadCount = getThreadCount();
+        if (threadCount == threads.getMaximumPoolSize()) return;
+        // The core size may never be above the max size, so the order depends on the direction
+        if (threadCount > threads.getMaximumPoolSize()) {
+            threads.setMaximumPoolSize(threadCount);
+            threads.setCorePoolSize(threadCount);
+        } else {
+            threads.setCorePoolSize(threadCount);
+            threads.setMaximumPoolSize(threadCount);
+        }
+    }
+
+    private class TransformTask implements Runnable {
+        final DhSectionPos pos;
+        final LodDataSource dataSource;
+        final CompletableFuture<LodRenderSource> future;
+        final long sequence;
+
+        TransformTask(DhSectionPos pos, LodDataSource dataSource, CompletableFuture<LodRenderSource> future, long sequence) {
+            this.pos = pos;
+            this.dataSource = dataSource;
+            this.future = future;
+            this.sequence = sequence;
+        }
+
+        @Override
+        public void run() {
+            // Removed before running, so a request arriving during the transform starts a new one with the newer data
+            inFlight.remove(pos, future);
+            if (!priority.isSectionInTree(pos)) {
+                future.completeExceptionally(new CancellationException("Section " + pos + " left the tree"));
+                return;
+            }
+            try {
+                future.complete(createRender(dataSource));
+            } catch (Throwable e) {
+                LOGGER.error("Failed to transform data at {}:", pos, e);
+                future.completeExceptionally(e);
+            }
+        }
     }
 }
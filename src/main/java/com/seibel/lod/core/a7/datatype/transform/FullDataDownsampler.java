@@ -0,0 +1,252 @@
+package com.seibel.lod.core.a7.datatype.transform;
+
+import com.seibel.lod.core.a7.datatype.full.FullFormat;
+import com.seibel.lod.core.a7.datatype.full.IdBiomeBlockStateMap;
+import com.seibel.lod.core.a7.datatype.full.accessor.IFullDataView;
+import com.seibel.lod.core.a7.datatype.full.accessor.SingleFullArrayView;
+import com.seibel.lod.core.wrapperInterfaces.block.IBlockStateWrapper;
+
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Reduces each factor x factor block of full columns into a single full column. <br>
+ * The columns are swept top to bottom together, cutting a new slab at every entry boundary.
+ * Each slab takes the id with the most votes among the columns covering it, where any block
+ * beats air so thin features don't vanish at lower detail. Ties go to the id seen first.
+ * Neighbouring slabs with the same id and light are joined back into one entry.
+ */
+public class FullDataDownsampler {
+    /** Regions covering at most this many source columns are downsampled on the current thread instead of being split into quadrants. */
+    private static final int MIN_SPLIT_SOURCE_COLUMNS = 1024;
+
+    @FunctionalInterface
+    public interface ColumnConsumer {
+        /**
+         * Called once per output column. May be called from several threads at once, but never twice for the same x, z.
+         * @param column the resulting unpacked full data, only valid during this call
+         * @param length the number of entries in column
+         */
+        void accept(int x, int z, long[] column, int length);
+    }
+
+    /** Per thread buffers, reused for every column downsampled on that thread. */
+    private static final class Scratch {
+        SingleFullArrayView[] columns = new SingleFullArrayView[0];
+        int[] lengths = new int[0];
+        int[] cursors = new int[0];
+        long[] current = new long[0];
+        int[] votes = new int[0];
+        byte[] voteLights = new byte[0];
+        int[] votedIds = new int[0];
+        long[] output = new long[32];
+
+        void ensureColumnCount(int count) {
+            if (columns.length >= count) return;
+            columns = new SingleFullArrayView[count];
+            lengths = new int[count];
+            cursors = new int[count];
+            current = new long[count];
+            votedIds = new int[count];
+        }
+
+        void ensurePaletteSize(int size) {
+            if (votes.length >= size) return;
+            votes = new int[size];
+            voteLights = new byte[size];
+        }
+    }
+    private static final ThreadLocal<Scratch> tLocalScratch = ThreadLocal.withInitial(Scratch::new);
+
+    /** Returns which ids of the mapping are air. */
+    public static boolean[] findAirIds(IdBiomeBlockStateMap mapping) {
+        boolean[] airIds = new boolean[mapping.size()];
+        for (int id = 0; id < airIds.length; id++) {
+            airIds[id] = mapping.get(id).blockState == IBlockStateWrapper.AIR;
+        }
+        return airIds;
+    }
+
+    /**
+     * Downsamples the whole source view, splitting it into quadrants that are processed in parallel.
+     * @param factor the number of source columns per output column along each axis, must divide the source width
+     */
+    public static void downsample(IFullDataView source, int factor, ColumnConsumer output) {
+        if (factor <= 0 || source.width() % factor != 0)
+            throw new IllegalArgumentException("Invalid downsample factor " + factor + " for width " + source.width());
+        boolean[] airIds = findAirIds(source.getMapping());
+        new QuadrantTask(source, factor, airIds, output, 0, 0, source.width() / factor).invoke();
+    }
+
+    /**
+     * Downsamples a single factor x factor block of columns on the current thread.
+     * @param sourceX the minimum x of the block in the source view
+     * @param sourceZ the minimum z of the block in the source view
+     */
+    public static void downsampleColumn(IFullDataView source, int sourceX, int sourceZ, int factor,
+                                        boolean[] airIds, int outputX, int outputZ, ColumnConsumer output) {
+        Scratch scratch = tLocalScratch.get();
+        int length = downsampleInto(scratch, source, sourceX, sourceZ, factor, airIds);
+        output.accept(outputX, outputZ, scratch.output, length);
+    }
+
+    private static int downsampleInto(Scratch scratch, IFullDataView source, int sourceX, int sourceZ,
+                                      int factor, boolean[] airIds) {
+        scratch.ensureColumnCount(factor * factor);
+        scratch.ensurePaletteSize(airIds.length);
+        SingleFullArrayView[] columns = scratch.columns;
+        int[] lengths = scratch.lengths;
+        int[] cursors = scratch.cursors;
+        long[] current = scratch.current;
+
+        int columnCount = 0;
+        int top = Integer.MIN_VALUE;
+        for (int x = 0; x < factor; x++) {
+            for (int z = 0; z < factor; z++) {
+                SingleFullArrayView column = source.get(sourceX + x, sourceZ + z);
+                if (!column.doesItExist()) continue;
+                int length = column.getSingleLength();
+                if (length == 0) continue;
+                columns[columnCount] = column;
+                lengths[columnCount] = length;
+                cursors[columnCount] = 0;
+                current[columnCount] = column.getSingle(0);
+                top = Math.max(top, getTop(current[columnCount]));
+                columnCount++;
+            }
+        }
+
+        int outputLength = 0;
+        int runId = -1;
+        byte runLight = 0;
+        int runTop = 0;
+        int runBottom = 0;
+        while (columnCount > 0) {
+            // Drop the entries above the slab, and find where the slab ends
+            int bottom = Integer.MIN_VALUE;
+            for (int i = 0; i < columnCount; i++) {
+                while (FullFormat.getY(current[i]) >= top) {
+                    if (++cursors[i] == lengths[i]) break;
+                    current[i] = columns[i].getSingle(cursors[i]);
+                }
+                if (cursors[i] == lengths[i]) {
+                    columnCount--;
+                    columns[i] = columns[columnCount];
+                    lengths[i] = lengths[columnCount];
+                    cursors[i] = cursors[columnCount];
+                    current[i] = current[columnCount];
+                    i--;
+                    continue;
+                }
+                long entry = current[i];
+                bottom = Math.max(bottom, getTop(entry) >= top ? FullFormat.getY(entry) : getTop(entry));
+            }
+            if (columnCount == 0) break;
+
+            int winner = vote(scratch, columnCount, top, airIds);
+            if (winner == -1) { // Nothing covers this slab, so it stays a gap
+                if (runId != -1) outputLength = appendRun(scratch, outputLength, runId, runTop, runBottom, runLight);
+                runId = -1;
+            } else {
+                byte light = scratch.voteLights[winner];
+                if (runId == winner && runLight == light && runBottom == top) {
+                    runBottom = bottom;
+                } else {
+                    if (runId != -1) outputLength = appendRun(scratch, outputLength, runId, runTop, runBottom, runLight);
+                    runId = winner;
+                    runLight = light;
+                    runTop = top;
+                    runBottom = bottom;
+                }
+            }
+            top = bottom;
+        }
+        if (runId != -1) outputLength = appendRun(scratch, outputLength, runId, runTop, runBottom, runLight);
+        return outputLength;
+    }
+
+    /** @return the winning id for the slab right below top, or -1 if no column covers it */
+    private static int vote(Scratch scratch, int columnCount, int top, boolean[] airIds) {
+        int[] votes = scratch.votes;
+        int[] votedIds = scratch.votedIds;
+        int votedCount = 0;
+        for (int i = 0; i < columnCount; i++) {
+            long entry = scratch.current[i];
+            if (getTop(entry) < top) continue;
+            int id = FullFormat.getId(entry);
+            if (votes[id]++ == 0) {
+                votedIds[votedCount++] = id;
+                scratch.voteLights[id] = FullFormat.getLight(entry);
+            }
+        }
+
+        int winner = -1;
+        boolean winnerIsAir = true;
+        for (int i = 0; i < votedCount; i++) {
+            int id = votedIds[i];
+            boolean isAir = airIds[id];
+            if (winner == -1 || (winnerIsAir && !isAir)
+                    || (winnerIsAir == isAir && votes[id] > votes[winner])) {
+                winner = id;
+                winnerIsAir = isAir;
+            }
+        }
+        // Reset after picking the winner, so the counts above stay valid while comparing
+        for (int i = 0; i < votedCount; i++) {
+            votes[votedIds[i]] = 0;
+        }
+        return winner;
+    }
+
+    private static int appendRun(Scratch scratch, int outputLength, int id, int top, int bottom, byte light) {
+        if (outputLength == scratch.output.length) {
+            long[] grown = new long[outputLength * 2];
+            System.arraycopy(scratch.output, 0, grown, 0, outputLength);
+            scratch.output = grown;
+        }
+        scratch.output[outputLength] = FullFormat.encode(id, top - bottom, bottom, light);
+        return outputLength + 1;
+    }
+
+    private static int getTop(long entry) {
+        return FullFormat.getY(entry) + FullFormat.getDepth(entry);
+    }
+
+    private static class QuadrantTask extends RecursiveAction {
+        final IFullDataView source;
+        final int factor;
+        final boolean[] airIds;
+        final ColumnConsumer output;
+        final int outputX;
+        final int outputZ;
+        final int width;
+
+        QuadrantTask(IFullDataView source, int factor, boolean[] airIds, ColumnConsumer output,
+                     int outputX, int outputZ, int width) {
+            this.source = source;
+            this.factor = factor;
+            this.airIds = airIds;
+            this.output = output;
+            this.outputX = outputX;
+            this.outputZ = outputZ;
+            this.width = width;
+        }
+
+        @Override
+        protected void compute() {
+            int sourceWidth = width * factor;
+            if ((width & 1) != 0 || sourceWidth * sourceWidth <= MIN_SPLIT_SOURCE_COLUMNS) {
+                for (int x = outputX; x < outputX + width; x++) {
+                    for (int z = outputZ; z < outputZ + width; z++) {
+                        downsampleColumn(source, x * factor, z * factor, factor, airIds, x, z, output);
+                    }
+                }
+                return;
+            }
+            int half = width / 2;
+            invokeAll(new QuadrantTask(source, factor, airIds, output, outputX, outputZ, half),
+                    new QuadrantTask(source, factor, airIds, output, outputX + half, outputZ, half),
+                    new QuadrantTask(source, factor, airIds, output, outputX, outputZ + half, half),
+                    new QuadrantTask(source, factor, airIds, output, outputX + half, outputZ + half, half));
+        }
+    }
+}
@@ -1,19 +1,29 @@
 package com.seibel.lod.core.a7.datatype.transform;
 
+import com.seibel.lod.core.a7.datatype.LodDataSource;
 import com.seibel.lod.core.a7.datatype.column.ColumnFormat;
 import com.seibel.lod.core.a7.datatype.column.ColumnRenderSource;
 import com.seibel.lod.core.a7.datatype.column.accessor.ColumnArrayView;
 import com.seibel.lod.core.a7.datatype.full.FullDataSource;
 import com.seibel.lod.core.a7.datatype.full.FullFormat;
-import com.seibel.lod.core.a7.datatype.full.IdBiomeBlockStateMap;
 import com.seibel.lod.core.a7.datatype.full.accessor.SingleFullArrayView;
 import com.seibel.lod.core.a7.level.IClientLevel;
 import com.seibel.lod.core.a7.pos.DhSectionPos;
 import com.seibel.lod.core.config.Config;
-import com.seibel.lod.core.wrapperInterfaces.block.IBlockStateWrapper;
-import com.seibel.lod.core.wrapperInterfaces.world.IBiomeWrapper;
+import com.seibel.lod.core.enums.config.EDistanceGenerationMode;
 
 public class FullToColumnTransformer {
+    /** Per thread space for the columns with more entries than fit in the render source, reused for every such column. */
+    private static final ThreadLocal<long[]> tLocalOversizedColumn = ThreadLocal.withInitial(() -> new long[64]);
+
+    /**
+     * Checked before a transform is queued, so {@link #transformFullDataToColumnData} is never handed data it can't use.
+     * @return false if the data isn't full data, or is less detailed than the render source of its section would be
+     */
+    public static boolean canTransform(LodDataSource data) {
+        return data instanceof FullDataSource
+                && data.getDataDetail() <= data.getSectionPos().sectionDetail - ColumnRenderSource.SECTION_SIZE_OFFSET;
+    }
 
     /**
      * Creates a LodNode for a chunk in the given world.
@@ -23,54 +33,79 @@ public class FullToColumnTransformer {
     public static ColumnRenderSource transformFullDataToColumnData(IClientLevel level, FullDataSource data) {
         final DhSectionPos pos = data.getSectionPos();
         final byte dataDetail = data.getDataDetail();
-        final int vertSize = Config.Client.Graphics.Quality.verticalQuality.get().calculateMaxVerticalData(data.getDataDetail());
+        final int vertSize = Config.Client.Graphics.Quality.verticalQuality.get().calculateMaxVerticalData(
+                (byte) (pos.sectionDetail - ColumnRenderSource.SECTION_SIZE_OFFSET));
         final ColumnRenderSource columnSource = new ColumnRenderSource(pos, vertSize, level.getMinY());
 
-        if (dataDetail == pos.sectionDetail- columnSource.getDataDetail()) {
+        int[] paletteColors = level.getColorResolver().resolvePalette(data.getMapping());
+        if (dataDetail == columnSource.getDataDetail()) {
             for (int x = 0; x < pos.getWidth(dataDetail).value; x++) {
                 for (int z = 0; z < pos.getWidth(dataDetail).value; z++) {
                     ColumnArrayView columnArrayView = columnSource.getVerticalDataView(x, z);
                     SingleFullArrayView fullArrayView = data.get(x, z);
-                    convertColumnData(level, columnArrayView, fullArrayView);
+                    convertColumnData(paletteColors, data.getGenMode(x, z), columnArrayView, fullArrayView);
                 }
             }
+        } else if (dataDetail < columnSource.getDataDetail()) {
+            // More detailed data than the render source, so each render column is downsampled from several full columns
+            int factor = 1 << (columnSource.getDataDetail() - dataDetail);
+            FullDataDownsampler.downsample(data, factor, (x, z, column, length) ->
+                    convertColumnData(paletteColors, data.getMinGenMode(x * factor, z * factor, factor),
+                            columnSource.getVerticalDataView(x, z), column, length));
         } else {
-            throw new UnsupportedOperationException("To be implemented");
-            //FIXME: Implement different size creation of renderData
+            throw new IllegalArgumentException("Can't create render data more detailed than its source data, see canTransform");
         }
-
+        // Once at the end, as the downsampled columns above are written from several threads
+        columnSource.refreshSummary(0, 0, ColumnRenderSource.SECTION_SIZE - 1, ColumnRenderSource.SECTION_SIZE - 1);
 
         return columnSource;
     }
 
-    private static void convertColumnData(IClientLevel level, ColumnArrayView columnArrayView, SingleFullArrayView fullArrayView) {
+    /** @param genMode the {@link EDistanceGenerationMode#complexity} of the data, 0 if it isn't known */
+    public static void convertColumnData(int[] paletteColors, byte genMode, ColumnArrayView columnArrayView, SingleFullArrayView fullArrayView) {
         if (!fullArrayView.doesItExist()) return;
-        // TODO: Set gen mode
-        int genModeValue = 0;
-        int dataTotalLength = fullArrayView.getSingleLength();
+        convertColumnData(paletteColors, genMode, columnArrayView, fullArrayView, null, fullArrayView.getSingleLength());
+    }
+
+    /**
+     * Same as above, for unpacked full data that only fills the start of its array, e.g. the downsampler's scratch
+     * output. Saves copying every column into an array of its own length.
+     */
+    public static void convertColumnData(int[] paletteColors, byte genMode, ColumnArrayView columnArrayView, long[] fullColumn, int length) {
+        convertColumnData(paletteColors, genMode, columnArrayView, null, fullColumn, length);
+    }
+
+    // Reads from fullArrayView if it isn't null, and from the first length entries of fullColumn otherwise
+    private static void convertColumnData(int[] paletteColors, byte genMode, ColumnArrayView columnArrayView,
+                                          SingleFullArrayView fullArrayView, long[] fullColumn, int dataTotalLength) {
+        // Unknown data is treated as the lowest quality, as the column format has no value for it
+        int genModeValue = Math.max(genMode, EDistanceGenerationMode.NONE.complexity);
         if (dataTotalLength == 0) return;
 
         if (dataTotalLength > columnArrayView.verticalSize()) {
-            ColumnArrayView totalColumnData = new ColumnArrayView(new long[dataTotalLength], dataTotalLength, 0, dataTotalLength);
-            iterateAndConvert(level, genModeValue, totalColumnData, fullArrayView);
+            long[] oversizedColumn = tLocalOversizedColumn.get();
+            if (oversizedColumn.length < dataTotalLength) {
+                oversizedColumn = new long[Math.max(dataTotalLength, oversizedColumn.length * 2)];
+                tLocalOversizedColumn.set(oversizedColumn);
+            }
+            ColumnArrayView totalColumnData = new ColumnArrayView(oversizedColumn, dataTotalLength, 0, dataTotalLength);
+            iterateAndConvert(paletteColors, genModeValue, totalColumnData, fullArrayView, fullColumn, dataTotalLength);
             columnArrayView.changeVerticalSizeFrom(totalColumnData);
         } else {
-            iterateAndConvert(level, genModeValue, columnArrayView, fullArrayView); //Directly use the arrayView since it fits.
+            iterateAndConvert(paletteColors, genModeValue, columnArrayView, fullArrayView, fullColumn, dataTotalLength); //Directly use the arrayView since it fits.
         }
     }
 
-    private static void iterateAndConvert(IClientLevel level, int genMode, ColumnArrayView column, SingleFullArrayView data) {
-        IdBiomeBlockStateMap mapping = data.getMapping();
-        for (int i = 0; i < data.getSingleLength(); i++) {
-            long fullData = data.getSingle(i);
+    /** @param paletteColors colors of the data's palette, indexed by id. See {@link ColorResolver#resolvePalette} */
+    private static void iterateAndConvert(int[] paletteColors, int genMode, ColumnArrayView column,
+                                          SingleFullArrayView data, long[] rawData, int length) {
+        for (int i = 0; i < length; i++) {
+            long fullData = data != null ? data.getSingle(i) : rawData[i];
             int y = FullFormat.getY(fullData);
             int depth = FullFormat.getDepth(fullData);
             int id = FullFormat.getId(fullData);
             byte light = FullFormat.getLight(fullData);
-            IdBiomeBlockStateMap.Entry entry = mapping.get(id);
-            IBiomeWrapper biome = entry.biome;
-            IBlockStateWrapper block = entry.blockState;
-            int color = level.computeBaseColor(biome, block);
+            int color = paletteColors[id];
             long columnData = ColumnFormat.createDataPoint(y, depth, color, light, genMode);
             column.set(i, columnData);
         }
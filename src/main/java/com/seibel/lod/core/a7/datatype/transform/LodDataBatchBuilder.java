@@ -0,0 +1,171 @@
+package com.seibel.lod.core.a7.datatype.transform;
+
+import com.seibel.lod.core.a7.datatype.full.ChunkSizedData;
+import com.seibel.lod.core.a7.datatype.full.FullDataSource;
+import com.seibel.lod.core.a7.pos.DhSectionPos;
+import com.seibel.lod.core.logging.DhLoggerBuilder;
+import com.seibel.lod.core.objects.DHChunkPos;
+import com.seibel.lod.core.wrapperInterfaces.chunk.IChunkWrapper;
+import org.apache.logging.log4j.Logger;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+
+/**
+ * Converts batches of chunks into {@link ChunkSizedData} on a bounded fork-join pool,
+ * grouping the results by the data section they belong to. <br>
+ * Chunks are queued as their events come in, and each {@link #tick} builds everything queued since the last batch.
+ */
+public class LodDataBatchBuilder implements AutoCloseable {
+    private static final Logger LOGGER = DhLoggerBuilder.getLogger();
+    /** Below this many chunks a task is built directly instead of being split further. */
+    private static final int SPLIT_THRESHOLD = 4;
+
+    public static class BatchResult {
+        public final Map<DhSectionPos, List<ChunkSizedData>> dataBySection = new HashMap<>();
+        /** Chunks that couldn't be built yet (i.e. their lighting isn't ready), so the caller can retry them later. */
+        public final List<IChunkWrapper> rejectedChunks = new ArrayList<>();
+    }
+
+    private final ForkJoinPool pool;
+    // Only the latest version of each chunk is kept
+    private final ConcurrentHashMap<DHChunkPos, IChunkWrapper> queuedChunks = new ConcurrentHashMap<>();
+    // Completes once the last batch is written, even if it failed. Batches never run at the same time.
+    private CompletableFuture<Void> lastBatch = CompletableFuture.completedFuture(null);
+
+    public LodDataBatchBuilder(int parallelism) {
+        AtomicInteger threadCount = new AtomicInteger();
+        this.pool = new ForkJoinPool(Math.max(1, parallelism), (p) -> {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(p);
+            thread.setName("LodDataBatchBuilder Thread[" + threadCount.getAndIncrement() + "]");
+            return thread;
+        }, null, false);
+    }
+
+    /** The detail 0 data section containing the given chunk. */
+    public static DhSectionPos getSectionPos(DHChunkPos chunkPos) {
+        byte chunkToSectionShift = FullDataSource.SECTION_SIZE_OFFSET - 4;
+        return new DhSectionPos(FullDataSource.SECTION_SIZE_OFFSET,
+                chunkPos.x >> chunkToSectionShift, chunkPos.z >> chunkToSectionShift);
+    }
+
+    public CompletableFuture<BatchResult> build(List<IChunkWrapper> chunks) {
+        IChunkWrapper[] input = chunks.toArray(new IChunkWrapper[0]);
+        ChunkSizedData[] output = new ChunkSizedData[input.length];
+        // Running the root task on a pool worker makes all its subtasks fork into this pool.
+        return CompletableFuture.supplyAsync(() -> {
+            new BuildTask(input, output, 0, input.length).invoke();
+            return group(input, output);
+        }, pool);
+    }
+
+    /**
+     * Builds the chunks and writes each section's data with a single writeBatch call.
+     * @param writer the writeBatch of the data or render source provider
+     * @return the chunks that couldn't be built yet
+     */
+    public CompletableFuture<List<IChunkWrapper>> buildAndWrite(List<IChunkWrapper> chunks,
+                                                                BiConsumer<DhSectionPos, Collection<ChunkSizedData>> writer) {
+        return build(chunks).thenApply((result) -> {
+            result.dataBySection.forEach(writer);
+            return result.rejectedChunks;
+        });
+    }
+
+    /** Queues the chunk for the next batch, replacing an older version of it that is still queued. */
+    public void queueChunk(IChunkWrapper chunk) {
+        queuedChunks.put(chunk.getChunkPos(), chunk);
+    }
+
+    /**
+     * Builds and writes everything queued as one batch, unless the last batch is still running.
+     * Chunks that can't be built yet are queued again, unless a newer version of them was queued in the meantime.
+     */
+    public synchronized void tick(BiConsumer<DhSectionPos, Collection<ChunkSizedData>> writer) {
+        if (queuedChunks.isEmpty() || !lastBatch.isDone()) return;
+        lastBatch = runBatch(writer);
+    }
+
+    /**
+     * Builds and writes everything queued once the running batch is done, e.g. before saving or closing.
+     * Chunks that still can't be built stay queued.
+     * @return completes once the queued chunks are written
+     */
+    public synchronized CompletableFuture<Void> flush(BiConsumer<DhSectionPos, Collection<ChunkSizedData>> writer) {
+        lastBatch = lastBatch.thenCompose((v) -> runBatch(writer));
+        return lastBatch;
+    }
+
+    private CompletableFuture<Void> runBatch(BiConsumer<DhSectionPos, Collection<ChunkSizedData>> writer) {
+        ArrayList<IChunkWrapper> batch = new ArrayList<>(queuedChunks.size());
+        for (DHChunkPos pos : queuedChunks.keySet()) {
+            // remove() instead of the iterator's, so a version queued after we read the key isn't dropped
+            IChunkWrapper chunk = queuedChunks.remove(pos);
+            if (chunk != null) batch.add(chunk);
+        }
+        if (batch.isEmpty()) return CompletableFuture.completedFuture(null);
+        return buildAndWrite(batch, writer).handle((rejected, e) -> {
+            if (e != null) {
+                LOGGER.error("Failed to build a batch of {} chunks:", batch.size(), e);
+            } else {
+                for (IChunkWrapper chunk : rejected) queuedChunks.putIfAbsent(chunk.getChunkPos(), chunk);
+            }
+            return null;
+        });
+    }
+
+    private static BatchResult group(IChunkWrapper[] input, ChunkSizedData[] output) {
+        BatchResult result = new BatchResult();
+        for (int i = 0; i < output.length; i++) {
+            ChunkSizedData data = output[i];
+            if (data == null) {
+                result.rejectedChunks.add(input[i]);
+                continue;
+            }
+            result.dataBySection.computeIfAbsent(getSectionPos(data.pos), (pos) -> new ArrayList<>()).add(data);
+        }
+        return result;
+    }
+
+    private static class BuildTask extends RecursiveAction {
+        final IChunkWrapper[] input;
+        final ChunkSizedData[] output;
+        final int start;
+        final int end;
+
+        BuildTask(IChunkWrapper[] input, ChunkSizedData[] output, int start, int end) {
+            this.input = input;
+            this.output = output;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        protected void compute() {
+            if (end - start <= SPLIT_THRESHOLD) {
+                for (int i = start; i < end; i++) {
+                    output[i] = LodDataBuilder.createChunkData(input[i]);
+                }
+                return;
+            }
+            int mid = (start + end) >>> 1;
+            invokeAll(new BuildTask(input, output, start, mid), new BuildTask(input, output, mid, end));
+        }
+    }
+
+    /** Lets the running batch finish, but drops what is still queued. Call {@link #flush} first to write it. */
+    @Override
+    public void close() {
+        pool.shutdown();
+    }
+}
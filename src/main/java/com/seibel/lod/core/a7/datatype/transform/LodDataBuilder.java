@@ -2,53 +2,119 @@ package com.seibel.lod.core.a7.datatype.transform;
 
 import com.seibel.lod.core.a7.datatype.full.ChunkSizedData;
 import com.seibel.lod.core.a7.datatype.full.FullFormat;
+import com.seibel.lod.core.a7.datatype.full.IdBiomeBlockStateMap;
+import com.seibel.lod.core.enums.config.EDistanceGenerationMode;
 import com.seibel.lod.core.wrapperInterfaces.block.IBlockStateWrapper;
+import com.seibel.lod.core.wrapperInterfaces.chunk.ColumnRunBuffer;
 import com.seibel.lod.core.wrapperInterfaces.chunk.IChunkWrapper;
 import com.seibel.lod.core.wrapperInterfaces.world.IBiomeWrapper;
-import it.unimi.dsi.fastutil.longs.LongArrayList;
+
+import java.util.Arrays;
+import java.util.Objects;
 
 public class LodDataBuilder {
+    private static final int SECTION_HEIGHT_SHIFT = 4;
+    private static final int SECTION_HEIGHT = 1 << SECTION_HEIGHT_SHIFT;
+
+    /** Per thread buffers, reused for every chunk built on that thread. */
+    private static final class ScanBuffers {
+        final ColumnRunBuffer runs = new ColumnRunBuffer();
+        long[] column = new long[32];
+        boolean[] sectionUniform = new boolean[0];
+        IBiomeWrapper[] uniformBiomes = new IBiomeWrapper[0];
+        IBlockStateWrapper[] uniformBlockStates = new IBlockStateWrapper[0];
+        byte[] uniformLights = new byte[0];
+
+        void ensureSectionCount(int sectionCount) {
+            if (sectionUniform.length >= sectionCount) return;
+            sectionUniform = new boolean[sectionCount];
+            uniformBiomes = new IBiomeWrapper[sectionCount];
+            uniformBlockStates = new IBlockStateWrapper[sectionCount];
+            uniformLights = new byte[sectionCount];
+        }
+    }
+    private static final ThreadLocal<ScanBuffers> tLocalBuffers = ThreadLocal.withInitial(ScanBuffers::new);
+
     public static ChunkSizedData createChunkData(IChunkWrapper chunk) {
+        return createChunkData(chunk, EDistanceGenerationMode.FULL);
+    }
+    /** @param genMode how far the chunk was generated, so lower quality data can be told apart and replaced later */
+    public static ChunkSizedData createChunkData(IChunkWrapper chunk, EDistanceGenerationMode genMode) {
         if (!canGenerateLodFromChunk(chunk)) return null;
 
-        ChunkSizedData chunkData = new ChunkSizedData();
+        ChunkSizedData chunkData = new ChunkSizedData(chunk.getChunkPos(), genMode.complexity);
+        IdBiomeBlockStateMap mapping = chunkData.getMapping();
+        ScanBuffers buffers = tLocalBuffers.get();
+        ColumnRunBuffer runs = buffers.runs;
+
+        int minY = chunk.getMinBuildHeight();
+        int maxY = chunk.getMaxBuildHeight();
+        int firstSection = minY >> SECTION_HEIGHT_SHIFT;
+        int sectionCount = ((maxY - 1) >> SECTION_HEIGHT_SHIFT) - firstSection + 1;
+
+        // Uniform sections are the same in every column, so sample them once for the whole chunk
+        buffers.ensureSectionCount(sectionCount);
+        for (int section = 0; section < sectionCount; section++) {
+            int sectionMinY = (section + firstSection) << SECTION_HEIGHT_SHIFT;
+            boolean uniform = chunk.isSectionUniform(sectionMinY);
+            buffers.sectionUniform[section] = uniform;
+            if (!uniform) continue;
+            int y = Math.max(sectionMinY, minY);
+            buffers.uniformBiomes[section] = chunk.getBiome(0, y, 0);
+            buffers.uniformBlockStates[section] = chunk.getBlockState(0, y, 0);
+            buffers.uniformLights[section] = getLight(chunk, 0, y, 0);
+        }
 
         for (int x=0; x<16; x++) {
             for (int z=0; z<16; z++) {
-                LongArrayList longs = new LongArrayList(chunk.getHeight()/4);
-                int lastY = chunk.getMaxBuildHeight();
-                IBiomeWrapper biome = chunk.getBiome(x, lastY, z);
-                IBlockStateWrapper blockState = IBlockStateWrapper.AIR;
-                int mappedId = chunkData.getMapping().setAndGetId(biome, blockState);
-                byte light = (byte) (chunk.getBlockLight(x,lastY,z) << 4 + chunk.getSkyLight(x,lastY,z));
-                int y=chunk.getMaxY(x, z);
-
-                for (; y>=chunk.getMinBuildHeight(); y--) {
-                    IBiomeWrapper newBiome = chunk.getBiome(x, y, z);
-                    IBlockStateWrapper newBlockState = chunk.getBlockState(x, y, z);
-                    byte newLight = (byte) (chunk.getBlockLight(x,y,z) << 4 + chunk.getSkyLight(x,y,z));
-
-                    if (!newBiome.equals(biome) || !newBlockState.equals(blockState)) {
-                        longs.add(FullFormat.encode(mappedId, lastY-y+1, y+1, light));
-                        biome = newBiome;
-                        blockState = newBlockState;
-                        mappedId = chunkData.getMapping().setAndGetId(biome, blockState);
-                        light = newLight;
-                        lastY = y;
-                    } else if (newLight != light) {
-                        longs.add(FullFormat.encode(mappedId, lastY-y+1, y+1, light));
-                        light = newLight;
-                        lastY = y;
+                runs.clear();
+                // Everything above the highest block is air, lit like the top of the world
+                runs.add(maxY, chunk.getBiome(x, maxY, z), IBlockStateWrapper.AIR, getLight(chunk, x, maxY, z));
+
+                int y = chunk.getMaxY(x, z);
+                while (y >= minY) {
+                    int sliceBottom = Math.max(y & -SECTION_HEIGHT, minY);
+                    int section = (y >> SECTION_HEIGHT_SHIFT) - firstSection;
+                    if (section < sectionCount && buffers.sectionUniform[section]) {
+                        runs.add(y, buffers.uniformBiomes[section], buffers.uniformBlockStates[section], buffers.uniformLights[section]);
+                    } else {
+                        chunk.scanColumn(x, z, y, sliceBottom, runs);
                     }
+                    y = sliceBottom - 1;
                 }
-                longs.add(FullFormat.encode(mappedId, lastY-y+1, y+1, light));
-                chunkData.setSingleColumn(longs.toArray((long[]) null), x, z);
+
+                chunkData.setSingleColumn(encodeRuns(runs, mapping, minY, buffers), x, z);
             }
         }
 
         return chunkData;
     }
 
+    /** Turns the scanned runs into full data, each run becomes one datapoint. */
+    private static long[] encodeRuns(ColumnRunBuffer runs, IdBiomeBlockStateMap mapping, int minY, ScanBuffers buffers) {
+        int count = runs.size();
+        if (buffers.column.length < count) buffers.column = new long[Math.max(count, buffers.column.length * 2)];
+        long[] column = buffers.column;
+
+        int mappedId = 0;
+        for (int i = 0; i < count; i++) {
+            IBiomeWrapper biome = runs.getBiome(i);
+            IBlockStateWrapper blockState = runs.getBlockState(i);
+            // Runs that only differ by light keep the id of the run above
+            if (i == 0 || !Objects.equals(biome, runs.getBiome(i - 1)) || !Objects.equals(blockState, runs.getBlockState(i - 1))) {
+                mappedId = mapping.setAndGetId(biome, blockState);
+            }
+            int top = runs.getTopY(i);
+            int nextTop = i + 1 < count ? runs.getTopY(i + 1) : minY - 1;
+            column[i] = FullFormat.encode(mappedId, top - nextTop + 1, nextTop + 1, runs.getLight(i));
+        }
+        return Arrays.copyOf(column, count);
+    }
+
+    private static byte getLight(IChunkWrapper chunk, int x, int y, int z) {
+        return (byte) ((chunk.getBlockLight(x, y, z) << 4) + chunk.getSkyLight(x, y, z));
+    }
+
     public static boolean canGenerateLodFromChunk(IChunkWrapper chunk)
     {
         return chunk != null &&
@@ -1,5 +1,6 @@
 package com.seibel.lod.core.a7.level;
 
+import com.seibel.lod.core.a7.datatype.transform.ColorResolver;
 import com.seibel.lod.core.a7.render.LodQuadTree;
 import com.seibel.lod.core.a7.util.FileScanner;
 import com.seibel.lod.core.a7.save.io.file.RemoteDataFileHandler;
@@ -29,6 +30,7 @@ public class DhClientLevel implements IClientLevel {
     public final RenderFileHandler renderFileHandler;
     public final RenderBufferHandler renderBufferHandler; //TODO: Should this be owned by renderer?
     public final ILevelWrapper level;
+    public final ColorResolver colorResolver = new ColorResolver(this::computeBaseColor);
     public a7LodRenderer renderer = null;
     public LodQuadTree tree;
 
@@ -40,6 +42,7 @@ public class DhClientLevel implements IClientLevel {
         renderFileHandler = new RenderFileHandler(dataFileHandler, this, save.getRenderCacheFolder(level));
         tree = new LodQuadTree(this, Config.Client.Graphics.Quality.lodChunkRenderDistance.get()*16,
                 MC_CLIENT.getPlayerBlockPos().x, MC_CLIENT.getPlayerBlockPos().z, renderFileHandler);
+        renderFileHandler.setSectionPriority(tree);
         renderBufferHandler = new RenderBufferHandler(tree);
         this.level = level;
         FileScanner.scanFile(save, level, dataFileHandler, renderFileHandler);
@@ -80,6 +83,17 @@ public class DhClientLevel implements IClientLevel {
         return 0; //TODO
     }
 
+    @Override
+    public ColorResolver getColorResolver() {
+        return colorResolver;
+    }
+
+    @Override
+    public void onResourcesReloaded() {
+        colorResolver.invalidate();
+        renderFileHandler.onColorsChanged();
+    }
+
     @Override
     public int getMinY() {
         return level.getMinHeight();
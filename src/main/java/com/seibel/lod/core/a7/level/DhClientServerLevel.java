@@ -1,5 +1,9 @@
 package com.seibel.lod.core.a7.level;
 
+import com.seibel.lod.core.a7.datatype.transform.ColorResolver;
+import com.seibel.lod.core.a7.datatype.full.ChunkSizedData;
+import com.seibel.lod.core.a7.datatype.transform.LodDataBatchBuilder;
+import com.seibel.lod.core.a7.pos.DhSectionPos;
 import com.seibel.lod.core.a7.render.LodQuadTree;
 import com.seibel.lod.core.a7.util.FileScanner;
 import com.seibel.lod.core.a7.save.io.file.LocalDataFileHandler;
@@ -13,13 +17,16 @@ import com.seibel.lod.core.logging.DhLoggerBuilder;
 import com.seibel.lod.core.objects.math.Mat4f;
 import com.seibel.lod.core.render.a7LodRenderer;
 import com.seibel.lod.core.wrapperInterfaces.block.IBlockStateWrapper;
+import com.seibel.lod.core.wrapperInterfaces.chunk.IChunkWrapper;
 import com.seibel.lod.core.wrapperInterfaces.minecraft.IMinecraftClientWrapper;
 import com.seibel.lod.core.wrapperInterfaces.minecraft.IProfilerWrapper;
 import com.seibel.lod.core.wrapperInterfaces.world.IBiomeWrapper;
 import com.seibel.lod.core.wrapperInterfaces.world.ILevelWrapper;
 import org.apache.logging.log4j.Logger;
 
+import java.util.Collection;
 import java.util.concurrent.CompletableFuture;
+import java.util.function.BiConsumer;
 
 public class DhClientServerLevel implements IClientLevel, IServerLevel {
     private static final Logger LOGGER = DhLoggerBuilder.getLogger();
@@ -29,8 +36,11 @@ public class DhClientServerLevel implements IClientLevel, IServerLevel {
     public RenderFileHandler renderFileHandler = null;
     public RenderBufferHandler renderBufferHandler = null; //TODO: Should this be owned by renderer?
     public final ILevelWrapper level;
+    public final ColorResolver colorResolver = new ColorResolver(this::computeBaseColor);
     public a7LodRenderer renderer = null;
     public LodQuadTree tree = null;
+    private final LodDataBatchBuilder chunkBatchBuilder =
+            new LodDataBatchBuilder(Config.Client.Advanced.Threading.numberOfChunkBuilderThreads.get());
 
     public DhClientServerLevel(LocalSaveStructure save, ILevelWrapper level) {
         this.level = level;
@@ -48,6 +58,18 @@ public class DhClientServerLevel implements IClientLevel, IServerLevel {
 
     public void serverTick() {
         //TODO Update network packet and stuff or state or etc..
+        chunkBatchBuilder.tick(getChunkWriter());
+    }
+
+    private BiConsumer<DhSectionPos, Collection<ChunkSizedData>> getChunkWriter() {
+        // Going through the render file handler also updates the loaded render sources
+        RenderFileHandler renderHandler = renderFileHandler;
+        return renderHandler != null ? renderHandler::writeBatch : dataFileHandler::writeBatch;
+    }
+
+    @Override
+    public void updateChunk(IChunkWrapper chunk) {
+        chunkBatchBuilder.queueChunk(chunk);
     }
     public void startRenderer() {
         if (renderBufferHandler != null) {
@@ -57,6 +79,7 @@ public class DhClientServerLevel implements IClientLevel, IServerLevel {
         renderFileHandler = new RenderFileHandler(dataFileHandler, this, save.getRenderCacheFolder(level));
         tree = new LodQuadTree(this, Config.Client.Graphics.Quality.lodChunkRenderDistance.get()*16,
                 MC_CLIENT.getPlayerBlockPos().x, MC_CLIENT.getPlayerBlockPos().z, renderFileHandler);
+        renderFileHandler.setSectionPriority(tree);
         renderBufferHandler = new RenderBufferHandler(tree);
         FileScanner.scanFile(save, level, dataFileHandler, renderFileHandler);
     }
@@ -96,6 +119,18 @@ public class DhClientServerLevel implements IClientLevel, IServerLevel {
         return 0; //TODO
     }
 
+    @Override
+    public ColorResolver getColorResolver() {
+        return colorResolver;
+    }
+
+    @Override
+    public void onResourcesReloaded() {
+        colorResolver.invalidate();
+        RenderFileHandler renderHandler = renderFileHandler;
+        if (renderHandler != null) renderHandler.onColorsChanged();
+    }
+
     @Override
     public void dumpRamUsage() {
         //TODO
@@ -108,12 +143,17 @@ public class DhClientServerLevel implements IClientLevel, IServerLevel {
 
     @Override
     public CompletableFuture<Void> save() {
-        return renderFileHandler == null ? dataFileHandler.flushAndSave() : renderFileHandler.flushAndSave();
+        RenderFileHandler renderHandler = renderFileHandler;
+        return chunkBatchBuilder.flush(getChunkWriter()).thenCompose((v) ->
+                renderHandler == null ? dataFileHandler.flushAndSave() : renderHandler.flushAndSave());
         //Note: saving renderFileHandler will also save the dataFileHandler.
     }
 
     @Override
     public void close() {
+        // Written before the data files are closed
+        chunkBatchBuilder.flush(getChunkWriter()).join();
+        chunkBatchBuilder.close();
         dataFileHandler.close();
         LOGGER.info("Closed DHLevel for {}", level);
     }
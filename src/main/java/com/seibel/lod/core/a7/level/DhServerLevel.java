@@ -1,9 +1,12 @@
 package com.seibel.lod.core.a7.level;
 
+import com.seibel.lod.core.a7.datatype.transform.LodDataBatchBuilder;
 import com.seibel.lod.core.a7.util.FileScanner;
 import com.seibel.lod.core.a7.save.io.file.LocalDataFileHandler;
 import com.seibel.lod.core.a7.save.structure.LocalSaveStructure;
+import com.seibel.lod.core.config.Config;
 import com.seibel.lod.core.logging.DhLoggerBuilder;
+import com.seibel.lod.core.wrapperInterfaces.chunk.IChunkWrapper;
 import com.seibel.lod.core.wrapperInterfaces.world.ILevelWrapper;
 import org.apache.logging.log4j.Logger;
 
@@ -15,6 +18,8 @@ public class DhServerLevel implements IServerLevel {
     public final LocalSaveStructure save;
     public final LocalDataFileHandler dataFileHandler;
     public final ILevelWrapper level;
+    private final LodDataBatchBuilder chunkBatchBuilder =
+            new LodDataBatchBuilder(Config.Client.Advanced.Threading.numberOfChunkBuilderThreads.get());
 
     public DhServerLevel(LocalSaveStructure save, ILevelWrapper level) {
         this.save = save;
@@ -26,7 +31,12 @@ public class DhServerLevel implements IServerLevel {
     }
 
     public void serverTick() {
-        //Nothing for now
+        chunkBatchBuilder.tick(dataFileHandler::writeBatch);
+    }
+
+    @Override
+    public void updateChunk(IChunkWrapper chunk) {
+        chunkBatchBuilder.queueChunk(chunk);
     }
 
     @Override
@@ -40,12 +50,15 @@ public class DhServerLevel implements IServerLevel {
     }
     @Override
     public void close() {
+        // Written before the data files are closed
+        chunkBatchBuilder.flush(dataFileHandler::writeBatch).join();
+        chunkBatchBuilder.close();
         dataFileHandler.close();
         LOGGER.info("Closed DHLevel for {}", level);
     }
     @Override
     public CompletableFuture<Void> save() {
-        return dataFileHandler.flushAndSave();
+        return chunkBatchBuilder.flush(dataFileHandler::writeBatch).thenCompose((v) -> dataFileHandler.flushAndSave());
     }
 
     @Override
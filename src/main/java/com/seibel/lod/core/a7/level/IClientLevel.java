@@ -1,5 +1,6 @@
 package com.seibel.lod.core.a7.level;
 
+import com.seibel.lod.core.a7.datatype.transform.ColorResolver;
 import com.seibel.lod.core.a7.render.RenderBufferHandler;
 import com.seibel.lod.core.objects.math.Mat4f;
 import com.seibel.lod.core.wrapperInterfaces.block.IBlockStateWrapper;
@@ -14,4 +15,10 @@ public interface IClientLevel extends ILevel {
     RenderBufferHandler getRenderBufferHandler();
 
     int computeBaseColor(IBiomeWrapper biome, IBlockStateWrapper block);
+
+    /** Cache over {@link #computeBaseColor}, used when converting whole sections. */
+    ColorResolver getColorResolver();
+
+    /** Called when the resource packs changed. Drops the cached colors and transforms the loaded sections again. */
+    void onResourcesReloaded();
 }
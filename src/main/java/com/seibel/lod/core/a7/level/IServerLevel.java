@@ -1,6 +1,10 @@
 package com.seibel.lod.core.a7.level;
 
+import com.seibel.lod.core.wrapperInterfaces.chunk.IChunkWrapper;
+
 public interface IServerLevel extends ILevel {
     void serverTick();
     void doWorldGen();
+    /** Queues the chunk's lod data to be rebuilt, with the other chunks updated in the same tick. */
+    void updateChunk(IChunkWrapper chunk);
 }
@@ -27,7 +27,10 @@ public class DhBlockPos2D {
         return Math.sqrt(Math.pow(x - other.x, 2) + Math.pow(z - other.z, 2));
     }
     public long distSquared(DhBlockPos2D other) {
-        return LodUtil.pow2((long)x - other.x) + LodUtil.pow2((long)z - other.z);
+        return distSquared(other.x, other.z);
+    }
+    public long distSquared(int otherX, int otherZ) {
+        return LodUtil.pow2((long)x - otherX) + LodUtil.pow2((long)z - otherZ);
     }
 
     public Pos2D toPos2D() {
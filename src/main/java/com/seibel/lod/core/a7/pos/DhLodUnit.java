@@ -10,11 +10,11 @@ public class DhLodUnit {
     }
 
     public int toBlock() {
-        return value >> detail;
+        return value << detail;
     }
 
     public static DhLodUnit fromBlock(int block, byte targetDetail) {
-        return new DhLodUnit(targetDetail, block << targetDetail);
+        return new DhLodUnit(targetDetail, block >> targetDetail);
     }
 
     public DhLodUnit convertTo(byte targetDetail) {
@@ -3,6 +3,7 @@ package com.seibel.lod.core.a7.pos;
 import com.seibel.lod.core.enums.ELodDirection;
 import com.seibel.lod.core.util.LodUtil;
 
+import java.util.Objects;
 import java.util.function.Consumer;
 
 public class DhSectionPos {
@@ -37,6 +38,11 @@ public class DhSectionPos {
     public DhLodPos getCenter() {
         return getCenter((byte) (sectionDetail-1));
     }
+    /** @return the block x or z of {@code getCenter().getCenter()}, without creating the positions */
+    public static int getCenterBlock(byte sectionDetail, int sectionXOrZ) {
+        byte centerDetail = (byte) (sectionDetail-1);
+        return (((sectionXOrZ << 1) + 1) << centerDetail) + ((1 << centerDetail) >> 1);
+    }
     public DhLodPos getCorner() {
         return getCorner((byte) (sectionDetail-1));
     }
@@ -59,7 +65,7 @@ public class DhSectionPos {
     }
 
     public DhSectionPos getParent(){
-        return new DhSectionPos((byte) (sectionDetail + 1), sectionX / 2, sectionZ / 2);
+        return new DhSectionPos((byte) (sectionDetail + 1), sectionX >> 1, sectionZ >> 1);
     }
 
     public DhSectionPos getAdjacent(ELodDirection dir) {
@@ -96,6 +102,11 @@ public class DhSectionPos {
                 sectionZ == that.sectionZ;
     }
 
+    @Override
+    public int hashCode() {
+        return Objects.hash(sectionDetail, sectionX, sectionZ);
+    }
+
     // Serialize() is different from toString() as this requires it to NEVER be changed, and should be in a short format
     public String serialize() {
         return "[" + sectionDetail + ',' + sectionX + ',' + sectionZ + ']';
@@ -0,0 +1,134 @@
+package com.seibel.lod.core.a7.render;
+
+import com.seibel.lod.core.a7.pos.DhBlockPos2D;
+import com.seibel.lod.core.a7.pos.DhSectionPos;
+import com.seibel.lod.core.config.Config;
+import com.seibel.lod.core.enums.config.EHorizontalQuality;
+import com.seibel.lod.core.util.DetailDistanceUtil;
+import com.seibel.lod.core.util.LodUtil;
+
+/**
+ * The default falloff, the same as {@link DetailDistanceUtil#getDetailLevelFromDistance} of the distance
+ * to the section's center. <br>
+ * The squared distance at which each detail level starts is worked out whenever the quality config changes,
+ * so each lookup only compares integers. Split sections only merge once they are
+ * {@link Config.Client.Graphics.Quality#dropoffHysteresis} percent further out than that.
+ */
+public class CircularDetailFalloffPolicy implements DetailFalloffPolicy {
+    // Squared block distance from which each detail level is used, Long.MAX_VALUE for levels that are never used
+    private final long[] detailStartDistSquared = new long[LodUtil.DETAIL_OPTIONS];
+    private final long[] mergeStartDistSquared = new long[LodUtil.DETAIL_OPTIONS];
+    private byte minDetail;
+
+    // The config the thresholds were worked out for
+    private EHorizontalQuality horizontalQuality = null;
+    private int horizontalScale;
+    private byte drawResolution;
+    private int renderDistance;
+    private int hysteresis;
+
+    @Override
+    public boolean refresh() {
+        EHorizontalQuality newHorizontalQuality = Config.Client.Graphics.Quality.horizontalQuality.get();
+        int newHorizontalScale = Config.Client.Graphics.Quality.horizontalScale.get();
+        byte newDrawResolution = Config.Client.Graphics.Quality.drawResolution.get().detailLevel;
+        int newRenderDistance = Config.Client.Graphics.Quality.lodChunkRenderDistance.get();
+        int newHysteresis = Config.Client.Graphics.Quality.dropoffHysteresis.get();
+        if (newHorizontalQuality == horizontalQuality && newHorizontalScale == horizontalScale
+                && newDrawResolution == drawResolution && newRenderDistance == renderDistance
+                && newHysteresis == hysteresis) return false;
+        horizontalQuality = newHorizontalQuality;
+        horizontalScale = newHorizontalScale;
+        drawResolution = newDrawResolution;
+        renderDistance = newRenderDistance;
+        hysteresis = newHysteresis;
+        DetailDistanceUtil.updateSettings();
+        computeThresholds();
+        return true;
+    }
+
+    private void computeThresholds() {
+        minDetail = DetailDistanceUtil.getDetailLevelFromDistance(0);
+        // Every distance past this one is at the lowest detail
+        long maxDist = (long) Math.ceil(DetailDistanceUtil.getDrawDistanceFromDetail(LodUtil.DETAIL_OPTIONS - 1)) + 1;
+        for (int detail = 0; detail < detailStartDistSquared.length; detail++) {
+            // The detail only grows with the distance, so the first squared distance reaching it can be searched for
+            long low = 0;
+            long high = maxDist * maxDist;
+            if (DetailDistanceUtil.getDetailLevelFromDistance(Math.sqrt(high)) < detail) {
+                detailStartDistSquared[detail] = Long.MAX_VALUE;
+                continue;
+            }
+            while (low < high) {
+                long mid = (low + high) >>> 1;
+                if (DetailDistanceUtil.getDetailLevelFromDistance(Math.sqrt(mid)) >= detail) {
+                    high = mid;
+                } else {
+                    low = mid + 1;
+                }
+            }
+            detailStartDistSquared[detail] = low;
+        }
+
+        double mergeScaleSquared = LodUtil.pow2(1 + hysteresis / 100.0);
+        for (int detail = 0; detail < detailStartDistSquared.length; detail++) {
+            mergeStartDistSquared[detail] = detailStartDistSquared[detail] == Long.MAX_VALUE ?
+                    Long.MAX_VALUE : (long) Math.ceil(detailStartDistSquared[detail] * mergeScaleSquared);
+        }
+    }
+
+    @Override
+    public byte getDetailLevel(DhBlockPos2D playerPos, DhSectionPos sectionPos) {
+        return getDetailLevel(playerPos.distSquared(sectionPos.getCenter().getCenter()), detailStartDistSquared);
+    }
+
+    @Override
+    public byte getDetailLevel(DhBlockPos2D playerPos, byte sectionDetail, int sectionX, int sectionZ) {
+        return getDetailLevel(playerPos.distSquared(DhSectionPos.getCenterBlock(sectionDetail, sectionX),
+                DhSectionPos.getCenterBlock(sectionDetail, sectionZ)), detailStartDistSquared);
+    }
+
+    @Override
+    public byte getMergeDetailLevel(DhBlockPos2D playerPos, DhSectionPos sectionPos) {
+        return getDetailLevel(playerPos.distSquared(sectionPos.getCenter().getCenter()), mergeStartDistSquared);
+    }
+
+    @Override
+    public byte getMergeDetailLevel(DhBlockPos2D playerPos, byte sectionDetail, int sectionX, int sectionZ) {
+        return getDetailLevel(playerPos.distSquared(DhSectionPos.getCenterBlock(sectionDetail, sectionX),
+                DhSectionPos.getCenterBlock(sectionDetail, sectionZ)), mergeStartDistSquared);
+    }
+
+    private byte getDetailLevel(long distSquared, long[] startDistSquared) {
+        for (int detail = startDistSquared.length - 1; detail > minDetail; detail--) {
+            if (distSquared >= startDistSquared[detail]) return (byte) detail;
+        }
+        return minDetail;
+    }
+
+    @Override
+    public byte getMaxDetailInRange(double distance) {
+        return DetailDistanceUtil.getDetailLevelFromDistance(distance);
+    }
+
+    @Override
+    public int getFurthestDistance(byte detailLevel) {
+        return (int) Math.ceil(DetailDistanceUtil.getDrawDistanceFromDetail(detailLevel));
+    }
+
+    @Override
+    public long getDetailStartDistanceSquared(byte detailLevel) {
+        return getStartDistanceSquared(detailLevel, detailStartDistSquared);
+    }
+
+    @Override
+    public long getMergeStartDistanceSquared(byte detailLevel) {
+        return getStartDistanceSquared(detailLevel, mergeStartDistSquared);
+    }
+
+    private long getStartDistanceSquared(byte detailLevel, long[] startDistSquared) {
+        if (detailLevel <= minDetail) return 0;
+        if (detailLevel >= startDistSquared.length) return Long.MAX_VALUE;
+        return startDistSquared[detailLevel];
+    }
+}
@@ -0,0 +1,68 @@
+package com.seibel.lod.core.a7.render;
+
+import com.seibel.lod.core.a7.pos.DhBlockPos2D;
+import com.seibel.lod.core.a7.pos.DhSectionPos;
+
+/**
+ * Decides which detail level the {@link LodQuadTree} draws each section at. <br>
+ * {@link #getDetailLevel} is called for every ring cell every tick, so it should be cheap.
+ * It and {@link #getMergeDetailLevel} may be called from several threads at once.
+ * Anything expensive belongs in {@link #refresh}, which is called once at the start of each tick.
+ */
+public interface DetailFalloffPolicy {
+    /**
+     * Called once per tick before any other method, so the policy can pick up config changes.
+     * @return true if the detail levels may have changed since the last call
+     */
+    default boolean refresh() {
+        return false;
+    }
+
+    /** @return the data detail level the section should be drawn at, seen from the player */
+    byte getDetailLevel(DhBlockPos2D playerPos, DhSectionPos sectionPos);
+
+    /** The same as {@link #getDetailLevel(DhBlockPos2D, DhSectionPos)}, for ring cells that have no section to take the position from. */
+    default byte getDetailLevel(DhBlockPos2D playerPos, byte sectionDetail, int sectionX, int sectionZ) {
+        return getDetailLevel(playerPos, new DhSectionPos(sectionDetail, sectionX, sectionZ));
+    }
+
+    /**
+     * @return the data detail level a section that is already split should be drawn at. Only lowering the detail
+     * a bit further out than {@link #getDetailLevel} raises it stops sections along a detail level's edge
+     * from splitting and merging over and over as the player moves.
+     */
+    default byte getMergeDetailLevel(DhBlockPos2D playerPos, DhSectionPos sectionPos) {
+        return getDetailLevel(playerPos, sectionPos);
+    }
+
+    /** The same as {@link #getMergeDetailLevel(DhBlockPos2D, DhSectionPos)}, without the section's position. */
+    default byte getMergeDetailLevel(DhBlockPos2D playerPos, byte sectionDetail, int sectionX, int sectionZ) {
+        return getMergeDetailLevel(playerPos, new DhSectionPos(sectionDetail, sectionX, sectionZ));
+    }
+
+    /**
+     * @return the highest detail level in a circle of the given radius around the player
+     * Note: used to size the tree, so it should never underestimate
+     */
+    byte getMaxDetailInRange(double distance);
+
+    /**
+     * @return the furthest distance to the player, in blocks, that the given detail level is drawn at
+     * Note: used to size the tree, so it should never underestimate
+     */
+    int getFurthestDistance(byte detailLevel);
+
+    /**
+     * Lets the tree only re-check the sections near the distance where their detail changes when the player moves.
+     * @return the squared distance from the player to {@code sectionPos.getCenter().getCenter()} from which
+     * {@link #getDetailLevel} is at least the given detail level, or -1 if the detail level doesn't only depend on that distance
+     */
+    default long getDetailStartDistanceSquared(byte detailLevel) {
+        return -1;
+    }
+
+    /** The same as {@link #getDetailStartDistanceSquared}, for {@link #getMergeDetailLevel}. */
+    default long getMergeStartDistanceSquared(byte detailLevel) {
+        return getDetailStartDistanceSquared(detailLevel);
+    }
+}
@@ -0,0 +1,21 @@
+package com.seibel.lod.core.a7.render;
+
+/**
+ * Lifecycle of a {@link LodRenderSection}. <br>
+ * Unloaded -> Loading -> Loaded -> Building -> Ready, where Building and Ready repeat whenever the render buffer
+ * is rebuilt, and any state can go to Disposed. A failed load goes back to Unloaded.
+ */
+public enum ESectionState {
+    /** No render source, and none requested */
+    Unloaded,
+    /** The render source is being read */
+    Loading,
+    /** The render source is there, but there is no render buffer to swap in or build */
+    Loaded,
+    /** A render buffer is being built */
+    Building,
+    /** A built render buffer can be swapped in, or a rebuild can be started */
+    Ready,
+    /** The section left the tree, nothing changes it anymore */
+    Disposed
+}
@@ -1,16 +1,23 @@
 package com.seibel.lod.core.a7.render;
 
 import com.seibel.lod.core.a7.datatype.column.ColumnRenderSource;
+import com.seibel.lod.core.a7.datatype.transform.DataRenderTransformer;
 import com.seibel.lod.core.a7.level.IClientLevel;
 import com.seibel.lod.core.a7.pos.DhBlockPos2D;
 import com.seibel.lod.core.a7.pos.DhSectionPos;
 import com.seibel.lod.core.a7.save.io.render.IRenderSourceProvider;
 import com.seibel.lod.core.logging.DhLoggerBuilder;
-import com.seibel.lod.core.util.DetailDistanceUtil;
+import com.seibel.lod.core.objects.Pos2D;
 import com.seibel.lod.core.util.LodUtil;
 import com.seibel.lod.core.util.gridList.MovableGridRingList;
 import org.apache.logging.log4j.Logger;
 
+import java.util.ArrayList;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveAction;
+
 // QuadTree built from several layers of 2d ring buffers
 
 /**
@@ -22,7 +29,7 @@ import org.apache.logging.log4j.Logger;
  *      -by loading from file
  *      -by adding data with the lodBuilder
  */
-public class LodQuadTree {
+public class LodQuadTree implements DataRenderTransformer.SectionPriority {
 
     /**
      * Note: all config value should be via the class that extends this class, and
@@ -43,13 +50,55 @@ public class LodQuadTree {
     }
 
     private static final Logger LOGGER = DhLoggerBuilder.getLogger("LodQuadTree");
+    // Enough to keep the file and transformer threads busy without queueing far sections in front of near ones
+    private static final int MAX_IN_FLIGHT_LOADS = 64;
+    // Target levels of a ring list are only worked out in parallel when it has at least this many cells by default,
+    // and each parallel task gets at least this many cells
+    private static final int DEFAULT_PARALLEL_EVALUATION_MIN_CELLS = 64 * 64;
+    private static final int PARALLEL_EVALUATION_CHUNK_CELLS = 1024;
+    // A pool of its own instead of the common one, which the game and other mods fill with their own tasks that
+    // ticks would have to wait behind. Half the cores at most, so chunk building and the file handlers keep theirs.
+    private static final ForkJoinPool EVALUATION_POOL = new ForkJoinPool(
+            Math.max(1, Runtime.getRuntime().availableProcessors() / 2),
+            (pool) -> {
+                ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+                thread.setName("LodQuadTree-Evaluation-" + thread.getPoolIndex());
+                thread.setDaemon(true);
+                return thread;
+            }, null, false);
 
     public final byte numbersOfSectionLevels;
     private final MovableGridRingList<LodRenderSection>[] ringLists;
     public final int viewDistance;
-    private final IRenderSourceProvider renderSourceProvider;
+    private final DetailFalloffPolicy falloffPolicy;
+    private final SectionLoadScheduler loadScheduler;
 
     private final IClientLevel level; //FIXME: Proper hierarchy to remove this reference!
+    // Player position of the last tick, read by the transformer threads
+    private volatile DhBlockPos2D lastPlayerPos;
+
+    /* Following used to skip the section passes of tick() when they can't change anything */
+    // the player position the sections were last evaluated at
+    private DhBlockPos2D lastEvaluatedPos = null;
+    // true if the last evaluation neither created nor freed any section, so evaluating again at the same detail levels won't either
+    private boolean isTreeSettled = false;
+    private int sectionChangeCount = 0;
+    // Sections whose load or render buffer build finished, added from any thread. Only these are ticked.
+    private final ConcurrentLinkedQueue<LodRenderSection> changedSections = new ConcurrentLinkedQueue<>();
+    private final ArrayList<LodRenderSection> changedSectionsToTick = new ArrayList<>();
+    // Goes up whenever a changed section was ticked or sections were created, freed, split or merged
+    private long renderChangeCount = 0;
+    // The target detail level of each ring cell, by its index in the ring list, reused between ticks.
+    // Cells with a section use the merge level instead, which is only looked up for them.
+    private final byte[][] targetLevels;
+    private int parallelEvaluationMinCells = DEFAULT_PARALLEL_EVALUATION_MIN_CELLS;
+
+    /* Following used to track how often sections are split and merged */
+    private volatile long splitCount = 0;
+    private volatile long mergeCount = 0;
+    private long splitMergeWindowStartNanos = System.nanoTime();
+    private long splitMergeCountAtWindowStart = 0;
+    private volatile double splitMergeEventsPerSecond = 0;
 
     /**
      * Constructor of the quadTree
@@ -58,9 +107,20 @@ public class LodQuadTree {
      * @param initialPlayerZ player z coordinate
      */
     public LodQuadTree(IClientLevel level, int viewDistance, int initialPlayerX, int initialPlayerZ, IRenderSourceProvider provider) {
+        this(level, viewDistance, initialPlayerX, initialPlayerZ, provider, new CircularDetailFalloffPolicy());
+    }
+
+    /**
+     * @param falloffPolicy decides the detail level of each section. The tree is sized with it, so it can't be changed later.
+     */
+    public LodQuadTree(IClientLevel level, int viewDistance, int initialPlayerX, int initialPlayerZ, IRenderSourceProvider provider,
+                       DetailFalloffPolicy falloffPolicy) {
         this.level = level;
-        renderSourceProvider = provider;
+        loadScheduler = new SectionLoadScheduler(provider, MAX_IN_FLIGHT_LOADS, changedSections::offer);
         this.viewDistance = viewDistance;
+        this.falloffPolicy = falloffPolicy;
+        falloffPolicy.refresh();
+        lastPlayerPos = new DhBlockPos2D(initialPlayerX, initialPlayerZ);
 
         { // Calculate the max section detail
             byte maxDataDetailLevel = getMaxDetailInRange(viewDistance * Math.sqrt(2));
@@ -70,12 +130,15 @@ public class LodQuadTree {
         }
 
         { // Construct the ringLists
+            targetLevels = new byte[ringLists.length][];
             for (byte i = LAYER_BEGINNING_OFFSET; i < numbersOfSectionLevels; i++) {
                 byte targetDataDetail = getLayerDataDetail(i);
                 int maxDist = getFurthestDistance(targetDataDetail);
                 int halfSize = LodUtil.ceilDiv(maxDist, (1 << i) + 2);
                 ringLists[i - LAYER_BEGINNING_OFFSET] = new MovableGridRingList<>(halfSize,
                         initialPlayerX >> i, initialPlayerZ >> i);
+                int cellCount = ringLists[i - LAYER_BEGINNING_OFFSET].getSize() * ringLists[i - LAYER_BEGINNING_OFFSET].getSize();
+                targetLevels[i - LAYER_BEGINNING_OFFSET] = new byte[cellCount];
             }
         }
     }
@@ -112,6 +175,16 @@ public class LodQuadTree {
         return LAYER_BEGINNING_OFFSET;
     }
 
+    /** @return the level the sections are rendered in, which they need when render is enabled */
+    public IClientLevel getLevel() {
+        return level;
+    }
+
+    /** @return the player position of the last tick */
+    public DhBlockPos2D getPlayerPos() {
+        return lastPlayerPos;
+    }
+
     /**
      * This method return the LodSection at the given detail level and level coordinate x and z
      * @param detailLevel detail level of the section
@@ -124,40 +197,86 @@ public class LodQuadTree {
     }
 
     
+    @Override
+    public double getDistanceToPlayer(DhSectionPos pos) {
+        return lastPlayerPos.dist(pos.getCenter().getCenter());
+    }
+
+    @Override
+    public boolean isSectionInTree(DhSectionPos pos) {
+        if (pos.sectionDetail < LAYER_BEGINNING_OFFSET || pos.sectionDetail >= numbersOfSectionLevels) return false;
+        return getSection(pos) != null;
+    }
+
     /**
      * This method will compute the detail level based on player position and section pos
-     * Override this method if you want to use a different algorithm
+     * Pass a different {@link DetailFalloffPolicy} if you want to use a different algorithm
      * @param playerPos player position as a reference for calculating the detail level
      * @param sectionPos section position
      * @return detail level of this section pos
      */
     public byte calculateExpectedDetailLevel(DhBlockPos2D playerPos, DhSectionPos sectionPos) {
-        return DetailDistanceUtil.getDetailLevelFromDistance(
-                playerPos.dist(sectionPos.getCenter().getCenter()));
+        return falloffPolicy.getDetailLevel(playerPos, sectionPos);
+    }
+
+    /**
+     * Ring lists with at least this many cells have their target detail levels worked out in parallel
+     * on a fork-join pool shared by all trees, see {@link #tick(DhBlockPos2D, boolean)}.
+     */
+    public void setParallelEvaluationMinCells(int minCells) {
+        parallelEvaluationMinCells = minCells;
+    }
+
+    /**
+     * @return a count that goes up whenever a section was ticked after reporting a change, or sections were created,
+     * freed, split or merged. The render buffers only need updating when it changed.
+     */
+    public long getRenderChangeCount() {
+        return renderChangeCount;
+    }
+
+    /** Called whenever something the render buffers follow may have changed, see {@link #getRenderChangeCount}. */
+    protected void markRenderChanged() {
+        renderChangeCount++;
+    }
+
+    /** @return the number of times a section was split into its children since the tree was created */
+    public long getSplitCount() {
+        return splitCount;
+    }
+
+    /** @return the number of times a section's children were merged back into it since the tree was created */
+    public long getMergeCount() {
+        return mergeCount;
+    }
+
+    /** @return the splits and merges per second, averaged over the last second or so */
+    public double getSplitMergeEventsPerSecond() {
+        return splitMergeEventsPerSecond;
     }
 
     /**
      * The method will return the highest detail level in a circle around the center
-     * Override this method if you want to use a different algorithm
+     * Pass a different {@link DetailFalloffPolicy} if you want to use a different algorithm
      * Note: the returned distance should always be the ceiling estimation of the distance
      * //TODO: Make this input a bbox or a circle or something....
      * @param distance the circle radius
      * @return the highest detail level in the circle
      */
     public byte getMaxDetailInRange(double distance) {
-        return DetailDistanceUtil.getDetailLevelFromDistance(distance);
+        return falloffPolicy.getMaxDetailInRange(distance);
     }
 
     /**
      * The method will return the furthest distance to the center for the given detail level
-     * Override this method if you want to use a different algorithm
+     * Pass a different {@link DetailFalloffPolicy} if you want to use a different algorithm
      * Note: the returned distance should always be the ceiling estimation of the distance
      * //TODO: Make this return a bbox instead of a distance in circle
      * @param detailLevel detail level
      * @return the furthest distance to the center, in blocks
      */
     public int getFurthestDistance(byte detailLevel) {
-        return (int)Math.ceil(DetailDistanceUtil.getDrawDistanceFromDetail(detailLevel));
+        return falloffPolicy.getFurthestDistance(detailLevel);
     }
     
     /**
@@ -185,11 +304,33 @@ public class LodQuadTree {
      * @param playerPos the reference position for the player
      */
     public void tick(DhBlockPos2D playerPos) {
+        tick(playerPos, false);
+    }
+
+    /**
+     * Same as {@link #tick(DhBlockPos2D)}, but sections are only re-evaluated if the tree moved, the falloff changed,
+     *  the last tick didn't settle the tree, or a section crossed the distance at which it is split or merged.
+     *  Either way only the sections that reported a change since the last tick are ticked.
+     * @param forceFullUpdate re-evaluate every section regardless
+     */
+    public void tick(DhBlockPos2D playerPos, boolean forceFullUpdate) {
+        lastPlayerPos = playerPos;
+        boolean isFalloffChanged = falloffPolicy.refresh();
+        boolean isTreeMoved = false;
         for (int sectLevel = LAYER_BEGINNING_OFFSET; sectLevel < numbersOfSectionLevels; sectLevel++) {
-            ringLists[sectLevel - LAYER_BEGINNING_OFFSET]
+            isTreeMoved |= ringLists[sectLevel - LAYER_BEGINNING_OFFSET]
                     .move(playerPos.x >> sectLevel, playerPos.z >> sectLevel,
-                    LodRenderSection::dispose);
+                    this::disposeSection);
+        }
+        if (!forceFullUpdate && !isFalloffChanged && !isTreeMoved && isTreeSettled
+                && !isAnySplitChanged(lastEvaluatedPos, playerPos)) {
+            tickChangedSections();
+            loadScheduler.tick(playerPos);
+            updateSplitMergeRate();
+            return;
         }
+        lastEvaluatedPos = playerPos;
+        sectionChangeCount = 0;
 
         // First tick pass: update all sections' childCount from bottom level to top level. Step:
         //   If sectLevel is bottom && section != null:
@@ -202,7 +343,10 @@ public class LodQuadTree {
         //       - else if childCount == -1, set childCount = 0 (rescue it)
         //     - set childCount to 4
         //   Else:
-        //     - Calculate targetLevel at that section
+        //     - Calculate targetLevel at that section (with the merge distances if the section exists, so it isn't
+        //       freed again right after being created when the player is near the split distance)
+        //       (The target levels only depend on the player and the cell, so they are worked out for the whole
+        //       level beforehand, in parallel for big ring lists)
         //     - If sectLevel == numberOfSectionLevels - 1:
         //       - // Section is the top level.
         //       - If targetLevel > dataLevel@sectLevel && section != null:
@@ -227,20 +371,40 @@ public class LodQuadTree {
             final MovableGridRingList<LodRenderSection> parentRingList =
                     sectLevel == numbersOfSectionLevels - 1 ? null : ringLists[sectLevel - LAYER_BEGINNING_OFFSET + 1];
             final byte f_sectLevel = sectLevel;
-            ringList.forEachPosOrdered((section, pos) -> {
+            final int size = ringList.getSize();
+            final byte[] targets = targetLevels[sectLevel - LAYER_BEGINNING_OFFSET];
+            final boolean mergeBand = hasMergeBand(sectLevel);
+            computeTargetLevels(sectLevel, ringList, playerPos, targets);
+            ringList.forEachPosOrdered((section, x, z) -> {
                 if (f_sectLevel == 0 && section != null) {
                     section.childCount = 0;
                 }
+                if (section != null && section.childCount != 0 && !canHaveChildren(section.pos)) {
+                    // Some children fell out of the ring list below when it moved, so the section has to be a leaf again
+                    for (byte i = 0; i < 4; i++) {
+                        LodRenderSection child = getChildSection(section.pos, i);
+                        if (child != null) markFreed(child);
+                    }
+                    section.childCount = 0;
+                    sectionChangeCount++;
+                }
                 if (section != null && section.childCount != 0) {
                     // Section will be in the unloaded state.
-                    LodUtil.assertTrue(parentRingList != null);
-                    LodRenderSection parent = parentRingList.get(pos.x >> 1, pos.y >> 1);
-                    if (parent == null) {
-                        parent = parentRingList.setChained(pos.x >> 1, pos.y >> 1,
-                                new LodRenderSection(section.pos.getParent()));
-                        parent.childCount++;
+                    // (The top level has no parents, but its sections can still have children)
+                    if (parentRingList != null) {
+                        LodRenderSection parent = parentRingList.get(x >> 1, z >> 1);
+                        if (parent == null) {
+                            parent = parentRingList.setChained(x >> 1, z >> 1,
+                                    new LodRenderSection(section.pos.getParent()));
+                            sectionChangeCount++;
+                        }
+                        // The parent may still be a leaf if this section was only just created by its own children
+                        if (parent.childCount == 0) {
+                            parent.childCount++;
+                            sectionChangeCount++;
+                        }
+                        LodUtil.assertTrue(parent.childCount <= 4 && parent.childCount > 0);
                     }
-                    LodUtil.assertTrue(parent.childCount <= 4 && parent.childCount > 0);
                     for (byte i = 0; i < 4; i++) {
                         DhSectionPos childPos = section.pos.getChild(i);
                         LodRenderSection child = childRingList.get(childPos.sectionX, childPos.sectionZ);
@@ -248,41 +412,48 @@ public class LodQuadTree {
                             child = childRingList.setChained(childPos.sectionX, childPos.sectionZ,
                                     new LodRenderSection(childPos));
                             child.childCount = 0;
+                            sectionChangeCount++;
                         } else if (child.childCount == -1) {
                             child.childCount = 0;
                         }
                     }
                     section.childCount = 4;
                 } else {
-                    DhSectionPos sectPos = section != null ? section.pos : new DhSectionPos(f_sectLevel, pos.x, pos.y);
-                    byte targetLevel = calculateExpectedDetailLevel(playerPos, sectPos);
+                    int targetIndex = Math.floorMod(x, size) + Math.floorMod(z, size) * size;
+                    // Only existing sections can merge, which are far fewer than the cells
+                    byte targetLevel = section != null && mergeBand ?
+                            falloffPolicy.getMergeDetailLevel(playerPos, f_sectLevel, x, z) : targets[targetIndex];
                     if (f_sectLevel == numbersOfSectionLevels -1) {
                         // Section is in the top level.
                         if (targetLevel > getLayerDataDetail(f_sectLevel) && section != null) {
                             section.childCount = -1;
                         }
                         if (targetLevel <= getLayerDataDetail(f_sectLevel) && section == null) {
-                            section = ringList.setChained(pos.x, pos.y,
-                                    new LodRenderSection(sectPos));
+                            section = ringList.setChained(x, z,
+                                    new LodRenderSection(new DhSectionPos(f_sectLevel, x, z)));
+                            sectionChangeCount++;
                         }
                     } else {
                         // Section is not the top level. So we also need to consider the parent.
                         if (targetLevel >= getLayerDataDetail((byte) (f_sectLevel+1)) && section != null) {
                             LodUtil.assertTrue(parentRingList != null);
-                            LodRenderSection parent = parentRingList.get(pos.x >> 1, pos.y >> 1);
+                            LodRenderSection parent = parentRingList.get(x >> 1, z >> 1);
                             LodUtil.assertTrue(parent != null);
                             LodUtil.assertTrue(parent.childCount <= 4 && parent.childCount > 0);
                             parent.childCount--;
                             section.childCount = -1;
                         }
-                        if (targetLevel < getLayerDataDetail((byte) (f_sectLevel+1)) && section == null) {
-                            section = ringList.setChained(pos.x, pos.y,
-                                    new LodRenderSection(sectPos));
+                        if (targetLevel < getLayerDataDetail((byte) (f_sectLevel+1)) && section == null
+                                && canHaveChildren((byte) (f_sectLevel + 1), x >> 1, z >> 1)) {
+                            section = ringList.setChained(x, z,
+                                    new LodRenderSection(new DhSectionPos(f_sectLevel, x, z)));
+                            sectionChangeCount++;
                             LodUtil.assertTrue(parentRingList != null);
-                            LodRenderSection parent = parentRingList.get(pos.x >> 1, pos.y >> 1);
+                            LodRenderSection parent = parentRingList.get(x >> 1, z >> 1);
                             if (parent == null) {
-                                parent = parentRingList.setChained(pos.x >> 1, pos.y >> 1,
-                                        new LodRenderSection(sectPos.getParent()));
+                                parent = parentRingList.setChained(x >> 1, z >> 1,
+                                        new LodRenderSection(section.pos.getParent()));
+                                sectionChangeCount++;
                             }
                             parent.childCount++;
                         }
@@ -291,8 +462,8 @@ public class LodQuadTree {
                 // Final quick assert to insure section pos is correct.
                 if (section != null) {
                     LodUtil.assertTrue(section.pos.sectionDetail == f_sectLevel);
-                    LodUtil.assertTrue(section.pos.sectionX == pos.x);
-                    LodUtil.assertTrue(section.pos.sectionZ == pos.y);
+                    LodUtil.assertTrue(section.pos.sectionX == x);
+                    LodUtil.assertTrue(section.pos.sectionZ == z);
                 }
             });
         }
@@ -306,10 +477,10 @@ public class LodQuadTree {
         //   if childCount == 0 assert all children are null
         //   if childCount == -1 assert parent childCount is 0
         //   // ======================
-        //   if childCount == 4 && section is loaded:
-        //     - unload section
+        //   (Rendering is switched on and off by the RenderBufferHandler, which keeps a section drawn until its
+        //    children, or its parent, are ready to replace it)
         //   if childCount == 0 && section is unloaded:
-        //     - load section
+        //     - queue the section in the load scheduler, which loads the nearest ones first
         //   if childCount == -1: // (section can be loaded or unloaded, due to fast movement)
         //     - set this section to null (TODO: Is this needed to be first or last or don't matter for concurrency?)
         //     - If loaded unload section
@@ -317,8 +488,10 @@ public class LodQuadTree {
             final MovableGridRingList<LodRenderSection> ringList = ringLists[sectLevel - LAYER_BEGINNING_OFFSET];
             final MovableGridRingList<LodRenderSection> childRingList =
                     sectLevel == LAYER_BEGINNING_OFFSET ? null : ringLists[sectLevel - LAYER_BEGINNING_OFFSET - 1];
+            final MovableGridRingList<LodRenderSection> parentRingList =
+                    sectLevel == numbersOfSectionLevels - 1 ? null : ringLists[sectLevel - LAYER_BEGINNING_OFFSET + 1];
             final boolean doCascade = false; // TODO: Utilize this cascade mode or at least expose this option
-            ringList.forEachPosOrdered((section, pos) -> {
+            ringList.forEachPosOrdered((section, x, z) -> {
                 if (section == null) return;
 
                 // Cascade layers
@@ -332,6 +505,7 @@ public class LodQuadTree {
                             child = childRingList.setChained(childPos.sectionX, childPos.sectionZ,
                                     new LodRenderSection(childPos));
                             child.childCount = 0;
+                            sectionChangeCount++;
                         } else {
                             LodUtil.assertTrue(child.childCount == -1,
                                     "Self has child count 0 but an existing child's child count != -1!");
@@ -348,27 +522,248 @@ public class LodQuadTree {
                                 getChildSection(section.pos, 1) != null &&
                                 getChildSection(section.pos, 2) != null &&
                                 getChildSection(section.pos, 3) != null);
-                if (section.childCount == 0) LodUtil.assertTrue(
-                        getChildSection(section.pos, 0) == null &&
-                                getChildSection(section.pos, 1) == null &&
-                                getChildSection(section.pos, 2) == null &&
-                                getChildSection(section.pos, 3) == null);
-                if (section.childCount == -1) LodUtil.assertTrue(
-                        getParentSection(section.pos).childCount == 0);
-
-                // Call load on new sections, and tick on existing ones, and dispose old sections
+                // Children that are about to be freed are only removed once their own level is reached
+                if (section.childCount == 0 && childRingList != null) LodUtil.assertTrue(
+                        isNullOrFreed(getChildSection(section.pos, 0)) &&
+                                isNullOrFreed(getChildSection(section.pos, 1)) &&
+                                isNullOrFreed(getChildSection(section.pos, 2)) &&
+                                isNullOrFreed(getChildSection(section.pos, 3)));
+                if (section.childCount == -1 && parentRingList != null) {
+                    LodRenderSection parent = getParentSection(section.pos);
+                    LodUtil.assertTrue(parent == null || parent.childCount == 0);
+                }
+
+                // Call load on new sections, and dispose old sections. Loaded sections are ticked once they report a change.
                 if (section.childCount == -1) {
-                    ringList.set(pos.x, pos.y, null);
-                    section.dispose();
+                    if (section.isSplit) mergeCount++;
+                    ringList.set(x, z, null);
+                    disposeSection(section);
+                    sectionChangeCount++;
                 } else {
+                    if (section.isSplit != (section.childCount == 4)) {
+                        markRenderChanged();
+                        section.isSplit = section.childCount == 4;
+                        if (section.isSplit) splitCount++;
+                        else mergeCount++;
+                    }
                     if (!section.isLoaded() && !section.isLoading()) {
-                        section.load(renderSourceProvider);
+                        loadScheduler.requestLoad(section);
                     }
-                    if (section.childCount == 4) section.enableRender(level, this);
-                    if (section.childCount == 0) section.disableRender();
-                    section.tick(this);
                 }
             });
         }
+        // A pass that changed no section left every childCount as it found it, so the next one would change nothing either
+        isTreeSettled = sectionChangeCount == 0;
+        if (sectionChangeCount != 0) markRenderChanged();
+        tickChangedSections();
+        loadScheduler.tick(playerPos);
+        updateSplitMergeRate();
+    }
+
+    /** @return the detail level below which the first tick pass keeps a section of the level (or splits its parent) */
+    private byte getSplitDetail(byte sectLevel) {
+        return sectLevel == numbersOfSectionLevels - 1 ?
+                (byte) (getLayerDataDetail(sectLevel) + 1) : getLayerDataDetail((byte) (sectLevel + 1));
+    }
+
+    /** @return true if the sections of the level may be merged at a different distance than they are split at */
+    private boolean hasMergeBand(byte sectLevel) {
+        // The first pass only compares the target level against the level at which the section splits
+        byte splitDetail = getSplitDetail(sectLevel);
+        long splitDistSquared = falloffPolicy.getDetailStartDistanceSquared(splitDetail);
+        return splitDistSquared < 0 || falloffPolicy.getMergeStartDistanceSquared(splitDetail) != splitDistSquared;
+    }
+
+    /** Fills the target detail levels of every cell of the ring list, indexed the same way the ring list stores them. */
+    private void computeTargetLevels(byte sectLevel, MovableGridRingList<LodRenderSection> ringList, DhBlockPos2D playerPos,
+                                     byte[] targets) {
+        Pos2D min = ringList.getMinInRange();
+        int size = ringList.getSize();
+        if (size * size < parallelEvaluationMinCells) {
+            computeTargetLevels(sectLevel, min, size, playerPos, targets, 0, size);
+        } else {
+            EVALUATION_POOL.invoke(new TargetLevelTask(sectLevel, min, size, playerPos, targets, 0, size));
+        }
+    }
+
+    private void computeTargetLevels(byte sectLevel, Pos2D min, int size, DhBlockPos2D playerPos,
+                                     byte[] targets, int fromRow, int toRow) {
+        for (int z = min.y + fromRow; z < min.y + toRow; z++) {
+            int rowIndex = Math.floorMod(z, size) * size;
+            for (int x = min.x; x < min.x + size; x++) {
+                int index = Math.floorMod(x, size) + rowIndex;
+                targets[index] = falloffPolicy.getDetailLevel(playerPos, sectLevel, x, z);
+            }
+        }
+    }
+
+    /** Splits the rows of a ring list until each part has about {@link #PARALLEL_EVALUATION_CHUNK_CELLS} cells. */
+    private class TargetLevelTask extends RecursiveAction {
+        final byte sectLevel;
+        final Pos2D min;
+        final int size;
+        final DhBlockPos2D playerPos;
+        final byte[] targets;
+        final int fromRow;
+        final int toRow;
+
+        TargetLevelTask(byte sectLevel, Pos2D min, int size, DhBlockPos2D playerPos,
+                        byte[] targets, int fromRow, int toRow) {
+            this.sectLevel = sectLevel;
+            this.min = min;
+            this.size = size;
+            this.playerPos = playerPos;
+            this.targets = targets;
+            this.fromRow = fromRow;
+            this.toRow = toRow;
+        }
+
+        @Override
+        protected void compute() {
+            if (toRow - fromRow <= 1 || (toRow - fromRow) * size <= PARALLEL_EVALUATION_CHUNK_CELLS) {
+                computeTargetLevels(sectLevel, min, size, playerPos, targets, fromRow, toRow);
+                return;
+            }
+            int midRow = (fromRow + toRow) >>> 1;
+            invokeAll(new TargetLevelTask(sectLevel, min, size, playerPos, targets, fromRow, midRow),
+                    new TargetLevelTask(sectLevel, min, size, playerPos, targets, midRow, toRow));
+        }
+    }
+
+    private void disposeSection(LodRenderSection section) {
+        loadScheduler.cancel(section);
+        section.dispose();
+        markRenderChanged();
+    }
+
+    private void updateSplitMergeRate() {
+        long now = System.nanoTime();
+        long elapsedNanos = now - splitMergeWindowStartNanos;
+        if (elapsedNanos < 1_000_000_000L) return;
+        long eventCount = splitCount + mergeCount;
+        long windowEventCount = eventCount - splitMergeCountAtWindowStart;
+        splitMergeEventsPerSecond = windowEventCount * 1e9 / elapsedNanos;
+        if (windowEventCount != 0) {
+            LOGGER.debug("Sections split or merged {} times in the last {} ms ({} split, {} merged in total)",
+                    windowEventCount, elapsedNanos / 1_000_000, splitCount, mergeCount);
+        }
+        splitMergeWindowStartNanos = now;
+        splitMergeCountAtWindowStart = eventCount;
+    }
+
+    /**
+     * @return true if all children of the section fit in the ring list below it, and the same holds for all its parents,
+     * which have to be split as well for the section to exist
+     */
+    private boolean canHaveChildren(DhSectionPos pos) {
+        return canHaveChildren(pos.sectionDetail, pos.sectionX, pos.sectionZ);
+    }
+
+    private boolean canHaveChildren(byte sectionDetail, int sectionX, int sectionZ) {
+        if (sectionDetail == LAYER_BEGINNING_OFFSET) return false;
+        MovableGridRingList<LodRenderSection> childRingList = ringLists[sectionDetail - LAYER_BEGINNING_OFFSET - 1];
+        if (!childRingList.inRange(sectionX * 2, sectionZ * 2)
+                || !childRingList.inRange(sectionX * 2 + 1, sectionZ * 2 + 1)) return false;
+        return sectionDetail == numbersOfSectionLevels - 1
+                || canHaveChildren((byte) (sectionDetail + 1), sectionX >> 1, sectionZ >> 1);
+    }
+
+    /** Marks the section and everything below it to be freed by the second tick pass. */
+    private void markFreed(LodRenderSection section) {
+        if (section.childCount > 0) {
+            for (byte i = 0; i < 4; i++) {
+                LodRenderSection child = getChildSection(section.pos, i);
+                if (child != null) markFreed(child);
+            }
+        }
+        section.childCount = -1;
+    }
+
+    private static boolean isNullOrFreed(LodRenderSection section) {
+        return section == null || section.childCount == -1;
+    }
+
+    /**
+     * Ticks the sections that reported a change since the last call. Changes reported while doing so wait for the next call.
+     * Sections whose load failed are queued to be loaded again.
+     */
+    private void tickChangedSections() {
+        LodRenderSection changed;
+        while ((changed = changedSections.poll()) != null) {
+            changedSectionsToTick.add(changed);
+        }
+        for (LodRenderSection section : changedSectionsToTick) {
+            if (section.getState() == ESectionState.Disposed) continue;
+            section.tick(this);
+            markRenderChanged();
+            if (section.getState() == ESectionState.Unloaded) {
+                loadScheduler.requestLoad(section);
+            }
+        }
+        changedSectionsToTick.clear();
+    }
+
+    /**
+     * Checks if any section would be split or merged differently seen from the new position than from the old one.
+     * A section's distance changes by at most the distance moved, so only the sections in a ring around each
+     *  level's split distance need checking.
+     */
+    private boolean isAnySplitChanged(DhBlockPos2D oldPos, DhBlockPos2D newPos) {
+        if (oldPos.x == newPos.x && oldPos.z == newPos.z) return false;
+        double movedDist = oldPos.dist(newPos);
+        for (byte sectLevel = LAYER_BEGINNING_OFFSET; sectLevel < numbersOfSectionLevels; sectLevel++) {
+            byte splitDetail = getSplitDetail(sectLevel);
+            long splitDistSquared = falloffPolicy.getDetailStartDistanceSquared(splitDetail);
+            if (splitDistSquared < 0) return true;
+            if (isAnySplitChanged(oldPos, newPos, movedDist, sectLevel, splitDistSquared)) return true;
+
+            // Existing sections are only merged at the merge distance
+            long mergeDistSquared = falloffPolicy.getMergeStartDistanceSquared(splitDetail);
+            if (mergeDistSquared < 0) return true;
+            if (mergeDistSquared != splitDistSquared
+                    && isAnySplitChanged(oldPos, newPos, movedDist, sectLevel, mergeDistSquared)) return true;
+        }
+        return false;
+    }
+
+    private boolean isAnySplitChanged(DhBlockPos2D oldPos, DhBlockPos2D newPos, double movedDist, byte sectLevel,
+                                      long splitDistSquared) {
+        if (splitDistSquared == 0 || splitDistSquared == Long.MAX_VALUE) return false;
+
+        // Padded by a section width, as the ring is walked by the sections' corners
+        int sectionWidth = 1 << sectLevel;
+        double splitDist = Math.sqrt(splitDistSquared);
+        double innerDist = Math.max(0, splitDist - movedDist - sectionWidth);
+        double outerDist = splitDist + movedDist + sectionWidth;
+
+        MovableGridRingList<LodRenderSection> ringList = ringLists[sectLevel - LAYER_BEGINNING_OFFSET];
+        Pos2D min = ringList.getMinInRange();
+        Pos2D max = ringList.getMaxInRange();
+        int minZ = Math.max(min.y, Math.floorDiv((int) Math.floor(oldPos.z - outerDist), sectionWidth));
+        int maxZ = Math.min(max.y, Math.floorDiv((int) Math.ceil(oldPos.z + outerDist), sectionWidth));
+        for (int z = minZ; z <= maxZ; z++) {
+            double offsetZ = Math.max(0, Math.abs((z << sectLevel) + (sectionWidth >> 1) - oldPos.z) - (sectionWidth >> 1));
+            if (offsetZ > outerDist) continue;
+            double outerX = Math.sqrt(outerDist * outerDist - offsetZ * offsetZ);
+            double innerX = innerDist > offsetZ ? Math.sqrt(innerDist * innerDist - offsetZ * offsetZ) : 0;
+            if (isSplitChanged(oldPos, newPos, splitDistSquared, sectLevel, z, oldPos.x - outerX, oldPos.x - innerX, min.x, max.x)
+                    || isSplitChanged(oldPos, newPos, splitDistSquared, sectLevel, z, oldPos.x + innerX, oldPos.x + outerX, min.x, max.x)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isSplitChanged(DhBlockPos2D oldPos, DhBlockPos2D newPos, long splitDistSquared, byte sectLevel, int z,
+                                          double fromBlockX, double toBlockX, int minX, int maxX) {
+        int fromX = Math.max(minX, Math.floorDiv((int) Math.floor(fromBlockX), 1 << sectLevel));
+        int toX = Math.min(maxX, Math.floorDiv((int) Math.ceil(toBlockX), 1 << sectLevel));
+        for (int x = fromX; x <= toX; x++) {
+            int centerX = DhSectionPos.getCenterBlock(sectLevel, x);
+            int centerZ = DhSectionPos.getCenterBlock(sectLevel, z);
+            if ((oldPos.distSquared(centerX, centerZ) >= splitDistSquared)
+                    != (newPos.distSquared(centerX, centerZ) >= splitDistSquared)) return true;
+        }
+        return false;
     }
 }
@@ -4,22 +4,44 @@ import com.seibel.lod.core.a7.level.IClientLevel;
 import com.seibel.lod.core.a7.pos.DhSectionPos;
 import com.seibel.lod.core.a7.datatype.LodRenderSource;
 import com.seibel.lod.core.a7.save.io.render.IRenderSourceProvider;
+import com.seibel.lod.core.logging.DhLoggerBuilder;
+import org.apache.logging.log4j.Logger;
 
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
 
+/**
+ * A section of the {@link LodQuadTree}, which goes through the states of {@link ESectionState}. <br>
+ * Instead of the tree polling every section, the section's load and render buffer builds report their completion
+ * to the listener given to {@link #load}, and the tree only calls {@link #tick} for the sections that reported.
+ */
 public class LodRenderSection {
+    private static final Logger LOGGER = DhLoggerBuilder.getLogger();
+
     public final DhSectionPos pos;
 
     /* Following used for LodQuadTree tick() method, and ONLY for that method! */
     // the number of children of this section
     // (Should always be 4 after tick() is done, or 0 only if this is an unloaded node)
     public byte childCount = 0;
+    // whether the section had all its children at the end of the last tick(), used to count splits and merges
+    public boolean isSplit = false;
 
     // TODO: Should I provide a way to change the render source?
     private LodRenderSource lodRenderSource;
     private CompletableFuture<LodRenderSource> loadFuture;
+    private IRenderSourceProvider renderSourceProvider;
     private boolean isRenderEnabled = false;
     private IClientLevel level; //FIXME: Hack to pass level into enableRender() for renderSource
+    private volatile ESectionState state = ESectionState.Unloaded;
+    // The number of loads that failed in a row
+    private int failedLoadCount = 0;
+
+    private volatile Consumer<LodRenderSection> changeListener = null;
+    // Set while the section waits for its tick() after a change, so it is only reported once
+    private final AtomicBoolean isChangeReported = new AtomicBoolean(false);
 
     // Create sub region
     public LodRenderSection(DhSectionPos pos) {
@@ -33,6 +55,7 @@ public class LodRenderSection {
         }
         this.level = level;
         isRenderEnabled = true;
+        refreshState();
     }
     public void disableRender() {
         if (!isRenderEnabled) return;
@@ -41,33 +64,96 @@ public class LodRenderSection {
             lodRenderSource.disableRender();
         }
         isRenderEnabled = false;
+        refreshState();
     }
 
     public void load(IRenderSourceProvider renderDataProvider) {
+        load(renderDataProvider, null);
+    }
+
+    /** @param changeListener called from any thread when the section needs a {@link #tick}, at most once per tick */
+    public void load(IRenderSourceProvider renderDataProvider, Consumer<LodRenderSection> changeListener) {
         if (loadFuture != null || lodRenderSource != null) throw new IllegalStateException("Reloading is not supported!");
+        if (state == ESectionState.Disposed) return;
+        renderSourceProvider = renderDataProvider;
+        this.changeListener = changeListener;
+        state = ESectionState.Loading;
         loadFuture = renderDataProvider.read(pos);
+        loadFuture.whenComplete((source, e) -> reportChange());
     }
 
+    private void reportChange() {
+        Consumer<LodRenderSection> listener = changeListener;
+        if (listener != null && isChangeReported.compareAndSet(false, true)) listener.accept(this);
+    }
+
+    /** Takes in whatever finished since the last call. Only needs calling after the section reported a change. */
     public void tick(LodQuadTree quadTree) {
+        isChangeReported.set(false);
+        if (state == ESectionState.Disposed) return;
         if (loadFuture != null && loadFuture.isDone()) {
-            lodRenderSource = loadFuture.join();
+            CompletableFuture<LodRenderSource> future = loadFuture;
             loadFuture = null;
+            try {
+                lodRenderSource = future.join();
+            } catch (Exception e) {
+                LOGGER.warn("Failed to load section {}, it will be retried:", pos, e);
+                failedLoadCount++;
+                state = ESectionState.Unloaded;
+                return;
+            }
+            failedLoadCount = 0;
+            lodRenderSource.setChangeListener(this::reportChange);
             if (isRenderEnabled) {
                 lodRenderSource.enableRender(level, quadTree);
             }
         }
+        refreshState();
+    }
+
+    private void refreshState() {
+        if (state == ESectionState.Disposed || lodRenderSource == null) return;
+        if (lodRenderSource.isRenderReady()) {
+            state = ESectionState.Ready;
+        } else if (lodRenderSource.isBuildingRenderBuffer()) {
+            state = ESectionState.Building;
+        } else {
+            state = ESectionState.Loaded;
+        }
     }
 
     public void dispose() {
+        state = ESectionState.Disposed;
+        changeListener = null;
         if (lodRenderSource != null) {
+            lodRenderSource.setChangeListener(null);
             lodRenderSource.dispose();
         } else if (loadFuture != null) {
             loadFuture.cancel(true);
         }
+        if (renderSourceProvider != null) renderSourceProvider.unload(pos);
+    }
+
+    /** Same as {@link LodRenderSource#trySwapRenderBuffer}, keeping the section's state up to date. */
+    public boolean trySwapRenderBuffer(LodQuadTree quadTree, AtomicReference<RenderBuffer> referenceSlot,
+                                       RenderBufferReclaimer reclaimer) {
+        if (lodRenderSource == null) return false;
+        boolean swapped = lodRenderSource.trySwapRenderBuffer(quadTree, referenceSlot, reclaimer);
+        refreshState();
+        return swapped;
+    }
+
+    /** @return the number of times in a row the section failed to load, so retries can be spaced out */
+    public int getFailedLoadCount() {
+        return failedLoadCount;
+    }
+
+    public ESectionState getState() {
+        return state;
     }
 
     public boolean canRender() {
-        return isLoaded() && lodRenderSource.isRenderReady();
+        return state == ESectionState.Ready;
     }
 
     public boolean isLoaded() {
@@ -75,7 +161,12 @@ public class LodRenderSection {
     }
 
     public boolean isLoading() {
-        return loadFuture != null;
+        return state == ESectionState.Loading;
+    }
+
+    /** @return true if the load was started and its future isn't done yet, unlike {@link #isLoading} which waits for tick() */
+    public boolean isLoadInFlight() {
+        return loadFuture != null && !loadFuture.isDone();
     }
 
     public LodRenderSource getRenderContainer() {
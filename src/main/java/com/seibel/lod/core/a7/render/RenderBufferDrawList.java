@@ -0,0 +1,104 @@
+package com.seibel.lod.core.a7.render;
+
+import com.seibel.lod.core.a7.pos.DhBlockPos2D;
+import com.seibel.lod.core.a7.pos.DhSectionPos;
+import com.seibel.lod.core.render.LodRenderProgram;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * The render buffers to draw in a frame, nearest first, with their bounding boxes. <br>
+ * Built by the tick thread and never changed once built, so the render thread can draw it without any locking.
+ * Drawing front to back lets the depth test skip what is hidden behind nearer buffers.
+ */
+public final class RenderBufferDrawList {
+    public static final RenderBufferDrawList EMPTY = new RenderBufferDrawList(new RenderBuffer[0], new int[0]);
+
+    private static final int BOX_SIZE = 6;
+
+    private final RenderBuffer[] buffers;
+    // minX, minY, minZ, maxX, maxY, maxZ of each buffer in blocks, the x and z max exclusive
+    private final int[] boundingBoxes;
+
+    private RenderBufferDrawList(RenderBuffer[] buffers, int[] boundingBoxes) {
+        this.buffers = buffers;
+        this.boundingBoxes = boundingBoxes;
+    }
+
+    public void render(LodRenderProgram renderContext) {
+        for (RenderBuffer buffer : buffers) {
+            buffer.render(renderContext);
+        }
+    }
+
+    public int size() {
+        return buffers.length;
+    }
+
+    public RenderBuffer getBuffer(int index) {
+        return buffers[index];
+    }
+
+    public int getMinX(int index) { return boundingBoxes[index * BOX_SIZE]; }
+    public int getMinY(int index) { return boundingBoxes[index * BOX_SIZE + 1]; }
+    public int getMinZ(int index) { return boundingBoxes[index * BOX_SIZE + 2]; }
+    public int getMaxX(int index) { return boundingBoxes[index * BOX_SIZE + 3]; }
+    public int getMaxY(int index) { return boundingBoxes[index * BOX_SIZE + 4]; }
+    public int getMaxZ(int index) { return boundingBoxes[index * BOX_SIZE + 5]; }
+
+    /** Collects the buffers of a new list. Not thread safe. */
+    public static final class Builder {
+        private final ArrayList<RenderBuffer> buffers = new ArrayList<>();
+        private int[] boxes = new int[64 * BOX_SIZE];
+
+        /** Adds the buffer of a section. minY and maxY are the height bounds of the section's render source. */
+        public void add(RenderBuffer buffer, DhSectionPos pos, int minY, int maxY) {
+            int index = buffers.size();
+            if ((index + 1) * BOX_SIZE > boxes.length) boxes = Arrays.copyOf(boxes, boxes.length * 2);
+            int width = 1 << pos.sectionDetail;
+            int boxIndex = index * BOX_SIZE;
+            boxes[boxIndex] = pos.sectionX * width;
+            boxes[boxIndex + 1] = minY;
+            boxes[boxIndex + 2] = pos.sectionZ * width;
+            boxes[boxIndex + 3] = pos.sectionX * width + width;
+            boxes[boxIndex + 4] = maxY;
+            boxes[boxIndex + 5] = pos.sectionZ * width + width;
+            buffers.add(buffer);
+        }
+
+        /** @return the buffers added so far, sorted by the horizontal distance of their boxes to viewPos */
+        public RenderBufferDrawList build(DhBlockPos2D viewPos) {
+            int count = buffers.size();
+            Integer[] order = new Integer[count];
+            long[] distSquared = new long[count];
+            for (int i = 0; i < count; i++) {
+                order[i] = i;
+                int boxIndex = i * BOX_SIZE;
+                long dx = distanceToRange(viewPos.x, boxes[boxIndex], boxes[boxIndex + 3]);
+                long dz = distanceToRange(viewPos.z, boxes[boxIndex + 2], boxes[boxIndex + 5]);
+                distSquared[i] = dx * dx + dz * dz;
+            }
+            Arrays.sort(order, (a, b) -> Long.compare(distSquared[a], distSquared[b]));
+
+            RenderBuffer[] sortedBuffers = new RenderBuffer[count];
+            int[] sortedBoxes = new int[count * BOX_SIZE];
+            for (int i = 0; i < count; i++) {
+                int from = order[i];
+                sortedBuffers[i] = buffers.get(from);
+                System.arraycopy(boxes, from * BOX_SIZE, sortedBoxes, i * BOX_SIZE, BOX_SIZE);
+            }
+            return new RenderBufferDrawList(sortedBuffers, sortedBoxes);
+        }
+
+        public void clear() {
+            buffers.clear();
+        }
+
+        private static long distanceToRange(int value, int min, int maxExclusive) {
+            if (value < min) return min - (long) value;
+            if (value >= maxExclusive) return (long) value - maxExclusive + 1;
+            return 0;
+        }
+    }
+}
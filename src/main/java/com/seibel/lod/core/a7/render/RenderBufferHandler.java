@@ -1,6 +1,7 @@
 package com.seibel.lod.core.a7.render;
 
 import com.seibel.lod.core.a7.datatype.LodRenderSource;
+import com.seibel.lod.core.a7.pos.DhBlockPos2D;
 import com.seibel.lod.core.objects.Pos2D;
 import com.seibel.lod.core.a7.pos.DhSectionPos;
 import com.seibel.lod.core.render.LodRenderProgram;
@@ -9,83 +10,146 @@ import com.seibel.lod.core.util.gridList.MovableGridRingList;
 
 import java.util.concurrent.atomic.AtomicReference;
 
+/**
+ * Keeps a tree of render buffers in step with the sections of a {@link LodQuadTree}. <br>
+ * The tree is only used by the tick thread. The render thread draws the flat {@link RenderBufferDrawList} built
+ * from it, which is only rebuilt when a buffer is swapped, added or dropped, or when the player moved far enough
+ * to change the draw order. The nodes are only updated after the tree reported a change, see
+ * {@link LodQuadTree#getRenderChangeCount}, or once a split section's children are due to be built.
+ */
 public class RenderBufferHandler {
+    // How far the player can move before the draw list is sorted again
+    private static final int DRAW_ORDER_RESORT_DISTANCE = 16;
+
     public final LodQuadTree target;
     private final MovableGridRingList<RenderBufferNode> renderBufferNodes;
+    // Buffers taken out of the nodes are only closed once the render thread can't be drawing them anymore
+    private final RenderBufferReclaimer reclaimer = new RenderBufferReclaimer();
+    private volatile boolean isClosed = false;
+
+    private volatile RenderBufferDrawList drawList = RenderBufferDrawList.EMPTY;
+    private final RenderBufferDrawList.Builder drawListBuilder = new RenderBufferDrawList.Builder();
+    private boolean isDrawListDirty = false;
+    private DhBlockPos2D drawListViewPos = null;
+    // The tree's render change count when the nodes were last updated
+    private long updatedRenderChangeCount = -1;
+    // When the nodes have to be updated again even without a change, for the children of split sections
+    private long nextDelayedUpdateNanos = Long.MAX_VALUE;
+
+    // How long a section has to stay split before its children's buffers are built. A split that is undone
+    //  within this time (the player moving back and forth over a split distance) never builds the children.
+    private static final long CHILD_BUILD_DELAY_NANOS = 500_000_000L;
 
     class RenderBufferNode implements AutoCloseable {
         public final DhSectionPos pos;
-        public volatile RenderBufferNode[] children = null;
-        public AtomicReference<RenderBuffer> renderBufferSlot = null;
+        public RenderBufferNode[] children = null;
+        public final AtomicReference<RenderBuffer> renderBufferSlot = new AtomicReference<>();
+        // Height bounds of the section's render source when the buffer was swapped in
+        private int bufferMinY = 0;
+        private int bufferMaxY = 0;
+        // True once the children are drawn instead of this node's own buffer
+        private boolean isShowingChildren = false;
+        // When the section was first seen split, or -1 if it isn't split
+        private long splitSinceNanos = -1;
+        // True if the node draws everything it ever will for its section, so it can take its parent's place
+        private boolean isSettled = false;
 
         public RenderBufferNode(DhSectionPos pos) {
             this.pos = pos;
         }
 
-        public void render(LodRenderProgram renderContext) {
+        /** Adds what this node draws to the draw list. */
+        public void collect(RenderBufferDrawList.Builder builder) {
             RenderBuffer buff = renderBufferSlot.get();
-            if (buff != null) {
-                buff.render(renderContext);
-            } else {
-                RenderBufferNode[] childs = children;
-                if (childs != null) {
-                    for (RenderBufferNode child : childs) {
-                        child.render(renderContext);
-                    }
+            if (children != null && (isShowingChildren || buff == null)) {
+                for (RenderBufferNode child : children) {
+                    child.collect(builder);
                 }
+            } else if (buff != null && bufferMinY <= bufferMaxY) {
+                builder.add(buff, pos, bufferMinY, bufferMaxY);
             }
         }
 
-        //TODO: In the future make this logic a bit more complex so that when children are just created,
-        //      the buffer is only unloaded if all children's buffers are ready. This will make the
-        //      transition between buffers no longer causing any flicker.
-        public void update() {
+        private void trySwapRenderBuffer(LodRenderSection section) {
+            if (section.trySwapRenderBuffer(target, renderBufferSlot, reclaimer)) {
+                LodRenderSource source = section.getRenderContainer();
+                bufferMinY = source.getMinY();
+                bufferMaxY = source.getMaxY();
+                isDrawListDirty = true;
+            }
+        }
+
+        /**
+         * A split section keeps drawing its own buffer until all four children are settled, and only then switches
+         *  to them. A merged section keeps drawing its children until its own buffer is ready. So there is never a
+         *  frame where neither is drawn.
+         */
+        public void update(long nowNanos) {
             LodRenderSection section = target.getSection(pos);
             // If this fails, there may be concurrent modification of the quad tree
             //  (as this update() should be called from the same thread that calls update() on the quad tree)
             LodUtil.assertTrue(section != null);
-            LodRenderSource container = section.getRenderContainer();
-
-            // Update self's render buffer state
-            boolean shouldRender = section.canRender();
-            if (!shouldRender) {
-                //TODO: Does this really need to force the old buffer to not be rendered?
-//                RenderBuffer buff = renderBufferSlot.getAndSet(null);
-//                if (buff != null) {
-//                    buff.close();
-//                }
+            if (section.isSplit) {
+                updateSplit(section, nowNanos);
             } else {
-                LodUtil.assertTrue(container != null); // section.isLoaded() should have ensured this
-                container.trySwapRenderBuffer(target, renderBufferSlot);
+                updateLeaf(section);
+            }
+        }
+
+        private void updateLeaf(LodRenderSection section) {
+            splitSinceNanos = -1;
+            section.enableRender(target.getLevel(), target);
+            if (section.canRender()) {
+                trySwapRenderBuffer(section);
             }
 
-            // Update children's render buffer state
-            // TODO: Improve this! (Checking section.isLoaded() as if its not loaded, it can only be because
-            //  it has children. (But this logic is... really hard to read!)
-            boolean shouldHaveChildren = !section.isLoaded();
-            if (shouldHaveChildren) {
-                if (children == null) {
-                    RenderBufferNode[] childs = new RenderBufferNode[4];
-                    for (int i = 0; i < 4; i++) {
-                        childs[i] = new RenderBufferNode(pos.getChild(i));
-                    }
-                    children = childs;
+            boolean isOwnBufferSettled = renderBufferSlot.get() != null || !isBufferPending(section);
+            RenderBufferNode[] childs = children;
+            if (childs != null && isOwnBufferSettled) {
+                // The children's sections are already gone, their buffers were only kept to be drawn until now
+                isShowingChildren = false;
+                children = null;
+                isDrawListDirty = true;
+                for (RenderBufferNode child : childs) {
+                    child.close();
                 }
-                for (RenderBufferNode child : children) {
-                    child.update();
+            }
+            isSettled = isOwnBufferSettled || isShowingChildren;
+        }
+
+        private void updateSplit(LodRenderSection section, long nowNanos) {
+            if (splitSinceNanos == -1) splitSinceNanos = nowNanos;
+            if (!isShowingChildren && section.canRender()) {
+                trySwapRenderBuffer(section);
+            }
+
+            RenderBufferNode[] childs = children;
+            if (childs == null) {
+                // Nothing to wait for if there is no buffer of our own to draw in the meantime
+                if (renderBufferSlot.get() != null && nowNanos - splitSinceNanos < CHILD_BUILD_DELAY_NANOS) {
+                    nextDelayedUpdateNanos = Math.min(nextDelayedUpdateNanos, splitSinceNanos + CHILD_BUILD_DELAY_NANOS);
+                    isSettled = true;
+                    return;
                 }
-            } else {
-                if (children != null) {
-                    //FIXME: Concurrency issue here: If render thread is concurrently using the child's buffer,
-                    //  and this thread got priority to close the buffer, it causes a bug wher the render thread
-                    //  will be using a closed buffer!!!!
-                    RenderBufferNode[] childs = children;
-                    children = null;
-                    for (RenderBufferNode child : childs) {
-                        child.close();
-                    }
+                childs = new RenderBufferNode[4];
+                for (int i = 0; i < 4; i++) {
+                    childs[i] = new RenderBufferNode(pos.getChild(i));
                 }
+                children = childs;
+            }
+
+            boolean areChildrenSettled = true;
+            for (RenderBufferNode child : childs) {
+                child.update(nowNanos);
+                areChildrenSettled &= child.isSettled;
             }
+            if (areChildrenSettled && !isShowingChildren) {
+                isShowingChildren = true;
+                isDrawListDirty = true;
+                section.disableRender();
+                reclaimer.retire(renderBufferSlot.getAndSet(null));
+            }
+            isSettled = isShowingChildren || renderBufferSlot.get() != null;
         }
 
         @Override
@@ -95,10 +159,9 @@ public class RenderBufferHandler {
                     child.close();
                 }
             }
-            RenderBuffer buff = renderBufferSlot.getAndSet(null);
-            if (buff != null) {
-                buff.close();
-            }
+            // The render thread may still be drawing it
+            reclaimer.retire(renderBufferSlot.getAndSet(null));
+            isDrawListDirty = true;
         }
     }
 
@@ -110,26 +173,53 @@ public class RenderBufferHandler {
     }
 
     public void render(LodRenderProgram renderContext) {
-        //TODO: This might get locked by update() causing move() call. Is there a way to avoid this?
-        // Maybe dupe the base list and use atomic swap on render? Or is this not worth it?
-        //TODO: Directional culling
-        //TODO: Ordered by distance
-        renderBufferNodes.forEachOrdered(n -> n.render(renderContext));
+        reclaimer.beginFrame();
+        try {
+            //TODO: Directional culling, with the draw list's bounding boxes
+            drawList.render(renderContext);
+        } finally {
+            reclaimer.endFrame();
+            // Nothing calls update() anymore to close what was left over
+            if (isClosed) reclaimer.reclaim();
+        }
     }
 
     public void update() {
+        reclaimer.reclaim();
+        // Buffers dropped from the nodes stay in the current draw list until the next one is published
+        reclaimer.holdRetired();
         byte topDetail = (byte) (target.getNumbersOfSectionLevels() - 1);
         MovableGridRingList<LodRenderSection> referenceList = target.getRingList(topDetail);
         Pos2D center = referenceList.getCenter();
-        renderBufferNodes.move(center.x, center.y, RenderBufferNode::close); // Note: may lock the list
-        renderBufferNodes.forEachPosOrdered((node, pos) -> {
-            DhSectionPos sectPos = new DhSectionPos(topDetail, pos.x, pos.y);
-            LodRenderSection section = target.getSection(sectPos);
+        long nowNanos = nowNanos();
+        boolean isMoved = renderBufferNodes.move(center.x, center.y, RenderBufferNode::close);
+        long renderChangeCount = target.getRenderChangeCount();
+        if (isMoved || renderChangeCount != updatedRenderChangeCount || nowNanos >= nextDelayedUpdateNanos) {
+            updatedRenderChangeCount = renderChangeCount;
+            nextDelayedUpdateNanos = Long.MAX_VALUE;
+            updateNodes(topDetail, nowNanos);
+        }
+
+        DhBlockPos2D viewPos = target.getPlayerPos();
+        if (isDrawListDirty || drawListViewPos == null
+                || viewPos.distSquared(drawListViewPos) >= DRAW_ORDER_RESORT_DISTANCE * DRAW_ORDER_RESORT_DISTANCE) {
+            drawListBuilder.clear();
+            renderBufferNodes.forEachOrdered(node -> node.collect(drawListBuilder));
+            drawList = drawListBuilder.build(viewPos);
+            drawListViewPos = viewPos;
+            isDrawListDirty = false;
+        }
+        reclaimer.releaseHeld();
+    }
+
+    private void updateNodes(byte topDetail, long nowNanos) {
+        renderBufferNodes.forEachPosOrdered((node, x, z) -> {
+            LodRenderSection section = target.getSection(topDetail, x, z);
 
             if (section == null) {
                 // If section is null, but node exists, remove node
                 if (node != null) {
-                    renderBufferNodes.remove(pos).close();
+                    renderBufferNodes.remove(x, z).close();
                 }
                 // If section is null, continue
                 return;
@@ -137,16 +227,45 @@ public class RenderBufferHandler {
 
             // If section is not null, but node does not exist, create node
             if (node == null) {
-                node = renderBufferNodes.setChained(pos, new RenderBufferNode(sectPos));
+                node = renderBufferNodes.setChained(x, z, new RenderBufferNode(section.pos));
             }
             // Node should be not null here
             // Update node
-            node.update();
+            node.update(nowNanos);
         });
     }
 
+    /** @return the buffers drawn by the next frame, nearest first */
+    public RenderBufferDrawList getDrawList() {
+        return drawList;
+    }
+
+    /** The buffers a frame that is being drawn still uses are closed at the end of that frame. */
     public void close() {
+        isClosed = true;
+        reclaimer.holdRetired();
         renderBufferNodes.clear(RenderBufferNode::close);
+        drawList = RenderBufferDrawList.EMPTY;
+        reclaimer.releaseHeld();
+        reclaimer.reclaim();
+    }
+
+    /** The clock {@link #CHILD_BUILD_DELAY_NANOS} is measured with, which tests can replace. */
+    protected long nowNanos() {
+        return System.nanoTime();
+    }
+
+    /** @return true if the section may still get a render buffer without anything else changing */
+    private static boolean isBufferPending(LodRenderSection section) {
+        switch (section.getState()) {
+            case Unloaded:
+            case Loading:
+            case Building:
+            case Ready:
+                return true;
+            default:
+                return false;
+        }
     }
 
 }
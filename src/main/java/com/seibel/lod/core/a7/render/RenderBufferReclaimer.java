@@ -0,0 +1,104 @@
+package com.seibel.lod.core.a7.render;
+
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Consumer;
+
+/**
+ * Holds on to render buffers that were taken out of use until the render thread can no longer be drawing them. <br>
+ * The render thread marks each frame with {@link #beginFrame} and {@link #endFrame}. A buffer retired while a frame
+ * is being drawn is only reclaimed once that frame ended, as the frame may have read the buffer before it was retired.
+ * Frames started after the buffer was retired can't see it anymore, so they don't hold it back. <br>
+ * Buffers can be retired from any thread, but they have to be unreachable for the render thread when they are.
+ */
+public class RenderBufferReclaimer {
+    // Only written by the render thread. Equal when no frame is being drawn.
+    private volatile long startedFrame = 0;
+    private volatile long finishedFrame = 0;
+
+    private final ConcurrentLinkedQueue<Retired> retired = new ConcurrentLinkedQueue<>();
+    // Retired while the render thread could still reach them, see holdRetired()
+    private final ConcurrentLinkedQueue<Retired> held = new ConcurrentLinkedQueue<>();
+    private volatile boolean isHolding = false;
+
+    private static final class Retired {
+        final RenderBuffer buffer;
+        final Consumer<RenderBuffer> onReclaimed;
+        // The last frame started when the buffer was retired, which may still be drawing it
+        final long frame;
+
+        Retired(RenderBuffer buffer, Consumer<RenderBuffer> onReclaimed, long frame) {
+            this.buffer = buffer;
+            this.onReclaimed = onReclaimed;
+            this.frame = frame;
+        }
+    }
+
+    /** Called by the render thread before it reads any buffer of the frame. */
+    public void beginFrame() {
+        startedFrame = finishedFrame + 1;
+    }
+
+    /** Called by the render thread once it is done with every buffer of the frame. */
+    public void endFrame() {
+        finishedFrame = startedFrame;
+    }
+
+    /** Closes the buffer once the render thread is done with it. */
+    public void retire(RenderBuffer buffer) {
+        retire(buffer, RenderBuffer::close);
+    }
+
+    /**
+     * Hands the buffer to onReclaimed once the render thread is done with it, e.g. to reuse it instead of closing it.
+     * onReclaimed is called from whichever thread calls {@link #reclaim}.
+     */
+    public void retire(RenderBuffer buffer, Consumer<RenderBuffer> onReclaimed) {
+        if (buffer == null) return;
+        if (isHolding) {
+            held.add(new Retired(buffer, onReclaimed, 0));
+        } else {
+            retired.add(new Retired(buffer, onReclaimed, startedFrame));
+        }
+    }
+
+    /**
+     * Buffers retired from now on are still reachable for the render thread until {@link #releaseHeld}, e.g. through
+     * a draw list that is only replaced after them. Frames started before the release then hold them back as well.
+     */
+    public void holdRetired() {
+        isHolding = true;
+    }
+
+    /** Called once frames started from now on can't reach the buffers retired since {@link #holdRetired}. */
+    public void releaseHeld() {
+        isHolding = false;
+        Retired entry;
+        while ((entry = held.poll()) != null) {
+            retired.add(new Retired(entry.buffer, entry.onReclaimed, startedFrame));
+        }
+    }
+
+    /**
+     * Reclaims the buffers that no frame can be drawing anymore.
+     * @return the number of buffers reclaimed
+     */
+    public synchronized int reclaim() {
+        long safeFrame = finishedFrame;
+        int count = 0;
+        Iterator<Retired> iterator = retired.iterator();
+        while (iterator.hasNext()) {
+            Retired entry = iterator.next();
+            if (entry.frame > safeFrame) continue;
+            iterator.remove();
+            entry.onReclaimed.accept(entry.buffer);
+            count++;
+        }
+        return count;
+    }
+
+    /** @return the number of buffers waiting for the render thread */
+    public int getRetiredCount() {
+        return retired.size() + held.size();
+    }
+}
@@ -0,0 +1,147 @@
+package com.seibel.lod.core.a7.render;
+
+import com.seibel.lod.core.a7.pos.DhBlockPos2D;
+import com.seibel.lod.core.a7.pos.DhSectionPos;
+import com.seibel.lod.core.a7.save.io.render.IRenderSourceProvider;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.function.Consumer;
+
+/**
+ * Decides when the sections of a {@link LodQuadTree} start loading. <br>
+ * Only a limited number of loads are in flight at once, the rest wait in a queue that is sorted by distance to the player
+ * in section widths, so the sections near the player and the coarse ones covering the whole view are loaded first.
+ * The queue is re-sorted whenever the player moved, and sections disposed while queued never start loading.
+ * Sections whose last load failed only join the queue after a delay, which doubles with each failure in a row.
+ * Not thread safe, it is only used from the tree's tick.
+ */
+public class SectionLoadScheduler {
+    private static final long MIN_RETRY_DELAY_NANOS = 1_000_000_000L;
+    private static final long MAX_RETRY_DELAY_NANOS = 60_000_000_000L;
+
+    private final IRenderSourceProvider renderSourceProvider;
+    private final int maxInFlightLoads;
+    private final Consumer<LodRenderSection> onSectionChanged;
+
+    private final HashMap<LodRenderSection, QueuedLoad> queuedBySection = new HashMap<>();
+    // Sorted with the highest priority last, so it can be taken from the end
+    private final ArrayList<QueuedLoad> queue = new ArrayList<>();
+    private final ArrayList<LodRenderSection> inFlight = new ArrayList<>();
+    // Loads of sections that failed to load, waiting for their retry delay to pass
+    private final ArrayList<QueuedLoad> retrying = new ArrayList<>();
+    private boolean isQueueSorted = true;
+    private DhBlockPos2D sortedPlayerPos = null;
+    // Breaks priority ties in request order
+    private long nextSequence = 0;
+
+    private static final class QueuedLoad {
+        final LodRenderSection section;
+        final long sequence;
+        double priority;
+        boolean isCancelled = false;
+        long retryNanos = 0;
+
+        QueuedLoad(LodRenderSection section, long sequence) {
+            this.section = section;
+            this.sequence = sequence;
+        }
+    }
+
+    public SectionLoadScheduler(IRenderSourceProvider renderSourceProvider, int maxInFlightLoads) {
+        this(renderSourceProvider, maxInFlightLoads, (section) -> {});
+    }
+
+    /** @param onSectionChanged given to {@link LodRenderSection#load} for each section started */
+    public SectionLoadScheduler(IRenderSourceProvider renderSourceProvider, int maxInFlightLoads,
+                                Consumer<LodRenderSection> onSectionChanged) {
+        this.renderSourceProvider = renderSourceProvider;
+        this.maxInFlightLoads = maxInFlightLoads;
+        this.onSectionChanged = onSectionChanged;
+    }
+
+    /** Queues the section to be loaded, unless it is already loaded, loading or queued. */
+    public void requestLoad(LodRenderSection section) {
+        if (section.isLoaded() || section.isLoading() || queuedBySection.containsKey(section)) return;
+        QueuedLoad load = new QueuedLoad(section, nextSequence++);
+        queuedBySection.put(section, load);
+        int failedLoadCount = section.getFailedLoadCount();
+        if (failedLoadCount > 0) {
+            load.retryNanos = nowNanos() + getRetryDelayNanos(failedLoadCount);
+            retrying.add(load);
+            return;
+        }
+        queue.add(load);
+        isQueueSorted = false;
+    }
+
+    /** Drops the section from the queue. Must be called when a section is disposed. */
+    public void cancel(LodRenderSection section) {
+        QueuedLoad load = queuedBySection.remove(section);
+        if (load != null) load.isCancelled = true;
+    }
+
+    /** Starts loading the queued sections with the highest priority, as far as the in-flight window allows. */
+    public void tick(DhBlockPos2D playerPos) {
+        if (!retrying.isEmpty()) queueDueRetries();
+        inFlight.removeIf((section) -> !section.isLoadInFlight());
+        if (inFlight.size() >= maxInFlightLoads || queuedBySection.isEmpty()) return;
+
+        if (!isQueueSorted || sortedPlayerPos == null || sortedPlayerPos.x != playerPos.x || sortedPlayerPos.z != playerPos.z) {
+            queue.removeIf((load) -> load.isCancelled);
+            for (QueuedLoad load : queue) {
+                load.priority = getPriority(playerPos, load.section.pos);
+            }
+            queue.sort((a, b) -> {
+                int compare = Double.compare(b.priority, a.priority);
+                return compare != 0 ? compare : Long.compare(b.sequence, a.sequence);
+            });
+            isQueueSorted = true;
+            sortedPlayerPos = playerPos;
+        }
+
+        while (inFlight.size() < maxInFlightLoads && !queue.isEmpty()) {
+            QueuedLoad load = queue.remove(queue.size() - 1);
+            if (load.isCancelled) continue;
+            queuedBySection.remove(load.section);
+            load.section.load(renderSourceProvider, onSectionChanged);
+            inFlight.add(load.section);
+        }
+    }
+
+    private void queueDueRetries() {
+        long nowNanos = nowNanos();
+        retrying.removeIf((load) -> {
+            if (load.isCancelled) return true;
+            if (nowNanos - load.retryNanos < 0) return false;
+            queue.add(load);
+            isQueueSorted = false;
+            return true;
+        });
+    }
+
+    /** @return how long to wait before loading a section again that failed to load the given number of times in a row */
+    private static long getRetryDelayNanos(int failedLoadCount) {
+        return Math.min(MIN_RETRY_DELAY_NANOS << Math.min(failedLoadCount - 1, 6), MAX_RETRY_DELAY_NANOS);
+    }
+
+    /** The clock the retry delays are measured with, which tests can replace. */
+    protected long nowNanos() {
+        return System.nanoTime();
+    }
+
+    /** @return the number of sections waiting to start loading, including those waiting to retry */
+    public int getQueuedCount() {
+        return queuedBySection.size();
+    }
+
+    /** @return the number of sections whose load was started but isn't done yet */
+    public int getInFlightCount() {
+        return inFlight.size();
+    }
+
+    /** @return the distance of the section to the player in section widths, lower is loaded first */
+    private static double getPriority(DhBlockPos2D playerPos, DhSectionPos pos) {
+        return playerPos.dist(pos.getCenter().getCenter()) / (1 << pos.sectionDetail);
+    }
+}
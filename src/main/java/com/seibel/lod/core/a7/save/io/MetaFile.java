@@ -38,9 +38,9 @@ public class MetaFile {
     //
     //    8 bytes: timestamp
 
-    // Total size: 32 bytes
+    // Total size: 40 bytes
 
-    public static final int METADATA_SIZE = 32;
+    public static final int METADATA_SIZE = 40;
     public static final int METADATA_MAGIC_BYTES = 0x44_48_76_30;
 
     public final DhSectionPos pos;
@@ -56,10 +56,10 @@ public class MetaFile {
 
     // Load a metaFile in this path. It also automatically read the metadata.
     protected MetaFile(File path) throws IOException {
+        this.path = path;
         validatePath();
         try (FileInputStream fin = new FileInputStream(path)) {
             MappedByteBuffer buffer = fin.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, METADATA_SIZE);
-            this.path = path;
 
             int magic = buffer.getInt();
             if (magic != METADATA_MAGIC_BYTES) {
@@ -124,8 +124,9 @@ public class MetaFile {
     }
 
     protected void writeData(Consumer<OutputStream> dataWriter) throws IOException {
-        validatePath();
-        File tempFile = File.createTempFile("", "tmp", path.getParentFile());
+        if (path.exists()) validatePath();
+        else path.getParentFile().mkdirs(); // First write of a new section
+        File tempFile = File.createTempFile("lod", "tmp", path.getParentFile());
         tempFile.deleteOnExit();
         try (FileChannel file = FileChannel.open(tempFile.toPath(),
                 StandardOpenOption.WRITE, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
@@ -138,28 +139,30 @@ public class MetaFile {
                     dataWriter.accept(checkedOut);
                     checksum = (int) checkedOut.getChecksum().getValue();
                 }
-                file.position(0);
-                // Write metadata
-                ByteBuffer buff = ByteBuffer.allocate(METADATA_SIZE);
-                buff.putInt(METADATA_MAGIC_BYTES);
-                buff.putInt(pos.sectionX);
-                buff.putInt(Integer.MIN_VALUE); // Unused
-                buff.putInt(pos.sectionZ);
-                buff.putInt(checksum);
-                buff.put(pos.sectionDetail);
-                buff.put(dataLevel);
-                buff.put(loaderVersion);
-                buff.put(Byte.MIN_VALUE); // Unused
-                buff.putLong(dataTypeId);
-                buff.putLong(timestamp);
-                LodUtil.assertTrue(buff.remaining() == 0);
-                buff.flip();
-                file.write(buff);
+                // Closing the streams above closed the channel as well, so the metadata goes through a new one
+                try (FileChannel metaChannel = FileChannel.open(tempFile.toPath(), StandardOpenOption.WRITE)) {
+                    // Write metadata
+                    ByteBuffer buff = ByteBuffer.allocate(METADATA_SIZE);
+                    buff.putInt(METADATA_MAGIC_BYTES);
+                    buff.putInt(pos.sectionX);
+                    buff.putInt(Integer.MIN_VALUE); // Unused
+                    buff.putInt(pos.sectionZ);
+                    buff.putInt(checksum);
+                    buff.put(pos.sectionDetail);
+                    buff.put(dataLevel);
+                    buff.put(loaderVersion);
+                    buff.put(Byte.MIN_VALUE); // Unused
+                    buff.putLong(dataTypeId);
+                    buff.putLong(timestamp);
+                    LodUtil.assertTrue(buff.remaining() == 0);
+                    buff.flip();
+                    metaChannel.write(buff);
+                }
             }
             file.close();
-            // Atomic move / replace the actual file
+            // Atomic move / replace the actual file. A move keeps the attributes, and COPY_ATTRIBUTES isn't a valid move option.
             Files.move(tempFile.toPath(), path.toPath(), StandardCopyOption.REPLACE_EXISTING,
-                    StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.COPY_ATTRIBUTES);
+                    StandardCopyOption.ATOMIC_MOVE);
         } finally {
             try {
                 boolean i = tempFile.delete(); // Delete temp file. Ignore errors if fails.
@@ -2,6 +2,7 @@ package com.seibel.lod.core.a7.save.io.file;
 
 import java.io.*;
 import java.lang.ref.SoftReference;
+import java.util.Collection;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.Executor;
@@ -13,6 +14,7 @@ import java.util.concurrent.locks.ReentrantReadWriteLock;
 import com.seibel.lod.core.a7.datatype.LodDataSource;
 import com.seibel.lod.core.a7.datatype.DataSourceLoader;
 import com.seibel.lod.core.a7.datatype.full.ChunkSizedData;
+import com.seibel.lod.core.a7.datatype.full.FullDataSource;
 import com.seibel.lod.core.a7.datatype.full.FullFormat;
 import com.seibel.lod.core.a7.save.io.MetaFile;
 import com.seibel.lod.core.a7.level.ILevel;
@@ -54,6 +56,17 @@ public class DataMetaFile extends MetaFile {
 			appendLock.unlock();
 		}
 	}
+	/** Appends a whole batch while holding the append lock once. */
+	public void addToWriteQueue(Collection<ChunkSizedData> datatypes) {
+		GuardedMultiAppendQueue queue = writeQueue.get();
+		Lock appendLock = queue.appendLock.readLock();
+		appendLock.lock();
+		try {
+			queue.queue.addAll(datatypes);
+		} finally {
+			appendLock.unlock();
+		}
+	}
 	private void swapWriteQueue() {
 		GuardedMultiAppendQueue queue = writeQueue.getAndSet(_backQueue);
 		// Acquire write lock and then release it again as we only need to ensure that the queue
@@ -106,9 +119,9 @@ public class DataMetaFile extends MetaFile {
 		// Has file cached in RAM and not freed yet.
 		if ((obj instanceof SoftReference<?>)) {
 			Object inner = ((SoftReference<?>)obj).get();
-			if (inner != null) {
+			// Queued writes are only applied by a reload, so the cache is only good while the queue is empty
+			if (inner != null && writeQueue.get().queue.isEmpty()) {
 				LodUtil.assertTrue(inner instanceof LodDataSource);
-				//TODO: Apply the write if queue is not empty
 				return CompletableFuture.completedFuture((LodDataSource)inner);
 			}
 		}
@@ -150,7 +163,8 @@ public class DataMetaFile extends MetaFile {
 	}
 	
 	private LodDataSource loadAndUpdateDataSource() {
-		LodDataSource data = loadFile();
+		// A section only written to so far has no file yet
+		LodDataSource data = path.exists() ? loadFile() : FullDataSource.createEmpty(pos);
 		if (data == null) return null;
 
 		// Poll the write queue
@@ -161,12 +175,16 @@ public class DataMetaFile extends MetaFile {
 		if (!isEmpty) {
 			localVer = localVersion.incrementAndGet();
 			swapWriteQueue();
-			// TODO: Use _backQueue to apply the changes into the data.
+			// Every chunk queued since the last load is applied first, so the whole batch costs one file write.
+			ChunkSizedData chunk;
+			while ((chunk = _backQueue.queue.poll()) != null) {
+				data.update(chunk.pos, chunk);
+			}
 			write(data);
 		} else localVer = localVersion.get();
 		data.setLocalVersion(localVer);
 		// Finally, return the data.
-		return null;
+		return data;
 	}
 
 	private LodDataSource loadFile() {
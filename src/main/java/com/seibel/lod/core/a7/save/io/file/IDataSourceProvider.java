@@ -15,6 +15,9 @@ public interface IDataSourceProvider extends AutoCloseable {
 
     CompletableFuture<LodDataSource> read(DhSectionPos pos);
     void write(DhSectionPos sectionPos, ChunkSizedData chunkData);
+    default void writeBatch(DhSectionPos sectionPos, Collection<ChunkSizedData> chunkData) {
+        for (ChunkSizedData data : chunkData) write(sectionPos, data);
+    }
     CompletableFuture<Void> flushAndSave();
 
     boolean isCacheValid(DhSectionPos sectionPos, long timestamp);
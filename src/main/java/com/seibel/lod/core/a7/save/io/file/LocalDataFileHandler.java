@@ -3,6 +3,7 @@ package com.seibel.lod.core.a7.save.io.file;
 import com.google.common.collect.HashMultimap;
 import com.seibel.lod.core.a7.datatype.LodDataSource;
 import com.seibel.lod.core.a7.datatype.full.ChunkSizedData;
+import com.seibel.lod.core.a7.datatype.full.FullDataSource;
 import com.seibel.lod.core.a7.datatype.full.FullFormat;
 import com.seibel.lod.core.a7.level.IServerLevel;
 import com.seibel.lod.core.a7.pos.DhSectionPos;
@@ -17,6 +18,7 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashMap;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
@@ -111,6 +113,40 @@ public class LocalDataFileHandler implements IDataSourceProvider {
      */
     @Override
     public void write(DhSectionPos sectionPos, ChunkSizedData chunkData) {
+        writeAll(sectionPos, Collections.singletonList(chunkData));
+    }
+
+    /*
+    * This call is concurrent. I.e. it supports multiple threads calling this method at the same time.
+    * All the chunks must be inside the section, and are queued with a single file lookup.
+     */
+    @Override
+    public void writeBatch(DhSectionPos sectionPos, Collection<ChunkSizedData> chunkData) {
+        if (chunkData.isEmpty()) return;
+        writeAll(sectionPos, chunkData);
+    }
+
+    private void writeAll(DhSectionPos sectionPos, Collection<ChunkSizedData> chunkData) {
+        if (sectionPos.sectionDetail - FullDataSource.SECTION_SIZE_OFFSET > FullDataSource.MAX_CHUNK_DATA_DETAIL) {
+            // A chunk is narrower than one of this section's columns, so it goes to the coarsest section that can take it
+            HashMap<DhSectionPos, ArrayList<ChunkSizedData>> chunksBySection = new HashMap<>();
+            for (ChunkSizedData chunk : chunkData) {
+                chunksBySection.computeIfAbsent(getCoarsestSectionPos(chunk.pos), (pos) -> new ArrayList<>()).add(chunk);
+            }
+            chunksBySection.forEach(this::queueWrite);
+            return;
+        }
+        queueWrite(sectionPos, chunkData);
+    }
+
+    /** The section at {@link FullDataSource#MAX_CHUNK_DATA_DETAIL} containing the chunk. */
+    private static DhSectionPos getCoarsestSectionPos(DHChunkPos chunkPos) {
+        byte sectionDetail = (byte) (FullDataSource.SECTION_SIZE_OFFSET + FullDataSource.MAX_CHUNK_DATA_DETAIL);
+        int chunkToSectionShift = sectionDetail - 4;
+        return new DhSectionPos(sectionDetail, chunkPos.x >> chunkToSectionShift, chunkPos.z >> chunkToSectionShift);
+    }
+
+    private void queueWrite(DhSectionPos sectionPos, Collection<ChunkSizedData> chunkData) {
         DataMetaFile metaFile = files.get(sectionPos);
         if (metaFile != null) { // Fast path: if there is a file for this section, just write to it.
             metaFile.addToWriteQueue(chunkData);
@@ -118,7 +154,7 @@ public class LocalDataFileHandler implements IDataSourceProvider {
         }
         // Slow path: if there is no file for this section, create one.
 
-        DataMetaFile newMetaFile = new DataMetaFile(level, saveDir, sectionPos);
+        DataMetaFile newMetaFile = new DataMetaFile(level, computeDefaultFilePath(sectionPos), sectionPos);
 
         // We add to the queue first so on CAS onto the map, no other thread
         // will see the new file without our write entry.
@@ -12,5 +12,10 @@ public interface IRenderSourceProvider extends AutoCloseable {
     CompletableFuture<LodRenderSource> read(DhSectionPos pos);
     void addScannedFile(Collection<File> detectedFiles);
     void write(DhSectionPos sectionPos, ChunkSizedData chunkData);
+    default void writeBatch(DhSectionPos sectionPos, Collection<ChunkSizedData> chunkData) {
+        for (ChunkSizedData data : chunkData) write(sectionPos, data);
+    }
     CompletableFuture<Void> flushAndSave();
+    /** Called once the section at pos left the tree, so its render source may be evicted. */
+    void unload(DhSectionPos pos);
 }
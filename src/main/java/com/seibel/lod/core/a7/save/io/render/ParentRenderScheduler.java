@@ -0,0 +1,138 @@
+package com.seibel.lod.core.a7.save.io.render;
+
+import com.seibel.lod.core.a7.datatype.LodRenderSource;
+import com.seibel.lod.core.a7.datatype.column.ColumnRenderSource;
+import com.seibel.lod.core.a7.level.IClientLevel;
+import com.seibel.lod.core.a7.pos.DhSectionPos;
+import com.seibel.lod.core.config.Config;
+import com.seibel.lod.core.logging.DhLoggerBuilder;
+import org.apache.logging.log4j.Logger;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+
+/**
+ * Builds higher detail render sections out of their already loaded children, instead of
+ * reading and transforming the full data again for every level. <br>
+ * Changed children only mark the matching region of their parent as dirty. The dirty parents are then
+ * rebuilt on the executor from the lowest detail level upwards, so any number of changes below a parent
+ * only cause one rebuild of its dirty region, which then marks the (smaller) region of its own parent.
+ */
+public class ParentRenderScheduler {
+    private static final Logger LOGGER = DhLoggerBuilder.getLogger();
+
+    private final Function<DhSectionPos, LodRenderSource> loadedRenderGetter;
+    private final IClientLevel level;
+    private final Executor executor;
+
+    /** Inclusive bounding box of dirty columns, in the parent's column coordinates. */
+    private static final class DirtyRegion {
+        final int minX, minZ, maxX, maxZ;
+
+        DirtyRegion(int minX, int minZ, int maxX, int maxZ) {
+            this.minX = minX;
+            this.minZ = minZ;
+            this.maxX = maxX;
+            this.maxZ = maxZ;
+        }
+
+        DirtyRegion union(DirtyRegion other) {
+            return new DirtyRegion(Math.min(minX, other.minX), Math.min(minZ, other.minZ),
+                    Math.max(maxX, other.maxX), Math.max(maxZ, other.maxZ));
+        }
+
+        boolean overlapsQuarter(int child0to3) {
+            int half = ColumnRenderSource.SECTION_SIZE / 2;
+            int quarterX = (child0to3 & 1) * half;
+            int quarterZ = ((child0to3 & 2) / 2) * half;
+            return minX < quarterX + half && maxX >= quarterX && minZ < quarterZ + half && maxZ >= quarterZ;
+        }
+    }
+
+    private final ConcurrentHashMap<DhSectionPos, DirtyRegion> dirtyParents = new ConcurrentHashMap<>();
+    private final AtomicBoolean rebuildQueued = new AtomicBoolean(false);
+
+    /**
+     * @param loadedRenderGetter returns the render source at a pos if it is currently loaded, otherwise null
+     */
+    public ParentRenderScheduler(Function<DhSectionPos, LodRenderSource> loadedRenderGetter, IClientLevel level, Executor executor) {
+        this.loadedRenderGetter = loadedRenderGetter;
+        this.level = level;
+        this.executor = executor;
+    }
+
+    /** @return a new render source built from the section's four children, or null if not all of them are loaded */
+    public ColumnRenderSource tryBuildFromChildren(DhSectionPos pos) {
+        if (pos.sectionDetail <= ColumnRenderSource.SECTION_SIZE_OFFSET) return null; // Lowest level, no children
+        ColumnRenderSource[] children = new ColumnRenderSource[4];
+        for (int i = 0; i < 4; i++) {
+            LodRenderSource child = loadedRenderGetter.apply(pos.getChild(i));
+            if (!(child instanceof ColumnRenderSource)) return null;
+            children[i] = (ColumnRenderSource) child;
+        }
+
+        byte dataDetail = (byte) (pos.sectionDetail - ColumnRenderSource.SECTION_SIZE_OFFSET);
+        int vertSize = Config.Client.Graphics.Quality.verticalQuality.get().calculateMaxVerticalData(dataDetail);
+        ColumnRenderSource parent = new ColumnRenderSource(pos, vertSize, level.getMinY());
+        for (int i = 0; i < 4; i++) {
+            parent.generateFromChild(children[i], i);
+        }
+        return parent;
+    }
+
+    /** Marks the parent of a changed section to be rebuilt. */
+    public void markChanged(DhSectionPos childPos) {
+        markChanged(childPos, 0, 0, ColumnRenderSource.SECTION_SIZE - 1, ColumnRenderSource.SECTION_SIZE - 1);
+    }
+
+    /** Marks the part of the parent covering the changed columns (inclusive, in the child's column coordinates) to be rebuilt. */
+    public void markChanged(DhSectionPos childPos, int minX, int minZ, int maxX, int maxZ) {
+        int half = ColumnRenderSource.SECTION_SIZE / 2;
+        int quarterX = (childPos.sectionX & 1) * half;
+        int quarterZ = (childPos.sectionZ & 1) * half;
+        DirtyRegion region = new DirtyRegion(quarterX + (minX >> 1), quarterZ + (minZ >> 1),
+                quarterX + (maxX >> 1), quarterZ + (maxZ >> 1));
+        dirtyParents.merge(childPos.getParent(), region, DirtyRegion::union);
+        if (rebuildQueued.compareAndSet(false, true)) {
+            executor.execute(this::rebuildDirtyParents);
+        }
+    }
+
+    private void rebuildDirtyParents() {
+        // Cleared first, so a mark arriving during the rebuild queues another one
+        rebuildQueued.set(false);
+        try {
+            while (!dirtyParents.isEmpty()) {
+                byte lowestDetail = Byte.MAX_VALUE;
+                for (DhSectionPos pos : dirtyParents.keySet()) {
+                    lowestDetail = (byte) Math.min(lowestDetail, pos.sectionDetail);
+                }
+                for (DhSectionPos pos : dirtyParents.keySet()) {
+                    if (pos.sectionDetail != lowestDetail) continue;
+                    DirtyRegion region = dirtyParents.remove(pos);
+                    if (region != null) rebuildParent(pos, region);
+                }
+            }
+        } catch (Exception e) {
+            LOGGER.error("Failed to rebuild parent render sections:", e);
+        }
+    }
+
+    private void rebuildParent(DhSectionPos pos, DirtyRegion region) {
+        LodRenderSource parent = loadedRenderGetter.apply(pos);
+        // Parents that aren't loaded will be built fresh once they are needed
+        if (!(parent instanceof ColumnRenderSource)) return;
+        boolean changed = false;
+        for (int i = 0; i < 4; i++) {
+            if (!region.overlapsQuarter(i)) continue;
+            LodRenderSource child = loadedRenderGetter.apply(pos.getChild(i));
+            if (!(child instanceof ColumnRenderSource)) continue;
+            ((ColumnRenderSource) parent).generateFromChild((ColumnRenderSource) child, i,
+                    region.minX, region.minZ, region.maxX, region.maxZ);
+            changed = true;
+        }
+        if (changed) markChanged(pos, region.minX, region.minZ, region.maxX, region.maxZ);
+    }
+}
@@ -9,9 +9,11 @@ import com.seibel.lod.core.a7.datatype.column.ColumnRenderLoader;
 import com.seibel.lod.core.a7.datatype.column.ColumnRenderSource;
 import com.seibel.lod.core.a7.datatype.full.ChunkSizedData;
 import com.seibel.lod.core.a7.datatype.full.FullFormat;
+import com.seibel.lod.core.a7.datatype.transform.DataRenderTransformer;
 import com.seibel.lod.core.a7.level.IClientLevel;
 import com.seibel.lod.core.a7.save.io.file.DataMetaFile;
 import com.seibel.lod.core.a7.save.io.file.IDataSourceProvider;
+import com.seibel.lod.core.a7.pos.DhBlockPos2D;
 import com.seibel.lod.core.a7.pos.DhSectionPos;
 import com.seibel.lod.core.logging.DhLoggerBuilder;
 import com.seibel.lod.core.objects.DHChunkPos;
@@ -33,11 +35,42 @@ public class RenderFileHandler implements IRenderSourceProvider {
     final IClientLevel level;
     final File saveDir;
     final IDataSourceProvider dataSourceProvider;
+    final ParentRenderScheduler parentScheduler;
+    final DataRenderTransformer transformer;
+
+    /** The number of unloaded sections kept in memory, so moving back or building their parents doesn't need to reload them. */
+    private static final int MAX_UNLOADED_SECTIONS_KEPT = 64;
+    // Guards loadedSections and unloadedSections, so a section can't be evicted while it is being read again
+    private final Object evictionLock = new Object();
+    private final HashSet<DhSectionPos> loadedSections = new HashSet<>();
+    // Oldest unloaded first
+    private final LinkedHashSet<DhSectionPos> unloadedSections = new LinkedHashSet<>();
+    // Sections whose data is being transformed again after the colors changed
+    private final Set<DhSectionPos> refreshingColors = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Sections of at least this data detail are far away, so they first only read the top entries of each column from their file.
+     * The rest is read after the loads that were already queued.
+     */
+    private static final byte PARTIAL_LOAD_MIN_DATA_DETAIL = 4;
+    private static final int PARTIAL_LOAD_VERTICAL_SLICES = 2;
 
     public RenderFileHandler(IDataSourceProvider sourceProvider, IClientLevel level, File saveRootDir) {
         this.dataSourceProvider = sourceProvider;
         this.level = level;
         this.saveDir = saveRootDir;
+        this.parentScheduler = new ParentRenderScheduler(this::getLoadedRender, level, renderCacheThread);
+        this.transformer = new DataRenderTransformer(level);
+    }
+
+    /** Sets how the queued data to render transforms of this level are ordered and cancelled. */
+    public void setSectionPriority(DataRenderTransformer.SectionPriority priority) {
+        transformer.setSectionPriority(priority);
+    }
+
+    private LodRenderSource getLoadedRender(DhSectionPos pos) {
+        RenderMetaFile metaFile = files.get(pos);
+        return metaFile == null ? null : metaFile.getLoadedRender();
     }
 
     /*
@@ -53,7 +86,8 @@ public class RenderFileHandler implements IRenderSourceProvider {
                     RenderMetaFile metaFile = new RenderMetaFile(
                             dataSourceProvider::isCacheValid,
                             dataSourceProvider::read,
-                            level, file
+                            parentScheduler::tryBuildFromChildren,
+                            transformer, level, file
                     );
                     filesByPos.put(metaFile.pos, metaFile);
                 } catch (IOException e) {
@@ -111,18 +145,42 @@ public class RenderFileHandler implements IRenderSourceProvider {
         RenderMetaFile metaFile = files.computeIfAbsent(pos, (p) -> new RenderMetaFile(
                 dataSourceProvider::isCacheValid,
                 dataSourceProvider::read,
-                level, computeDefaultFilePath(p), p));
-        return metaFile.loadOrGetCached(renderCacheThread).handle(
+                parentScheduler::tryBuildFromChildren,
+                transformer, level, computeDefaultFilePath(p), p));
+        CompletableFuture<LodRenderSource> future;
+        synchronized (evictionLock) {
+            unloadedSections.remove(pos);
+            loadedSections.add(pos);
+            future = metaFile.loadOrGetCached(renderCacheThread, getInitialVerticalSlices(pos));
+        }
+        return future.handle(
                 (render, e) -> {
                     if (e != null) {
                         LOGGER.error("Uncaught error on {}:", pos, e);
                     }
+                    if (render != null && render.isPartiallyLoaded()) {
+                        renderCacheThread.execute(() -> loadRemaining(metaFile, pos));
+                    }
+                    // Kept in memory from before the colors changed, and its refresh was cancelled as it left the tree
+                    if (render != null && metaFile.areColorsOutdated()) {
+                        renderCacheThread.execute(() -> refreshColors(metaFile));
+                    }
                     if (render != null) return render;
                     return EmptyRenderSource.INSTANCE;
                 }
         );
     }
 
+    private static int getInitialVerticalSlices(DhSectionPos pos) {
+        byte dataDetail = (byte) (pos.sectionDetail - ColumnRenderSource.SECTION_SIZE_OFFSET);
+        return dataDetail >= PARTIAL_LOAD_MIN_DATA_DETAIL ? PARTIAL_LOAD_VERTICAL_SLICES : Integer.MAX_VALUE;
+    }
+
+    private void loadRemaining(RenderMetaFile metaFile, DhSectionPos pos) {
+        // The parent may have been built from the partial data, so its quarter is rebuilt as well
+        if (metaFile.loadRemainingIfPartial()) parentScheduler.markChanged(pos);
+    }
+
     /*
      * This call is concurrent. I.e. it supports multiple threads calling this method at the same time.
      */
@@ -131,10 +189,103 @@ public class RenderFileHandler implements IRenderSourceProvider {
         dataSourceProvider.write(sectionPos, chunkData);
         RenderMetaFile metaFile = files.get(sectionPos);
         if (metaFile != null) { // Fast path: if there is a file for this section, just write to it.
+            // Applied on the same thread as the parent rebuilds, so they never modify a section at the same time
+            renderCacheThread.execute(() -> updateChunk(metaFile, sectionPos, chunkData));
+        }
+    }
+
+    private void updateChunk(RenderMetaFile metaFile, DhSectionPos sectionPos, ChunkSizedData chunkData) {
+        try {
             metaFile.updateChunkIfNeeded(chunkData);
+            // Mark the chunk's columns, in the section's data detail
+            byte dataDetail = (byte) (sectionPos.sectionDetail - ColumnRenderSource.SECTION_SIZE_OFFSET);
+            DhBlockPos2D offset = chunkData.pos.getMinBlockPos().subtract(sectionPos.getSectionBBoxPos().getCorner());
+            parentScheduler.markChanged(sectionPos, offset.x >> dataDetail, offset.z >> dataDetail,
+                    (offset.x + 15) >> dataDetail, (offset.z + 15) >> dataDetail);
+        } catch (Exception e) {
+            LOGGER.error("Failed to update render data at {}:", sectionPos, e);
+        }
+    }
+
+    /*
+     * This call is concurrent. I.e. it supports multiple threads calling this method at the same time.
+     */
+    @Override
+    public void writeBatch(DhSectionPos sectionPos, Collection<ChunkSizedData> chunkData) {
+        dataSourceProvider.writeBatch(sectionPos, chunkData);
+        RenderMetaFile metaFile = files.get(sectionPos);
+        if (metaFile != null) {
+            renderCacheThread.execute(() -> {
+                for (ChunkSizedData data : chunkData) updateChunk(metaFile, sectionPos, data);
+            });
         }
     }
 
+    @Override
+    public void unload(DhSectionPos pos) {
+        DhSectionPos toEvict = null;
+        synchronized (evictionLock) {
+            if (!loadedSections.remove(pos)) return;
+            unloadedSections.add(pos);
+            if (unloadedSections.size() > MAX_UNLOADED_SECTIONS_KEPT) {
+                Iterator<DhSectionPos> oldest = unloadedSections.iterator();
+                toEvict = oldest.next();
+                oldest.remove();
+            }
+        }
+        if (toEvict != null) {
+            DhSectionPos evictPos = toEvict;
+            // On the render cache thread, so no parent rebuild or chunk update is using the source
+            renderCacheThread.execute(() -> evict(evictPos));
+        }
+    }
+
+    private void evict(DhSectionPos pos) {
+        RenderMetaFile metaFile = files.get(pos);
+        if (metaFile == null) return;
+        LodRenderSource render;
+        synchronized (evictionLock) {
+            if (loadedSections.contains(pos) || unloadedSections.contains(pos)) return; // Read again since
+            render = metaFile.evict();
+        }
+        if (render == null) return;
+        // Outside the lock, as reads only queue their load. It runs on this thread, after the save.
+        metaFile.saveEvicted(render);
+        render.release();
+    }
+
+    /**
+     * Called once the level's colors changed. The loaded sections are transformed again and their data replaced,
+     * the others are transformed again instead of read from their file when they are next loaded.
+     */
+    public void onColorsChanged() {
+        for (RenderMetaFile metaFile : files.values()) {
+            metaFile.markColorsChanged();
+            renderCacheThread.execute(() -> refreshColors(metaFile));
+        }
+    }
+
+    private void refreshColors(RenderMetaFile metaFile) {
+        LodRenderSource render = metaFile.getLoadedRender();
+        if (!(render instanceof ColumnRenderSource) || !metaFile.areColorsOutdated()) return;
+        // One refresh per section at a time, so a transform result is never used after it was released
+        if (!refreshingColors.add(metaFile.pos)) return;
+        int colorChanges = metaFile.getColorChanges();
+        transformer.transform(metaFile.pos, dataSourceProvider.read(metaFile.pos)).thenAcceptAsync((newRender) -> {
+            if (newRender == render || !(newRender instanceof ColumnRenderSource)) return;
+            if (metaFile.getLoadedRender() == render) {
+                ((ColumnRenderSource) render).replaceData((ColumnRenderSource) newRender);
+                metaFile.markColorsApplied(colorChanges);
+                parentScheduler.markChanged(metaFile.pos);
+            }
+            newRender.release();
+        }, renderCacheThread).whenCompleteAsync((v, e) -> {
+            refreshingColors.remove(metaFile.pos);
+            // The colors changed again during the transform. A cancelled one is retried by read() instead.
+            if (metaFile.getColorChanges() != colorChanges) refreshColors(metaFile);
+        }, renderCacheThread);
+    }
+
     /*
      * This call is concurrent. I.e. it supports multiple threads calling this method at the same time.
      */
@@ -158,5 +309,6 @@ public class RenderFileHandler implements IRenderSourceProvider {
             futures.add(metaFile.flushAndSave(renderCacheThread));
         }
         CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+        transformer.close();
     }
 }
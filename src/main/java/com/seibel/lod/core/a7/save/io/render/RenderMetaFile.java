@@ -33,11 +33,15 @@ public class RenderMetaFile extends MetaFile {
     //    null									- Nothing is loaded or being loaded
     AtomicReference<Object> data = new AtomicReference<>(null);
 
-    //FIXME: This can cause concurrent modification of LodRenderSource.
-    //       Not sure if it will cause issues or not.
+    // The colors are outdated until a transform started after their last change replaced the data.
+    // The count is only moved on the render cache thread.
+    private final AtomicInteger colorChanges = new AtomicInteger();
+    private volatile int colorChangesApplied = 0;
+
+    // Only called on the render cache thread, so it never runs at the same time as a parent rebuild.
     public void updateChunkIfNeeded(ChunkSizedData chunkData) {
-        CompletableFuture<LodRenderSource> source = _readCached(data.get());
-        if (source.isDone()) source.join().update(chunkData);
+        LodRenderSource source = getLoadedRender();
+        if (source != null) source.update(chunkData, level);
     }
 
     public CompletableFuture<Void> flushAndSave(ExecutorService renderCacheThread) {
@@ -54,12 +58,19 @@ public class RenderMetaFile extends MetaFile {
     public interface CacheSourceProducer {
         CompletableFuture<LodDataSource> getSourceFuture(DhSectionPos sectionPos);
     }
+    @FunctionalInterface
+    public interface ChildSourceBuilder {
+        /** @return the render source built from the already loaded children, or null if they aren't all loaded */
+        LodRenderSource tryBuildFromChildren(DhSectionPos sectionPos);
+    }
     CacheValidator validator;
     CacheSourceProducer source;
+    ChildSourceBuilder childBuilder;
+    DataRenderTransformer transformer;
 
     // Load a metaFile in this path. It also automatically read the metadata.
-    public RenderMetaFile(CacheValidator validator, CacheSourceProducer source,
-                          IClientLevel level, File path) throws IOException {
+    public RenderMetaFile(CacheValidator validator, CacheSourceProducer source, ChildSourceBuilder childBuilder,
+                          DataRenderTransformer transformer, IClientLevel level, File path) throws IOException {
         super(path);
         this.level = level;
         loader = RenderSourceLoader.getLoader(dataTypeId, loaderVersion);
@@ -70,15 +81,19 @@ public class RenderMetaFile extends MetaFile {
         dataType = loader.clazz;
         this.validator = validator;
         this.source = source;
+        this.childBuilder = childBuilder;
+        this.transformer = transformer;
     }
 
     // Make a new MetaFile. It doesn't load or write any metadata itself.
-    public RenderMetaFile(CacheValidator validator, CacheSourceProducer source,
-                          IClientLevel level, File path, DhSectionPos pos) {
+    public RenderMetaFile(CacheValidator validator, CacheSourceProducer source, ChildSourceBuilder childBuilder,
+                          DataRenderTransformer transformer, IClientLevel level, File path, DhSectionPos pos) {
         super(path, pos);
         this.level = level;
         this.validator = validator;
         this.source = source;
+        this.childBuilder = childBuilder;
+        this.transformer = transformer;
     }
 
     // Suppress casting of CompletableFuture<?> to CompletableFuture<LodRenderSource>
@@ -101,9 +116,86 @@ public class RenderMetaFile extends MetaFile {
         return null;
     }
 
+    /** @return the render source if it is fully loaded and still in memory, otherwise null */
+    public LodRenderSource getLoadedRender() {
+        CompletableFuture<LodRenderSource> cached = _readCached(data.get());
+        if (cached == null || !cached.isDone() || cached.isCompletedExceptionally()) return null;
+        return cached.join();
+    }
+
+    /**
+     * Drops the loaded render source from the cache. It must be passed to {@link #saveEvicted} before it is released.
+     * @return the dropped source, or null if it isn't fully loaded
+     */
+    public LodRenderSource evict() {
+        Object obj = data.get();
+        if (!(obj instanceof SoftReference<?>)) return null; // Not loaded, or still loading
+        if (!data.compareAndSet(obj, null)) return null;
+        return (LodRenderSource) ((SoftReference<?>) obj).get();
+    }
+
+    /**
+     * Saves a source returned by {@link #evict} if it changed since it was written. Must run on the executor the
+     * file is loaded on, so a load started after the eviction reads the saved file.
+     */
+    public void saveEvicted(LodRenderSource render) {
+        if (render == null || !render.hasUnsavedChanges()) return;
+        // Otherwise the slices that were never read would be lost. Without them the file is better left as it is.
+        if (render.isPartiallyLoaded() && !readRemaining(render)) {
+            LOGGER.warn("Dropping the unsaved changes of render cache at {}, as the rest of it couldn't be read", path);
+            return;
+        }
+        writeRender(render);
+    }
+
+    /** Makes the next load transform the data again, instead of reading the file or building it from the children. */
+    public void markColorsChanged() {
+        colorChanges.incrementAndGet();
+    }
+
+    public boolean areColorsOutdated() {
+        return colorChangesApplied != colorChanges.get();
+    }
+
+    /** @return the value to pass to {@link #markColorsApplied} once a transform started now replaced the data */
+    public int getColorChanges() {
+        return colorChanges.get();
+    }
+
+    public void markColorsApplied(int colorChanges) {
+        colorChangesApplied = Math.max(colorChangesApplied, colorChanges);
+    }
+
+    /**
+     * Reads the rest of the render source if it was only partially loaded and is still the cached one.
+     * @return true if anything was read
+     */
+    public boolean loadRemainingIfPartial() {
+        LodRenderSource render = getLoadedRender();
+        if (render == null || !render.isPartiallyLoaded()) return false;
+        return readRemaining(render);
+    }
+
+    private boolean readRemaining(LodRenderSource render) {
+        try (FileInputStream fio = getDataContent()) {
+            loader.loadRemaining(this, render, fio, level);
+            return true;
+        } catch (IOException e) {
+            LOGGER.warn("Failed to read the rest of render cache at {}:", path, e);
+            return false;
+        }
+    }
+
     // Cause: Generic Type runtime casting cannot safety check it.
     // However, the Union type ensures the 'data' should only contain the listed type.
     public CompletableFuture<LodRenderSource> loadOrGetCached(Executor fileReaderThreads) {
+        return loadOrGetCached(fileReaderThreads, Integer.MAX_VALUE);
+    }
+    /**
+     * @param maxVerticalSlices if the file is read, only the top this many entries of each column are read at first,
+     *                          see {@link #loadRemainingIfPartial}
+     */
+    public CompletableFuture<LodRenderSource> loadOrGetCached(Executor fileReaderThreads, int maxVerticalSlices) {
         Object obj = data.get();
 
         CompletableFuture<LodRenderSource> cached = _readCached(obj);
@@ -116,17 +208,20 @@ public class RenderMetaFile extends MetaFile {
 
         // Would use faster and non-nesting Compare and exchange. But java 8 doesn't have it! :(
         boolean worked = data.compareAndSet(obj, future);
-        if (!worked) return loadOrGetCached(fileReaderThreads);
+        if (!worked) return loadOrGetCached(fileReaderThreads, maxVerticalSlices);
 
         // Now, there should only ever be one thread at a time here due to the CAS operation above.
 
         // Would use CompletableFuture.completeAsync(...), But, java 8 doesn't have it! :(
         //return future.completeAsync(this::loadAndUpdateRenderSource, fileReaderThreads);
-        CompletableFuture.supplyAsync(() -> buildFuture(fileReaderThreads), fileReaderThreads)
+        CompletableFuture.supplyAsync(() -> buildFuture(fileReaderThreads, maxVerticalSlices), fileReaderThreads)
                 .thenCompose((sourceCompletableFuture) -> sourceCompletableFuture)
                 .whenComplete((renderSource, e) -> {
             if (e != null) {
-                LOGGER.error("Uncaught error loading file {}: ", path, e);
+                // Cancelled transforms are expected, the section will be loaded again if it comes back into the tree
+                if (!(e instanceof CancellationException || e.getCause() instanceof CancellationException)) {
+                    LOGGER.error("Uncaught error loading file {}: ", path, e);
+                }
                 future.complete(null);
             }
             future.complete(renderSource);
@@ -135,15 +230,18 @@ public class RenderMetaFile extends MetaFile {
         return future;
     }
 
-    private CompletableFuture<LodRenderSource> buildFuture(Executor executorService) {
-        if (path.exists()) {
+    private CompletableFuture<LodRenderSource> buildFuture(Executor executorService, int maxVerticalSlices) {
+        int colorChanges = getColorChanges();
+        // Both the file and the children have the old colors
+        boolean colorsOutdated = areColorsOutdated();
+        if (path.exists() && !colorsOutdated) {
             try {
                 updateMetaData();
                 if (validator.isCacheValid(pos, timestamp)) {
                     // Load the file.
                     try (FileInputStream fio = getDataContent()) {
                         return CompletableFuture.completedFuture(
-                                loader.loadRender(this, fio, level));
+                                loader.loadRender(this, fio, level, maxVerticalSlices));
                     }
                 }
             } catch (IOException e) {
@@ -151,11 +249,21 @@ public class RenderMetaFile extends MetaFile {
                 LOGGER.warn("Will ignore cache file.");
             }
         }
+        // Building from already loaded children is cheaper than reading and transforming the data again
+        LodRenderSource fromChildren = colorsOutdated ? null : childBuilder.tryBuildFromChildren(pos);
+        if (fromChildren != null) {
+            dataLevel = (byte) (pos.sectionDetail - fromChildren.getDetailOffset());
+            return CompletableFuture.completedFuture(writeRender(fromChildren));
+        }
+
         // Otherwise, re-query and make the RenderSource
         CompletableFuture<LodDataSource> dataFuture = source.getSourceFuture(pos);
         return dataFuture.thenCombineAsync(
-                DataRenderTransformer.asyncTransformDataSource(dataFuture, level),
-                this::write, executorService);
+                transformer.transform(pos, dataFuture),
+                (parent, render) -> {
+                    markColorsApplied(colorChanges);
+                    return write(parent, render);
+                }, executorService);
     }
 
     private FileInputStream getDataContent() throws IOException {
@@ -187,9 +295,13 @@ public class RenderMetaFile extends MetaFile {
 
     private LodRenderSource write(LodDataSource parent, LodRenderSource render) {
         if (parent == null) return null;
+        //TODO: Update Timestamp & stuff based on parent
+        dataLevel = parent.getDataDetail();
+        return writeRender(render);
+    }
+
+    private LodRenderSource writeRender(LodRenderSource render) {
         try {
-            //TODO: Update Timestamp & stuff based on parent
-            dataLevel = parent.getDataDetail();
             loader = RenderSourceLoader.getLoader(render.getClass(), render.getRenderVersion());
             dataType = render.getClass();
             dataTypeId = loader.renderTypeId;
@@ -0,0 +1,136 @@
+package com.seibel.lod.core.a7.util;
+
+import com.seibel.lod.core.ModInfo;
+import com.seibel.lod.core.logging.DhLoggerBuilder;
+import org.apache.logging.log4j.Logger;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Pools long arrays by their exact length, so the large arrays of render sources can be
+ * reused instead of being reallocated whenever sections are loaded and evicted. <br>
+ * Arrays are handed back with {@link #release} once nothing reads them anymore. With leak tracking on,
+ * borrowed arrays that get garbage collected without being released are logged along with where they were borrowed,
+ * unless they were borrowed with {@link #borrowCollectable}.
+ */
+public class LongArrayPool {
+    private static final Logger LOGGER = DhLoggerBuilder.getLogger();
+    public static final LongArrayPool INSTANCE = new LongArrayPool(256L << 20, ModInfo.IS_DEV_BUILD);
+
+    private final long maxPooledBytes;
+    private final AtomicLong pooledBytes = new AtomicLong();
+    private final ConcurrentHashMap<Integer, ConcurrentLinkedQueue<long[]>> pooledByLength = new ConcurrentHashMap<>();
+
+    private final boolean trackLeaks;
+    private final ReferenceQueue<long[]> collected = new ReferenceQueue<>();
+    // Keyed by the record itself, as arrays don't have a usable hashCode
+    private final ConcurrentHashMap<BorrowRecord, Boolean> borrowed = new ConcurrentHashMap<>();
+
+    private static final class BorrowRecord extends WeakReference<long[]> {
+        final int identityHash;
+        final Throwable borrowTrace;
+        final boolean mayBeCollected;
+
+        BorrowRecord(long[] array, ReferenceQueue<long[]> queue, boolean mayBeCollected) {
+            super(array, queue);
+            identityHash = System.identityHashCode(array);
+            this.mayBeCollected = mayBeCollected;
+            borrowTrace = new Throwable("Borrowed long[" + array.length + "] here");
+        }
+    }
+
+    /**
+     * @param maxPooledBytes released arrays are dropped instead of pooled once the pool holds this many bytes
+     * @param trackLeaks whether to record where each array was borrowed, which is slow
+     */
+    public LongArrayPool(long maxPooledBytes, boolean trackLeaks) {
+        this.maxPooledBytes = maxPooledBytes;
+        this.trackLeaks = trackLeaks;
+    }
+
+    /** @return a zeroed array of exactly the given length, just like a new one */
+    public long[] borrow(int length) {
+        return borrow(length, false);
+    }
+
+    /**
+     * Like {@link #borrow}, for owners that may be dropped by the GC instead of released, such as softly cached render sources.
+     * These arrays aren't reported as leaked when they are collected.
+     */
+    public long[] borrowCollectable(int length) {
+        return borrow(length, true);
+    }
+
+    private long[] borrow(int length, boolean mayBeCollected) {
+        long[] array = null;
+        ConcurrentLinkedQueue<long[]> pooled = pooledByLength.get(length);
+        if (pooled != null) array = pooled.poll();
+        if (array == null) {
+            array = new long[length];
+        } else {
+            pooledBytes.addAndGet(-(long) length * Long.BYTES);
+            Arrays.fill(array, 0);
+        }
+        if (trackLeaks) {
+            reportLeaks();
+            borrowed.put(new BorrowRecord(array, collected, mayBeCollected), Boolean.TRUE);
+        }
+        return array;
+    }
+
+    /** Hands an array back. It must not be used by the caller afterwards. */
+    public void release(long[] array) {
+        if (array == null) return;
+        if (trackLeaks) {
+            reportLeaks();
+            if (!untrack(array)) {
+                LOGGER.warn("Released a long[{}] that isn't borrowed from this pool, or was already released", array.length,
+                        new Throwable("Released here"));
+                return;
+            }
+        }
+        long size = (long) array.length * Long.BYTES;
+        if (pooledBytes.addAndGet(size) > maxPooledBytes) {
+            pooledBytes.addAndGet(-size);
+            return;
+        }
+        pooledByLength.computeIfAbsent(array.length, (length) -> new ConcurrentLinkedQueue<>()).offer(array);
+    }
+
+    public long getPooledBytes() {
+        return pooledBytes.get();
+    }
+
+    /** @return the number of arrays currently borrowed, only counted when leak tracking is on */
+    public int getBorrowedCount() {
+        return borrowed.size();
+    }
+
+    private boolean untrack(long[] array) {
+        int identityHash = System.identityHashCode(array);
+        for (BorrowRecord record : borrowed.keySet()) {
+            if (record.identityHash == identityHash && record.get() == array) {
+                borrowed.remove(record);
+                // Cleared so it isn't reported once the array is collected
+                record.clear();
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void reportLeaks() {
+        Reference<? extends long[]> reference;
+        while ((reference = collected.poll()) != null) {
+            if (borrowed.remove(reference) != null && !((BorrowRecord) reference).mayBeCollected) {
+                LOGGER.warn("A pooled array was garbage collected without being released:", ((BorrowRecord) reference).borrowTrace);
+            }
+        }
+    }
+}
@@ -74,6 +74,11 @@ public class DhClientServerWorld extends DhWorld implements IClientWorld, IServe
         levels.values().forEach(DhClientServerLevel::doWorldGen);
     }
 
+    @Override
+    public void onResourcesReloaded() {
+        levels.values().forEach(DhClientServerLevel::onResourcesReloaded);
+    }
+
     @Override
     public CompletableFuture<Void> saveAndFlush() {
         return CompletableFuture.allOf(levels.values().stream().map(DhClientServerLevel::save).toArray(CompletableFuture[]::new));
@@ -69,6 +69,11 @@ public class DhClientWorld extends DhWorld implements IClientWorld {
         eventLoop.tick();
     }
 
+    @Override
+    public void onResourcesReloaded() {
+        levels.values().forEach(DhClientLevel::onResourcesReloaded);
+    }
+
     @Override
     public CompletableFuture<Void> saveAndFlush() {
         return CompletableFuture.allOf(levels.values().stream().map(DhClientLevel::save).toArray(CompletableFuture[]::new));
@@ -2,4 +2,7 @@ package com.seibel.lod.core.a7.world;
 
 public interface IClientWorld {
     void clientTick();
+
+    /** Called when resource packs are (re)loaded, as the cached lod colors depend on them. */
+    void onResourcesReloaded();
 }
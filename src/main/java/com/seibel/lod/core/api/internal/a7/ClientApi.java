@@ -161,6 +161,13 @@ public class ClientApi
 		profiler.pop();
 	}
 
+	/** Should be called after resource packs are reloaded, so lod colors are recomputed with the new textures. */
+	public void resourceReloadEvent() {
+		if (SharedApi.currentWorld instanceof IClientWorld) {
+			((IClientWorld) SharedApi.currentWorld).onResourcesReloaded();
+		}
+	}
+
 	public void clientTickEvent() {
 		IProfilerWrapper profiler = MC.getProfiler();
 		profiler.push("DH-ClientTick");
@@ -19,6 +19,8 @@
 
 package com.seibel.lod.core.api.internal.a7;
 
+import com.seibel.lod.core.a7.level.ILevel;
+import com.seibel.lod.core.a7.level.IServerLevel;
 import com.seibel.lod.core.a7.world.DhClientServerWorld;
 import com.seibel.lod.core.a7.world.DhServerWorld;
 import com.seibel.lod.core.a7.world.IServerWorld;
@@ -98,9 +100,16 @@ public class ServerApi
 	}
 
 	public void serverChunkLoadEvent(IChunkWrapper chunk, ILevelWrapper world) {
-		//TODO
+		updateChunk(chunk, world);
 	}
 	public void serverChunkSaveEvent(IChunkWrapper chunk, ILevelWrapper world) {
-		//TODO
+		updateChunk(chunk, world);
+	}
+	
+	private void updateChunk(IChunkWrapper chunk, ILevelWrapper world) {
+		if (!(SharedApi.currentWorld instanceof IServerWorld)) return;
+		ILevel level = SharedApi.currentWorld.getLevel(world);
+		// The chunks are built in batches on the next server tick
+		if (level instanceof IServerLevel) ((IServerLevel) level).updateChunk(chunk);
 	}
 }
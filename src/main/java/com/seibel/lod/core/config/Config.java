@@ -154,6 +154,15 @@ public class Config
                                 + "     or "+ EDropoffQuality.PERFORMANCE_FOCUSED +" otherwise.")
                         .build();
 
+                public static ConfigEntry<Integer> dropoffHysteresis = new ConfigEntry.Builder<Integer>()
+                        .setMinDefaultMax(0, 10, 50)
+                        .comment(""
+                                + "How much further away, in percent, fake chunks have to be to lose a detail level \n"
+                                + " than they had to be close to gain it. \n"
+                                + "Higher settings stop fake chunks from switching detail back and forth \n"
+                                + " while moving along the edge of a detail level, but keep more detail loaded.")
+                        .build();
+
                 public static ConfigEntry<Integer> lodBiomeBlending = new ConfigEntry.Builder<Integer>()
                         .setMinDefaultMax(0,1,7)
                         .comment(""
@@ -727,6 +736,34 @@ public class Config
                                 + "\n"
                                 + "The maximum value is the number of logical processors on your CPU.")
                         .build();
+
+                public static ConfigEntry<Integer> numberOfDataTransformerThreads = new ConfigEntry.Builder<Integer>()
+                        .setMinDefaultMax(1,
+                                Math.max(Runtime.getRuntime().availableProcessors()/2, 1),
+                                Runtime.getRuntime().availableProcessors())
+                        .comment(""
+                                + "How many threads are used when turning the saved LOD data \n"
+                                + " into data that can be rendered? \n"
+                                + "\n"
+                                + "A higher number makes fake chunks appear faster after \n"
+                                + " teleporting or loading a world, at the cost of more CPU usage. \n"
+                                + "\n"
+                                + "The maximum value is the number of logical processors on your CPU.")
+                        .build();
+
+                public static ConfigEntry<Integer> numberOfChunkBuilderThreads = new ConfigEntry.Builder<Integer>()
+                        .setMinDefaultMax(1,
+                                Math.max(Runtime.getRuntime().availableProcessors()/4, 1),
+                                Runtime.getRuntime().availableProcessors())
+                        .comment(""
+                                + "How many threads are used when turning loaded and generated \n"
+                                + " chunks into LOD data? \n"
+                                + "\n"
+                                + "A higher number makes the LODs of newly loaded chunks \n"
+                                + " update faster, at the cost of more CPU usage. \n"
+                                + "\n"
+                                + "The maximum value is the number of logical processors on your CPU.")
+                        .build();
             }
 
 
@@ -891,6 +928,26 @@ public class Config
                                 + "How frequently should vertex buffers (geometry) be rebuilt and sent to the GPU? \n"
                                 + "Higher settings may cause stuttering, but will prevent holes in the world")
                         .build();
+
+                public static ConfigEntry<Boolean> offHeapRenderData = new ConfigEntry.Builder<Boolean>()
+                        .set(false)
+                        .comment(""
+                                + "Should the data fake chunks are rendered from be stored \n"
+                                + " outside of Java's heap? \n"
+                                + "\n"
+                                + "Keeps large view distances from filling the heap, \n"
+                                + " which can reduce stuttering from garbage collection. \n"
+                                + "Only applies to data loaded after this is changed.")
+                        .build();
+
+                public static ConfigEntry<Integer> offHeapRenderDataBudgetInMB = new ConfigEntry.Builder<Integer>()
+                        .setMinDefaultMax(64, 1024, 16384)
+                        .comment(""
+                                + "How many megabytes of memory outside of Java's heap \n"
+                                + " may be used for render data? \n"
+                                + "\n"
+                                + "Once it is used up, any further data is stored on the heap.")
+                        .build();
             }
         }
     }
@@ -357,11 +357,11 @@ public class DataPointUtil
 			int size = source.length/sourceVertSize;
 			long[] dataToMerge = new long[sourceVertSize];
 			long[] newData = new long[size * targetVertSize];
+			VerticalMergeBuffer buffer = tLocalMergeBuffer.get();
 			for (int i = 0; i < size; i++)
 			{
 				System.arraycopy(source, i * sourceVertSize, dataToMerge, 0, sourceVertSize);
-				long[] tempBuffer = DataPointUtil.mergeMultiData(dataToMerge, sourceVertSize, targetVertSize);
-				System.arraycopy(tempBuffer, 0, newData, i * targetVertSize, targetVertSize);
+				DataPointUtil.mergeMultiData(dataToMerge, sourceVertSize, targetVertSize, newData, i * targetVertSize, buffer);
 			}
 			return newData;
 		} else {
@@ -374,335 +374,171 @@ public class DataPointUtil
 		}
 	}
 
-	private static final ThreadLocal<short[]> tLocalHeightAndDepth = new ThreadLocal<short[]>();
-	private static final ThreadLocal<int[]> tDataIndexCache = new ThreadLocal<int[]>();
+	private static final ThreadLocal<VerticalMergeBuffer> tLocalMergeBuffer = ThreadLocal.withInitial(VerticalMergeBuffer::new);
 	private static final ThreadLocal<long[]> tMaxVerticalData = new ThreadLocal<long[]>();
 	/**
 	 * This method merge column of multiple data together
 	 * @param dataToMerge one or more columns of data
 	 * @param inputVerticalData vertical size of an input data
 	 * @param maxVerticalData max vertical size of the merged data
-	 * @return one column of correctly parsed data
+	 * @return one column of correctly parsed data, the array is reused by the next call on the same thread
 	 */
-	// TODO: Make this operate on a out param array, to allow skipping copy array on use
 	public static long[] mergeMultiData(long[] dataToMerge, int inputVerticalData, int maxVerticalData)
 	{
-		//size indicate how many position we are merging in one position
-		int size = dataToMerge.length / inputVerticalData;
-		
-		// We initialize the arrays that are going to be used
-		int heightAndDepthLength = (MAX_WORLD_Y_SIZE / 2 + 16) * 2;
-		short[] heightAndDepth = tLocalHeightAndDepth.get();
-		if (heightAndDepth==null || heightAndDepth.length != heightAndDepthLength) {
-			heightAndDepth = new short[heightAndDepthLength];
-			tLocalHeightAndDepth.set(heightAndDepth);
-		}
-		int dataPointLength = maxVerticalData;
 		long[] dataPoint = tMaxVerticalData.get();
-		if (dataPoint==null || dataPoint.length != dataPointLength) {
-			dataPoint = new long[dataPointLength];
+		if (dataPoint==null || dataPoint.length != maxVerticalData) {
+			dataPoint = new long[maxVerticalData];
 			tMaxVerticalData.set(dataPoint);
-		} else Arrays.fill(dataPoint, 0);
+		}
+		mergeMultiData(dataToMerge, inputVerticalData, maxVerticalData, dataPoint, 0, tLocalMergeBuffer.get());
+		return dataPoint;
+	}
+	
+	/**
+	 * This method merge column of multiple data together
+	 * @param dataToMerge one or more columns of data
+	 * @param inputVerticalData vertical size of an input data
+	 * @param maxVerticalData max vertical size of the merged data
+	 * @param output the merged column is written to output[outputOffset, outputOffset + maxVerticalData)
+	 * @param buffer scratch space, reused between calls so no allocation happens once it is warmed up
+	 */
+	public static void mergeMultiData(long[] dataToMerge, int inputVerticalData, int maxVerticalData,
+			long[] output, int outputOffset, VerticalMergeBuffer buffer)
+	{
+		//size indicate how many position we are merging in one position
+		int size = dataToMerge.length / inputVerticalData;
+		Arrays.fill(output, outputOffset, outputOffset + maxVerticalData, 0);
 		
 		byte genMode = getGenerationMode(dataToMerge[0]);
 		if (genMode == 0) genMode = 1; // FIXME: Hack to make the version 10 genMode never be 0.
 		boolean allEmpty = true;
 		boolean allVoid = true;
-		boolean limited = false;
-		boolean allDefault;
 		long singleData;
 		
-		
-		short depth;
-		short height;
-		int count = 0;
-		int i;
-		int ii;
-		int dataIndex;
-		
-		//We collect the indexes of the data, ordered by the depth
+		//We collect every position as a run of intervals ordered from top to bottom
+		buffer.begin(size, size * inputVerticalData);
 		for (int index = 0; index < size; index++)
 		{
-			if (index == 0)
+			for (int dataIndex = 0; dataIndex < inputVerticalData; dataIndex++)
 			{
-				for (dataIndex = 0; dataIndex < inputVerticalData; dataIndex++)
-				{
-					singleData = dataToMerge[dataIndex];
-					if (doesItExist(singleData))
-					{
-						//genMode = Math.min(genMode, getGenerationMode(singleData));
-						allEmpty = false;
-						if (!isVoid(singleData))
-						{
-							allVoid = false;
-							count++;
-							heightAndDepth[dataIndex * 2] = getHeight(singleData);
-							heightAndDepth[dataIndex * 2 +1] = getDepth(singleData);
-						}
-					}
-					else
-						break;
-				}
-			}
-			else
-			{
-				for (dataIndex = 0; dataIndex < inputVerticalData; dataIndex++)
+				singleData = dataToMerge[index * inputVerticalData + dataIndex];
+				if (!doesItExist(singleData))
+					break;
+				allEmpty = false;
+				if (!isVoid(singleData))
 				{
-					singleData = dataToMerge[index * inputVerticalData + dataIndex];
-					if (doesItExist(singleData))
-					{
-						//genMode = Math.min(genMode, getGenerationMode(singleData));
-						allEmpty = false;
-						if (!isVoid(singleData))
-						{
-							allVoid = false;
-							depth = getDepth(singleData);
-							height = getHeight(singleData);
-							
-							int botPos = -1;
-							int topPos = -1;
-							//values fall in between and possibly require extension of array
-							boolean botExtend = false;
-							boolean topExtend = false;
-							for (i = 0; i < count; i++)
-							{
-								if (depth < heightAndDepth[i * 2] && depth >= heightAndDepth[i * 2 + 1])
-								{
-									botPos = i;
-									break;
-								}
-								else if (depth < heightAndDepth[i * 2 + 1] && ((i + 1 < count && depth >= heightAndDepth[(i + 1) * 2]) || i + 1 == count))
-								{
-									botPos = i;
-									botExtend = true;
-									break;
-								}
-							}
-							for (i = 0; i < count; i++)
-							{
-								if (height <= heightAndDepth[i * 2] && height > heightAndDepth[i * 2 + 1])
-								{
-									topPos = i;
-									break;
-								}
-								else if (height <= heightAndDepth[i * 2 + 1] && ((i + 1 < count && height > heightAndDepth[(i + 1) * 2]) || i + 1 == count))
-								{
-									topPos = i;
-									topExtend = true;
-									break;
-								}
-							}
-							if (topPos == -1)
-							{
-								if (botPos == -1)
-								{
-									//whole block falls above
-									extendArray(heightAndDepth, 2, 0, 1, count);
-									heightAndDepth[0] = height;
-									heightAndDepth[1] = depth;
-									count++;
-								}
-								else if (!botExtend)
-								{
-									//only top falls above extending it there, while bottom is inside existing
-									shrinkArray(heightAndDepth, 2, 0, botPos, count);
-									heightAndDepth[0] = height;
-									count -= botPos;
-								}
-								else
-								{
-									//top falls between some blocks, extending those as well
-									shrinkArray(heightAndDepth, 2, 0, botPos, count);
-									heightAndDepth[0] = height;
-									heightAndDepth[1] = depth;
-									count -= botPos;
-								}
-							}
-							else if (!topExtend)
-							{
-								if (!botExtend)
-									//both top and bottom are within some exiting blocks, possibly merging them
-									heightAndDepth[topPos * 2 + 1] = heightAndDepth[botPos * 2 + 1];
-								else
-									//top falls between some blocks, extending it there
-									heightAndDepth[topPos * 2 + 1] = depth;
-								shrinkArray(heightAndDepth, 2, topPos + 1, botPos - topPos, count);
-								count -= botPos - topPos;
-							}
-							else
-							{
-								if (!botExtend)
-								{
-									//only top is within some exiting block, extending it
-									topPos++; //to make it easier
-									heightAndDepth[topPos * 2] = height;
-									heightAndDepth[topPos * 2 + 1] = heightAndDepth[botPos * 2 + 1];
-									shrinkArray(heightAndDepth, 2, topPos + 1, botPos - topPos, count);
-									count -= botPos - topPos;
-								}
-								else
-								{
-									//both top and bottom are outside existing blocks
-									shrinkArray(heightAndDepth, 2, topPos + 1, botPos - topPos, count);
-									count -= botPos - topPos;
-									extendArray(heightAndDepth, 2, topPos + 1, 1, count);
-									count++;
-									heightAndDepth[topPos * 2 + 2] = height;
-									heightAndDepth[topPos * 2 + 3] = depth;
-								}
-							}
-						}
-					}
-					else
-						break;
+					allVoid = false;
+					buffer.add(getHeight(singleData), getDepth(singleData));
 				}
 			}
+			buffer.endColumn();
 		}
 		
 		//We check if there is any data that's not empty or void
 		if (allEmpty)
-			return dataPoint;
+			return;
 		if (allVoid)
 		{
-			dataPoint[0] = createVoidDataPoint(genMode);
-			return dataPoint;
+			output[outputOffset] = createVoidDataPoint(genMode);
+			return;
 		}
 		
+		int count = buffer.union();
 		//we limit the vertical portion to maxVerticalData
-		int j = 0;
-		while (count > maxVerticalData)
-		{
-			limited = true;
-			ii = MAX_WORLD_Y_SIZE;
-			for (i = 0; i < count - 1; i++)
-			{
-				if (heightAndDepth[i * 2 + 1] - heightAndDepth[(i + 1) * 2] <= ii)
-				{
-					ii = heightAndDepth[i * 2 + 1] - heightAndDepth[(i + 1) * 2];
-					j = i;
-				}
-			}
-			heightAndDepth[j * 2 + 1] = heightAndDepth[(j + 1) * 2 + 1];
-			for (i = j + 1; i < count - 1; i++)
-			{
-				heightAndDepth[i * 2] = heightAndDepth[(i + 1) * 2];
-				heightAndDepth[i * 2 + 1] = heightAndDepth[(i + 1) * 2 + 1];
-			}
-			//System.arraycopy(heightAndDepth, j + 1, heightAndDepth, j, count - j - 1);
-			count--;
-		}
+		boolean limited = count > maxVerticalData;
+		count = buffer.limit(maxVerticalData);
 		//As standard the vertical lods are ordered from top to bottom
 		if (!limited && size == 1)
 		{
-			for (j = 0; j < count; j++)
-				dataPoint[j] = dataToMerge[j];
+			System.arraycopy(dataToMerge, 0, output, outputOffset, count);
+			return;
 		}
-		else
+		
+		//We want to efficiently memorize indexes
+		int[] dataIndexesCache = buffer.columnCursors(size);
+		
+		//For each lod height-depth value we have found we now want to generate the rest of the data
+		//by merging all lods at lower level that are contained inside the new ones
+		for (int j = 0; j < count; j++)
 		{
+			//We firstly collect height and depth data
+			//this will be added to each realtive long DataPoint
+			int height = buffer.getHeight(j);
+			int depth = buffer.getDepth(j);
 			
-			//We want to efficiently memorize indexes
-			int[] dataIndexesCache = tDataIndexCache.get();
-			if (dataIndexesCache==null || dataIndexesCache.length != size) {
-				dataIndexesCache = new int[size];
-				tDataIndexCache.set(dataIndexesCache);
-			}
-			Arrays.fill(dataIndexesCache,0);
+			//We initialize data useful for the merge
+			int numberOfChildren = 0;
+			allEmpty = true;
+			allVoid = true;
+			
+			//We initialize all the new values that we are going to put in the dataPoint
+			int tempAlpha = 0;
+			int tempRed = 0;
+			int tempGreen = 0;
+			int tempBlue = 0;
+			int tempLightBlock = 0;
+			int tempLightSky = 0;
+			// Note: not reset per position, a position without a lod in this range reuses the previous one
+			long data = 0;
 			
-			//For each lod height-depth value we have found we now want to generate the rest of the data
-			//by merging all lods at lower level that are contained inside the new ones
-			for (j = 0; j < count; j++)
+			//For each position that we want to merge
+			for (int index = 0; index < size; index++)
 			{
-				//We firstly collect height and depth data
-				//this will be added to each realtive long DataPoint
-				height = heightAndDepth[j * 2];
-				depth = heightAndDepth[j * 2 + 1];
-				
-				//if both height and depth are at 0 then we finished
-				if ((depth == 0 && height == 0) || j >= heightAndDepth.length / 2)
-					break;
-				
-				//We initialize data useful for the merge
-				int numberOfChildren = 0;
-				allEmpty = true;
-				allVoid = true;
-				
-				//We initialize all the new values that we are going to put in the dataPoint
-				int tempAlpha = 0;
-				int tempRed = 0;
-				int tempGreen = 0;
-				int tempBlue = 0;
-				int tempLightBlock = 0;
-				int tempLightSky = 0;
-				long data = 0;
-				
-				//For each position that we want to merge
-				for (int index = 0; index < size; index++)
+				//we scan the lods in the position from top to bottom
+				while(dataIndexesCache[index] < inputVerticalData)
 				{
-					//we scan the lods in the position from top to bottom
-					while(dataIndexesCache[index] < inputVerticalData)
+					singleData = dataToMerge[index * inputVerticalData + dataIndexesCache[index]];
+					if (doesItExist(singleData) && !isVoid(singleData))
 					{
-						singleData = dataToMerge[index * inputVerticalData + dataIndexesCache[index]];
-						if (doesItExist(singleData) && !isVoid(singleData))
+						dataIndexesCache[index]++;
+						if ((depth <= getDepth(singleData) && getDepth(singleData) < height)
+								|| (depth < getHeight(singleData) && getHeight(singleData) <= height))
 						{
-							dataIndexesCache[index]++;
-							if ((depth <= getDepth(singleData) && getDepth(singleData) < height)
-									|| (depth < getHeight(singleData) && getHeight(singleData) <= height))
-							{
-								data = singleData;
-								break;
-							}
-						}
-						else
+							data = singleData;
 							break;
-					}
-					if (!doesItExist(data))
-					{
-						data = createVoidDataPoint(genMode);
-					}
-					
-					if (doesItExist(data))
-					{
-						allEmpty = false;
-						if (!isVoid(data))
-						{
-							numberOfChildren++;
-							allVoid = false;
-							tempAlpha = Math.max(getAlpha(data),tempAlpha);
-							tempRed += getRed(data) * getRed(data);
-							tempGreen += getGreen(data) * getGreen(data);
-							tempBlue += getBlue(data) * getBlue(data);
-							tempLightBlock += getLightBlock(data);
-							tempLightSky += getLightSky(data);
 						}
 					}
+					else
+						break;
+				}
+				if (!doesItExist(data))
+				{
+					data = createVoidDataPoint(genMode);
 				}
 				
-				if (allEmpty)
-					//no child has been initialized
-					dataPoint[j] = EMPTY_DATA;
-				else if (allVoid)
-					//all the children are void
-					dataPoint[j] = createVoidDataPoint(genMode);
-				else
+				allEmpty = false;
+				if (!isVoid(data))
 				{
-					//we have at least 1 child
-					if (size != 1)
-					{
-						tempRed = tempRed / numberOfChildren;
-						tempGreen = tempGreen / numberOfChildren;
-						tempBlue = tempBlue / numberOfChildren;
-						tempLightBlock = tempLightBlock / numberOfChildren;
-						tempLightSky = tempLightSky / numberOfChildren;
-					}
-					//data = createDataPoint(tempAlpha, tempRed, tempGreen, tempBlue, height, depth, tempLightSky, tempLightBlock, tempGenMode, allDefault);
-					//if (j > 0 && getColor(data) == getColor(dataPoint[j]))
-					//{
-					//	add simplification at the end due to color
-					//}
-					dataPoint[j] = createDataPoint((int) Math.sqrt(tempAlpha), (int) Math.sqrt(tempRed), (int) Math.sqrt(tempGreen), (int) Math.sqrt(tempBlue), height, depth, tempLightSky, tempLightBlock, genMode);
+					numberOfChildren++;
+					allVoid = false;
+					tempAlpha = Math.max(getAlpha(data),tempAlpha);
+					tempRed += getRed(data) * getRed(data);
+					tempGreen += getGreen(data) * getGreen(data);
+					tempBlue += getBlue(data) * getBlue(data);
+					tempLightBlock += getLightBlock(data);
+					tempLightSky += getLightSky(data);
 				}
 			}
+			
+			if (allEmpty)
+				//no child has been initialized
+				output[outputOffset + j] = EMPTY_DATA;
+			else if (allVoid)
+				//all the children are void
+				output[outputOffset + j] = createVoidDataPoint(genMode);
+			else
+			{
+				//we have at least 1 child
+				if (size != 1)
+				{
+					tempRed = tempRed / numberOfChildren;
+					tempGreen = tempGreen / numberOfChildren;
+					tempBlue = tempBlue / numberOfChildren;
+					tempLightBlock = tempLightBlock / numberOfChildren;
+					tempLightSky = tempLightSky / numberOfChildren;
+				}
+				output[outputOffset + j] = createDataPoint((int) Math.sqrt(tempAlpha), (int) Math.sqrt(tempRed), (int) Math.sqrt(tempGreen), (int) Math.sqrt(tempBlue), height, depth, tempLightSky, tempLightBlock, genMode);
+			}
 		}
-		return dataPoint;
 	}
 }
\ No newline at end of file
@@ -0,0 +1,230 @@
+/*
+ *    This file is part of the Distant Horizons mod (formerly the LOD Mod),
+ *    licensed under the GNU LGPL v3 License.
+ *
+ *    Copyright (C) 2020-2022  James Seibel
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU Lesser General Public License as published by
+ *    the Free Software Foundation, version 3.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the GNU Lesser General Public License
+ *    along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.seibel.lod.core.util;
+
+/**
+ * Reusable scratch space for merging several vertical columns into one. <br>
+ * Each source column is added as a run of height/depth intervals ordered top to bottom,
+ * the runs are then unioned pairwise (intervals only merge when they strictly overlap,
+ * touching intervals stay separate) and finally the smallest gaps are closed
+ * until the result fits the requested vertical size. <br>
+ * The buffers only grow, so once warmed up no allocation happens during a merge.
+ * An instance must not be shared between threads.
+ */
+public class VerticalMergeBuffer
+{
+	private static final int DEPTH_BITS = 16;
+	private static final int DEPTH_MASK = 0xFFFF;
+
+	/** intervals packed as (height << 16 | depth) */
+	private int[] intervals = new int[64];
+	private int[] swap = new int[64];
+	/** exclusive end index of every run in {@link VerticalMergeBuffer#intervals} */
+	private int[] runEnds = new int[8];
+	private int[] columnCursors = new int[8];
+
+	private int runCount = 0;
+	private int intervalCount = 0;
+
+
+	/**
+	 * Resets the buffer for a new merge
+	 * @param columnCount number of columns that will be added
+	 * @param maxIntervals upper bound of the total number of intervals that will be added
+	 */
+	public void begin(int columnCount, int maxIntervals)
+	{
+		if (intervals.length < maxIntervals)
+		{
+			intervals = new int[maxIntervals];
+			swap = new int[maxIntervals];
+		}
+		if (runEnds.length < columnCount)
+		{
+			runEnds = new int[columnCount];
+			columnCursors = new int[columnCount];
+		}
+		runCount = 0;
+		intervalCount = 0;
+	}
+
+	/** Appends an interval to the current column, intervals must be added top to bottom. */
+	public void add(int height, int depth)
+	{
+		intervals[intervalCount++] = height << DEPTH_BITS | depth;
+	}
+
+	/** Closes the current column. Empty columns are dropped. */
+	public void endColumn()
+	{
+		if (intervalCount == (runCount == 0 ? 0 : runEnds[runCount - 1]))
+			return;
+		runEnds[runCount++] = intervalCount;
+	}
+
+	/**
+	 * Unions all the added columns.
+	 * @return the number of resulting intervals, ordered top to bottom
+	 */
+	public int union()
+	{
+		int[] source = intervals;
+		int[] target = swap;
+		while (runCount > 1)
+		{
+			int newRunCount = 0;
+			int start = 0;
+			int write = 0;
+			for (int run = 0; run < runCount; run += 2)
+			{
+				int end = runEnds[run];
+				if (run + 1 == runCount)
+				{
+					System.arraycopy(source, start, target, write, end - start);
+					write += end - start;
+				}
+				else
+				{
+					int otherEnd = runEnds[run + 1];
+					write = unionRuns(source, start, end, end, otherEnd, target, write);
+					end = otherEnd;
+				}
+				runEnds[newRunCount++] = write;
+				start = end;
+			}
+			runCount = newRunCount;
+			int[] temp = source;
+			source = target;
+			target = temp;
+		}
+		intervals = source;
+		swap = target;
+		intervalCount = runCount == 0 ? 0 : runEnds[0];
+		return intervalCount;
+	}
+
+	/** Sweeps two runs ordered by height, merging the strictly overlapping intervals. */
+	private static int unionRuns(int[] source, int a, int aEnd, int b, int bEnd, int[] target, int write)
+	{
+		int runStart = write;
+		while (a < aEnd || b < bEnd)
+		{
+			int next;
+			if (b == bEnd || (a < aEnd && source[a] >>> DEPTH_BITS >= source[b] >>> DEPTH_BITS))
+				next = source[a++];
+			else
+				next = source[b++];
+
+			if (write != runStart && next >>> DEPTH_BITS > (target[write - 1] & DEPTH_MASK))
+			{
+				int lastDepth = target[write - 1] & DEPTH_MASK;
+				if ((next & DEPTH_MASK) < lastDepth)
+					target[write - 1] = (target[write - 1] & ~DEPTH_MASK) | (next & DEPTH_MASK);
+			}
+			else
+			{
+				target[write++] = next;
+			}
+		}
+		return write;
+	}
+
+	/**
+	 * Closes the smallest gaps until at most maxCount intervals are left.
+	 * Equal gaps are closed bottom first.
+	 * @return the number of intervals left
+	 */
+	public int limit(int maxCount)
+	{
+		int toRemove = intervalCount - maxCount;
+		if (toRemove <= 0)
+			return intervalCount;
+
+		// find the smallest gap size where at least toRemove gaps are smaller or equal
+		int low = 0;
+		int high = DataPointUtil.MAX_WORLD_Y_SIZE;
+		while (low < high)
+		{
+			int mid = (low + high) >>> 1;
+			if (countGaps(mid + 1) >= toRemove)
+				high = mid;
+			else
+				low = mid + 1;
+		}
+		int threshold = low;
+		int tiesToRemove = toRemove - countGaps(threshold);
+		int tiesToKeep = countGaps(threshold + 1) - countGaps(threshold) - tiesToRemove;
+
+		int write = 1;
+		int previousDepth = intervals[0] & DEPTH_MASK;
+		for (int i = 1; i < intervalCount; i++)
+		{
+			int interval = intervals[i];
+			int gap = previousDepth - (interval >>> DEPTH_BITS);
+			previousDepth = interval & DEPTH_MASK;
+
+			boolean close = gap < threshold;
+			if (gap == threshold)
+			{
+				if (tiesToKeep > 0)
+					tiesToKeep--;
+				else
+					close = true;
+			}
+
+			if (close)
+				intervals[write - 1] = (intervals[write - 1] & ~DEPTH_MASK) | (interval & DEPTH_MASK);
+			else
+				intervals[write++] = interval;
+		}
+		intervalCount = write;
+		return intervalCount;
+	}
+
+	private int countGaps(int lessThan)
+	{
+		int count = 0;
+		for (int i = 1; i < intervalCount; i++)
+		{
+			if ((intervals[i - 1] & DEPTH_MASK) - (intervals[i] >>> DEPTH_BITS) < lessThan)
+				count++;
+		}
+		return count;
+	}
+
+	public int getHeight(int index)
+	{
+		return intervals[index] >>> DEPTH_BITS;
+	}
+
+	public int getDepth(int index)
+	{
+		return intervals[index] & DEPTH_MASK;
+	}
+
+	/** Per column read cursors, zeroed for the first columnCount entries. */
+	public int[] columnCursors(int columnCount)
+	{
+		for (int i = 0; i < columnCount; i++)
+			columnCursors[i] = 0;
+		return columnCursors;
+	}
+
+}
@@ -32,33 +32,55 @@ import java.util.function.Consumer;
 
 public class MovableGridRingList<T> extends ArrayList<T> implements List<T> {
 	
+	/** Same as a {@link BiConsumer} of the entry and its position, without creating a position for each entry */
+	@FunctionalInterface
+	public interface PosConsumer<T> {
+		void accept(T t, int x, int y);
+	}
+	
 	private AtomicReference<Pos2D> pos = new AtomicReference<Pos2D>();
 	
 	private final int halfSize;
 	private final int size;
 	private final ReentrantReadWriteLock moveLock = new ReentrantReadWriteLock();
 
-	private Pos2D[] ringIteratorList = null;
+	// Offsets from the center as x, y pairs, nearest first
+	private volatile int[] ringIteratorOffsets = null;
 
-	//TODO: Check if this needs to be synchronized
 	//FIXME: Make all usage of this class do stuff relative to the minPos instead of the center
-	private void buildRingIteratorList() {
-		ringIteratorList = null;
+	private int[] getRingIteratorOffsets() {
+		int[] offsets = ringIteratorOffsets;
+		if (offsets == null) {
+			// Racing threads build the same offsets, so it doesn't matter which one wins
+			offsets = buildRingIteratorOffsets(halfSize);
+			ringIteratorOffsets = offsets;
+		}
+		return offsets;
+	}
+
+	static int[] buildRingIteratorOffsets(int halfSize) {
+		int size = halfSize * 2 + 1;
 		Pos2D[] list = new Pos2D[size*size];
 
-			int i = 0;
-			for (int ix=-halfSize; ix<=halfSize; ix++) {
-				for (int iz=-halfSize; iz<=halfSize; iz++) {
-					list[i] = new Pos2D(ix, iz);
-					i++;
-				}
+		int i = 0;
+		for (int ix=-halfSize; ix<=halfSize; ix++) {
+			for (int iz=-halfSize; iz<=halfSize; iz++) {
+				list[i] = new Pos2D(ix, iz);
+				i++;
 			}
-			Arrays.sort(list, (a, b) -> {
-				double disSqrA = a.x* a.x+ a.y* a.y;
-				double disSqrB = b.x* b.x+ b.y* b.y;
-				return Double.compare(disSqrA, disSqrB);
-			});
-		ringIteratorList = list;
+		}
+		Arrays.sort(list, (a, b) -> {
+			double disSqrA = a.x* a.x+ a.y* a.y;
+			double disSqrB = b.x* b.x+ b.y* b.y;
+			return Double.compare(disSqrA, disSqrB);
+		});
+
+		int[] offsets = new int[list.length * 2];
+		for (i = 0; i < list.length; i++) {
+			offsets[i * 2] = list[i].x;
+			offsets[i * 2 + 1] = list[i].y;
+		}
+		return offsets;
 	}
 
 	public MovableGridRingList(int halfSize, int centerX, int centerY) {
@@ -280,15 +302,17 @@ public class MovableGridRingList<T> extends ArrayList<T> implements List<T> {
 		}
 	}
 
-	// TODO: Use MutablePos2D in the future
 	// Will skip null entries
 	public void forEachOrdered(Consumer<? super T> d) {
-		if (ringIteratorList == null) buildRingIteratorList();
+		int[] offsets = getRingIteratorOffsets();
 		moveLock.readLock().lock();
 		try {
 			Pos2D min = pos.get();
-			for (Pos2D offset : ringIteratorList) {
-				T t = _getUnsafe(min.x + offset.x, min.y + offset.y);
+			// The offsets are relative to the center
+			int centerX = min.x + halfSize;
+			int centerY = min.y + halfSize;
+			for (int i = 0; i < offsets.length; i += 2) {
+				T t = _getUnsafe(centerX + offsets[i], centerY + offsets[i + 1]);
 				if (t != null) d.accept(t);
 			}
 		}
@@ -297,16 +321,24 @@ public class MovableGridRingList<T> extends ArrayList<T> implements List<T> {
 		}
 	}
 
-	// TODO: Use MutablePos2D in the future
 	// Will pass in null entries
+	// Creates a Pos2D for each entry, use forEachPosOrdered(PosConsumer) in hot paths
 	public void forEachPosOrdered(BiConsumer<? super T, Pos2D> d) {
-		if (ringIteratorList == null) buildRingIteratorList();
+		forEachPosOrdered((t, x, y) -> d.accept(t, new Pos2D(x, y)));
+	}
+
+	// Will pass in null entries
+	public void forEachPosOrdered(PosConsumer<? super T> d) {
+		int[] offsets = getRingIteratorOffsets();
 		moveLock.readLock().lock();
 		try {
 			Pos2D min = pos.get();
-			for (Pos2D offset : ringIteratorList) {
-				T t = _getUnsafe(min.x + offset.x, min.y + offset.y);
-				d.accept(t, new Pos2D(min.x + offset.x, min.y + offset.y));
+			int centerX = min.x + halfSize;
+			int centerY = min.y + halfSize;
+			for (int i = 0; i < offsets.length; i += 2) {
+				int x = centerX + offsets[i];
+				int y = centerY + offsets[i + 1];
+				d.accept(_getUnsafe(x, y), x, y);
 			}
 		}
 		finally {
@@ -314,6 +346,55 @@ public class MovableGridRingList<T> extends ArrayList<T> implements List<T> {
 		}
 	}
 
+	/** @return a cursor over the positions nearest the current center first, see {@link OrderedCursor} */
+	public OrderedCursor orderedCursor() {
+		OrderedCursor cursor = new OrderedCursor();
+		cursor.reset();
+		return cursor;
+	}
+
+	/**
+	 * Walks the positions of the grid nearest the center first, without holding the lock in between, like:
+	 * {@code while (cursor.next()) cursor.get()}. <br>
+	 * The center is taken when the cursor is reset, so the walk is not affected if the grid moves,
+	 * but {@link #get} then returns null for the positions that left the grid. A cursor can be reset and reused.
+	 * Each {@link #get} takes the read lock, so prefer {@link #forEachPosOrdered(PosConsumer)} for whole-grid walks.
+	 */
+	public class OrderedCursor {
+		private final int[] offsets = getRingIteratorOffsets();
+		private int index;
+		private int centerX;
+		private int centerY;
+		private int x;
+		private int y;
+
+		private OrderedCursor() {}
+
+		public void reset() {
+			Pos2D min = pos.get();
+			centerX = min.x + halfSize;
+			centerY = min.y + halfSize;
+			index = -2;
+		}
+
+		/** @return false once every position was visited */
+		public boolean next() {
+			index += 2;
+			if (index >= offsets.length) return false;
+			x = centerX + offsets[index];
+			y = centerY + offsets[index + 1];
+			return true;
+		}
+
+		public int getX() {return x;}
+		public int getY() {return y;}
+
+		// return null if the position left the grid
+		public T get() {
+			return MovableGridRingList.this.get(x, y);
+		}
+	}
+
 
 
 	@Override
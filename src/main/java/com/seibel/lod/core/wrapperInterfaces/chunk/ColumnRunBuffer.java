@@ -0,0 +1,100 @@
+/*
+ *    This file is part of the Distant Horizons mod (formerly the LOD Mod),
+ *    licensed under the GNU LGPL v3 License.
+ *
+ *    Copyright (C) 2020-2022  James Seibel
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU Lesser General Public License as published by
+ *    the Free Software Foundation, version 3.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the GNU Lesser General Public License
+ *    along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.seibel.lod.core.wrapperInterfaces.chunk;
+
+import com.seibel.lod.core.wrapperInterfaces.block.IBlockStateWrapper;
+import com.seibel.lod.core.wrapperInterfaces.world.IBiomeWrapper;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * Reusable buffer of the runs found while scanning a chunk column from the top down. <br>
+ * Each run starts at its top Y and covers every block down to the top of the next run,
+ * adjacent blocks with the same biome, blockState and light share one run.
+ * 
+ * @see IChunkWrapper#scanColumn
+ */
+public class ColumnRunBuffer
+{
+	private int count = 0;
+	private int[] topYs = new int[32];
+	private IBiomeWrapper[] biomes = new IBiomeWrapper[32];
+	private IBlockStateWrapper[] blockStates = new IBlockStateWrapper[32];
+	private byte[] lights = new byte[32];
+	
+	
+	public void clear()
+	{
+		count = 0;
+	}
+	
+	/**
+	 * Adds the block at y, blocks must be added from the top down. <br>
+	 * Adding the top block of a slice where all blocks are identical adds the whole slice.
+	 */
+	public void add(int y, IBiomeWrapper biome, IBlockStateWrapper blockState, byte light)
+	{
+		if (count != 0 && lights[count - 1] == light
+				&& Objects.equals(blockStates[count - 1], blockState)
+				&& Objects.equals(biomes[count - 1], biome))
+			return;
+		
+		if (count == topYs.length)
+		{
+			int newLength = count * 2;
+			topYs = Arrays.copyOf(topYs, newLength);
+			biomes = Arrays.copyOf(biomes, newLength);
+			blockStates = Arrays.copyOf(blockStates, newLength);
+			lights = Arrays.copyOf(lights, newLength);
+		}
+		topYs[count] = y;
+		biomes[count] = biome;
+		blockStates[count] = blockState;
+		lights[count] = light;
+		count++;
+	}
+	
+	public int size()
+	{
+		return count;
+	}
+	
+	public int getTopY(int index)
+	{
+		return topYs[index];
+	}
+	
+	public IBiomeWrapper getBiome(int index)
+	{
+		return biomes[index];
+	}
+	
+	public IBlockStateWrapper getBlockState(int index)
+	{
+		return blockStates[index];
+	}
+	
+	public byte getLight(int index)
+	{
+		return lights[index];
+	}
+	
+}
@@ -27,6 +27,8 @@ import com.seibel.lod.core.wrapperInterfaces.block.IBlockDetailWrapper;
 import com.seibel.lod.core.wrapperInterfaces.block.IBlockStateWrapper;
 import com.seibel.lod.core.wrapperInterfaces.world.IBiomeWrapper;
 
+import java.util.Objects;
+
 /**
  * @author James Seibel
  * @version 3-16-2022
@@ -105,6 +107,44 @@ public interface IChunkWrapper extends IBindable
 	}
 
 	IBlockStateWrapper getBlockState(int x, int y, int z);
+	
+	/**
+	 * Scans the column from yTop down to yBottom (both inclusive), adding every block to the buffer
+	 * with its light packed as (blockLight << 4) + skyLight. <br>
+	 * Callers scan one section slice at a time, so yTop and yBottom are always in the same 16 block section. <br>
+	 * The default implementation looks up every block, implementations should override it
+	 * to read the section's data directly.
+	 */
+	default void scanColumn(int x, int z, int yTop, int yBottom, ColumnRunBuffer buffer)
+	{
+		IBiomeWrapper lastBiome = null;
+		IBlockStateWrapper lastBlockState = null;
+		byte lastLight = 0;
+		for (int y = yTop; y >= yBottom; y--)
+		{
+			IBiomeWrapper biome = getBiome(x, y, z);
+			IBlockStateWrapper blockState = getBlockState(x, y, z);
+			byte light = (byte) ((getBlockLight(x, y, z) << 4) + getSkyLight(x, y, z));
+			// only hand changes to the buffer
+			if (y == yTop || light != lastLight || !Objects.equals(blockState, lastBlockState) || !Objects.equals(biome, lastBiome))
+			{
+				buffer.add(y, biome, blockState, light);
+				lastBiome = biome;
+				lastBlockState = blockState;
+				lastLight = light;
+			}
+		}
+	}
+	
+	/**
+	 * Returns true if every block of the 16 block section starting at sectionMinY has the same
+	 * biome, blockState and light, in which case callers won't scan it. <br>
+	 * Only return true if that is certain, the default is always false.
+	 */
+	default boolean isSectionUniform(int sectionMinY)
+	{
+		return false;
+	}
 
     default DHChunkPos getChunkPos() {
 		return new DHChunkPos(getChunkPosX(), getChunkPosZ());
@@ -0,0 +1,150 @@
+/*
+ *    This file is part of the Distant Horizons mod (formerly the LOD Mod),
+ *    licensed under the GNU LGPL v3 License.
+ *
+ *    Copyright (C) 2020-2022  James Seibel
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU Lesser General Public License as published by
+ *    the Free Software Foundation, version 3.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the GNU Lesser General Public License
+ *    along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+import com.seibel.lod.core.a7.pos.DhBlockPos2D;
+import com.seibel.lod.core.a7.pos.DhSectionPos;
+import com.seibel.lod.core.a7.render.CircularDetailFalloffPolicy;
+import com.seibel.lod.core.config.Config;
+import com.seibel.lod.core.enums.config.EHorizontalQuality;
+import com.seibel.lod.core.enums.config.EHorizontalResolution;
+import com.seibel.lod.core.handlers.dependencyInjection.SingletonHandler;
+import com.seibel.lod.core.util.DetailDistanceUtil;
+import com.seibel.lod.core.util.LodUtil;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.Random;
+
+/**
+ * Checks that the thresholds {@link CircularDetailFalloffPolicy} works out give the same detail levels
+ * as {@link DetailDistanceUtil#getDetailLevelFromDistance} across the quality settings.
+ *
+ * @version 2022-9-21
+ */
+public class CircularDetailFalloffPolicyTests
+{
+	private static final byte SECTION_DETAIL = 6;
+	
+	private final EHorizontalQuality defaultQuality = Config.Client.Graphics.Quality.horizontalQuality.get();
+	private final EHorizontalResolution defaultResolution = Config.Client.Graphics.Quality.drawResolution.get();
+	private final int defaultScale = Config.Client.Graphics.Quality.horizontalScale.get();
+	private final int defaultRenderDistance = Config.Client.Graphics.Quality.lodChunkRenderDistance.get();
+	
+	
+	@BeforeClass
+	public static void finishBinding()
+	{
+		// LodUtil looks up its wrappers when it is first used, which needs the binding to be finished
+		if (!SingletonHandler.getBindingFinished())
+		{
+			SingletonHandler.finishBinding();
+		}
+	}
+	
+	@After
+	public void restoreConfig()
+	{
+		setQuality(defaultQuality, defaultResolution, defaultScale, defaultRenderDistance);
+		DetailDistanceUtil.updateSettings();
+	}
+	
+	
+	
+	@Test
+	public void ThresholdsMatchTheDistanceFunction()
+	{
+		for (EHorizontalQuality quality : EHorizontalQuality.values())
+		{
+			for (EHorizontalResolution resolution : new EHorizontalResolution[] { EHorizontalResolution.BLOCK, EHorizontalResolution.FOUR_BLOCKS, EHorizontalResolution.CHUNK })
+			{
+				for (int scale : new int[] { 2, 12, 64 })
+				{
+					for (int renderDistance : new int[] { 32, 256 })
+					{
+						setQuality(quality, resolution, scale, renderDistance);
+						CircularDetailFalloffPolicy policy = new CircularDetailFalloffPolicy();
+						Assert.assertTrue(policy.refresh());
+						String setting = quality + " " + resolution + " scale " + scale + " distance " + renderDistance;
+						
+						for (byte detail = 0; detail < LodUtil.DETAIL_OPTIONS; detail++)
+						{
+							long start = policy.getDetailStartDistanceSquared(detail);
+							if (start == 0 || start == Long.MAX_VALUE)
+								continue;
+							Assert.assertTrue(setting, DetailDistanceUtil.getDetailLevelFromDistance(Math.sqrt(start)) >= detail);
+							Assert.assertTrue(setting, DetailDistanceUtil.getDetailLevelFromDistance(Math.sqrt(start - 1)) < detail);
+						}
+						
+						assertLevelsMatch(policy, setting);
+					}
+				}
+			}
+		}
+	}
+	
+	@Test
+	public void ConfigChangesAreOnlyPickedUpOnce()
+	{
+		setQuality(EHorizontalQuality.MEDIUM, EHorizontalResolution.BLOCK, 12, 64);
+		CircularDetailFalloffPolicy policy = new CircularDetailFalloffPolicy();
+		Assert.assertTrue(policy.refresh());
+		Assert.assertFalse(policy.refresh());
+		
+		setQuality(EHorizontalQuality.LOWEST, EHorizontalResolution.BLOCK, 12, 64);
+		Assert.assertTrue(policy.refresh());
+		assertLevelsMatch(policy, "LOWEST after MEDIUM");
+	}
+	
+	
+	
+	//================//
+	// helper methods //
+	//================//
+	
+	/** Compares the two at player positions spread from right next to the section out past the lowest detail. */
+	private static void assertLevelsMatch(CircularDetailFalloffPolicy policy, String setting)
+	{
+		DhSectionPos sectionPos = new DhSectionPos(SECTION_DETAIL, 0, 0);
+		int center = DhSectionPos.getCenterBlock(SECTION_DETAIL, 0);
+		double maxDistance = DetailDistanceUtil.getDrawDistanceFromDetail(LodUtil.DETAIL_OPTIONS - 1) * 1.5;
+		Random random = new Random(1234);
+		for (int i = 0; i < 5_000; i++)
+		{
+			// Spread evenly over the log of the distance, so the close levels get as many checks as the far ones
+			double distance = Math.pow(maxDistance + 1, random.nextDouble()) - 1;
+			double angle = random.nextDouble() * 2 * Math.PI;
+			DhBlockPos2D playerPos = new DhBlockPos2D(center + (int) (Math.cos(angle) * distance), center + (int) (Math.sin(angle) * distance));
+			
+			byte expected = DetailDistanceUtil.getDetailLevelFromDistance(Math.sqrt(playerPos.distSquared(center, center)));
+			Assert.assertEquals(setting + " at " + playerPos.x + ", " + playerPos.z, expected, policy.getDetailLevel(playerPos, sectionPos));
+			Assert.assertEquals(expected, policy.getDetailLevel(playerPos, SECTION_DETAIL, 0, 0));
+		}
+	}
+	
+	private static void setQuality(EHorizontalQuality quality, EHorizontalResolution resolution, int scale, int renderDistance)
+	{
+		Config.Client.Graphics.Quality.horizontalQuality.setWithoutSaving(quality);
+		Config.Client.Graphics.Quality.drawResolution.setWithoutSaving(resolution);
+		Config.Client.Graphics.Quality.horizontalScale.setWithoutSaving(scale);
+		Config.Client.Graphics.Quality.lodChunkRenderDistance.setWithoutSaving(renderDistance);
+	}
+	
+}
@@ -0,0 +1,124 @@
+/*
+ *    This file is part of the Distant Horizons mod (formerly the LOD Mod),
+ *    licensed under the GNU LGPL v3 License.
+ *
+ *    Copyright (C) 2020-2022  James Seibel
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU Lesser General Public License as published by
+ *    the Free Software Foundation, version 3.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the GNU Lesser General Public License
+ *    along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+import com.seibel.lod.core.a7.datatype.full.IdBiomeBlockStateMap;
+import com.seibel.lod.core.a7.datatype.transform.ColorResolver;
+import com.seibel.lod.core.wrapperInterfaces.block.IBlockStateWrapper;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.ArrayList;
+
+/**
+ * @version 2022-9-21
+ */
+public class ColorResolverTests
+{
+	private static final IBlockStateWrapper STONE = new WrapperTestHelper.NamedBlockState("stone");
+	private static final IBlockStateWrapper DIRT = new WrapperTestHelper.NamedBlockState("dirt");
+	private static final IBlockStateWrapper SAND = new WrapperTestHelper.NamedBlockState("sand");
+	
+	/** The block states the colors were computed for, in order */
+	private ArrayList<String> computed;
+	private int colorOffset;
+	private ColorResolver resolver;
+	
+	
+	@BeforeClass
+	public static void bindFactory()
+	{
+		WrapperTestHelper.bindWrapperFactory();
+	}
+	
+	@Before
+	public void createResolver()
+	{
+		computed = new ArrayList<>();
+		colorOffset = 0;
+		resolver = new ColorResolver((biome, block) -> {
+			computed.add(block.serialize());
+			return block.serialize().length() + colorOffset;
+		});
+	}
+	
+	
+	
+	@Test
+	public void ResolvingTheSameMappingAgainComputesAndAllocatesNothing()
+	{
+		IdBiomeBlockStateMap mapping = createMapping(STONE, DIRT);
+		
+		int[] first = resolver.resolvePalette(mapping);
+		Assert.assertArrayEquals(new int[] {5, 4}, first);
+		Assert.assertEquals("[stone, dirt]", computed.toString());
+		
+		Assert.assertSame(first, resolver.resolvePalette(mapping));
+		Assert.assertEquals(2, computed.size());
+	}
+	
+	@Test
+	public void OnlyNewIdsAreResolvedWhenTheMappingGrows()
+	{
+		IdBiomeBlockStateMap mapping = createMapping(STONE);
+		resolver.resolvePalette(mapping);
+		
+		mapping.setAndGetId(null, SAND);
+		Assert.assertArrayEquals(new int[] {5, 4}, resolver.resolvePalette(mapping));
+		Assert.assertEquals("[stone, sand]", computed.toString());
+	}
+	
+	@Test
+	public void EntriesSharedWithAnotherMappingAreNotComputedAgain()
+	{
+		resolver.resolvePalette(createMapping(STONE, DIRT));
+		
+		Assert.assertArrayEquals(new int[] {4, 4, 5}, resolver.resolvePalette(createMapping(DIRT, SAND, STONE)));
+		Assert.assertEquals("[stone, dirt, sand]", computed.toString());
+	}
+	
+	@Test
+	public void InvalidateRecomputesEveryColor()
+	{
+		IdBiomeBlockStateMap mapping = createMapping(STONE, DIRT);
+		int[] before = resolver.resolvePalette(mapping);
+		
+		colorOffset = 100;
+		resolver.invalidate();
+		int[] after = resolver.resolvePalette(mapping);
+		Assert.assertArrayEquals(new int[] {105, 104}, after);
+		Assert.assertEquals("[stone, dirt, stone, dirt]", computed.toString());
+		// Sections converted before the reload keep their colors until they are transformed again
+		Assert.assertArrayEquals(new int[] {5, 4}, before);
+	}
+	
+	
+	
+	private static IdBiomeBlockStateMap createMapping(IBlockStateWrapper... blockStates)
+	{
+		IdBiomeBlockStateMap mapping = new IdBiomeBlockStateMap();
+		for (IBlockStateWrapper blockState : blockStates)
+		{
+			mapping.setAndGetId(null, blockState);
+		}
+		return mapping;
+	}
+	
+}
@@ -0,0 +1,108 @@
+/*
+ *    This file is part of the Distant Horizons mod (formerly the LOD Mod),
+ *    licensed under the GNU LGPL v3 License.
+ *
+ *    Copyright (C) 2020-2022  James Seibel
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU Lesser General Public License as published by
+ *    the Free Software Foundation, version 3.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the GNU Lesser General Public License
+ *    along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+import com.seibel.lod.core.util.DataPointUtil;
+import com.seibel.lod.core.util.VerticalMergeBuffer;
+
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+
+/**
+ * Rough timing of the column merge, compares the interval sweep against the
+ * original insertion based merge kept in {@link ColumnMergeTests}. <br>
+ * Note the reference merge allocates its scratch arrays per call where the original reused thread locals,
+ * so the allocation numbers are only meaningful for the sweep. <br>
+ * Run the main method manually, it isn't part of the test suite.
+ *
+ * @version 2022-9-5
+ */
+public class ColumnMergeBenchmark
+{
+	private static final int INPUT_SETS = 256;
+	private static final int WARMUP_ROUNDS = 200;
+	private static final int ROUNDS = 1000;
+	
+	public static void main(String[] args)
+	{
+		// {dataCount, input vertical size, output vertical size}
+		int[][] cases = {
+				{4, 4, 4},
+				{4, 16, 16},
+				{4, 32, 8},
+				{16, 16, 4},
+				{64, 8, 8},
+		};
+		
+		for (int[] benchCase : cases)
+		{
+			int dataCount = benchCase[0];
+			int inputVerticalSize = benchCase[1];
+			int outputVerticalSize = benchCase[2];
+			
+			Random random = new Random(42);
+			long[][] inputs = new long[INPUT_SETS][];
+			for (int i = 0; i < INPUT_SETS; i++)
+				inputs[i] = ColumnMergeTests.randomColumns(random, dataCount, inputVerticalSize);
+			
+			long[] output = new long[outputVerticalSize];
+			VerticalMergeBuffer buffer = new VerticalMergeBuffer();
+			
+			for (int round = 0; round < WARMUP_ROUNDS; round++)
+			{
+				for (long[] input : inputs)
+				{
+					ColumnMergeTests.legacyMergeMultiData(input, inputVerticalSize, outputVerticalSize, false);
+					DataPointUtil.mergeMultiData(input, inputVerticalSize, outputVerticalSize, output, 0, buffer);
+				}
+			}
+			
+			long legacyBytes = allocatedBytes();
+			long start = System.nanoTime();
+			for (int round = 0; round < ROUNDS; round++)
+				for (long[] input : inputs)
+					ColumnMergeTests.legacyMergeMultiData(input, inputVerticalSize, outputVerticalSize, false);
+			long legacyNanos = System.nanoTime() - start;
+			legacyBytes = allocatedBytes() - legacyBytes;
+			
+			long sweepBytes = allocatedBytes();
+			start = System.nanoTime();
+			for (int round = 0; round < ROUNDS; round++)
+				for (long[] input : inputs)
+					DataPointUtil.mergeMultiData(input, inputVerticalSize, outputVerticalSize, output, 0, buffer);
+			long sweepNanos = System.nanoTime() - start;
+			sweepBytes = allocatedBytes() - sweepBytes;
+			
+			double merges = (double) ROUNDS * INPUT_SETS;
+			System.out.printf("columns %3d, vertical %2d -> %2d: legacy %8.1f ns/op %8.1f B/op | sweep %8.1f ns/op %8.1f B/op%n",
+					dataCount, inputVerticalSize, outputVerticalSize,
+					legacyNanos / merges, legacyBytes / merges,
+					sweepNanos / merges, sweepBytes / merges);
+		}
+	}
+	
+	/** @return the bytes allocated by this thread so far, or 0 if the JVM can't tell */
+	private static long allocatedBytes()
+	{
+		java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		if (bean instanceof com.sun.management.ThreadMXBean)
+			return ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(Thread.currentThread().getId());
+		return 0;
+	}
+	
+}
@@ -0,0 +1,494 @@
+/*
+ *    This file is part of the Distant Horizons mod (formerly the LOD Mod),
+ *    licensed under the GNU LGPL v3 License.
+ *
+ *    Copyright (C) 2020-2022  James Seibel
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU Lesser General Public License as published by
+ *    the Free Software Foundation, version 3.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the GNU Lesser General Public License
+ *    along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+import com.seibel.lod.core.a7.datatype.column.ColumnFormat;
+import com.seibel.lod.core.a7.datatype.column.accessor.ColumnArrayView;
+import com.seibel.lod.core.util.DataPointUtil;
+import com.seibel.lod.core.util.VerticalMergeBuffer;
+import org.junit.Test;
+import org.junit.Assert;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static com.seibel.lod.core.util.DataPointUtil.*;
+
+/**
+ * Differential fuzz tests comparing the interval sweep used by
+ * {@link DataPointUtil#mergeMultiData} and {@link ColumnFormat#mergeMultiData}
+ * against the original insertion based merge.
+ *
+ * @version 2022-9-5
+ */
+public class ColumnMergeTests
+{
+	private static final int ITERATIONS = 20_000;
+	private static final int[] DATA_COUNTS = {1, 2, 4, 16, 64};
+	
+	
+	@Test
+	public void DataPointUtilMatchesLegacy()
+	{
+		Random random = new Random(8675309);
+		VerticalMergeBuffer buffer = new VerticalMergeBuffer();
+		for (int i = 0; i < ITERATIONS; i++)
+		{
+			int dataCount = DATA_COUNTS[random.nextInt(DATA_COUNTS.length)];
+			int inputVerticalSize = 1 + random.nextInt(24);
+			int outputVerticalSize = 1 + random.nextInt(32);
+			long[] source = randomColumns(random, dataCount, inputVerticalSize);
+			
+			long[] expected = legacyMergeMultiData(source, inputVerticalSize, outputVerticalSize, false);
+			long[] actual = new long[outputVerticalSize + 2];
+			DataPointUtil.mergeMultiData(source, inputVerticalSize, outputVerticalSize, actual, 1, buffer);
+			
+			Assert.assertArrayEquals("iteration " + i, expected, Arrays.copyOfRange(actual, 1, outputVerticalSize + 1));
+			Assert.assertEquals("wrote before the output offset", 0, actual[0]);
+			Assert.assertEquals("wrote after the output range", 0, actual[outputVerticalSize + 1]);
+			Assert.assertArrayEquals("iteration " + i, expected, DataPointUtil.mergeMultiData(source, inputVerticalSize, outputVerticalSize));
+		}
+	}
+	
+	@Test
+	public void ColumnFormatMatchesLegacy()
+	{
+		Random random = new Random(1234);
+		VerticalMergeBuffer buffer = new VerticalMergeBuffer();
+		int compared = 0;
+		for (int i = 0; i < ITERATIONS; i++)
+		{
+			int dataCount = DATA_COUNTS[random.nextInt(DATA_COUNTS.length)];
+			int inputVerticalSize = 1 + random.nextInt(24);
+			int outputVerticalSize = 1 + random.nextInt(32);
+			long[] source = randomColumns(random, dataCount, inputVerticalSize);
+			
+			long[] actual = new long[outputVerticalSize];
+			// garbage that has to be cleared by the merge
+			Arrays.fill(actual, -1);
+			ColumnFormat.mergeMultiData(new ColumnArrayView(source, source.length, 0, inputVerticalSize),
+					new ColumnArrayView(actual, outputVerticalSize, 0, outputVerticalSize), buffer);
+			
+			long[] expected;
+			try
+			{
+				expected = legacyMergeMultiData(source, inputVerticalSize, outputVerticalSize, true);
+			}
+			catch (IllegalArgumentException e)
+			{
+				// the old merge failed to copy a single unlimited column into a smaller view,
+				// the sweep copies the part that fits instead.
+				Assert.assertArrayEquals("iteration " + i, Arrays.copyOf(source, outputVerticalSize), actual);
+				continue;
+			}
+			Assert.assertArrayEquals("iteration " + i, expected, actual);
+			compared++;
+		}
+		Assert.assertTrue("too few comparable cases", compared > ITERATIONS / 2);
+	}
+	
+	/** The interval union must not merge touching intervals and must close the lowest equal gap first. */
+	@Test
+	public void GapTieBreaking()
+	{
+		VerticalMergeBuffer buffer = new VerticalMergeBuffer();
+		buffer.begin(2, 4);
+		buffer.add(40, 30);
+		buffer.add(20, 10);
+		buffer.endColumn();
+		buffer.add(30, 25);
+		buffer.add(5, 0);
+		buffer.endColumn();
+		Assert.assertEquals(4, buffer.union());
+		
+		// gaps are 0, 5 and 5
+		Assert.assertEquals(2, buffer.limit(2));
+		Assert.assertEquals(40, buffer.getHeight(0));
+		Assert.assertEquals(25, buffer.getDepth(0));
+		Assert.assertEquals(20, buffer.getHeight(1));
+		Assert.assertEquals(0, buffer.getDepth(1));
+	}
+	
+	
+	
+	//================//
+	// input creation //
+	//================//
+	
+	/** Creates dataCount columns, each ordered from top to bottom and without overlapping lods. */
+	static long[] randomColumns(Random random, int dataCount, int verticalSize)
+	{
+		long[] data = new long[dataCount * verticalSize];
+		// keep the range small so columns often overlap and touch
+		int worldHeight = 64 + random.nextInt(512);
+		for (int index = 0; index < dataCount; index++)
+		{
+			int offset = index * verticalSize;
+			int type = random.nextInt(10);
+			if (type == 0)
+				continue; // empty
+			
+			if (type == 1)
+			{
+				data[offset] = createVoidDataPoint((byte) (1 + random.nextInt(7)));
+				continue;
+			}
+			
+			int top = worldHeight - random.nextInt(worldHeight / 4 + 1);
+			int lodCount = 1 + random.nextInt(verticalSize);
+			for (int i = 0; i < lodCount && top > 0; i++)
+			{
+				int height = top;
+				int depth = Math.max(0, height - 1 - random.nextInt(32));
+				data[offset + i] = createDataPoint(
+						random.nextInt(256), random.nextInt(256), random.nextInt(256), random.nextInt(256),
+						height, depth, random.nextInt(16), random.nextInt(16), 1 + random.nextInt(7));
+				// a zero gap makes the next lod touch this one
+				top = depth - (random.nextBoolean() ? 0 : random.nextInt(24));
+			}
+		}
+		return data;
+	}
+	
+	
+	
+	//==============//
+	// legacy merge //
+	//==============//
+	
+	/**
+	 * The merge as it was before the interval sweep, kept as the reference implementation.
+	 * @param copyWholeColumn true to copy a single unlimited column the way ColumnFormat did
+	 */
+	static long[] legacyMergeMultiData(long[] dataToMerge, int inputVerticalData, int maxVerticalData, boolean copyWholeColumn)
+	{
+		//size indicate how many position we are merging in one position
+		int size = dataToMerge.length / inputVerticalData;
+		
+		// We initialize the arrays that are going to be used
+		int heightAndDepthLength = (MAX_WORLD_Y_SIZE / 2 + 16) * 2;
+		short[] heightAndDepth = new short[heightAndDepthLength];
+		long[] dataPoint = new long[maxVerticalData];
+		
+		byte genMode = getGenerationMode(dataToMerge[0]);
+		if (genMode == 0) genMode = 1; // FIXME: Hack to make the version 10 genMode never be 0.
+		boolean allEmpty = true;
+		boolean allVoid = true;
+		boolean limited = false;
+		boolean allDefault;
+		long singleData;
+		
+		
+		short depth;
+		short height;
+		int count = 0;
+		int i;
+		int ii;
+		int dataIndex;
+		
+		//We collect the indexes of the data, ordered by the depth
+		for (int index = 0; index < size; index++)
+		{
+			if (index == 0)
+			{
+				for (dataIndex = 0; dataIndex < inputVerticalData; dataIndex++)
+				{
+					singleData = dataToMerge[dataIndex];
+					if (doesItExist(singleData))
+					{
+						//genMode = Math.min(genMode, getGenerationMode(singleData));
+						allEmpty = false;
+						if (!isVoid(singleData))
+						{
+							allVoid = false;
+							count++;
+							heightAndDepth[dataIndex * 2] = getHeight(singleData);
+							heightAndDepth[dataIndex * 2 +1] = getDepth(singleData);
+						}
+					}
+					else
+						break;
+				}
+			}
+			else
+			{
+				for (dataIndex = 0; dataIndex < inputVerticalData; dataIndex++)
+				{
+					singleData = dataToMerge[index * inputVerticalData + dataIndex];
+					if (doesItExist(singleData))
+					{
+						//genMode = Math.min(genMode, getGenerationMode(singleData));
+						allEmpty = false;
+						if (!isVoid(singleData))
+						{
+							allVoid = false;
+							depth = getDepth(singleData);
+							height = getHeight(singleData);
+							
+							int botPos = -1;
+							int topPos = -1;
+							//values fall in between and possibly require extension of array
+							boolean botExtend = false;
+							boolean topExtend = false;
+							for (i = 0; i < count; i++)
+							{
+								if (depth < heightAndDepth[i * 2] && depth >= heightAndDepth[i * 2 + 1])
+								{
+									botPos = i;
+									break;
+								}
+								else if (depth < heightAndDepth[i * 2 + 1] && ((i + 1 < count && depth >= heightAndDepth[(i + 1) * 2]) || i + 1 == count))
+								{
+									botPos = i;
+									botExtend = true;
+									break;
+								}
+							}
+							for (i = 0; i < count; i++)
+							{
+								if (height <= heightAndDepth[i * 2] && height > heightAndDepth[i * 2 + 1])
+								{
+									topPos = i;
+									break;
+								}
+								else if (height <= heightAndDepth[i * 2 + 1] && ((i + 1 < count && height > heightAndDepth[(i + 1) * 2]) || i + 1 == count))
+								{
+									topPos = i;
+									topExtend = true;
+									break;
+								}
+							}
+							if (topPos == -1)
+							{
+								if (botPos == -1)
+								{
+									//whole block falls above
+									extendArray(heightAndDepth, 2, 0, 1, count);
+									heightAndDepth[0] = height;
+									heightAndDepth[1] = depth;
+									count++;
+								}
+								else if (!botExtend)
+								{
+									//only top falls above extending it there, while bottom is inside existing
+									shrinkArray(heightAndDepth, 2, 0, botPos, count);
+									heightAndDepth[0] = height;
+									count -= botPos;
+								}
+								else
+								{
+									//top falls between some blocks, extending those as well
+									shrinkArray(heightAndDepth, 2, 0, botPos, count);
+									heightAndDepth[0] = height;
+									heightAndDepth[1] = depth;
+									count -= botPos;
+								}
+							}
+							else if (!topExtend)
+							{
+								if (!botExtend)
+									//both top and bottom are within some exiting blocks, possibly merging them
+									heightAndDepth[topPos * 2 + 1] = heightAndDepth[botPos * 2 + 1];
+								else
+									//top falls between some blocks, extending it there
+									heightAndDepth[topPos * 2 + 1] = depth;
+								shrinkArray(heightAndDepth, 2, topPos + 1, botPos - topPos, count);
+								count -= botPos - topPos;
+							}
+							else
+							{
+								if (!botExtend)
+								{
+									//only top is within some exiting block, extending it
+									topPos++; //to make it easier
+									heightAndDepth[topPos * 2] = height;
+									heightAndDepth[topPos * 2 + 1] = heightAndDepth[botPos * 2 + 1];
+									shrinkArray(heightAndDepth, 2, topPos + 1, botPos - topPos, count);
+									count -= botPos - topPos;
+								}
+								else
+								{
+									//both top and bottom are outside existing blocks
+									shrinkArray(heightAndDepth, 2, topPos + 1, botPos - topPos, count);
+									count -= botPos - topPos;
+									extendArray(heightAndDepth, 2, topPos + 1, 1, count);
+									count++;
+									heightAndDepth[topPos * 2 + 2] = height;
+									heightAndDepth[topPos * 2 + 3] = depth;
+								}
+							}
+						}
+					}
+					else
+						break;
+				}
+			}
+		}
+		
+		//We check if there is any data that's not empty or void
+		if (allEmpty)
+			return dataPoint;
+		if (allVoid)
+		{
+			dataPoint[0] = createVoidDataPoint(genMode);
+			return dataPoint;
+		}
+		
+		//we limit the vertical portion to maxVerticalData
+		int j = 0;
+		while (count > maxVerticalData)
+		{
+			limited = true;
+			ii = MAX_WORLD_Y_SIZE;
+			for (i = 0; i < count - 1; i++)
+			{
+				if (heightAndDepth[i * 2 + 1] - heightAndDepth[(i + 1) * 2] <= ii)
+				{
+					ii = heightAndDepth[i * 2 + 1] - heightAndDepth[(i + 1) * 2];
+					j = i;
+				}
+			}
+			heightAndDepth[j * 2 + 1] = heightAndDepth[(j + 1) * 2 + 1];
+			for (i = j + 1; i < count - 1; i++)
+			{
+				heightAndDepth[i * 2] = heightAndDepth[(i + 1) * 2];
+				heightAndDepth[i * 2 + 1] = heightAndDepth[(i + 1) * 2 + 1];
+			}
+			//System.arraycopy(heightAndDepth, j + 1, heightAndDepth, j, count - j - 1);
+			count--;
+		}
+		//As standard the vertical lods are ordered from top to bottom
+		if (!limited && size == 1)
+		{
+			if (copyWholeColumn)
+			{
+				// ColumnArrayView.copyFrom(), which only accepts a source that fits
+				if (inputVerticalData > maxVerticalData)
+					throw new IllegalArgumentException("source verticalSize must be <= self's verticalSize to copy");
+				System.arraycopy(dataToMerge, 0, dataPoint, 0, inputVerticalData);
+			}
+			else
+			{
+				for (j = 0; j < count; j++)
+					dataPoint[j] = dataToMerge[j];
+			}
+		}
+		else
+		{
+			
+			//We want to efficiently memorize indexes
+			int[] dataIndexesCache = new int[size];
+			
+			//For each lod height-depth value we have found we now want to generate the rest of the data
+			//by merging all lods at lower level that are contained inside the new ones
+			for (j = 0; j < count; j++)
+			{
+				//We firstly collect height and depth data
+				//this will be added to each realtive long DataPoint
+				height = heightAndDepth[j * 2];
+				depth = heightAndDepth[j * 2 + 1];
+				
+				//if both height and depth are at 0 then we finished
+				if ((depth == 0 && height == 0) || j >= heightAndDepth.length / 2)
+					break;
+				
+				//We initialize data useful for the merge
+				int numberOfChildren = 0;
+				allEmpty = true;
+				allVoid = true;
+				
+				//We initialize all the new values that we are going to put in the dataPoint
+				int tempAlpha = 0;
+				int tempRed = 0;
+				int tempGreen = 0;
+				int tempBlue = 0;
+				int tempLightBlock = 0;
+				int tempLightSky = 0;
+				long data = 0;
+				
+				//For each position that we want to merge
+				for (int index = 0; index < size; index++)
+				{
+					//we scan the lods in the position from top to bottom
+					while(dataIndexesCache[index] < inputVerticalData)
+					{
+						singleData = dataToMerge[index * inputVerticalData + dataIndexesCache[index]];
+						if (doesItExist(singleData) && !isVoid(singleData))
+						{
+							dataIndexesCache[index]++;
+							if ((depth <= getDepth(singleData) && getDepth(singleData) < height)
+									|| (depth < getHeight(singleData) && getHeight(singleData) <= height))
+							{
+								data = singleData;
+								break;
+							}
+						}
+						else
+							break;
+					}
+					if (!doesItExist(data))
+					{
+						data = createVoidDataPoint(genMode);
+					}
+					
+					if (doesItExist(data))
+					{
+						allEmpty = false;
+						if (!isVoid(data))
+						{
+							numberOfChildren++;
+							allVoid = false;
+							tempAlpha = Math.max(getAlpha(data),tempAlpha);
+							tempRed += getRed(data) * getRed(data);
+							tempGreen += getGreen(data) * getGreen(data);
+							tempBlue += getBlue(data) * getBlue(data);
+							tempLightBlock += getLightBlock(data);
+							tempLightSky += getLightSky(data);
+						}
+					}
+				}
+				
+				if (allEmpty)
+					//no child has been initialized
+					dataPoint[j] = EMPTY_DATA;
+				else if (allVoid)
+					//all the children are void
+					dataPoint[j] = createVoidDataPoint(genMode);
+				else
+				{
+					//we have at least 1 child
+					if (size != 1)
+					{
+						tempRed = tempRed / numberOfChildren;
+						tempGreen = tempGreen / numberOfChildren;
+						tempBlue = tempBlue / numberOfChildren;
+						tempLightBlock = tempLightBlock / numberOfChildren;
+						tempLightSky = tempLightSky / numberOfChildren;
+					}
+					//data = createDataPoint(tempAlpha, tempRed, tempGreen, tempBlue, height, depth, tempLightSky, tempLightBlock, tempGenMode, allDefault);
+					//if (j > 0 && getColor(data) == getColor(dataPoint[j]))
+					//{
+					//	add simplification at the end due to color
+					//}
+					dataPoint[j] = createDataPoint((int) Math.sqrt(tempAlpha), (int) Math.sqrt(tempRed), (int) Math.sqrt(tempGreen), (int) Math.sqrt(tempBlue), height, depth, tempLightSky, tempLightBlock, genMode);
+				}
+			}
+		}
+		return dataPoint;
+	}
+}
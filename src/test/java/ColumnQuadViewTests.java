@@ -0,0 +1,77 @@
+/*
+ *    This file is part of the Distant Horizons mod (formerly the LOD Mod),
+ *    licensed under the GNU LGPL v3 License.
+ *
+ *    Copyright (C) 2020-2022  James Seibel
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU Lesser General Public License as published by
+ *    the Free Software Foundation, version 3.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the GNU Lesser General Public License
+ *    along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+import com.seibel.lod.core.a7.datatype.column.accessor.ColumnQuadView;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Checks that every way of reading a {@link ColumnQuadView}
+ * agrees on where its columns are in the backing array.
+ *
+ * @version 2022-9-8
+ */
+public class ColumnQuadViewTests
+{
+	private static final int DATA_WIDTH = 6;
+	private static final int VERT_SIZE = 3;
+	
+	
+	@Test
+	public void ViewOffsetPointsAtItsCorner()
+	{
+		long[] data = createData();
+		ColumnQuadView view = new ColumnQuadView(data, DATA_WIDTH, VERT_SIZE, 1, 2, 3, 2);
+		for (int x = 0; x < 3; x++)
+			for (int z = 0; z < 2; z++)
+				for (int v = 0; v < VERT_SIZE; v++)
+					Assert.assertEquals(data[((1 + x) * DATA_WIDTH + 2 + z) * VERT_SIZE + v], view.get(x, z, v));
+	}
+	
+	@Test
+	public void IndexOrderMatchesCopyTo()
+	{
+		ColumnQuadView view = new ColumnQuadView(createData(), DATA_WIDTH, VERT_SIZE, 1, 2, 3, 2);
+		long[] copy = new long[view.size()];
+		view.copyTo(copy, 0);
+		for (int i = 0; i < view.size(); i++)
+			Assert.assertEquals("index " + i, copy[i], view.get(i));
+	}
+	
+	@Test
+	public void SingleColumnSubViewMatchesIndex()
+	{
+		ColumnQuadView view = new ColumnQuadView(createData(), DATA_WIDTH, VERT_SIZE, 2, 1, 2, 4);
+		for (int column = 0; column < view.dataCount(); column++)
+			for (int v = 0; v < VERT_SIZE; v++)
+				Assert.assertEquals(view.get(column * VERT_SIZE + v), view.subView(column, 1).get(v));
+	}
+	
+	
+	
+	/** Every long is its own index, so any mix up shows. */
+	private static long[] createData()
+	{
+		long[] data = new long[DATA_WIDTH * DATA_WIDTH * VERT_SIZE];
+		for (int i = 0; i < data.length; i++)
+			data[i] = i;
+		return data;
+	}
+	
+}
@@ -0,0 +1,319 @@
+/*
+ *    This file is part of the Distant Horizons mod (formerly the LOD Mod),
+ *    licensed under the GNU LGPL v3 License.
+ *
+ *    Copyright (C) 2020-2022  James Seibel
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU Lesser General Public License as published by
+ *    the Free Software Foundation, version 3.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the GNU Lesser General Public License
+ *    along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+import com.seibel.lod.core.a7.datatype.column.ColumnFormat;
+import com.seibel.lod.core.a7.datatype.column.ColumnRenderSource;
+import com.seibel.lod.core.a7.datatype.full.ChunkSizedData;
+import com.seibel.lod.core.a7.datatype.full.FullFormat;
+import com.seibel.lod.core.a7.datatype.transform.ColorResolver;
+import com.seibel.lod.core.a7.level.IClientLevel;
+import com.seibel.lod.core.a7.pos.DhSectionPos;
+import com.seibel.lod.core.objects.DHChunkPos;
+import com.seibel.lod.core.wrapperInterfaces.block.IBlockStateWrapper;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+
+/**
+ * @version 2022-9-21
+ */
+public class ColumnRenderSourceTests
+{
+	private static final IBlockStateWrapper STONE = new WrapperTestHelper.NamedBlockState("stone");
+	private static final IBlockStateWrapper DIRT = new WrapperTestHelper.NamedBlockState("dirt");
+	
+	private static final DhSectionPos POS = new DhSectionPos(ColumnRenderSource.SECTION_SIZE_OFFSET, 0, 0);
+	private static final int VERTICAL_SIZE = 4;
+	/** Written to every column before an update, so the columns the update left alone can be told apart. */
+	private static final long UNTOUCHED = ColumnFormat.createDataPoint(200, 190, 0xFF123456, 15, 0, 1);
+	
+	private static final ColorResolver COLOR_RESOLVER = new ColorResolver((biome, block) -> block.serialize().hashCode());
+	private static final IClientLevel LEVEL = (IClientLevel) Proxy.newProxyInstance(IClientLevel.class.getClassLoader(),
+			new Class<?>[] {IClientLevel.class}, (proxy, method, methodArgs) -> {
+				if (method.getName().equals("getColorResolver")) return COLOR_RESOLVER;
+				if (method.getName().equals("getMinY")) return 0;
+				throw new UnsupportedOperationException(method.getName());
+			});
+	
+	
+	@BeforeClass
+	public static void bindFactory()
+	{
+		WrapperTestHelper.bindWrapperFactory();
+	}
+	
+	
+	
+	@Test
+	public void UpdateOnlyRewritesTheChunksColumns()
+	{
+		ColumnRenderSource source = createUntouchedSource(ColumnRenderSource.SECTION_SIZE_OFFSET);
+		source.update(createChunk(1, 2, STONE, (byte) 2), LEVEL);
+		
+		assertOnlyRegionRewritten(source, 16, 32, 16);
+	}
+	
+	@Test
+	public void DownsampledUpdateOnlyRewritesTheChunksColumns()
+	{
+		// Data detail 2, so the chunk covers 4 x 4 columns
+		ColumnRenderSource source = createUntouchedSource((byte) (ColumnRenderSource.SECTION_SIZE_OFFSET + 2));
+		source.update(createChunk(5, 3, STONE, (byte) 2), LEVEL);
+		
+		assertOnlyRegionRewritten(source, 20, 12, 4);
+	}
+	
+	@Test
+	public void LowerGenModeIsRejected()
+	{
+		ColumnRenderSource source = new ColumnRenderSource(POS, VERTICAL_SIZE, 0);
+		source.update(createChunk(0, 0, STONE, (byte) 3), LEVEL);
+		long[] stoneColumn = source.getAllData(5, 5);
+		Assert.assertEquals(3, ColumnFormat.getGenerationMode(stoneColumn[0]));
+		
+		source.update(createChunk(0, 0, DIRT, (byte) 2), LEVEL);
+		Assert.assertArrayEquals(stoneColumn, source.getAllData(5, 5));
+		
+		// The same gen mode does replace it
+		source.update(createChunk(0, 0, DIRT, (byte) 3), LEVEL);
+		Assert.assertTrue(ColumnFormat.getColor(stoneColumn[0]) != ColumnFormat.getColor(source.getData(5, 5, 0)));
+		Assert.assertEquals(3, ColumnFormat.getGenerationMode(source.getData(5, 5, 0)));
+	}
+	
+	
+	
+	@Test
+	public void TileBoundsFollowAddDataAndClear()
+	{
+		ColumnRenderSource source = new ColumnRenderSource(POS, VERTICAL_SIZE, 0);
+		Assert.assertTrue(source.isTileEmpty(1, 1));
+		
+		source.addData(ColumnFormat.createDataPoint(80, 70, 0xFF808080, 15, 0, 1), 5, 6, 0);
+		source.addData(ColumnFormat.createDataPoint(100, 20, 0xFF808080, 15, 0, 1), 6, 6, 0);
+		Assert.assertFalse(source.isTileEmpty(1, 1));
+		Assert.assertTrue(source.isTileEmpty(1, 0));
+		Assert.assertEquals(20, source.getMinY());
+		Assert.assertEquals(100, source.getMaxY());
+		
+		source.clear(6, 6);
+		Assert.assertEquals(70, source.getMinY());
+		Assert.assertEquals(80, source.getMaxY());
+		
+		// A void column exists, but has nothing to render
+		source.addData(ColumnFormat.createVoidDataPoint((byte) 1), 5, 6, 0);
+		Assert.assertTrue(source.isTileEmpty(1, 1));
+		Assert.assertTrue(source.doesItExist(5, 6));
+	}
+	
+	@Test
+	public void RefreshSummaryPicksUpColumnsWrittenThroughAView()
+	{
+		ColumnRenderSource source = new ColumnRenderSource(POS, VERTICAL_SIZE, 0);
+		source.getVerticalDataView(60, 3).set(0, ColumnFormat.createDataPoint(90, 10, 0xFF808080, 15, 0, 1));
+		Assert.assertTrue(source.isTileEmpty(15, 0));
+		
+		source.refreshSummary(60, 0, 63, 3);
+		Assert.assertFalse(source.isTileEmpty(15, 0));
+		Assert.assertEquals(90, source.getMaxY());
+	}
+	
+	@Test
+	public void OccupancyBitsFollowTheColumns() throws IOException
+	{
+		ColumnRenderSource source = new ColumnRenderSource(POS, VERTICAL_SIZE, 0);
+		source.addData(ColumnFormat.createDataPoint(80, 70, 0xFF808080, 15, 0, 1), 0, 0, 0);
+		source.addData(ColumnFormat.createVoidDataPoint((byte) 1), 3, 63, 0);
+		long[] existing = readExistingColumns(source);
+		Assert.assertEquals(1L, existing[0]);
+		Assert.assertEquals(1L << 63, existing[3]);
+		
+		source.clear(0, 0);
+		existing = readExistingColumns(source);
+		Assert.assertEquals(0L, existing[0]);
+		Assert.assertEquals(1L << 63, existing[3]);
+	}
+	
+	@Test
+	public void Version2DataIsReadBack() throws IOException
+	{
+		ColumnRenderSource written = new ColumnRenderSource(POS, VERTICAL_SIZE, 0);
+		written.addData(ColumnFormat.createDataPoint(80, 70, 0xFF808080, 15, 0, 2), 7, 9, 0);
+		written.addData(ColumnFormat.createDataPoint(60, 40, 0xFF404040, 12, 3, 2), 7, 9, 1);
+		written.addData(ColumnFormat.createVoidDataPoint((byte) 1), 63, 0, 0);
+		
+		ColumnRenderSource read = new ColumnRenderSource(POS, new DataInputStream(new ByteArrayInputStream(writeVersion2(written))), 2, LEVEL);
+		Assert.assertEquals(VERTICAL_SIZE, read.getVerticalSize());
+		for (int x = 0; x < ColumnRenderSource.SECTION_SIZE; x++)
+		{
+			for (int z = 0; z < ColumnRenderSource.SECTION_SIZE; z++)
+			{
+				Assert.assertArrayEquals("column " + x + " " + z, written.getAllData(x, z), read.getAllData(x, z));
+			}
+		}
+		Assert.assertEquals(40, read.getMinY());
+		Assert.assertEquals(80, read.getMaxY());
+		Assert.assertTrue(read.doesItExist(63, 0));
+	}
+	
+	@Test
+	public void EmptyTilesAreSkippedWithoutReadingTheirColumns()
+	{
+		ReadCountingSource source = new ReadCountingSource();
+		source.addData(ColumnFormat.createDataPoint(80, 70, 0xFF808080, 15, 0, 1), 5, 6, 0);
+		source.addData(ColumnFormat.createVoidDataPoint((byte) 1), 6, 6, 0);
+		// In an empty tile
+		source.addData(ColumnFormat.createVoidDataPoint((byte) 1), 40, 40, 0);
+		
+		ArrayList<String> visited = new ArrayList<>();
+		source.forEachRenderableColumn((x, z) -> visited.add(x + " " + z));
+		Assert.assertEquals("[5 6]", visited.toString());
+		Assert.assertEquals(ColumnRenderSource.TILE_SIZE * ColumnRenderSource.TILE_SIZE, source.readCount);
+	}
+	
+	
+	
+	//================//
+	// helper methods //
+	//================//
+	
+	private static ColumnRenderSource createUntouchedSource(byte sectionDetail)
+	{
+		ColumnRenderSource source = new ColumnRenderSource(new DhSectionPos(sectionDetail, 0, 0), VERTICAL_SIZE, 0);
+		for (int x = 0; x < ColumnRenderSource.SECTION_SIZE; x++)
+		{
+			for (int z = 0; z < ColumnRenderSource.SECTION_SIZE; z++)
+			{
+				source.addData(UNTOUCHED, x, z, 0);
+			}
+		}
+		return source;
+	}
+	
+	/** A chunk where every column is a single entry of the block state. */
+	private static ChunkSizedData createChunk(int chunkX, int chunkZ, IBlockStateWrapper block, byte genMode)
+	{
+		ChunkSizedData chunk = new ChunkSizedData(new DHChunkPos(chunkX, chunkZ), genMode);
+		int id = chunk.getMapping().setAndGetId(null, block);
+		for (int x = 0; x < 16; x++)
+		{
+			for (int z = 0; z < 16; z++)
+			{
+				chunk.setSingleColumn(new long[] { FullFormat.encode(id, 64, 64, (byte) 0) }, x, z);
+			}
+		}
+		return chunk;
+	}
+	
+	/** Checks that exactly the columns of the square of the given width were rewritten. */
+	private static void assertOnlyRegionRewritten(ColumnRenderSource source, int minX, int minZ, int width)
+	{
+		for (int x = 0; x < ColumnRenderSource.SECTION_SIZE; x++)
+		{
+			for (int z = 0; z < ColumnRenderSource.SECTION_SIZE; z++)
+			{
+				boolean inRegion = x >= minX && x < minX + width && z >= minZ && z < minZ + width;
+				long data = source.getData(x, z, 0);
+				Assert.assertEquals("column " + x + " " + z, !inRegion, data == UNTOUCHED);
+				if (inRegion)
+				{
+					Assert.assertEquals(2, ColumnFormat.getGenerationMode(data));
+				}
+			}
+		}
+	}
+	
+	/** Reads the occupancy bitmap from the saved data, which follows the 4 byte header. */
+	private static long[] readExistingColumns(ColumnRenderSource source) throws IOException
+	{
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		source.saveRender(null, null, out);
+		DataInputStream in = new DataInputStream(new ByteArrayInputStream(out.toByteArray()));
+		in.skipBytes(4);
+		long[] existing = new long[ColumnRenderSource.SECTION_SIZE];
+		for (int x = 0; x < existing.length; x++)
+		{
+			existing[x] = Long.reverseBytes(in.readLong());
+		}
+		return existing;
+	}
+	
+	/** Writes the column major version 2 format: every entry of each existing column, one column after the other. */
+	private static byte[] writeVersion2(ColumnRenderSource source) throws IOException
+	{
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bytes);
+		out.writeByte(source.getDataDetail());
+		out.writeByte(source.getVerticalSize());
+		out.writeShort(Short.reverseBytes((short) source.yOffset));
+		long[] existing = new long[ColumnRenderSource.SECTION_SIZE];
+		for (int x = 0; x < ColumnRenderSource.SECTION_SIZE; x++)
+		{
+			for (int z = 0; z < ColumnRenderSource.SECTION_SIZE; z++)
+			{
+				if (source.doesItExist(x, z))
+					existing[x] |= 1L << z;
+			}
+			out.writeLong(Long.reverseBytes(existing[x]));
+		}
+		for (int x = 0; x < ColumnRenderSource.SECTION_SIZE; x++)
+		{
+			for (int z = 0; z < ColumnRenderSource.SECTION_SIZE; z++)
+			{
+				if ((existing[x] & (1L << z)) == 0)
+					continue;
+				for (long data : source.getAllData(x, z))
+				{
+					out.writeLong(Long.reverseBytes(data));
+				}
+			}
+		}
+		out.flush();
+		return bytes.toByteArray();
+	}
+	
+	
+	
+	/** Counts the reads of first entries, which is how {@link ColumnRenderSource#forEachRenderableColumn} checks the columns. */
+	private static class ReadCountingSource extends ColumnRenderSource
+	{
+		int readCount = 0;
+		
+		ReadCountingSource()
+		{
+			super(POS, VERTICAL_SIZE, 0);
+		}
+		
+		@Override
+		public long getData(int posX, int posZ, int verticalIndex)
+		{
+			readCount++;
+			return super.getData(posX, posZ, verticalIndex);
+		}
+		
+	}
+	
+}
@@ -0,0 +1,225 @@
+/*
+ *    This file is part of the Distant Horizons mod (formerly the LOD Mod),
+ *    licensed under the GNU LGPL v3 License.
+ *
+ *    Copyright (C) 2020-2022  James Seibel
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU Lesser General Public License as published by
+ *    the Free Software Foundation, version 3.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the GNU Lesser General Public License
+ *    along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+import com.seibel.lod.core.a7.datatype.LodDataSource;
+import com.seibel.lod.core.a7.datatype.LodRenderSource;
+import com.seibel.lod.core.a7.datatype.transform.DataRenderTransformer;
+import com.seibel.lod.core.a7.pos.DhSectionPos;
+import com.seibel.lod.core.config.Config;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs the transforms on a single thread, whose first transform blocks until the others are queued.
+ *
+ * @version 2022-9-21
+ */
+public class DataRenderTransformerTests
+{
+	private static final DhSectionPos BLOCKING_POS = new DhSectionPos((byte) 6, 100, 100);
+	private static final DhSectionPos POS_A = new DhSectionPos((byte) 6, 0, 0);
+	private static final DhSectionPos POS_B = new DhSectionPos((byte) 6, 1, 0);
+	private static final DhSectionPos POS_C = new DhSectionPos((byte) 6, 2, 0);
+	
+	private FakeSectionPriority priority;
+	private TestTransformer transformer;
+	
+	
+	@BeforeClass
+	public static void useOneThread()
+	{
+		Config.Client.Advanced.Threading.numberOfDataTransformerThreads.setWithoutSaving(1);
+	}
+	
+	@Before
+	public void createBlockedTransformer() throws InterruptedException
+	{
+		priority = new FakeSectionPriority();
+		transformer = new TestTransformer();
+		transformer.setSectionPriority(priority);
+		transformer.transform(BLOCKING_POS, CompletableFuture.completedFuture(null));
+		Assert.assertTrue(transformer.firstTransformStarted.await(10, TimeUnit.SECONDS));
+	}
+	
+	@After
+	public void closeTransformer()
+	{
+		transformer.finishFirstTransform.countDown();
+		transformer.close();
+	}
+	
+	
+	
+	@Test
+	public void NearestQueuedSectionIsTransformedFirst()
+	{
+		priority.distances.put(POS_A, 30.0);
+		priority.distances.put(POS_B, 10.0);
+		priority.distances.put(POS_C, 20.0);
+		CompletableFuture<LodRenderSource> a = transform(POS_A);
+		CompletableFuture<LodRenderSource> b = transform(POS_B);
+		CompletableFuture<LodRenderSource> c = transform(POS_C);
+		
+		transformer.finishFirstTransform.countDown();
+		CompletableFuture.allOf(a, b, c).join();
+		Assert.assertEquals("[" + BLOCKING_POS + ", " + POS_B + ", " + POS_C + ", " + POS_A + "]", priority.getTransformedSections().toString());
+	}
+	
+	@Test
+	public void OrderFollowsThePlayerAfterQueueing()
+	{
+		priority.distances.put(POS_A, 10.0);
+		priority.distances.put(POS_B, 20.0);
+		CompletableFuture<LodRenderSource> a = transform(POS_A);
+		CompletableFuture<LodRenderSource> b = transform(POS_B);
+		
+		// The player moved towards B
+		priority.distances.put(POS_A, 30.0);
+		transformer.finishFirstTransform.countDown();
+		CompletableFuture.allOf(a, b).join();
+		Assert.assertEquals("[" + BLOCKING_POS + ", " + POS_B + ", " + POS_A + "]", priority.getTransformedSections().toString());
+	}
+	
+	@Test
+	public void RequestsForAQueuedSectionShareItsTransform()
+	{
+		CompletableFuture<LodRenderSource> first = transform(POS_A);
+		CompletableFuture<LodRenderSource> second = transform(POS_A);
+		Assert.assertSame(first, second);
+		
+		transformer.finishFirstTransform.countDown();
+		first.join();
+		Assert.assertEquals(2, transformer.transformCount.get());
+		
+		// Once it ran, a new request transforms the section again
+		transform(POS_A).join();
+		Assert.assertEquals(3, transformer.transformCount.get());
+	}
+	
+	@Test
+	public void SectionsThatLeftTheTreeAreCancelled()
+	{
+		CompletableFuture<LodRenderSource> a = transform(POS_A);
+		CompletableFuture<LodRenderSource> b = transform(POS_B);
+		priority.removedSections.add(POS_A);
+		
+		transformer.finishFirstTransform.countDown();
+		b.join();
+		Assert.assertTrue(a.isCompletedExceptionally());
+		Assert.assertEquals(2, transformer.transformCount.get());
+	}
+	
+	@Test
+	public void CloseCancelsTheQueuedTransforms()
+	{
+		CompletableFuture<LodRenderSource> a = transform(POS_A);
+		transformer.close();
+		Assert.assertTrue(a.isCompletedExceptionally());
+		Assert.assertTrue(transform(POS_B).isCompletedExceptionally());
+	}
+	
+	
+	
+	//================//
+	// helper methods //
+	//================//
+	
+	private CompletableFuture<LodRenderSource> transform(DhSectionPos pos)
+	{
+		return transformer.transform(pos, CompletableFuture.completedFuture((LodDataSource) null));
+	}
+	
+	
+	
+	/** Records the sections in the order their transforms started, which is when they are checked to still be in the tree. */
+	private static class FakeSectionPriority implements DataRenderTransformer.SectionPriority
+	{
+		final Map<DhSectionPos, Double> distances = new ConcurrentHashMap<>();
+		final Set<DhSectionPos> removedSections = ConcurrentHashMap.newKeySet();
+		private final List<DhSectionPos> transformedSections = new ArrayList<>();
+		
+		@Override
+		public double getDistanceToPlayer(DhSectionPos pos) { return distances.getOrDefault(pos, 0.0); }
+		
+		@Override
+		public boolean isSectionInTree(DhSectionPos pos)
+		{
+			synchronized (transformedSections)
+			{
+				transformedSections.add(pos);
+			}
+			return !removedSections.contains(pos);
+		}
+		
+		List<DhSectionPos> getTransformedSections()
+		{
+			synchronized (transformedSections)
+			{
+				return new ArrayList<>(transformedSections);
+			}
+		}
+		
+	}
+	
+	/** Creates no render source, and blocks its first transform until {@link #finishFirstTransform} is counted down. */
+	private static class TestTransformer extends DataRenderTransformer
+	{
+		final CountDownLatch firstTransformStarted = new CountDownLatch(1);
+		final CountDownLatch finishFirstTransform = new CountDownLatch(1);
+		final AtomicInteger transformCount = new AtomicInteger();
+		
+		TestTransformer()
+		{
+			super(null);
+		}
+		
+		@Override
+		protected LodRenderSource createRender(LodDataSource dataSource)
+		{
+			if (transformCount.getAndIncrement() == 0)
+			{
+				firstTransformStarted.countDown();
+				try
+				{
+					finishFirstTransform.await(10, TimeUnit.SECONDS);
+				}
+				catch (InterruptedException e)
+				{
+					throw new RuntimeException(e);
+				}
+			}
+			return null;
+		}
+		
+	}
+	
+}
@@ -0,0 +1,77 @@
+/*
+ *    This file is part of the Distant Horizons mod (formerly the LOD Mod),
+ *    licensed under the GNU LGPL v3 License.
+ *
+ *    Copyright (C) 2020-2022  James Seibel
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU Lesser General Public License as published by
+ *    the Free Software Foundation, version 3.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the GNU Lesser General Public License
+ *    along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+import com.seibel.lod.core.a7.render.RenderBuffer;
+import com.seibel.lod.core.render.LodRenderProgram;
+import com.seibel.lod.core.util.StatsMap;
+import org.junit.Assert;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A render buffer that only records how it is used.
+ *
+ * @version 2022-9-21
+ */
+public class FakeRenderBuffer extends RenderBuffer
+{
+	/** Counts the draws of closed buffers, which must never happen. */
+	public static final AtomicInteger closedBufferDrawCount = new AtomicInteger();
+	
+	public final String name;
+	/** The name of this buffer is added to it each time it is drawn, unless it is null */
+	private final List<String> drawLog;
+	public volatile boolean isClosed = false;
+	
+	public FakeRenderBuffer()
+	{
+		this("", null);
+	}
+	
+	public FakeRenderBuffer(String name, List<String> drawLog)
+	{
+		this.name = name;
+		this.drawLog = drawLog;
+	}
+	
+	@Override
+	public boolean render(LodRenderProgram shaderProgram)
+	{
+		if (isClosed)
+			closedBufferDrawCount.incrementAndGet();
+		if (drawLog != null)
+			drawLog.add(name);
+		return true;
+	}
+	
+	@Override
+	public void debugDumpStats(StatsMap statsMap) { }
+	
+	@Override
+	public void close()
+	{
+		Assert.assertFalse("Closed twice", isClosed);
+		isClosed = true;
+	}
+	
+	@Override
+	public String toString() { return name; }
+	
+}
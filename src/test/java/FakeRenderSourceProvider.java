@@ -0,0 +1,113 @@
+/*
+ *    This file is part of the Distant Horizons mod (formerly the LOD Mod),
+ *    licensed under the GNU LGPL v3 License.
+ *
+ *    Copyright (C) 2020-2022  James Seibel
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU Lesser General Public License as published by
+ *    the Free Software Foundation, version 3.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the GNU Lesser General Public License
+ *    along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+import com.seibel.lod.core.a7.datatype.EmptyRenderSource;
+import com.seibel.lod.core.a7.datatype.LodRenderSource;
+import com.seibel.lod.core.a7.datatype.full.ChunkSizedData;
+import com.seibel.lod.core.a7.pos.DhSectionPos;
+import com.seibel.lod.core.a7.save.io.render.IRenderSourceProvider;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Records the reads and unloads made to it. Its reads either complete right away with a given source,
+ * or stay pending until the test completes them.
+ *
+ * @version 2022-9-21
+ */
+public class FakeRenderSourceProvider implements IRenderSourceProvider
+{
+	/** "read" or "unload", followed by the section's detail, x and z, in the order they were called */
+	public final ArrayList<String> calls = new ArrayList<>();
+	public final ArrayList<DhSectionPos> reads = new ArrayList<>();
+	/** Oldest first, always empty if the reads complete right away */
+	public final ArrayList<CompletableFuture<LodRenderSource>> pendingReads = new ArrayList<>();
+	
+	private final boolean completeReadsRightAway;
+	private final LodRenderSource source;
+	
+	
+	/** Reads stay pending until they are completed with {@link #completeReads} or through {@link #pendingReads}. */
+	public FakeRenderSourceProvider()
+	{
+		this.completeReadsRightAway = false;
+		this.source = null;
+	}
+	
+	/** Every read completes right away with the given source, which may be null. */
+	public FakeRenderSourceProvider(LodRenderSource source)
+	{
+		this.completeReadsRightAway = true;
+		this.source = source;
+	}
+	
+	
+	
+	@Override
+	public CompletableFuture<LodRenderSource> read(DhSectionPos pos)
+	{
+		calls.add("read " + pos.sectionDetail + " " + pos.sectionX + " " + pos.sectionZ);
+		reads.add(pos);
+		if (completeReadsRightAway)
+			return CompletableFuture.completedFuture(source);
+		
+		CompletableFuture<LodRenderSource> future = new CompletableFuture<>();
+		pendingReads.add(future);
+		return future;
+	}
+	
+	/** Completes the oldest pending reads with an empty source */
+	public void completeReads(int count)
+	{
+		for (int i = 0; i < count && !pendingReads.isEmpty(); i++)
+		{
+			pendingReads.remove(0).complete(EmptyRenderSource.INSTANCE);
+		}
+	}
+	
+	public void completeAllReads()
+	{
+		completeReads(pendingReads.size());
+	}
+	
+	/** @return the future returned by the last read */
+	public CompletableFuture<LodRenderSource> getLastPendingRead()
+	{
+		return pendingReads.get(pendingReads.size() - 1);
+	}
+	
+	@Override
+	public void unload(DhSectionPos pos) { calls.add("unload " + pos.sectionDetail + " " + pos.sectionX + " " + pos.sectionZ); }
+	
+	@Override
+	public void addScannedFile(Collection<File> detectedFiles) { }
+	
+	@Override
+	public void write(DhSectionPos sectionPos, ChunkSizedData chunkData) { }
+	
+	@Override
+	public CompletableFuture<Void> flushAndSave() { return CompletableFuture.completedFuture(null); }
+	
+	@Override
+	public void close() { }
+	
+}
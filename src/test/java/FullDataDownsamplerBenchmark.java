@@ -0,0 +1,119 @@
+/*
+ *    This file is part of the Distant Horizons mod (formerly the LOD Mod),
+ *    licensed under the GNU LGPL v3 License.
+ *
+ *    Copyright (C) 2020-2022  James Seibel
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU Lesser General Public License as published by
+ *    the Free Software Foundation, version 3.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the GNU Lesser General Public License
+ *    along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+import com.seibel.lod.core.a7.datatype.full.FullFormat;
+import com.seibel.lod.core.a7.datatype.full.IdBiomeBlockStateMap;
+import com.seibel.lod.core.a7.datatype.full.accessor.FullArrayView;
+import com.seibel.lod.core.a7.datatype.transform.FullDataDownsampler;
+import com.seibel.lod.core.wrapperInterfaces.block.IBlockStateWrapper;
+
+import java.util.Random;
+
+/**
+ * Rough timing of {@link FullDataDownsampler} for every detail level of a 64 x 64 section,
+ * on the fork-join pool and on a single thread. <br>
+ * Run the main method manually, it isn't part of the test suite.
+ *
+ * @version 2022-9-7
+ */
+public class FullDataDownsamplerBenchmark
+{
+	private static final int WIDTH = 64;
+	private static final int WARMUP_ROUNDS = 200;
+	private static final int ROUNDS = 200;
+	private static final int TRIALS = 5;
+	
+	private static long checksum = 0;
+	
+	public static void main(String[] args)
+	{
+		WrapperTestHelper.bindWrapperFactory();
+		
+		FullArrayView source = createTerrain(new Random(42));
+		boolean[] airIds = FullDataDownsampler.findAirIds(source.getMapping());
+		FullDataDownsampler.ColumnConsumer sink = (x, z, column, length) -> checksum += length;
+		
+		for (int detail = 1; (1 << detail) <= WIDTH; detail++)
+		{
+			int factor = 1 << detail;
+			for (int i = 0; i < WARMUP_ROUNDS; i++)
+			{
+				FullDataDownsampler.downsample(source, factor, sink);
+				singleThreaded(source, factor, airIds, sink);
+			}
+			
+			// interleaved trials, the best one of each is reported
+			long parallelNanos = Long.MAX_VALUE;
+			long singleNanos = Long.MAX_VALUE;
+			for (int trial = 0; trial < TRIALS; trial++)
+			{
+				long start = System.nanoTime();
+				for (int i = 0; i < ROUNDS; i++)
+					FullDataDownsampler.downsample(source, factor, sink);
+				parallelNanos = Math.min(parallelNanos, System.nanoTime() - start);
+				
+				start = System.nanoTime();
+				for (int i = 0; i < ROUNDS; i++)
+					singleThreaded(source, factor, airIds, sink);
+				singleNanos = Math.min(singleNanos, System.nanoTime() - start);
+			}
+			
+			System.out.printf("detail %d (%2d x %-2d columns): fork-join %8.1f us/section, single thread %8.1f us/section%n",
+					detail, WIDTH / factor, WIDTH / factor, parallelNanos / 1000.0 / ROUNDS, singleNanos / 1000.0 / ROUNDS);
+		}
+		System.out.println("(checksum " + checksum + ")");
+	}
+	
+	private static void singleThreaded(FullArrayView source, int factor, boolean[] airIds, FullDataDownsampler.ColumnConsumer sink)
+	{
+		for (int x = 0; x < WIDTH / factor; x++)
+			for (int z = 0; z < WIDTH / factor; z++)
+				FullDataDownsampler.downsampleColumn(source, x * factor, z * factor, factor, airIds, x, z, sink);
+	}
+	
+	/** Air over grass, dirt and stone with some ore, the surface rolling between y 60 and 90. */
+	private static FullArrayView createTerrain(Random random)
+	{
+		IdBiomeBlockStateMap mapping = new IdBiomeBlockStateMap();
+		int air = mapping.setAndGetId(null, IBlockStateWrapper.AIR);
+		int grass = mapping.setAndGetId(null, new WrapperTestHelper.NamedBlockState("grass"));
+		int dirt = mapping.setAndGetId(null, new WrapperTestHelper.NamedBlockState("dirt"));
+		int stone = mapping.setAndGetId(null, new WrapperTestHelper.NamedBlockState("stone"));
+		int ore = mapping.setAndGetId(null, new WrapperTestHelper.NamedBlockState("ore"));
+		
+		long[][] columns = new long[WIDTH * WIDTH][];
+		for (int x = 0; x < WIDTH; x++)
+		{
+			for (int z = 0; z < WIDTH; z++)
+			{
+				int surface = 75 + (int) (15 * Math.sin(x / 9.0) * Math.cos(z / 7.0));
+				int oreY = 5 + random.nextInt(40);
+				columns[x * WIDTH + z] = new long[] {
+						FullFormat.encode(air, 320 - surface, surface, (byte) 15),
+						FullFormat.encode(grass, 1, surface - 1, (byte) 0),
+						FullFormat.encode(dirt, 3, surface - 4, (byte) 0),
+						FullFormat.encode(stone, surface - 4 - oreY - 2, oreY + 2, (byte) 0),
+						FullFormat.encode(ore, 2, oreY, (byte) 0),
+						FullFormat.encode(stone, oreY + 64, -64, (byte) 0)};
+			}
+		}
+		return new FullArrayView(mapping, columns, WIDTH);
+	}
+	
+}
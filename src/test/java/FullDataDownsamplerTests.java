@@ -0,0 +1,184 @@
+/*
+ *    This file is part of the Distant Horizons mod (formerly the LOD Mod),
+ *    licensed under the GNU LGPL v3 License.
+ *
+ *    Copyright (C) 2020-2022  James Seibel
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU Lesser General Public License as published by
+ *    the Free Software Foundation, version 3.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the GNU Lesser General Public License
+ *    along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+import com.seibel.lod.core.a7.datatype.full.FullFormat;
+import com.seibel.lod.core.a7.datatype.full.IdBiomeBlockStateMap;
+import com.seibel.lod.core.a7.datatype.full.accessor.FullArrayView;
+import com.seibel.lod.core.a7.datatype.transform.FullDataDownsampler;
+import com.seibel.lod.core.wrapperInterfaces.block.IBlockStateWrapper;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Tests for {@link FullDataDownsampler}.
+ *
+ * @version 2022-9-7
+ */
+public class FullDataDownsamplerTests
+{
+	private static final IBlockStateWrapper STONE = new WrapperTestHelper.NamedBlockState("stone");
+	private static final IBlockStateWrapper DIRT = new WrapperTestHelper.NamedBlockState("dirt");
+	private static final IBlockStateWrapper SAND = new WrapperTestHelper.NamedBlockState("sand");
+	
+	private static final byte SKY = (byte) 15;
+	private static final byte DARK = (byte) 0;
+	
+	private static int air;
+	private static int stone;
+	private static int dirt;
+	private static int sand;
+	private static IdBiomeBlockStateMap mapping;
+	
+	
+	@BeforeClass
+	public static void bindFactory()
+	{
+		WrapperTestHelper.bindWrapperFactory();
+		
+		mapping = new IdBiomeBlockStateMap();
+		air = mapping.setAndGetId(null, IBlockStateWrapper.AIR);
+		stone = mapping.setAndGetId(null, STONE);
+		dirt = mapping.setAndGetId(null, DIRT);
+		sand = mapping.setAndGetId(null, SAND);
+	}
+	
+	@Test
+	public void SingleColumnIsUnchanged()
+	{
+		long[] column = {entry(air, 80, 100, SKY), entry(dirt, 70, 80, SKY), entry(stone, 0, 70, DARK)};
+		long[] result = downsampleOne(new long[][] {column});
+		Assert.assertArrayEquals(column, result);
+	}
+	
+	@Test
+	public void BlocksBeatAir()
+	{
+		long[] open = {entry(air, 0, 100, SKY)};
+		long[] pillar = {entry(air, 50, 100, SKY), entry(stone, 0, 50, SKY)};
+		long[] result = downsampleOne(new long[][] {open, open, pillar, open});
+		Assert.assertArrayEquals(new long[] {entry(air, 50, 100, SKY), entry(stone, 0, 50, SKY)}, result);
+	}
+	
+	@Test
+	public void MostCommonBlockWins()
+	{
+		long[] dirtColumn = {entry(dirt, 0, 64, DARK)};
+		long[] sandColumn = {entry(sand, 0, 64, SKY)};
+		Assert.assertArrayEquals(new long[] {entry(dirt, 0, 64, DARK)},
+				downsampleOne(new long[][] {sandColumn, dirtColumn, dirtColumn, dirtColumn}));
+		// ties go to the first column
+		Assert.assertArrayEquals(new long[] {entry(sand, 0, 64, SKY)},
+				downsampleOne(new long[][] {sandColumn, dirtColumn, dirtColumn, sandColumn}));
+	}
+	
+	@Test
+	public void SlabsFollowEveryBoundary()
+	{
+		long[] a = {entry(stone, 0, 40, DARK)};
+		long[] b = {entry(dirt, 20, 60, DARK)};
+		long[] result = downsampleOne(new long[][] {a, b, new long[0], new long[0]});
+		Assert.assertArrayEquals(new long[] {
+				entry(dirt, 40, 60, DARK),
+				entry(stone, 0, 40, DARK)}, result);
+	}
+	
+	@Test
+	public void GapsAreKept()
+	{
+		long[] top = {entry(stone, 80, 100, SKY)};
+		long[] bottom = {entry(stone, 0, 20, DARK)};
+		long[] result = downsampleOne(new long[][] {top, bottom, top, bottom});
+		Assert.assertArrayEquals(new long[] {entry(stone, 80, 100, SKY), entry(stone, 0, 20, DARK)}, result);
+	}
+	
+	@Test
+	public void ParallelMatchesSingleColumns()
+	{
+		Random random = new Random(1234);
+		int width = 64;
+		long[][] columns = new long[width * width][];
+		for (int i = 0; i < columns.length; i++)
+			columns[i] = randomColumn(random);
+		FullArrayView view = new FullArrayView(mapping, columns, width);
+		boolean[] airIds = FullDataDownsampler.findAirIds(mapping);
+		
+		for (int factor = 1; factor <= width; factor *= 2)
+		{
+			int outputWidth = width / factor;
+			long[][] parallel = new long[outputWidth * outputWidth][];
+			FullDataDownsampler.downsample(view, factor, (x, z, column, length) ->
+					parallel[x * outputWidth + z] = Arrays.copyOf(column, length));
+			
+			for (int x = 0; x < outputWidth; x++)
+			{
+				for (int z = 0; z < outputWidth; z++)
+				{
+					long[][] single = new long[1][];
+					FullDataDownsampler.downsampleColumn(view, x * factor, z * factor, factor, airIds, 0, 0,
+							(ox, oz, column, length) -> single[0] = Arrays.copyOf(column, length));
+					Assert.assertArrayEquals("factor " + factor, single[0], parallel[x * outputWidth + z]);
+				}
+			}
+		}
+	}
+	
+	
+	
+	//=========//
+	// helpers //
+	//=========//
+	
+	private static long entry(int id, int bottom, int top, byte light)
+	{
+		return FullFormat.encode(id, top - bottom, bottom, light);
+	}
+	
+	/** Downsamples the given columns (x major, must be a square count) into one. */
+	private static long[] downsampleOne(long[][] columns)
+	{
+		int factor = (int) Math.sqrt(columns.length);
+		long[][] result = new long[1][];
+		FullDataDownsampler.downsample(new FullArrayView(mapping, columns, factor), factor,
+				(x, z, column, length) -> result[0] = Arrays.copyOf(column, length));
+		return result[0];
+	}
+	
+	/** Touching runs from y 255 downwards, with the occasional gap or empty column. */
+	private static long[] randomColumn(Random random)
+	{
+		if (random.nextInt(20) == 0)
+			return new long[0];
+		long[] column = new long[16];
+		int count = 0;
+		int top = 256;
+		while (top > 0 && count < column.length)
+		{
+			int bottom = Math.max(0, top - 1 - random.nextInt(40));
+			if (random.nextInt(6) != 0)
+				column[count++] = entry(random.nextInt(mapping.size()), bottom, top, (byte) random.nextInt(16));
+			top = bottom;
+		}
+		return Arrays.copyOf(column, count);
+	}
+	
+}
@@ -0,0 +1,186 @@
+/*
+ *    This file is part of the Distant Horizons mod (formerly the LOD Mod),
+ *    licensed under the GNU LGPL v3 License.
+ *
+ *    Copyright (C) 2020-2022  James Seibel
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU Lesser General Public License as published by
+ *    the Free Software Foundation, version 3.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the GNU Lesser General Public License
+ *    along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+import com.seibel.lod.core.a7.datatype.full.ChunkSizedData;
+import com.seibel.lod.core.a7.datatype.full.FullDataSource;
+import com.seibel.lod.core.a7.datatype.full.FullFormat;
+import com.seibel.lod.core.a7.datatype.full.IdBiomeBlockStateMap;
+import com.seibel.lod.core.a7.datatype.full.accessor.SingleFullArrayView;
+import com.seibel.lod.core.a7.pos.DhSectionPos;
+import com.seibel.lod.core.objects.DHChunkPos;
+import com.seibel.lod.core.wrapperInterfaces.block.IBlockStateWrapper;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+
+/**
+ * Tests saving and loading {@link FullDataSource}.
+ *
+ * @version 2022-9-18
+ */
+public class FullDataSourceTests
+{
+	private static final IBlockStateWrapper STONE = new WrapperTestHelper.NamedBlockState("stone");
+	private static final IBlockStateWrapper DIRT = new WrapperTestHelper.NamedBlockState("dirt");
+	
+	private static final DhSectionPos POS = new DhSectionPos(FullDataSource.SECTION_SIZE_OFFSET, 0, 0);
+	
+	
+	@BeforeClass
+	public static void bindFactory()
+	{
+		WrapperTestHelper.bindWrapperFactory();
+	}
+	
+	@Test
+	public void RoundTripKeepsColumnsMappingAndGenModes() throws IOException
+	{
+		FullDataSource source = FullDataSource.createEmpty(POS);
+		ChunkSizedData chunk = new ChunkSizedData(new DHChunkPos(1, 2), (byte) 3);
+		int air = chunk.getMapping().setAndGetId(null, IBlockStateWrapper.AIR);
+		int stone = chunk.getMapping().setAndGetId(null, STONE);
+		int dirt = chunk.getMapping().setAndGetId(null, DIRT);
+		for (int x = 0; x < 16; x++)
+		{
+			for (int z = 0; z < 16; z++)
+			{
+				chunk.setSingleColumn(new long[] {
+						FullFormat.encode(air, 100 - x, 64 + x, (byte) 15),
+						FullFormat.encode(x % 2 == 0 ? dirt : stone, 64 + x, 0, (byte) z)}, x, z);
+			}
+		}
+		source.update(chunk.pos, chunk);
+		
+		FullDataSource loaded = saveAndLoad(source);
+		
+		Assert.assertEquals(source.getMapping().size(), loaded.getMapping().size());
+		for (int id = 0; id < source.getMapping().size(); id++)
+		{
+			Assert.assertEquals(source.getMapping().get(id).serialize(), loaded.getMapping().get(id).serialize());
+		}
+		assertSameColumns(source, loaded);
+		Assert.assertEquals(3, loaded.getGenMode(16, 32));
+		Assert.assertEquals(0, loaded.getGenMode(0, 0));
+		Assert.assertEquals(source.getMinGenMode(), loaded.getMinGenMode());
+	}
+	
+	@Test
+	public void ColumnsLongerThanAShortSurvive() throws IOException
+	{
+		FullDataSource source = FullDataSource.createEmpty(POS);
+		IdBiomeBlockStateMap mapping = source.getMapping();
+		int stone = mapping.setAndGetId(null, STONE);
+		int dirt = mapping.setAndGetId(null, DIRT);
+		mapping.setAndGetId(null, IBlockStateWrapper.AIR);
+		
+		// Enough one block tall entries to need more than 32767 packed words
+		long[] column = new long[65000];
+		for (int i = 0; i < column.length; i++)
+		{
+			column[i] = FullFormat.encode(i % 3 == 0 ? stone : dirt, 1, i % 2048, (byte) (i & 0xFF));
+		}
+		source.get(5, 7).setNew(column);
+		
+		FullDataSource loaded = saveAndLoad(source);
+		SingleFullArrayView loadedColumn = loaded.get(5, 7);
+		Assert.assertEquals(column.length, loadedColumn.getSingleLength());
+		for (int i = 0; i < column.length; i++)
+		{
+			Assert.assertEquals(column[i], loadedColumn.getSingle(i));
+		}
+	}
+	
+	@Test
+	public void ChunksAreDownsampledIntoTheCoarsestDetail()
+	{
+		DhSectionPos coarsePos = new DhSectionPos((byte) (FullDataSource.SECTION_SIZE_OFFSET + FullDataSource.MAX_CHUNK_DATA_DETAIL), 0, 0);
+		FullDataSource source = FullDataSource.createEmpty(coarsePos);
+		source.update(new DHChunkPos(3, 5), createStoneChunk(3, 5));
+		
+		Assert.assertEquals(2, source.getGenMode(3, 5));
+		Assert.assertTrue(source.get(3, 5).getSingleLength() > 0);
+		Assert.assertEquals(0, source.getGenMode(5, 3));
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void ChunksCantUpdateDataCoarserThanThem()
+	{
+		DhSectionPos tooCoarsePos = new DhSectionPos((byte) (FullDataSource.SECTION_SIZE_OFFSET + FullDataSource.MAX_CHUNK_DATA_DETAIL + 1), 0, 0);
+		FullDataSource.createEmpty(tooCoarsePos).update(new DHChunkPos(0, 0), createStoneChunk(0, 0));
+	}
+	
+	@Test(expected = IOException.class)
+	public void OtherVersionsAreRejected() throws IOException
+	{
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		FullDataSource.createEmpty(POS).saveData(null, null, out);
+		FullDataSource.loadData(POS, new DataInputStream(new ByteArrayInputStream(out.toByteArray())), 1);
+	}
+	
+	
+	
+	//================//
+	// helper methods //
+	//================//
+	
+	/** A chunk of columns with a single stone entry, at gen mode 2. */
+	private static ChunkSizedData createStoneChunk(int chunkX, int chunkZ)
+	{
+		ChunkSizedData chunk = new ChunkSizedData(new DHChunkPos(chunkX, chunkZ), (byte) 2);
+		int stone = chunk.getMapping().setAndGetId(null, STONE);
+		for (int x = 0; x < 16; x++)
+		{
+			for (int z = 0; z < 16; z++)
+			{
+				chunk.setSingleColumn(new long[] { FullFormat.encode(stone, 64, 0, (byte) 0) }, x, z);
+			}
+		}
+		return chunk;
+	}
+	
+	private static FullDataSource saveAndLoad(FullDataSource source) throws IOException
+	{
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		source.saveData(null, null, out);
+		return FullDataSource.loadData(POS, new DataInputStream(new ByteArrayInputStream(out.toByteArray())), FullDataSource.LATEST_VERSION);
+	}
+	
+	private static void assertSameColumns(FullDataSource expected, FullDataSource actual)
+	{
+		for (int x = 0; x < FullDataSource.SECTION_SIZE; x++)
+		{
+			for (int z = 0; z < FullDataSource.SECTION_SIZE; z++)
+			{
+				SingleFullArrayView expectedColumn = expected.get(x, z);
+				SingleFullArrayView actualColumn = actual.get(x, z);
+				Assert.assertEquals(expectedColumn.getSingleLength(), actualColumn.getSingleLength());
+				for (int i = 0; i < expectedColumn.getSingleLength(); i++)
+				{
+					Assert.assertEquals(expectedColumn.getSingle(i), actualColumn.getSingle(i));
+				}
+			}
+		}
+	}
+	
+}
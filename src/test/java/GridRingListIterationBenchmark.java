@@ -0,0 +1,126 @@
+/*
+ *    This file is part of the Distant Horizons mod (formerly the LOD Mod),
+ *    licensed under the GNU LGPL v3 License.
+ *
+ *    Copyright (C) 2020-2022  James Seibel
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU Lesser General Public License as published by
+ *    the Free Software Foundation, version 3.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the GNU Lesser General Public License
+ *    along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+import com.seibel.lod.core.objects.Pos2D;
+import com.seibel.lod.core.util.gridList.MovableGridRingList;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * Allocation and timing of the ordered iteration of {@link MovableGridRingList},
+ * with a {@link Pos2D} per entry compared against the primitive callback and the cursor. <br>
+ * Run the main method manually, it isn't part of the test suite.
+ * Allocations are measured with {@link com.sun.management.ThreadMXBean#getThreadAllocatedBytes},
+ * run with -XX:-DoEscapeAnalysis to see what the iteration allocates when the JIT can't remove it.
+ *
+ * @version 2022-9-14
+ */
+public class GridRingListIterationBenchmark
+{
+	private static final int HALF_SIZE = 64;
+	private static final int WARMUP_ROUNDS = 2_000;
+	private static final int ROUNDS = 2_000;
+	private static final int TRIALS = 10;
+
+	// Written to so the iterations can't be optimized away
+	private static long sink = 0;
+
+	public static void main(String[] args)
+	{
+		MovableGridRingList<Object> list = new MovableGridRingList<>(HALF_SIZE, 0, 0);
+		for (int x = -HALF_SIZE; x <= HALF_SIZE; x += 3)
+		{
+			for (int y = -HALF_SIZE; y <= HALF_SIZE; y += 2)
+			{
+				list.set(x, y, list);
+			}
+		}
+
+		for (int i = 0; i < WARMUP_ROUNDS; i++)
+		{
+			iteratePos2D(list);
+			iteratePrimitive(list);
+			iterateCursor(list);
+		}
+
+		com.sun.management.ThreadMXBean threadBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+		long threadId = Thread.currentThread().getId();
+
+		// interleaved trials, the best one of each is reported
+		long[] nanos = {Long.MAX_VALUE, Long.MAX_VALUE, Long.MAX_VALUE};
+		long[] bytes = {Long.MAX_VALUE, Long.MAX_VALUE, Long.MAX_VALUE};
+		for (int trial = 0; trial < TRIALS; trial++)
+		{
+			for (int variant = 0; variant < 3; variant++)
+			{
+				long startBytes = threadBean.getThreadAllocatedBytes(threadId);
+				long start = System.nanoTime();
+				for (int i = 0; i < ROUNDS; i++)
+				{
+					if (variant == 0)
+						iteratePos2D(list);
+					else if (variant == 1)
+						iteratePrimitive(list);
+					else
+						iterateCursor(list);
+				}
+				nanos[variant] = Math.min(nanos[variant], System.nanoTime() - start);
+				bytes[variant] = Math.min(bytes[variant], threadBean.getThreadAllocatedBytes(threadId) - startBytes);
+			}
+		}
+
+		int cellCount = list.getSize() * list.getSize();
+		String[] names = {"Pos2D per entry:   ", "primitive callback:", "cursor:            "};
+		for (int variant = 0; variant < 3; variant++)
+		{
+			System.out.printf("%s %8.1f us/iteration %10.1f bytes/iteration (%d cells)%n", names[variant],
+					nanos[variant] / 1000.0 / ROUNDS, bytes[variant] / (double) ROUNDS, cellCount);
+		}
+		System.out.println(sink);
+	}
+
+	private static void iteratePos2D(MovableGridRingList<Object> list)
+	{
+		list.forEachPosOrdered((t, pos) ->
+		{
+			if (t != null)
+				sink += pos.x ^ pos.y;
+		});
+	}
+
+	private static void iteratePrimitive(MovableGridRingList<Object> list)
+	{
+		list.forEachPosOrdered((t, x, y) ->
+		{
+			if (t != null)
+				sink += x ^ y;
+		});
+	}
+
+	private static void iterateCursor(MovableGridRingList<Object> list)
+	{
+		MovableGridRingList<Object>.OrderedCursor cursor = list.orderedCursor();
+		while (cursor.next())
+		{
+			if (cursor.get() != null)
+				sink += cursor.getX() ^ cursor.getY();
+		}
+	}
+
+}
@@ -0,0 +1,235 @@
+/*
+ *    This file is part of the Distant Horizons mod (formerly the LOD Mod),
+ *    licensed under the GNU LGPL v3 License.
+ *
+ *    Copyright (C) 2020-2022  James Seibel
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU Lesser General Public License as published by
+ *    the Free Software Foundation, version 3.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the GNU Lesser General Public License
+ *    along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+import com.seibel.lod.core.a7.datatype.full.ChunkSizedData;
+import com.seibel.lod.core.a7.datatype.transform.LodDataBatchBuilder;
+import com.seibel.lod.core.a7.pos.DhSectionPos;
+import com.seibel.lod.core.objects.DHChunkPos;
+import com.seibel.lod.core.wrapperInterfaces.chunk.IChunkWrapper;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+
+/**
+ * @version 2022-9-21
+ */
+public class LodDataBatchBuilderTests
+{
+	private LodDataBatchBuilder builder;
+	
+	
+	@BeforeClass
+	public static void bindFactory()
+	{
+		WrapperTestHelper.bindWrapperFactory();
+	}
+	
+	@Before
+	public void createBuilder()
+	{
+		builder = new LodDataBatchBuilder(2);
+	}
+	
+	@After
+	public void closeBuilder()
+	{
+		builder.close();
+	}
+	
+	
+	
+	@Test
+	public void FlushWritesTheQueuedChunks()
+	{
+		RecordingWriter writer = new RecordingWriter();
+		builder.queueChunk(new LodDataBuilderTestHelper.SyntheticChunk(1, 2));
+		
+		builder.flush(writer).join();
+		Assert.assertEquals("[1 2]", writer.getWrittenChunks().toString());
+		
+		// Nothing is left for the next tick
+		builder.tick(writer);
+		builder.flush(writer).join();
+		Assert.assertEquals(1, writer.getWrittenChunks().size());
+	}
+	
+	@Test
+	public void FlushWaitsForTheRunningBatch() throws InterruptedException
+	{
+		BlockingWriter writer = new BlockingWriter();
+		builder.queueChunk(new LodDataBuilderTestHelper.SyntheticChunk(0, 0));
+		builder.tick(writer);
+		Assert.assertTrue(writer.firstWriteStarted.await(10, TimeUnit.SECONDS));
+		
+		builder.queueChunk(new LodDataBuilderTestHelper.SyntheticChunk(5, 0));
+		CompletableFuture<Void> flushed = builder.flush(writer);
+		Thread.sleep(50);
+		Assert.assertFalse(flushed.isDone());
+		
+		writer.finishFirstWrite.countDown();
+		flushed.join();
+		Assert.assertEquals("[0 0, 5 0]", writer.getWrittenChunks().toString());
+	}
+	
+	@Test
+	public void TickDoesNothingWhileABatchIsRunning() throws InterruptedException
+	{
+		BlockingWriter writer = new BlockingWriter();
+		builder.queueChunk(new LodDataBuilderTestHelper.SyntheticChunk(0, 0));
+		builder.tick(writer);
+		Assert.assertTrue(writer.firstWriteStarted.await(10, TimeUnit.SECONDS));
+		
+		builder.queueChunk(new LodDataBuilderTestHelper.SyntheticChunk(5, 0));
+		builder.tick(writer);
+		Thread.sleep(50);
+		Assert.assertEquals(1, writer.writeCount.get());
+		
+		// The chunk is still queued for the batch after it
+		writer.finishFirstWrite.countDown();
+		builder.flush(writer).join();
+		Assert.assertEquals("[0 0, 5 0]", writer.getWrittenChunks().toString());
+	}
+	
+	@Test
+	public void ChunksAreGroupedByTheirSection()
+	{
+		List<IChunkWrapper> chunks = Arrays.asList(
+				new LodDataBuilderTestHelper.SyntheticChunk(0, 0),
+				new LodDataBuilderTestHelper.SyntheticChunk(3, 3),
+				new LodDataBuilderTestHelper.SyntheticChunk(4, 0),
+				new LodDataBuilderTestHelper.SyntheticChunk(-1, 0));
+		LodDataBatchBuilder.BatchResult result = builder.build(chunks).join();
+		
+		Assert.assertEquals(3, result.dataBySection.size());
+		Assert.assertTrue(result.rejectedChunks.isEmpty());
+		for (Map.Entry<DhSectionPos, List<ChunkSizedData>> entry : result.dataBySection.entrySet())
+		{
+			for (ChunkSizedData chunk : entry.getValue())
+			{
+				Assert.assertEquals(LodDataBatchBuilder.getSectionPos(chunk.pos), entry.getKey());
+			}
+		}
+		Assert.assertEquals(2, result.dataBySection.get(LodDataBatchBuilder.getSectionPos(new DHChunkPos(1, 2))).size());
+	}
+	
+	@Test
+	public void RejectedChunksAreQueuedAgain()
+	{
+		RecordingWriter writer = new RecordingWriter();
+		LodDataBuilderTestHelper.SyntheticChunk unlitChunk = new LodDataBuilderTestHelper.SyntheticChunk(1, 1);
+		unlitChunk.isLightCorrect = false;
+		builder.queueChunk(unlitChunk);
+		
+		builder.flush(writer).join();
+		Assert.assertTrue(writer.getWrittenChunks().isEmpty());
+		
+		unlitChunk.isLightCorrect = true;
+		builder.flush(writer).join();
+		Assert.assertEquals("[1 1]", writer.getWrittenChunks().toString());
+	}
+	
+	@Test
+	public void RejectedChunksDontReplaceANewerQueuedVersion() throws InterruptedException
+	{
+		BlockingWriter writer = new BlockingWriter();
+		LodDataBuilderTestHelper.SyntheticChunk unlitChunk = new LodDataBuilderTestHelper.SyntheticChunk(1, 1);
+		unlitChunk.isLightCorrect = false;
+		builder.queueChunk(unlitChunk);
+		builder.queueChunk(new LodDataBuilderTestHelper.SyntheticChunk(0, 0));
+		builder.tick(writer);
+		Assert.assertTrue(writer.firstWriteStarted.await(10, TimeUnit.SECONDS));
+		
+		// Queued after the batch took the old version, but before the batch re-queues it
+		builder.queueChunk(new LodDataBuilderTestHelper.SyntheticChunk(1, 1));
+		writer.finishFirstWrite.countDown();
+		
+		builder.flush(writer).join();
+		Assert.assertEquals("[0 0, 1 1]", writer.getWrittenChunks().toString());
+	}
+	
+	
+	
+	/** Records the position of each chunk written, in the order of the writes. */
+	private static class RecordingWriter implements BiConsumer<DhSectionPos, Collection<ChunkSizedData>>
+	{
+		private final ArrayList<String> writtenChunks = new ArrayList<>();
+		
+		@Override
+		public void accept(DhSectionPos pos, Collection<ChunkSizedData> data)
+		{
+			synchronized (writtenChunks)
+			{
+				for (ChunkSizedData chunk : data)
+				{
+					writtenChunks.add(chunk.pos.x + " " + chunk.pos.z);
+				}
+			}
+		}
+		
+		List<String> getWrittenChunks()
+		{
+			synchronized (writtenChunks)
+			{
+				return new ArrayList<>(writtenChunks);
+			}
+		}
+		
+	}
+	
+	/** Blocks the first write until {@link #finishFirstWrite} is counted down. */
+	private static class BlockingWriter extends RecordingWriter
+	{
+		final CountDownLatch firstWriteStarted = new CountDownLatch(1);
+		final CountDownLatch finishFirstWrite = new CountDownLatch(1);
+		final AtomicInteger writeCount = new AtomicInteger();
+		
+		@Override
+		public void accept(DhSectionPos pos, Collection<ChunkSizedData> data)
+		{
+			if (writeCount.getAndIncrement() == 0)
+			{
+				firstWriteStarted.countDown();
+				try
+				{
+					finishFirstWrite.await(10, TimeUnit.SECONDS);
+				}
+				catch (InterruptedException e)
+				{
+					throw new RuntimeException(e);
+				}
+			}
+			super.accept(pos, data);
+		}
+		
+	}
+	
+}
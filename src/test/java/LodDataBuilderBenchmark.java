@@ -0,0 +1,77 @@
+/*
+ *    This file is part of the Distant Horizons mod (formerly the LOD Mod),
+ *    licensed under the GNU LGPL v3 License.
+ *
+ *    Copyright (C) 2020-2022  James Seibel
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU Lesser General Public License as published by
+ *    the Free Software Foundation, version 3.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the GNU Lesser General Public License
+ *    along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+import com.seibel.lod.core.a7.datatype.transform.LodDataBuilder;
+
+/**
+ * Rough timing of {@link LodDataBuilder#createChunkData} on a synthetic chunk,
+ * compared against the previous per-block builder. <br>
+ * Run the main method manually, it isn't part of the test suite.
+ *
+ * @version 2022-9-6
+ */
+public class LodDataBuilderBenchmark
+{
+	private static final int WARMUP_ROUNDS = 2_000;
+	private static final int ROUNDS = 2_000;
+	private static final int TRIALS = 10;
+	
+	public static void main(String[] args)
+	{
+		WrapperTestHelper.bindWrapperFactory();
+		
+		// LodDataBuilderTests checks that all three build the same data
+		LodDataBuilderTestHelper.SyntheticChunk perBlockChunk = new LodDataBuilderTestHelper.SyntheticChunk();
+		LodDataBuilderTestHelper.SyntheticChunk uniformAwareChunk = new LodDataBuilderTestHelper.UniformSyntheticChunk();
+		
+		for (int i = 0; i < WARMUP_ROUNDS; i++)
+		{
+			LodDataBuilderTestHelper.perBlockCreateChunkData(perBlockChunk);
+			LodDataBuilder.createChunkData(perBlockChunk);
+			LodDataBuilder.createChunkData(uniformAwareChunk);
+		}
+		
+		// interleaved trials, the best one of each is reported
+		long perBlockNanos = Long.MAX_VALUE;
+		long scanNanos = Long.MAX_VALUE;
+		long uniformNanos = Long.MAX_VALUE;
+		for (int trial = 0; trial < TRIALS; trial++)
+		{
+			long start = System.nanoTime();
+			for (int i = 0; i < ROUNDS; i++)
+				LodDataBuilderTestHelper.perBlockCreateChunkData(perBlockChunk);
+			perBlockNanos = Math.min(perBlockNanos, System.nanoTime() - start);
+			
+			start = System.nanoTime();
+			for (int i = 0; i < ROUNDS; i++)
+				LodDataBuilder.createChunkData(perBlockChunk);
+			scanNanos = Math.min(scanNanos, System.nanoTime() - start);
+			
+			start = System.nanoTime();
+			for (int i = 0; i < ROUNDS; i++)
+				LodDataBuilder.createChunkData(uniformAwareChunk);
+			uniformNanos = Math.min(uniformNanos, System.nanoTime() - start);
+		}
+		
+		System.out.printf("previous per-block builder:          %8.1f us/chunk%n", perBlockNanos / 1000.0 / ROUNDS);
+		System.out.printf("column scan, default implementation: %8.1f us/chunk%n", scanNanos / 1000.0 / ROUNDS);
+		System.out.printf("column scan, uniform sections:       %8.1f us/chunk%n", uniformNanos / 1000.0 / ROUNDS);
+	}
+	
+}
@@ -0,0 +1,245 @@
+/*
+ *    This file is part of the Distant Horizons mod (formerly the LOD Mod),
+ *    licensed under the GNU LGPL v3 License.
+ *
+ *    Copyright (C) 2020-2022  James Seibel
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU Lesser General Public License as published by
+ *    the Free Software Foundation, version 3.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the GNU Lesser General Public License
+ *    along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+import com.seibel.lod.core.a7.datatype.full.ChunkSizedData;
+import com.seibel.lod.core.a7.datatype.full.FullFormat;
+import com.seibel.lod.core.a7.datatype.transform.LodDataBuilder;
+import com.seibel.lod.core.enums.ELodDirection;
+import com.seibel.lod.core.wrapperInterfaces.block.IBlockDetailWrapper;
+import com.seibel.lod.core.wrapperInterfaces.block.IBlockStateWrapper;
+import com.seibel.lod.core.wrapperInterfaces.chunk.IChunkWrapper;
+import com.seibel.lod.core.wrapperInterfaces.world.IBiomeWrapper;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+
+import java.util.Objects;
+
+/**
+ * A synthetic chunk and the builder {@link LodDataBuilder#createChunkData} replaced,
+ * shared by its tests and benchmark.
+ *
+ * @version 2022-9-21
+ */
+public class LodDataBuilderTestHelper
+{
+	private static final int MIN_Y = -64;
+	private static final int MAX_Y = 320;
+	
+	
+	/** The builder before the column scan, one lookup per block and a new list per column. */
+	public static ChunkSizedData perBlockCreateChunkData(IChunkWrapper chunk)
+	{
+		ChunkSizedData chunkData = new ChunkSizedData(chunk.getChunkPos());
+		
+		for (int x = 0; x < 16; x++)
+		{
+			for (int z = 0; z < 16; z++)
+			{
+				LongArrayList longs = new LongArrayList(chunk.getHeight() / 4);
+				int lastY = chunk.getMaxBuildHeight();
+				IBiomeWrapper biome = chunk.getBiome(x, lastY, z);
+				IBlockStateWrapper blockState = IBlockStateWrapper.AIR;
+				int mappedId = chunkData.getMapping().setAndGetId(biome, blockState);
+				byte light = (byte) ((chunk.getBlockLight(x, lastY, z) << 4) + chunk.getSkyLight(x, lastY, z));
+				int y = chunk.getMaxY(x, z);
+				
+				for (; y >= chunk.getMinBuildHeight(); y--)
+				{
+					IBiomeWrapper newBiome = chunk.getBiome(x, y, z);
+					IBlockStateWrapper newBlockState = chunk.getBlockState(x, y, z);
+					byte newLight = (byte) ((chunk.getBlockLight(x, y, z) << 4) + chunk.getSkyLight(x, y, z));
+					
+					if (!Objects.equals(newBiome, biome) || !Objects.equals(newBlockState, blockState))
+					{
+						longs.add(FullFormat.encode(mappedId, lastY - y + 1, y + 1, light));
+						biome = newBiome;
+						blockState = newBlockState;
+						mappedId = chunkData.getMapping().setAndGetId(biome, blockState);
+						light = newLight;
+						lastY = y;
+					}
+					else if (newLight != light)
+					{
+						longs.add(FullFormat.encode(mappedId, lastY - y + 1, y + 1, light));
+						light = newLight;
+						lastY = y;
+					}
+				}
+				longs.add(FullFormat.encode(mappedId, lastY - y + 1, y + 1, light));
+				chunkData.setSingleColumn(longs.toLongArray(), x, z);
+			}
+		}
+		return chunkData;
+	}
+	
+	
+	
+	//=================//
+	// synthetic chunk //
+	//=================//
+	
+	private static final IBlockStateWrapper STONE = new WrapperTestHelper.NamedBlockState("stone");
+	private static final IBlockStateWrapper ORE = new WrapperTestHelper.NamedBlockState("ore");
+	private static final IBlockStateWrapper DIRT = new WrapperTestHelper.NamedBlockState("dirt");
+	private static final IBlockStateWrapper GRASS = new WrapperTestHelper.NamedBlockState("grass");
+	
+	private static final IBiomeWrapper PLAINS = new IBiomeWrapper()
+	{
+		@Override
+		public int getColorForBiome(int x, int z) { return 0; }
+		@Override
+		public String getName() { return "plains"; }
+		@Override
+		public int getGrassTint(int x, int z) { return 0; }
+		@Override
+		public int getFolliageTint() { return 0; }
+		@Override
+		public int getWaterTint() { return 0; }
+		@Override
+		public String serialize() { return "plains"; }
+	};
+	
+	/**
+	 * Rolling terrain around y 64 with scattered ores, full sky light above the surface. <br>
+	 * Uses the default {@link IChunkWrapper#scanColumn} and {@link IChunkWrapper#isSectionUniform}.
+	 */
+	public static class SyntheticChunk implements IChunkWrapper
+	{
+		private final int[] surface = new int[16 * 16];
+		private final IBlockStateWrapper[] blocks = new IBlockStateWrapper[16 * 16 * (MAX_Y - MIN_Y)];
+		final boolean[] uniformSections = new boolean[(MAX_Y - MIN_Y) / 16];
+		private final int chunkX;
+		private final int chunkZ;
+		/** The builder rejects the chunk while this is false */
+		public volatile boolean isLightCorrect = true;
+		
+		public SyntheticChunk()
+		{
+			this(0, 0);
+		}
+		
+		public SyntheticChunk(int chunkX, int chunkZ)
+		{
+			this.chunkX = chunkX;
+			this.chunkZ = chunkZ;
+			for (int x = 0; x < 16; x++)
+			{
+				for (int z = 0; z < 16; z++)
+				{
+					int top = 60 + (x * 7 + z * 3) % 9;
+					surface[x * 16 + z] = top;
+					for (int y = MIN_Y; y <= top; y++)
+					{
+						IBlockStateWrapper block;
+						if (y == top)
+							block = GRASS;
+						else if (y > top - 4)
+							block = DIRT;
+						else if (y > 0 && ((x * 31 + y * 17 + z * 13) % 97) == 0)
+							block = ORE;
+						else
+							block = STONE;
+						blocks[index(x, y, z)] = block;
+					}
+				}
+			}
+			
+			for (int section = 0; section < uniformSections.length; section++)
+			{
+				int sectionMinY = MIN_Y + section * 16;
+				boolean uniform = true;
+				for (int i = 0; i < 16 * 16 * 16 && uniform; i++)
+				{
+					int x = i & 15;
+					int z = (i >> 4) & 15;
+					int y = sectionMinY + (i >> 8);
+					uniform = blocks[index(x, y, z)] == blocks[index(0, sectionMinY, 0)]
+							&& getSkyLight(x, y, z) == getSkyLight(0, sectionMinY, 0);
+				}
+				uniformSections[section] = uniform;
+			}
+		}
+		
+		private static int index(int x, int y, int z)
+		{
+			return ((y - MIN_Y) * 16 + x) * 16 + z;
+		}
+		
+		@Override
+		public int getMinBuildHeight() { return MIN_Y; }
+		@Override
+		public int getMaxBuildHeight() { return MAX_Y; }
+		@Override
+		public int getHeightMapValue(int xRel, int zRel) { return surface[xRel * 16 + zRel] + 1; }
+		@Override
+		public IBiomeWrapper getBiome(int x, int y, int z) { return PLAINS; }
+		@Override
+		public IBlockStateWrapper getBlockState(int x, int y, int z)
+		{
+			return y < MIN_Y || y >= MAX_Y ? IBlockStateWrapper.AIR : blocks[index(x, y, z)];
+		}
+		@Override
+		public int getBlockLight(int x, int y, int z) { return 0; }
+		@Override
+		public int getSkyLight(int x, int y, int z) { return y > surface[x * 16 + z] ? 15 : 0; }
+		@Override
+		public int getMaxY(int x, int z) { return surface[x * 16 + z]; }
+		
+		@Override
+		public IBlockDetailWrapper getBlockDetail(int x, int y, int z) { throw new UnsupportedOperationException(); }
+		@Override
+		public IBlockDetailWrapper getBlockDetailAtFace(int x, int y, int z, ELodDirection dir) { throw new UnsupportedOperationException(); }
+		@Override
+		public int getChunkPosX() { return chunkX; }
+		@Override
+		public int getChunkPosZ() { return chunkZ; }
+		@Override
+		public int getRegionPosX() { return 0; }
+		@Override
+		public int getRegionPosZ() { return 0; }
+		@Override
+		public int getMaxX() { return 15; }
+		@Override
+		public int getMaxZ() { return 15; }
+		@Override
+		public int getMinX() { return 0; }
+		@Override
+		public int getMinZ() { return 0; }
+		@Override
+		public long getLongChunkPos() { return 0; }
+		@Override
+		public boolean isLightCorrect() { return isLightCorrect; }
+		@Override
+		public boolean isWaterLogged(int x, int y, int z) { return false; }
+		@Override
+		public int getEmittedBrightness(int x, int y, int z) { return 0; }
+		@Override
+		public boolean doesNearbyChunksExist() { return true; }
+	}
+	
+	/** Reports the sections that only have one block state and sky light, so the builder can skip scanning them. */
+	public static class UniformSyntheticChunk extends SyntheticChunk
+	{
+		@Override
+		public boolean isSectionUniform(int sectionMinY)
+		{
+			return uniformSections[(sectionMinY - MIN_Y) / 16];
+		}
+	}
+	
+}
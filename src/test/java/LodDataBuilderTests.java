@@ -0,0 +1,84 @@
+/*
+ *    This file is part of the Distant Horizons mod (formerly the LOD Mod),
+ *    licensed under the GNU LGPL v3 License.
+ *
+ *    Copyright (C) 2020-2022  James Seibel
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU Lesser General Public License as published by
+ *    the Free Software Foundation, version 3.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the GNU Lesser General Public License
+ *    along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+import com.seibel.lod.core.a7.datatype.full.ChunkSizedData;
+import com.seibel.lod.core.a7.datatype.full.accessor.SingleFullArrayView;
+import com.seibel.lod.core.a7.datatype.transform.LodDataBuilder;
+import com.seibel.lod.core.wrapperInterfaces.chunk.IChunkWrapper;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Checks that the column scanning {@link LodDataBuilder} builds the same data as the per-block builder it replaced.
+ *
+ * @version 2022-9-21
+ */
+public class LodDataBuilderTests
+{
+	
+	@BeforeClass
+	public static void bindFactory()
+	{
+		WrapperTestHelper.bindWrapperFactory();
+	}
+	
+	
+	
+	@Test
+	public void DefaultChunkScanMatchesThePerBlockBuilder()
+	{
+		assertBuildsLikePerBlock(new LodDataBuilderTestHelper.SyntheticChunk());
+	}
+	
+	@Test
+	public void SkippedUniformSectionsMatchThePerBlockBuilder()
+	{
+		assertBuildsLikePerBlock(new LodDataBuilderTestHelper.UniformSyntheticChunk());
+	}
+	
+	
+	
+	private static void assertBuildsLikePerBlock(IChunkWrapper chunk)
+	{
+		ChunkSizedData expected = LodDataBuilderTestHelper.perBlockCreateChunkData(chunk);
+		ChunkSizedData actual = LodDataBuilder.createChunkData(chunk);
+		
+		Assert.assertEquals(expected.getMapping().size(), actual.getMapping().size());
+		for (int id = 0; id < expected.getMapping().size(); id++)
+		{
+			Assert.assertEquals(expected.getMapping().get(id), actual.getMapping().get(id));
+		}
+		
+		for (int x = 0; x < 16; x++)
+		{
+			for (int z = 0; z < 16; z++)
+			{
+				SingleFullArrayView expectedColumn = expected.get(x, z);
+				SingleFullArrayView actualColumn = actual.get(x, z);
+				Assert.assertEquals("column " + x + " " + z, expectedColumn.getSingleLength(), actualColumn.getSingleLength());
+				for (int i = 0; i < expectedColumn.getSingleLength(); i++)
+				{
+					Assert.assertEquals("column " + x + " " + z + " entry " + i, expectedColumn.getSingle(i), actualColumn.getSingle(i));
+				}
+			}
+		}
+	}
+	
+}
@@ -0,0 +1,173 @@
+/*
+ *    This file is part of the Distant Horizons mod (formerly the LOD Mod),
+ *    licensed under the GNU LGPL v3 License.
+ *
+ *    Copyright (C) 2020-2022  James Seibel
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU Lesser General Public License as published by
+ *    the Free Software Foundation, version 3.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the GNU Lesser General Public License
+ *    along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+import com.seibel.lod.core.a7.pos.DhBlockPos2D;
+import com.seibel.lod.core.a7.pos.DhSectionPos;
+import com.seibel.lod.core.a7.render.DetailFalloffPolicy;
+import com.seibel.lod.core.a7.render.LodQuadTree;
+
+/**
+ * Timing of full {@link LodQuadTree} ticks with the target detail levels worked out serially compared against
+ * in parallel, at large view distances. <br>
+ * Run the main method manually, it isn't part of the test suite.
+ * The player moves a block each tick and every tick re-evaluates the whole tree. Loads are never completed,
+ * so the tree stays the same and mostly the evaluation is timed. <br>
+ * With a falloff that doubles the distance of each detail level the ring lists stay small at any view distance,
+ * so the stretched falloff, which spreads the detail levels evenly up to the view distance, is timed as well.
+ *
+ * @version 2022-9-21
+ */
+public class LodQuadTreeEvaluationBenchmark
+{
+	private static final int[] VIEW_DISTANCES = { 4096, 16384, 65536 };
+	private static final int WARMUP_TICKS = 50;
+	private static final int TICKS = 50;
+	private static final int TRIALS = 5;
+	
+	public static void main(String[] args)
+	{
+		System.out.println("Available processors: " + Runtime.getRuntime().availableProcessors());
+		for (boolean isStretched : new boolean[] { false, true })
+		{
+			for (int viewDistance : VIEW_DISTANCES)
+			{
+				benchmark(viewDistance, isStretched);
+			}
+		}
+	}
+	
+	private static void benchmark(int viewDistance, boolean isStretched)
+	{
+		LodQuadTree serialTree = createTree(viewDistance, isStretched, Integer.MAX_VALUE);
+		LodQuadTree parallelTree = createTree(viewDistance, isStretched, 0);
+		for (int i = 0; i < WARMUP_TICKS; i++)
+		{
+			serialTree.tick(new DhBlockPos2D(i, 0), true);
+			parallelTree.tick(new DhBlockPos2D(i, 0), true);
+		}
+		
+		// interleaved trials, the best one of each is reported
+		long serialNanos = Long.MAX_VALUE;
+		long parallelNanos = Long.MAX_VALUE;
+		for (int trial = 0; trial < TRIALS; trial++)
+		{
+			serialNanos = Math.min(serialNanos, timeTicks(serialTree));
+			parallelNanos = Math.min(parallelNanos, timeTicks(parallelTree));
+		}
+		
+		// Only ring lists at least as big as the default parallel threshold are split up outside of this benchmark
+		int maxCells = 0;
+		for (byte detail = serialTree.getStartingSectionLevel(); detail < serialTree.getNumbersOfSectionLevels(); detail++)
+		{
+			int size = serialTree.getRingList(detail).getSize();
+			maxCells = Math.max(maxCells, size * size);
+		}
+		System.out.printf("%s falloff, view distance %6d: serial %9.1f us/tick, parallel %9.1f us/tick (%.2fx), largest ring list %d cells%n",
+				isStretched ? "stretched" : "doubling ", viewDistance, serialNanos / 1000.0 / TICKS, parallelNanos / 1000.0 / TICKS,
+				serialNanos / (double) parallelNanos, maxCells);
+	}
+	
+	private static LodQuadTree createTree(int viewDistance, boolean isStretched, int parallelEvaluationMinCells)
+	{
+		LodQuadTree tree = new LodQuadTree(null, viewDistance, 0, 0, new FakeRenderSourceProvider(), new TestFalloffPolicy(viewDistance, isStretched));
+		tree.setParallelEvaluationMinCells(parallelEvaluationMinCells);
+		return tree;
+	}
+	
+	private static long timeTicks(LodQuadTree tree)
+	{
+		long start = System.nanoTime();
+		for (int i = 0; i < TICKS; i++)
+		{
+			tree.tick(new DhBlockPos2D(i, 0), true);
+		}
+		return System.nanoTime() - start;
+	}
+	
+	
+	
+	/**
+	 * Either each detail level starts twice as far out as the one before, from 128 blocks on,
+	 * or they all start the same distance apart so the lowest detail starts at the view distance.
+	 */
+	private static class TestFalloffPolicy implements DetailFalloffPolicy
+	{
+		static final int FIRST_DISTANCE = 128;
+		static final byte MAX_DETAIL = 9;
+		
+		final long[] startDistSquared = new long[MAX_DETAIL + 1];
+		final int furthestDistance;
+		
+		TestFalloffPolicy(int viewDistance, boolean isStretched)
+		{
+			furthestDistance = (int) Math.ceil(viewDistance * Math.sqrt(2));
+			for (int detail = 1; detail <= MAX_DETAIL; detail++)
+			{
+				long start = isStretched ? (long) viewDistance * detail / MAX_DETAIL : (long) FIRST_DISTANCE << (detail - 1);
+				startDistSquared[detail] = start * start;
+			}
+		}
+		
+		@Override
+		public byte getDetailLevel(DhBlockPos2D playerPos, DhSectionPos sectionPos)
+		{
+			return getDetailLevel(playerPos, sectionPos.sectionDetail, sectionPos.sectionX, sectionPos.sectionZ);
+		}
+		
+		@Override
+		public byte getDetailLevel(DhBlockPos2D playerPos, byte sectionDetail, int sectionX, int sectionZ)
+		{
+			long distSquared = playerPos.distSquared(DhSectionPos.getCenterBlock(sectionDetail, sectionX),
+					DhSectionPos.getCenterBlock(sectionDetail, sectionZ));
+			byte detail = 0;
+			while (detail < MAX_DETAIL && distSquared >= startDistSquared[detail + 1])
+			{
+				detail++;
+			}
+			return detail;
+		}
+		
+		@Override
+		public byte getMaxDetailInRange(double distance)
+		{
+			byte detail = 0;
+			while (detail < MAX_DETAIL && distance * distance >= startDistSquared[detail + 1])
+			{
+				detail++;
+			}
+			return detail;
+		}
+		
+		@Override
+		public int getFurthestDistance(byte detailLevel)
+		{
+			if (detailLevel >= MAX_DETAIL)
+				return furthestDistance;
+			return (int) Math.min(Math.ceil(Math.sqrt(startDistSquared[detailLevel + 1])), furthestDistance);
+		}
+		
+		@Override
+		public long getDetailStartDistanceSquared(byte detailLevel)
+		{
+			return detailLevel > MAX_DETAIL ? Long.MAX_VALUE : startDistSquared[detailLevel];
+		}
+	
+	}
+	
+}
@@ -0,0 +1,333 @@
+/*
+ *    This file is part of the Distant Horizons mod (formerly the LOD Mod),
+ *    licensed under the GNU LGPL v3 License.
+ *
+ *    Copyright (C) 2020-2022  James Seibel
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU Lesser General Public License as published by
+ *    the Free Software Foundation, version 3.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the GNU Lesser General Public License
+ *    along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+import com.seibel.lod.core.a7.pos.DhBlockPos2D;
+import com.seibel.lod.core.a7.pos.DhSectionPos;
+import com.seibel.lod.core.a7.render.DetailFalloffPolicy;
+import com.seibel.lod.core.a7.render.LodQuadTree;
+import com.seibel.lod.core.a7.render.LodRenderSection;
+import com.seibel.lod.core.objects.Pos2D;
+import com.seibel.lod.core.util.gridList.MovableGridRingList;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Checks that skipping the section passes of {@link LodQuadTree#tick} gives the same tree as always running them,
+ * and that sections aren't split and merged over and over when the player moves back and forth.
+ * 
+ * @version 2022-9-14
+ */
+public class LodQuadTreeTickTests
+{
+	private static final int VIEW_DISTANCE = 2048;
+	private static final int TICK_COUNT = 3000;
+	
+	
+	
+	@Test
+	public void IncrementalTickMatchesFullTick()
+	{
+		assertMatchesFullTick(true);
+	}
+	
+	@Test
+	public void IncrementalTickMatchesFullTickWithoutSplitDistances()
+	{
+		assertMatchesFullTick(false);
+	}
+	
+	@Test
+	public void IncrementalTickMatchesFullTickWithHysteresis()
+	{
+		assertMatchesFullTick(true, 20);
+	}
+	
+	@Test
+	public void ParallelEvaluationMatchesSerialEvaluation()
+	{
+		FakeRenderSourceProvider parallelProvider = new FakeRenderSourceProvider();
+		FakeRenderSourceProvider serialProvider = new FakeRenderSourceProvider();
+		LodQuadTree parallelTree = new LodQuadTree(null, VIEW_DISTANCE, 0, 0, parallelProvider, new TestFalloffPolicy(true, 20));
+		LodQuadTree serialTree = new LodQuadTree(null, VIEW_DISTANCE, 0, 0, serialProvider, new TestFalloffPolicy(true, 20));
+		parallelTree.setParallelEvaluationMinCells(0);
+		serialTree.setParallelEvaluationMinCells(Integer.MAX_VALUE);
+		
+		Random random = new Random(5678);
+		int x = 0;
+		int z = 0;
+		for (int tick = 0; tick < 500; tick++)
+		{
+			x += random.nextInt(65) - 32;
+			z += random.nextInt(65) - 32;
+			DhBlockPos2D playerPos = new DhBlockPos2D(x, z);
+			parallelTree.tick(playerPos, true);
+			serialTree.tick(playerPos, true);
+			int completedReads = random.nextInt(3);
+			parallelProvider.completeReads(completedReads);
+			serialProvider.completeReads(completedReads);
+			
+			Assert.assertEquals("Tree differs at tick " + tick, describe(serialTree), describe(parallelTree));
+			Assert.assertEquals("Provider calls differ at tick " + tick, serialProvider.calls, parallelProvider.calls);
+		}
+	}
+	
+	@Test
+	public void HysteresisStopsSplitMergeOscillation()
+	{
+		long eventsWithoutHysteresis = countSplitsAndMergesWhileJittering(0);
+		long eventsWithHysteresis = countSplitsAndMergesWhileJittering(20);
+		Assert.assertTrue("Jittering should split and merge sections without hysteresis", eventsWithoutHysteresis > 10);
+		Assert.assertEquals("Jittering inside the hysteresis band shouldn't split or merge sections", 0, eventsWithHysteresis);
+	}
+	
+	@Test
+	public void MergeLevelIsOnlyLookedUpForExistingSections()
+	{
+		FakeRenderSourceProvider provider = new FakeRenderSourceProvider();
+		TestFalloffPolicy policy = new TestFalloffPolicy(false, 20);
+		LodQuadTree tree = new LodQuadTree(null, VIEW_DISTANCE, 0, 0, provider, policy);
+		DhBlockPos2D playerPos = new DhBlockPos2D(0, 0);
+		for (int tick = 0; tick < 20; tick++)
+		{
+			tree.tick(playerPos);
+			provider.completeReads(100);
+		}
+		
+		policy.mergeDetailLevelCalls.set(0);
+		policy.detailLevelCalls.set(0);
+		tree.tick(playerPos, true);
+		long sectionCount = describe(tree).chars().filter((c) -> c == 'L' || c == 'l' || c == 'u').count();
+		Assert.assertTrue("The merge level should only be looked up for the " + sectionCount + " sections, was "
+				+ policy.mergeDetailLevelCalls.get(), policy.mergeDetailLevelCalls.get() <= sectionCount);
+		Assert.assertTrue(policy.detailLevelCalls.get() > sectionCount);
+	}
+	
+	/** Moves the player a few blocks back and forth across the distance at which the sections next to it split */
+	private static long countSplitsAndMergesWhileJittering(int hysteresisPercent)
+	{
+		FakeRenderSourceProvider provider = new FakeRenderSourceProvider();
+		// Detail 1 starts 128 blocks from the player, so the section at section x 2, z 0 splits its parent from x 48 on
+		LodQuadTree tree = new LodQuadTree(null, VIEW_DISTANCE, 48, 48, provider, new TestFalloffPolicy(true, hysteresisPercent));
+		DhBlockPos2D startPos = new DhBlockPos2D(52, 48);
+		for (int tick = 0; tick < 10; tick++)
+		{
+			tree.tick(startPos);
+		}
+		
+		long eventsBefore = tree.getSplitCount() + tree.getMergeCount();
+		for (int tick = 0; tick < 200; tick++)
+		{
+			tree.tick(new DhBlockPos2D(48 + (tick % 2 == 0 ? 4 : -4), 48));
+			provider.completeReads(2);
+		}
+		return tree.getSplitCount() + tree.getMergeCount() - eventsBefore;
+	}
+	
+	private static void assertMatchesFullTick(boolean hasSplitDistances)
+	{
+		assertMatchesFullTick(hasSplitDistances, 0);
+	}
+	
+	private static void assertMatchesFullTick(boolean hasSplitDistances, int hysteresisPercent)
+	{
+		TestFalloffPolicy incrementalPolicy = new TestFalloffPolicy(hasSplitDistances, hysteresisPercent);
+		TestFalloffPolicy fullPolicy = new TestFalloffPolicy(hasSplitDistances, hysteresisPercent);
+		FakeRenderSourceProvider incrementalProvider = new FakeRenderSourceProvider();
+		FakeRenderSourceProvider fullProvider = new FakeRenderSourceProvider();
+		LodQuadTree incrementalTree = new LodQuadTree(null, VIEW_DISTANCE, 0, 0, incrementalProvider, incrementalPolicy);
+		LodQuadTree fullTree = new LodQuadTree(null, VIEW_DISTANCE, 0, 0, fullProvider, fullPolicy);
+		
+		Random random = new Random(1234);
+		int x = 0;
+		int z = 0;
+		for (int tick = 0; tick < TICK_COUNT; tick++)
+		{
+			// Mostly standing still or walking, with the odd teleport and falloff change
+			int action = random.nextInt(100);
+			if (action < 40)
+			{
+				x += random.nextInt(9) - 4;
+				z += random.nextInt(9) - 4;
+			}
+			else if (action < 42)
+			{
+				x += random.nextInt(4001) - 2000;
+				z += random.nextInt(4001) - 2000;
+			}
+			else if (action == 42)
+			{
+				int detailWidth = TestFalloffPolicy.MIN_DETAIL_WIDTH + random.nextInt(4) * 32;
+				incrementalPolicy.detailWidth = detailWidth;
+				fullPolicy.detailWidth = detailWidth;
+			}
+			
+			DhBlockPos2D playerPos = new DhBlockPos2D(x, z);
+			incrementalTree.tick(playerPos);
+			fullTree.tick(playerPos, true);
+			int completedReads = random.nextInt(3);
+			incrementalProvider.completeReads(completedReads);
+			fullProvider.completeReads(completedReads);
+			
+			Assert.assertEquals("Tree differs at tick " + tick, describe(fullTree), describe(incrementalTree));
+			Assert.assertEquals("Provider calls differ at tick " + tick, fullProvider.calls, incrementalProvider.calls);
+			Assert.assertEquals("Split count differs at tick " + tick, fullTree.getSplitCount(), incrementalTree.getSplitCount());
+			Assert.assertEquals("Merge count differs at tick " + tick, fullTree.getMergeCount(), incrementalTree.getMergeCount());
+		}
+		
+		// Without split distances only the ticks without movement can be skipped
+		long fullDetailLevelCalls = fullPolicy.detailLevelCalls.get();
+		long maxDetailLevelCalls = hasSplitDistances ? fullDetailLevelCalls / 2 : fullDetailLevelCalls * 3 / 4;
+		Assert.assertTrue("Incremental tick skipped too few detail checks", incrementalPolicy.detailLevelCalls.get() < maxDetailLevelCalls);
+	}
+	
+	private static String describe(LodQuadTree tree)
+	{
+		StringBuilder str = new StringBuilder();
+		for (byte sectLevel = tree.getStartingSectionLevel(); sectLevel < tree.getNumbersOfSectionLevels(); sectLevel++)
+		{
+			MovableGridRingList<LodRenderSection> ringList = tree.getRingList(sectLevel);
+			Pos2D min = ringList.getMinInRange();
+			Pos2D max = ringList.getMaxInRange();
+			str.append(sectLevel).append(' ').append(min.x).append(',').append(min.y).append('\n');
+			for (int z = min.y; z <= max.y; z++)
+			{
+				for (int x = min.x; x <= max.x; x++)
+				{
+					LodRenderSection section = ringList.get(x, z);
+					if (section == null)
+					{
+						str.append(". ");
+						continue;
+					}
+					str.append(section.childCount).append(section.isLoaded() ? 'L' : section.isLoading() ? 'l' : 'u').append(' ');
+				}
+				str.append('\n');
+			}
+		}
+		return str.toString();
+	}
+	
+	
+	
+	/**
+	 * Detail 1 starts at detailWidth blocks, and each detail after that starts twice as far out as the one before.
+	 * Split sections merge hysteresisPercent further out.
+	 */
+	private static class TestFalloffPolicy implements DetailFalloffPolicy
+	{
+		static final int MIN_DETAIL_WIDTH = 128;
+		static final int MAX_DETAIL_WIDTH = MIN_DETAIL_WIDTH + 3 * 32;
+		
+		final boolean hasSplitDistances;
+		final int hysteresisPercent;
+		int detailWidth = MIN_DETAIL_WIDTH;
+		int refreshedDetailWidth = MIN_DETAIL_WIDTH;
+		// Atomic, as the tree may ask for detail levels from several threads
+		final AtomicLong detailLevelCalls = new AtomicLong();
+		final AtomicLong mergeDetailLevelCalls = new AtomicLong();
+		
+		TestFalloffPolicy(boolean hasSplitDistances)
+		{
+			this(hasSplitDistances, 0);
+		}
+		
+		TestFalloffPolicy(boolean hasSplitDistances, int hysteresisPercent)
+		{
+			this.hasSplitDistances = hasSplitDistances;
+			this.hysteresisPercent = hysteresisPercent;
+		}
+		
+		@Override
+		public boolean refresh()
+		{
+			boolean changed = detailWidth != refreshedDetailWidth;
+			refreshedDetailWidth = detailWidth;
+			return changed;
+		}
+		
+		@Override
+		public byte getDetailLevel(DhBlockPos2D playerPos, DhSectionPos sectionPos)
+		{
+			return getDetailLevel(playerPos, sectionPos, 0);
+		}
+		
+		@Override
+		public byte getMergeDetailLevel(DhBlockPos2D playerPos, DhSectionPos sectionPos)
+		{
+			mergeDetailLevelCalls.incrementAndGet();
+			return getDetailLevel(playerPos, sectionPos, hysteresisPercent);
+		}
+		
+		private byte getDetailLevel(DhBlockPos2D playerPos, DhSectionPos sectionPos, int bandPercent)
+		{
+			detailLevelCalls.incrementAndGet();
+			long distSquared = playerPos.distSquared(sectionPos.getCenter().getCenter());
+			byte detail = 0;
+			while (detail < 9 && distSquared >= getStart((byte) (detail + 1), bandPercent))
+			{
+				detail++;
+			}
+			return detail;
+		}
+		
+		@Override
+		public byte getMaxDetailInRange(double distance)
+		{
+			byte detail = 0;
+			while (detail < 9 && distance >= (MIN_DETAIL_WIDTH << detail))
+			{
+				detail++;
+			}
+			return detail;
+		}
+		
+		@Override
+		public int getFurthestDistance(byte detailLevel) { return MAX_DETAIL_WIDTH << (detailLevel + 1); }
+		
+		@Override
+		public long getDetailStartDistanceSquared(byte detailLevel)
+		{
+			return hasSplitDistances ? getStart(detailLevel, 0) : -1;
+		}
+		
+		@Override
+		public long getMergeStartDistanceSquared(byte detailLevel)
+		{
+			return hasSplitDistances ? getStart(detailLevel, hysteresisPercent) : -1;
+		}
+		
+		private long getStart(byte detailLevel, int bandPercent)
+		{
+			if (detailLevel > 9)
+			{
+				return Long.MAX_VALUE;
+			}
+			if (detailLevel == 0)
+			{
+				return 0;
+			}
+			long start = ((long) refreshedDetailWidth << (detailLevel - 1)) * (100 + bandPercent) / 100;
+			return start * start;
+		}
+	}
+	
+}
@@ -0,0 +1,143 @@
+/*
+ *    This file is part of the Distant Horizons mod (formerly the LOD Mod),
+ *    licensed under the GNU LGPL v3 License.
+ *
+ *    Copyright (C) 2020-2022  James Seibel
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU Lesser General Public License as published by
+ *    the Free Software Foundation, version 3.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the GNU Lesser General Public License
+ *    along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+import com.seibel.lod.core.a7.datatype.EmptyRenderSource;
+import com.seibel.lod.core.a7.pos.DhSectionPos;
+import com.seibel.lod.core.a7.render.ESectionState;
+import com.seibel.lod.core.a7.render.LodQuadTree;
+import com.seibel.lod.core.a7.render.LodRenderSection;
+import com.seibel.lod.core.a7.render.RenderBuffer;
+import com.seibel.lod.core.a7.render.RenderBufferReclaimer;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * @version 2022-9-15
+ */
+public class LodRenderSectionStateTests
+{
+	
+	@Test
+	public void SectionReportsEachChangeOnceUntilTicked()
+	{
+		FakeRenderSourceProvider provider = new FakeRenderSourceProvider();
+		ArrayList<LodRenderSection> reported = new ArrayList<>();
+		LodRenderSection section = new LodRenderSection(new DhSectionPos((byte) 6, 0, 0));
+		Assert.assertEquals(ESectionState.Unloaded, section.getState());
+		
+		section.load(provider, reported::add);
+		Assert.assertEquals(ESectionState.Loading, section.getState());
+		Assert.assertEquals(0, reported.size());
+		
+		TestSource source = new TestSource();
+		source.isBuilding = true;
+		provider.getLastPendingRead().complete(source);
+		Assert.assertEquals(1, reported.size());
+		// Nothing is taken in until the section is ticked
+		Assert.assertEquals(ESectionState.Loading, section.getState());
+		section.tick(null);
+		Assert.assertEquals(ESectionState.Building, section.getState());
+		
+		// A build finishing and the data changing before the next tick are reported once
+		source.isBuilding = false;
+		source.isReady = true;
+		source.listener.run();
+		source.listener.run();
+		Assert.assertEquals(2, reported.size());
+		section.tick(null);
+		Assert.assertEquals(ESectionState.Ready, section.getState());
+		Assert.assertTrue(section.canRender());
+		
+		Assert.assertTrue(section.trySwapRenderBuffer(null, new AtomicReference<>(), new RenderBufferReclaimer()));
+		Assert.assertEquals(ESectionState.Loaded, section.getState());
+		
+		section.dispose();
+		Assert.assertEquals(ESectionState.Disposed, section.getState());
+		Assert.assertNull(source.listener);
+		Assert.assertEquals(2, reported.size());
+	}
+	
+	@Test
+	public void FailedLoadGoesBackToUnloaded()
+	{
+		FakeRenderSourceProvider provider = new FakeRenderSourceProvider();
+		ArrayList<LodRenderSection> reported = new ArrayList<>();
+		LodRenderSection section = new LodRenderSection(new DhSectionPos((byte) 6, 0, 0));
+		
+		section.load(provider, reported::add);
+		provider.getLastPendingRead().completeExceptionally(new RuntimeException("Test read failure"));
+		Assert.assertEquals(1, reported.size());
+		section.tick(null);
+		Assert.assertEquals(ESectionState.Unloaded, section.getState());
+		Assert.assertFalse(section.isLoaded());
+		
+		// It can be loaded again
+		section.load(provider, reported::add);
+		Assert.assertEquals(ESectionState.Loading, section.getState());
+		Assert.assertEquals(2, provider.reads.size());
+	}
+	
+	@Test
+	public void DisposedSectionIgnoresItsLoad()
+	{
+		FakeRenderSourceProvider provider = new FakeRenderSourceProvider();
+		ArrayList<LodRenderSection> reported = new ArrayList<>();
+		LodRenderSection section = new LodRenderSection(new DhSectionPos((byte) 6, 0, 0));
+		
+		section.load(provider, reported::add);
+		section.dispose();
+		Assert.assertTrue(provider.getLastPendingRead().isCancelled());
+		Assert.assertEquals(0, reported.size());
+		section.tick(null);
+		Assert.assertEquals(ESectionState.Disposed, section.getState());
+	}
+	
+	
+	
+	private static class TestSource extends EmptyRenderSource
+	{
+		volatile boolean isReady = false;
+		volatile boolean isBuilding = false;
+		volatile Runnable listener = null;
+		
+		@Override
+		public boolean isRenderReady() { return isReady; }
+		
+		@Override
+		public boolean isBuildingRenderBuffer() { return isBuilding; }
+		
+		@Override
+		public void setChangeListener(Runnable listener) { this.listener = listener; }
+		
+		@Override
+		public boolean trySwapRenderBuffer(LodQuadTree quadTree, AtomicReference<RenderBuffer> referenceSlot,
+				RenderBufferReclaimer reclaimer)
+		{
+			if (!isReady)
+				return false;
+			isReady = false;
+			return true;
+		}
+	
+	}
+
+}
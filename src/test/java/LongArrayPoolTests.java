@@ -0,0 +1,112 @@
+/*
+ *    This file is part of the Distant Horizons mod (formerly the LOD Mod),
+ *    licensed under the GNU LGPL v3 License.
+ *
+ *    Copyright (C) 2020-2022  James Seibel
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU Lesser General Public License as published by
+ *    the Free Software Foundation, version 3.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the GNU Lesser General Public License
+ *    along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+import com.seibel.lod.core.a7.datatype.column.accessor.HeapColumnStorage;
+import com.seibel.lod.core.a7.util.LongArrayPool;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @version 2022-9-10
+ */
+public class LongArrayPoolTests
+{
+	@Test
+	public void ReleasedArrayIsReusedZeroed()
+	{
+		LongArrayPool pool = new LongArrayPool(1 << 20, false);
+		long[] first = pool.borrow(16);
+		first[3] = 42;
+		pool.release(first);
+		Assert.assertEquals(16 * Long.BYTES, pool.getPooledBytes());
+		
+		long[] second = pool.borrow(16);
+		Assert.assertSame(first, second);
+		Assert.assertEquals(0, second[3]);
+		Assert.assertEquals(0, pool.getPooledBytes());
+	}
+	
+	@Test
+	public void ArraysAreOnlyReusedForTheSameLength()
+	{
+		LongArrayPool pool = new LongArrayPool(1 << 20, false);
+		long[] small = pool.borrow(8);
+		pool.release(small);
+		long[] big = pool.borrow(32);
+		Assert.assertNotSame(small, big);
+		Assert.assertEquals(32, big.length);
+	}
+	
+	@Test
+	public void PoolDropsArraysOverItsLimit()
+	{
+		LongArrayPool pool = new LongArrayPool(16 * Long.BYTES, false);
+		long[] first = pool.borrow(16);
+		long[] second = pool.borrow(16);
+		pool.release(first);
+		pool.release(second);
+		Assert.assertEquals(16 * Long.BYTES, pool.getPooledBytes());
+		Assert.assertSame(first, pool.borrow(16));
+		Assert.assertNotSame(second, pool.borrow(16));
+	}
+	
+	@Test
+	public void TrackingIgnoresDoubleRelease()
+	{
+		LongArrayPool pool = new LongArrayPool(1 << 20, true);
+		long[] array = pool.borrow(4);
+		Assert.assertEquals(1, pool.getBorrowedCount());
+		pool.release(array);
+		pool.release(array);
+		Assert.assertEquals(0, pool.getBorrowedCount());
+		// Pooled only once, so two borrows can't both get it
+		Assert.assertSame(array, pool.borrow(4));
+		Assert.assertNotSame(array, pool.borrow(4));
+	}
+	
+	@Test
+	public void CollectableArraysAreStillTrackedUntilReleased()
+	{
+		LongArrayPool pool = new LongArrayPool(1 << 20, true);
+		long[] array = pool.borrowCollectable(4);
+		Assert.assertEquals(1, pool.getBorrowedCount());
+		pool.release(array);
+		pool.release(array);
+		Assert.assertEquals(0, pool.getBorrowedCount());
+		Assert.assertSame(array, pool.borrow(4));
+		Assert.assertNotSame(array, pool.borrow(4));
+	}
+	
+	@Test
+	public void StorageIsOnlyReleasedOnceWithoutTracking()
+	{
+		LongArrayPool pool = new LongArrayPool(1 << 20, false);
+		HeapColumnStorage storage = HeapColumnStorage.borrow(pool, 4);
+		storage.free();
+		storage.free();
+		
+		long[] first = pool.borrow(4);
+		first[0] = 5;
+		Assert.assertEquals(5, storage.get(0));
+		long[] second = pool.borrow(4);
+		Assert.assertNotSame(first, second);
+		Assert.assertEquals(5, first[0]);
+	}
+	
+}
@@ -0,0 +1,136 @@
+/*
+ *    This file is part of the Distant Horizons mod (formerly the LOD Mod),
+ *    licensed under the GNU LGPL v3 License.
+ *
+ *    Copyright (C) 2020-2022  James Seibel
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU Lesser General Public License as published by
+ *    the Free Software Foundation, version 3.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the GNU Lesser General Public License
+ *    along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+import com.seibel.lod.core.objects.Pos2D;
+import com.seibel.lod.core.util.gridList.MovableGridRingList;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+
+/**
+ * @version 2022-9-16
+ */
+public class MovableGridRingListTests
+{
+	@Test
+	public void OrderedIterationStartsAtTheCenter()
+	{
+		MovableGridRingList<Pos2D> list = new MovableGridRingList<>(2, 10, -5);
+		ArrayList<Pos2D> visited = new ArrayList<>();
+		list.forEachPosOrdered((t, pos) -> visited.add(pos));
+		
+		Assert.assertEquals(25, visited.size());
+		Assert.assertEquals(10, visited.get(0).x);
+		Assert.assertEquals(-5, visited.get(0).y);
+		HashSet<Long> unique = new HashSet<>();
+		for (Pos2D pos : visited)
+		{
+			Assert.assertTrue(pos.x + "," + pos.y, list.inRange(pos.x, pos.y));
+			unique.add(((long) pos.x << 32) | (pos.y & 0xFFFFFFFFL));
+		}
+		Assert.assertEquals(25, unique.size());
+		
+		// each position is at least as far from the center as the ones before it
+		int lastDistSquared = 0;
+		for (Pos2D pos : visited)
+		{
+			int distSquared = (pos.x - 10) * (pos.x - 10) + (pos.y + 5) * (pos.y + 5);
+			Assert.assertTrue(distSquared >= lastDistSquared);
+			lastDistSquared = distSquared;
+		}
+	}
+	
+	@Test
+	public void OrderedIterationFollowsAMove()
+	{
+		MovableGridRingList<Pos2D> list = new MovableGridRingList<>(1, 0, 0);
+		list.move(7, 3);
+		for (int x = 6; x <= 8; x++)
+		{
+			for (int z = 2; z <= 4; z++)
+			{
+				list.set(x, z, new Pos2D(x, z));
+			}
+		}
+		
+		ArrayList<Pos2D> visited = new ArrayList<>();
+		list.forEachOrdered(visited::add);
+		Assert.assertEquals(9, visited.size());
+		Assert.assertEquals(7, visited.get(0).x);
+		Assert.assertEquals(3, visited.get(0).y);
+	}
+	
+	@Test
+	public void PrimitiveIterationMatchesPos2DIteration()
+	{
+		MovableGridRingList<String> list = new MovableGridRingList<>(5, 3, -7);
+		list.set(3, -7, "center");
+		list.set(0, -10, "corner");
+		list.set(4, -5, "near");
+	
+		ArrayList<String> expected = new ArrayList<>();
+		list.forEachPosOrdered((t, pos) -> expected.add(t + " " + pos.x + " " + pos.y));
+	
+		ArrayList<String> primitive = new ArrayList<>();
+		list.forEachPosOrdered((t, x, y) -> primitive.add(t + " " + x + " " + y));
+		Assert.assertEquals(expected, primitive);
+	
+		ArrayList<String> cursor = new ArrayList<>();
+		MovableGridRingList<String>.OrderedCursor ordered = list.orderedCursor();
+		while (ordered.next())
+		{
+			cursor.add(ordered.get() + " " + ordered.getX() + " " + ordered.getY());
+		}
+		Assert.assertEquals(expected, cursor);
+		Assert.assertEquals("center 3 -7", cursor.get(0));
+		Assert.assertEquals(11 * 11, cursor.size());
+	}
+	
+	@Test
+	public void CursorKeepsItsCenterWhenTheListMoves()
+	{
+		MovableGridRingList<Pos2D> list = new MovableGridRingList<>(2, 0, 0);
+		list.set(-2, 0, new Pos2D(-2, 0));
+		list.set(2, 0, new Pos2D(2, 0));
+	
+		MovableGridRingList<Pos2D>.OrderedCursor cursor = list.orderedCursor();
+		Assert.assertTrue(cursor.next());
+		list.move(1, 0);
+	
+		int visited = 1;
+		int found = 0;
+		while (cursor.next())
+		{
+			visited++;
+			Assert.assertTrue(cursor.getX() >= -2 && cursor.getX() <= 2);
+			if (cursor.get() != null)
+				found++;
+		}
+		Assert.assertEquals(25, visited);
+		// -2, 0 left the list when it moved
+		Assert.assertEquals(1, found);
+	
+		cursor.reset();
+		Assert.assertTrue(cursor.next());
+		Assert.assertEquals(1, cursor.getX());
+	}
+	
+}
@@ -0,0 +1,153 @@
+/*
+ *    This file is part of the Distant Horizons mod (formerly the LOD Mod),
+ *    licensed under the GNU LGPL v3 License.
+ *
+ *    Copyright (C) 2020-2022  James Seibel
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU Lesser General Public License as published by
+ *    the Free Software Foundation, version 3.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the GNU Lesser General Public License
+ *    along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+import com.seibel.lod.core.a7.datatype.column.accessor.ColumnArrayView;
+import com.seibel.lod.core.a7.datatype.column.accessor.ColumnQuadView;
+import com.seibel.lod.core.a7.datatype.column.accessor.HeapColumnStorage;
+import com.seibel.lod.core.a7.datatype.column.accessor.IColumnStorage;
+import com.seibel.lod.core.a7.datatype.column.accessor.OffHeapColumnStorage;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Checks that views over direct memory behave like views over arrays,
+ * and that direct memory stays within its budget.
+ *
+ * @version 2022-9-12
+ */
+public class OffHeapColumnStorageTests
+{
+	private static final int DATA_WIDTH = 6;
+	private static final int VERT_SIZE = 3;
+	private static final int LENGTH = DATA_WIDTH * DATA_WIDTH * VERT_SIZE;
+	private static final long UNLIMITED = Long.MAX_VALUE / 2;
+	
+	
+	@Test
+	public void QuadViewMatchesHeap()
+	{
+		long[] data = createData();
+		IColumnStorage offHeap = createOffHeap(data);
+		ColumnQuadView heapView = new ColumnQuadView(data, DATA_WIDTH, VERT_SIZE, 1, 2, 3, 2);
+		ColumnQuadView offHeapView = new ColumnQuadView(offHeap, DATA_WIDTH, VERT_SIZE, 1, 2, 3, 2);
+		
+		long[] heapCopy = new long[heapView.size()];
+		long[] offHeapCopy = new long[offHeapView.size()];
+		heapView.copyTo(heapCopy, 0);
+		offHeapView.copyTo(offHeapCopy, 0);
+		Assert.assertArrayEquals(heapCopy, offHeapCopy);
+		for (int i = 0; i < heapView.size(); i++)
+			Assert.assertEquals(heapView.get(i), offHeapView.get(i));
+		offHeap.free();
+	}
+	
+	@Test
+	public void CopyBetweenStoragesKeepsData()
+	{
+		long[] data = createData();
+		IColumnStorage offHeap = createOffHeap(data);
+		IColumnStorage otherOffHeap = OffHeapColumnStorage.tryAllocate(LENGTH, UNLIMITED);
+		HeapColumnStorage heap = new HeapColumnStorage(new long[LENGTH]);
+		
+		new ColumnArrayView(otherOffHeap, LENGTH, 0, VERT_SIZE).copyFrom(new ColumnArrayView(offHeap, LENGTH, 0, VERT_SIZE));
+		new ColumnArrayView(heap, LENGTH, 0, VERT_SIZE).copyFrom(new ColumnArrayView(otherOffHeap, LENGTH, 0, VERT_SIZE));
+		for (int i = 0; i < LENGTH; i++)
+			Assert.assertEquals(data[i], heap.get(i));
+		offHeap.free();
+		otherOffHeap.free();
+	}
+	
+	@Test
+	public void FreedMemoryIsReusedZeroed()
+	{
+		// An odd length, so no other test's buffers are reused
+		IColumnStorage storage = OffHeapColumnStorage.tryAllocate(LENGTH + 1, UNLIMITED);
+		storage.fill(0, LENGTH + 1, 42);
+		long reserved = OffHeapColumnStorage.getReservedBytes();
+		storage.free();
+		Assert.assertEquals(reserved, OffHeapColumnStorage.getReservedBytes());
+		
+		IColumnStorage reused = OffHeapColumnStorage.tryAllocate(LENGTH + 1, UNLIMITED);
+		Assert.assertEquals(reserved, OffHeapColumnStorage.getReservedBytes());
+		for (int i = 0; i < LENGTH + 1; i++)
+			Assert.assertEquals(0, reused.get(i));
+		reused.free();
+	}
+	
+	@Test
+	public void AllocationPastBudgetFails()
+	{
+		long budget = OffHeapColumnStorage.getReservedBytes() - OffHeapColumnStorage.getKeptBytes() + (long) (LENGTH + 2) * Long.BYTES;
+		IColumnStorage storage = OffHeapColumnStorage.tryAllocate(LENGTH + 2, budget);
+		Assert.assertNotNull(storage);
+		Assert.assertNull(OffHeapColumnStorage.tryAllocate(LENGTH + 2, budget));
+		storage.free();
+	}
+	
+	@Test
+	public void BuffersPastTheKeptLimitAreDropped()
+	{
+		int length = (int) (OffHeapColumnStorage.MAX_KEPT_BYTES / Long.BYTES) + 1;
+		long kept = OffHeapColumnStorage.getKeptBytes();
+		long reserved = OffHeapColumnStorage.getReservedBytes();
+		IColumnStorage storage = OffHeapColumnStorage.tryAllocate(length, UNLIMITED);
+		storage.free();
+		Assert.assertEquals(kept, OffHeapColumnStorage.getKeptBytes());
+		Assert.assertEquals(reserved, OffHeapColumnStorage.getReservedBytes());
+	}
+	
+	@Test
+	public void DroppedBuffersLeaveTheBudget()
+	{
+		IColumnStorage storage = OffHeapColumnStorage.tryAllocate(LENGTH + 3, UNLIMITED);
+		storage.free();
+		Assert.assertTrue(OffHeapColumnStorage.getKeptBytes() > 0);
+		
+		long used = OffHeapColumnStorage.getReservedBytes() - OffHeapColumnStorage.getKeptBytes();
+		OffHeapColumnStorage.dropKeptBuffers();
+		Assert.assertEquals(0, OffHeapColumnStorage.getKeptBytes());
+		Assert.assertEquals(used, OffHeapColumnStorage.getReservedBytes());
+	}
+	
+	@Test(expected = NullPointerException.class)
+	public void ReadingAfterFreeThrows()
+	{
+		IColumnStorage storage = OffHeapColumnStorage.tryAllocate(LENGTH, UNLIMITED);
+		storage.free();
+		storage.get(0);
+	}
+	
+	
+	
+	/** Every long is its own index, so any mix up shows. */
+	private static long[] createData()
+	{
+		long[] data = new long[LENGTH];
+		for (int i = 0; i < data.length; i++)
+			data[i] = i;
+		return data;
+	}
+	
+	private static IColumnStorage createOffHeap(long[] data)
+	{
+		IColumnStorage storage = OffHeapColumnStorage.tryAllocate(data.length, UNLIMITED);
+		storage.copyFrom(data, 0, 0, data.length);
+		return storage;
+	}
+}
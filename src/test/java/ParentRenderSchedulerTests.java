@@ -0,0 +1,168 @@
+/*
+ *    This file is part of the Distant Horizons mod (formerly the LOD Mod),
+ *    licensed under the GNU LGPL v3 License.
+ *
+ *    Copyright (C) 2020-2022  James Seibel
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU Lesser General Public License as published by
+ *    the Free Software Foundation, version 3.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the GNU Lesser General Public License
+ *    along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+import com.seibel.lod.core.a7.datatype.LodRenderSource;
+import com.seibel.lod.core.a7.datatype.column.ColumnFormat;
+import com.seibel.lod.core.a7.datatype.column.ColumnRenderSource;
+import com.seibel.lod.core.a7.pos.DhSectionPos;
+import com.seibel.lod.core.a7.save.io.render.ParentRenderScheduler;
+import com.seibel.lod.core.handlers.dependencyInjection.SingletonHandler;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.HashMap;
+
+/**
+ * Checks that {@link ParentRenderScheduler} only rebuilds the part of the parent covering the changed columns.
+ * The rebuilds run right away on the calling thread.
+ *
+ * @version 2022-9-21
+ */
+public class ParentRenderSchedulerTests
+{
+	private static final int VERTICAL_SIZE = 4;
+	private static final int HALF = ColumnRenderSource.SECTION_SIZE / 2;
+	
+	private final HashMap<DhSectionPos, LodRenderSource> loadedRenders = new HashMap<>();
+	private ParentRenderScheduler scheduler;
+	private DhSectionPos parentPos;
+	private ColumnRenderSource parent;
+	
+	
+	@BeforeClass
+	public static void finishBinding()
+	{
+		// LodUtil looks up its wrappers when it is first used, which needs the binding to be finished
+		if (!SingletonHandler.getBindingFinished())
+		{
+			SingletonHandler.finishBinding();
+		}
+	}
+	
+	@Before
+	public void createParentWithChildren()
+	{
+		scheduler = new ParentRenderScheduler(loadedRenders::get, null, Runnable::run);
+		parentPos = new DhSectionPos((byte) (ColumnRenderSource.SECTION_SIZE_OFFSET + 1), 0, 0);
+		parent = createSource(parentPos, 0);
+		for (int i = 0; i < 4; i++)
+		{
+			parent.generateFromChild(createSource(parentPos.getChild(i), 10), i);
+		}
+		assertParentHeights(10, 10, 10, 10);
+	}
+	
+	
+	
+	@Test
+	public void MarkChangedOnlyRebuildsTheMatchingQuarter()
+	{
+		fill(getChild(3), 50);
+		// Changed as well, but never marked
+		fill(getChild(1), 60);
+		
+		scheduler.markChanged(parentPos.getChild(3));
+		assertParentHeights(10, 10, 10, 50);
+	}
+	
+	@Test
+	public void MarkedColumnsAreTheOnlyOnesRebuilt()
+	{
+		fill(getChild(2), 50);
+		
+		// The child's first 4 x 4 columns, which are the parent's first 2 x 2 columns of that quarter
+		scheduler.markChanged(parentPos.getChild(2), 0, 0, 3, 3);
+		Assert.assertEquals(50, getParentHeight(0, HALF));
+		Assert.assertEquals(50, getParentHeight(1, HALF + 1));
+		Assert.assertEquals(10, getParentHeight(2, HALF));
+		Assert.assertEquals(10, getParentHeight(0, HALF + 2));
+		assertParentHeights(10, 10, -1, 10);
+	}
+	
+	@Test
+	public void RebuiltParentsMarkTheirOwnParent()
+	{
+		// Only the grandparent's quarter covering the parent can be rebuilt, the other children aren't loaded
+		DhSectionPos grandparentPos = parentPos.getParent();
+		ColumnRenderSource grandparent = createSource(grandparentPos, 0);
+		grandparent.generateFromChild(parent, 0);
+		Assert.assertEquals(10, ColumnFormat.getHeight(grandparent.getData(0, 0, 0)));
+		
+		fill(getChild(0), 50);
+		scheduler.markChanged(parentPos.getChild(0));
+		Assert.assertEquals(50, ColumnFormat.getHeight(grandparent.getData(0, 0, 0)));
+		Assert.assertEquals(10, ColumnFormat.getHeight(grandparent.getData(HALF / 2, 0, 0)));
+	}
+	
+	
+	
+	//================//
+	// helper methods //
+	//================//
+	
+	/** Creates a loaded source, with every column at the given height. 0 leaves the columns empty. */
+	private ColumnRenderSource createSource(DhSectionPos pos, int height)
+	{
+		ColumnRenderSource source = new ColumnRenderSource(pos, VERTICAL_SIZE, 0);
+		if (height != 0)
+		{
+			fill(source, height);
+		}
+		loadedRenders.put(pos, source);
+		return source;
+	}
+	
+	private ColumnRenderSource getChild(int child0to3)
+	{
+		return (ColumnRenderSource) loadedRenders.get(parentPos.getChild(child0to3));
+	}
+	
+	private static void fill(ColumnRenderSource source, int height)
+	{
+		long data = ColumnFormat.createDataPoint(height, 0, 0xFF808080, 15, 0, 1);
+		for (int x = 0; x < ColumnRenderSource.SECTION_SIZE; x++)
+		{
+			for (int z = 0; z < ColumnRenderSource.SECTION_SIZE; z++)
+			{
+				source.addData(data, x, z, 0);
+			}
+		}
+	}
+	
+	private int getParentHeight(int x, int z)
+	{
+		return ColumnFormat.getHeight(parent.getData(x, z, 0));
+	}
+	
+	/** Checks the height of the last column of each quarter, -1 skips the quarter. */
+	private void assertParentHeights(int... heightOfQuarter)
+	{
+		for (int i = 0; i < 4; i++)
+		{
+			if (heightOfQuarter[i] == -1)
+				continue;
+			int x = (i & 1) * HALF + HALF - 1;
+			int z = ((i & 2) / 2) * HALF + HALF - 1;
+			Assert.assertEquals("quarter " + i, heightOfQuarter[i], getParentHeight(x, z));
+		}
+	}
+	
+}
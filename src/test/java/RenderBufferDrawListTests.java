@@ -0,0 +1,85 @@
+/*
+ *    This file is part of the Distant Horizons mod (formerly the LOD Mod),
+ *    licensed under the GNU LGPL v3 License.
+ *
+ *    Copyright (C) 2020-2022  James Seibel
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU Lesser General Public License as published by
+ *    the Free Software Foundation, version 3.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the GNU Lesser General Public License
+ *    along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+import com.seibel.lod.core.a7.pos.DhBlockPos2D;
+import com.seibel.lod.core.a7.pos.DhSectionPos;
+import com.seibel.lod.core.a7.render.RenderBufferDrawList;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+
+/**
+ * @version 2022-9-15
+ */
+public class RenderBufferDrawListTests
+{
+	
+	@Test
+	public void BuffersAreSortedNearestFirst()
+	{
+		RenderBufferDrawList.Builder builder = new RenderBufferDrawList.Builder();
+		ArrayList<String> drawn = new ArrayList<>();
+		FakeRenderBuffer far = new FakeRenderBuffer("far", drawn);
+		FakeRenderBuffer near = new FakeRenderBuffer("near", drawn);
+		FakeRenderBuffer containing = new FakeRenderBuffer("containing", drawn);
+		// 64 blocks wide sections
+		builder.add(far, new DhSectionPos((byte) 6, 5, 0), 0, 100);
+		builder.add(near, new DhSectionPos((byte) 6, -1, 0), 10, 20);
+		// 1024 blocks wide, the view position is inside it
+		builder.add(containing, new DhSectionPos((byte) 10, 0, 0), -64, 64);
+		
+		RenderBufferDrawList list = builder.build(new DhBlockPos2D(10, 10));
+		Assert.assertEquals(3, list.size());
+		Assert.assertSame(containing, list.getBuffer(0));
+		Assert.assertSame(near, list.getBuffer(1));
+		Assert.assertSame(far, list.getBuffer(2));
+		
+		Assert.assertEquals(-64, list.getMinX(1));
+		Assert.assertEquals(10, list.getMinY(1));
+		Assert.assertEquals(0, list.getMinZ(1));
+		Assert.assertEquals(0, list.getMaxX(1));
+		Assert.assertEquals(20, list.getMaxY(1));
+		Assert.assertEquals(64, list.getMaxZ(1));
+		Assert.assertEquals(1024, list.getMaxZ(0));
+		
+		list.render(null);
+		Assert.assertEquals("[containing, near, far]", drawn.toString());
+	}
+	
+	@Test
+	public void BuiltListDoesNotChangeWithTheBuilder()
+	{
+		RenderBufferDrawList.Builder builder = new RenderBufferDrawList.Builder();
+		for (int i = 0; i < 100; i++)
+		{
+			builder.add(new FakeRenderBuffer("" + i, null), new DhSectionPos((byte) 6, i, 0), 0, 1);
+		}
+		RenderBufferDrawList list = builder.build(new DhBlockPos2D(0, 0));
+		builder.clear();
+		builder.add(new FakeRenderBuffer("other", null), new DhSectionPos((byte) 6, 0, 0), 0, 1);
+		
+		Assert.assertEquals(100, list.size());
+		Assert.assertEquals("0", list.getBuffer(0).toString());
+		Assert.assertEquals(99 * 64, list.getMinX(99));
+		Assert.assertEquals(1, builder.build(new DhBlockPos2D(0, 0)).size());
+		Assert.assertEquals(0, RenderBufferDrawList.EMPTY.size());
+	}
+
+}
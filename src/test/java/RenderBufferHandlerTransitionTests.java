@@ -0,0 +1,380 @@
+/*
+ *    This file is part of the Distant Horizons mod (formerly the LOD Mod),
+ *    licensed under the GNU LGPL v3 License.
+ *
+ *    Copyright (C) 2020-2022  James Seibel
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU Lesser General Public License as published by
+ *    the Free Software Foundation, version 3.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the GNU Lesser General Public License
+ *    along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+import com.seibel.lod.core.a7.datatype.EmptyRenderSource;
+import com.seibel.lod.core.a7.level.IClientLevel;
+import com.seibel.lod.core.a7.pos.DhBlockPos2D;
+import com.seibel.lod.core.a7.pos.DhSectionPos;
+import com.seibel.lod.core.a7.render.DetailFalloffPolicy;
+import com.seibel.lod.core.a7.render.LodQuadTree;
+import com.seibel.lod.core.a7.render.LodRenderSection;
+import com.seibel.lod.core.a7.render.RenderBuffer;
+import com.seibel.lod.core.a7.render.RenderBufferDrawList;
+import com.seibel.lod.core.a7.render.RenderBufferHandler;
+import com.seibel.lod.core.a7.render.RenderBufferReclaimer;
+import com.seibel.lod.core.handlers.dependencyInjection.SingletonHandler;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Checks that {@link RenderBufferHandler} never leaves a frame where neither a section nor its children are drawn
+ * when the section is split or merged. The tree's ring lists are filled by hand instead of by ticking it.
+ *
+ * @version 2022-9-20
+ */
+public class RenderBufferHandlerTransitionTests
+{
+	private static final long MILLIS = 1_000_000L;
+	
+	private TestTree tree;
+	private TestHandler handler;
+	private DhSectionPos parentPos;
+	private TestSource parentSource;
+	private LodRenderSection parent;
+	
+	
+	@BeforeClass
+	public static void finishBinding()
+	{
+		// LodUtil looks up its wrappers when it is first used, which needs the binding to be finished
+		if (!SingletonHandler.getBindingFinished())
+		{
+			SingletonHandler.finishBinding();
+		}
+	}
+	
+	
+	
+	@Test
+	public void ParentIsDrawnUntilAllChildrenAreSettled()
+	{
+		createTreeWithDrawnParent();
+		FakeRenderBuffer parentBuffer = parentSource.swappedIn;
+		
+		TestSource[] childSources = split();
+		handler.update();
+		handler.clock += 600 * MILLIS;
+		handler.update();
+		assertDrawn(parentBuffer);
+		
+		for (int i = 0; i < 3; i++)
+		{
+			childSources[i].makeReady();
+			handler.update();
+			assertDrawn(parentBuffer);
+		}
+		
+		childSources[3].makeReady();
+		handler.update();
+		assertDrawn(childSources[0].swappedIn, childSources[1].swappedIn, childSources[2].swappedIn, childSources[3].swappedIn);
+		Assert.assertFalse(parentBuffer.isClosed);
+		handler.update();
+		Assert.assertTrue(parentBuffer.isClosed);
+	}
+	
+	@Test
+	public void SplitUndoneWithinTheDelayCreatesNoChildren()
+	{
+		createTreeWithDrawnParent();
+		FakeRenderBuffer parentBuffer = parentSource.swappedIn;
+		
+		TestSource[] childSources = split();
+		handler.update();
+		handler.clock += 400 * MILLIS;
+		handler.update();
+		merge();
+		handler.update();
+		assertDrawn(parentBuffer);
+		for (TestSource childSource : childSources)
+		{
+			Assert.assertEquals(0, childSource.enableRenderCount);
+		}
+		
+		// Staying split past the delay does build the children
+		childSources = split();
+		handler.update();
+		handler.clock += 600 * MILLIS;
+		handler.update();
+		for (TestSource childSource : childSources)
+		{
+			Assert.assertEquals(1, childSource.enableRenderCount);
+		}
+		assertDrawn(parentBuffer);
+	}
+	
+	@Test
+	public void ChildrenAreDrawnUntilTheParentBufferIsSwappedIn()
+	{
+		createTreeWithDrawnParent();
+		TestSource[] childSources = split();
+		for (TestSource childSource : childSources)
+		{
+			childSource.makeReady();
+		}
+		handler.update();
+		handler.clock += 600 * MILLIS;
+		handler.update();
+		FakeRenderBuffer[] childBuffers = new FakeRenderBuffer[4];
+		for (int i = 0; i < 4; i++)
+		{
+			childBuffers[i] = childSources[i].swappedIn;
+		}
+		assertDrawn(childBuffers);
+		
+		merge();
+		parentSource.isBuilding = true;
+		handler.update();
+		handler.update();
+		assertDrawn(childBuffers);
+		
+		parentSource.isBuilding = false;
+		parentSource.makeReady();
+		handler.update();
+		assertDrawn(parentSource.swappedIn);
+		for (FakeRenderBuffer childBuffer : childBuffers)
+		{
+			Assert.assertFalse(childBuffer.isClosed);
+		}
+		handler.update();
+		for (FakeRenderBuffer childBuffer : childBuffers)
+		{
+			Assert.assertTrue(childBuffer.isClosed);
+		}
+	}
+	
+	@Test
+	public void NodesAreOnlyUpdatedAfterAChange()
+	{
+		createTreeWithDrawnParent();
+		int lookups = tree.sectionLookupCount;
+		int swapAttempts = parentSource.swapAttemptCount;
+		for (int i = 0; i < 3; i++)
+		{
+			handler.update();
+		}
+		Assert.assertEquals(lookups, tree.sectionLookupCount);
+		
+		// A rebuilt buffer is reported through the section, which is what gets it swapped in
+		parentSource.makeReady();
+		handler.update();
+		Assert.assertEquals(swapAttempts + 1, parentSource.swapAttemptCount);
+		assertDrawn(parentSource.swappedIn);
+		lookups = tree.sectionLookupCount;
+		handler.update();
+		Assert.assertEquals(lookups, tree.sectionLookupCount);
+	}
+	
+	@Test
+	public void ChildrenAreBuiltOnceTheDelayPassesWithoutAnyChange()
+	{
+		createTreeWithDrawnParent();
+		TestSource[] childSources = split();
+		handler.update();
+		handler.clock += 400 * MILLIS;
+		handler.update();
+		Assert.assertEquals(0, childSources[0].enableRenderCount);
+		
+		handler.clock += 200 * MILLIS;
+		handler.update();
+		for (TestSource childSource : childSources)
+		{
+			Assert.assertEquals(1, childSource.enableRenderCount);
+		}
+	}
+	
+	
+	
+	//================//
+	// helper methods //
+	//================//
+	
+	/** Creates a tree with a single top level section that draws its own buffer. */
+	private void createTreeWithDrawnParent()
+	{
+		tree = new TestTree();
+		handler = new TestHandler(tree);
+		byte topDetail = (byte) (tree.getNumbersOfSectionLevels() - 1);
+		parentPos = new DhSectionPos(topDetail, 0, 0);
+		parentSource = new TestSource();
+		parent = addSection(parentPos, parentSource);
+		parentSource.makeReady();
+		handler.update();
+		assertDrawn(parentSource.swappedIn);
+	}
+	
+	/** Adds the parent's children to the tree the way its tick would, with sources that are still building. */
+	private TestSource[] split()
+	{
+		TestSource[] childSources = new TestSource[4];
+		for (int i = 0; i < 4; i++)
+		{
+			childSources[i] = new TestSource();
+			childSources[i].isBuilding = true;
+			addSection(parentPos.getChild(i), childSources[i]);
+		}
+		parent.childCount = 4;
+		parent.isSplit = true;
+		tree.markRenderChanged();
+		return childSources;
+	}
+	
+	private void merge()
+	{
+		for (int i = 0; i < 4; i++)
+		{
+			DhSectionPos childPos = parentPos.getChild(i);
+			tree.getRingList(childPos.sectionDetail).remove(childPos.sectionX, childPos.sectionZ).dispose();
+		}
+		parent.childCount = 0;
+		parent.isSplit = false;
+		tree.markRenderChanged();
+	}
+	
+	private LodRenderSection addSection(DhSectionPos pos, TestSource source)
+	{
+		LodRenderSection section = new LodRenderSection(pos);
+		// Ticked right away whenever it reports a change, like the tree does on its next tick
+		section.load(new FakeRenderSourceProvider(source), (changed) ->
+		{
+			changed.tick(tree);
+			tree.markRenderChanged();
+		});
+		tree.getRingList(pos.sectionDetail).set(pos.sectionX, pos.sectionZ, section);
+		return section;
+	}
+	
+	private void assertDrawn(RenderBuffer... expected)
+	{
+		RenderBufferDrawList drawList = handler.getDrawList();
+		HashSet<RenderBuffer> drawn = new HashSet<>();
+		for (int i = 0; i < drawList.size(); i++)
+		{
+			drawn.add(drawList.getBuffer(i));
+		}
+		Assert.assertEquals(new HashSet<>(Arrays.asList(expected)), drawn);
+	}
+	
+	
+	
+	private static class TestTree extends LodQuadTree
+	{
+		int sectionLookupCount = 0;
+		
+		TestTree()
+		{
+			super(null, 128, 0, 0, new FakeRenderSourceProvider(null), new TestFalloffPolicy());
+		}
+		
+		@Override
+		public void markRenderChanged() { super.markRenderChanged(); }
+		
+		@Override
+		public LodRenderSection getSection(DhSectionPos pos)
+		{
+			sectionLookupCount++;
+			return super.getSection(pos);
+		}
+	
+	}
+	
+	private static class TestHandler extends RenderBufferHandler
+	{
+		long clock = 0;
+		
+		TestHandler(LodQuadTree target)
+		{
+			super(target);
+		}
+		
+		@Override
+		protected long nowNanos() { return clock; }
+	
+	}
+	
+	/** Only sizes the tree, which has two section levels with it. */
+	private static class TestFalloffPolicy implements DetailFalloffPolicy
+	{
+		@Override
+		public byte getDetailLevel(DhBlockPos2D playerPos, DhSectionPos sectionPos) { return 0; }
+		
+		@Override
+		public byte getMaxDetailInRange(double distance) { return 1; }
+		
+		@Override
+		public int getFurthestDistance(byte detailLevel) { return 256; }
+	
+	}
+	
+	/** Swaps in a new buffer each time it is made ready. */
+	private static class TestSource extends EmptyRenderSource
+	{
+		boolean isBuilding = false;
+		FakeRenderBuffer pendingBuffer = null;
+		FakeRenderBuffer swappedIn = null;
+		int enableRenderCount = 0;
+		int swapAttemptCount = 0;
+		Runnable listener = null;
+		
+		void makeReady()
+		{
+			isBuilding = false;
+			pendingBuffer = new FakeRenderBuffer();
+			if (listener != null)
+				listener.run();
+		}
+		
+		@Override
+		public void setChangeListener(Runnable listener) { this.listener = listener; }
+		
+		@Override
+		public void enableRender(IClientLevel level, LodQuadTree quadTree) { enableRenderCount++; }
+		
+		@Override
+		public boolean isRenderReady() { return pendingBuffer != null; }
+		
+		@Override
+		public boolean isBuildingRenderBuffer() { return isBuilding; }
+		
+		@Override
+		public boolean trySwapRenderBuffer(LodQuadTree quadTree, AtomicReference<RenderBuffer> referenceSlot,
+				RenderBufferReclaimer reclaimer)
+		{
+			swapAttemptCount++;
+			if (pendingBuffer == null)
+				return false;
+			reclaimer.retire(referenceSlot.getAndSet(pendingBuffer));
+			swappedIn = pendingBuffer;
+			pendingBuffer = null;
+			return true;
+		}
+		
+		@Override
+		public int getMinY() { return 0; }
+		
+		@Override
+		public int getMaxY() { return 256; }
+	
+	}
+
+}
@@ -0,0 +1,153 @@
+/*
+ *    This file is part of the Distant Horizons mod (formerly the LOD Mod),
+ *    licensed under the GNU LGPL v3 License.
+ *
+ *    Copyright (C) 2020-2022  James Seibel
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU Lesser General Public License as published by
+ *    the Free Software Foundation, version 3.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the GNU Lesser General Public License
+ *    along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+import com.seibel.lod.core.a7.render.RenderBuffer;
+import com.seibel.lod.core.a7.render.RenderBufferReclaimer;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * @version 2022-9-15
+ */
+public class RenderBufferReclaimerTests
+{
+	
+	@Test
+	public void BufferIsKeptUntilTheFrameDrawingItEnds()
+	{
+		RenderBufferReclaimer reclaimer = new RenderBufferReclaimer();
+		FakeRenderBuffer buffer = new FakeRenderBuffer();
+		
+		reclaimer.beginFrame();
+		reclaimer.retire(buffer);
+		Assert.assertEquals(0, reclaimer.reclaim());
+		Assert.assertFalse(buffer.isClosed);
+		
+		reclaimer.endFrame();
+		Assert.assertEquals(1, reclaimer.reclaim());
+		Assert.assertTrue(buffer.isClosed);
+		Assert.assertEquals(0, reclaimer.getRetiredCount());
+	}
+	
+	@Test
+	public void LaterFramesDontHoldBuffersBack()
+	{
+		RenderBufferReclaimer reclaimer = new RenderBufferReclaimer();
+		FakeRenderBuffer betweenFrames = new FakeRenderBuffer();
+		FakeRenderBuffer duringFrame = new FakeRenderBuffer();
+		
+		// Nothing is being drawn, so it can go right away
+		reclaimer.retire(betweenFrames);
+		reclaimer.beginFrame();
+		reclaimer.retire(duringFrame);
+		Assert.assertEquals(1, reclaimer.reclaim());
+		Assert.assertTrue(betweenFrames.isClosed);
+		
+		// The next frame started after it was retired, so it can't be drawing it
+		reclaimer.endFrame();
+		reclaimer.beginFrame();
+		Assert.assertEquals(1, reclaimer.reclaim());
+		Assert.assertTrue(duringFrame.isClosed);
+		reclaimer.endFrame();
+	}
+	
+	@Test
+	public void ReclaimedBufferCanBeReused()
+	{
+		RenderBufferReclaimer reclaimer = new RenderBufferReclaimer();
+		FakeRenderBuffer buffer = new FakeRenderBuffer();
+		ArrayList<RenderBuffer> reusable = new ArrayList<>();
+		
+		reclaimer.beginFrame();
+		reclaimer.retire(buffer, reusable::add);
+		reclaimer.retire(null);
+		reclaimer.reclaim();
+		Assert.assertTrue(reusable.isEmpty());
+		
+		reclaimer.endFrame();
+		reclaimer.reclaim();
+		Assert.assertEquals(1, reusable.size());
+		Assert.assertSame(buffer, reusable.get(0));
+		Assert.assertFalse(buffer.isClosed);
+	}
+	
+	@Test
+	public void HeldBuffersWaitForFramesStartedBeforeTheirRelease()
+	{
+		RenderBufferReclaimer reclaimer = new RenderBufferReclaimer();
+		FakeRenderBuffer buffer = new FakeRenderBuffer();
+		
+		reclaimer.holdRetired();
+		reclaimer.retire(buffer);
+		// A frame started after the buffer was retired, but while it could still be reached
+		reclaimer.beginFrame();
+		Assert.assertEquals(0, reclaimer.reclaim());
+		reclaimer.releaseHeld();
+		Assert.assertEquals(0, reclaimer.reclaim());
+		Assert.assertEquals(1, reclaimer.getRetiredCount());
+		
+		reclaimer.endFrame();
+		Assert.assertEquals(1, reclaimer.reclaim());
+		Assert.assertTrue(buffer.isClosed);
+	}
+	
+	@Test
+	public void RenderThreadNeverDrawsAClosedBuffer() throws InterruptedException
+	{
+		RenderBufferReclaimer reclaimer = new RenderBufferReclaimer();
+		AtomicReference<RenderBuffer> slot = new AtomicReference<>(new FakeRenderBuffer());
+		AtomicBoolean isDone = new AtomicBoolean(false);
+		Thread renderThread = new Thread(() ->
+		{
+			while (!isDone.get())
+			{
+				reclaimer.beginFrame();
+				try
+				{
+					for (int i = 0; i < 10; i++)
+					{
+						slot.get().render(null);
+					}
+				}
+				finally
+				{
+					reclaimer.endFrame();
+				}
+			}
+		});
+		renderThread.start();
+		
+		for (int i = 0; i < 200_000; i++)
+		{
+			reclaimer.retire(slot.getAndSet(new FakeRenderBuffer()));
+			reclaimer.reclaim();
+		}
+		isDone.set(true);
+		renderThread.join();
+		
+		reclaimer.reclaim();
+		Assert.assertEquals(0, reclaimer.getRetiredCount());
+		Assert.assertEquals(0, FakeRenderBuffer.closedBufferDrawCount.get());
+	}
+
+}
@@ -0,0 +1,222 @@
+/*
+ *    This file is part of the Distant Horizons mod (formerly the LOD Mod),
+ *    licensed under the GNU LGPL v3 License.
+ *
+ *    Copyright (C) 2020-2022  James Seibel
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU Lesser General Public License as published by
+ *    the Free Software Foundation, version 3.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the GNU Lesser General Public License
+ *    along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+import com.seibel.lod.core.a7.datatype.LodRenderSource;
+import com.seibel.lod.core.a7.datatype.RenderSourceLoader;
+import com.seibel.lod.core.a7.datatype.column.ColumnFormat;
+import com.seibel.lod.core.a7.datatype.column.ColumnRenderLoader;
+import com.seibel.lod.core.a7.datatype.column.ColumnRenderSource;
+import com.seibel.lod.core.a7.level.IClientLevel;
+import com.seibel.lod.core.a7.pos.DhSectionPos;
+import com.seibel.lod.core.a7.save.io.render.RenderMetaFile;
+import com.seibel.lod.core.handlers.dependencyInjection.SingletonHandler;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.nio.file.Files;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tests the slice-major render cache format (version 3),
+ * which lets {@link RenderMetaFile} read the top slices of each column first.
+ *
+ * @version 2022-9-19
+ */
+public class RenderMetaFilePartialLoadTests
+{
+	private static final DhSectionPos POS = new DhSectionPos(ColumnRenderSource.SECTION_SIZE_OFFSET, 0, 0);
+	private static final int VERTICAL_SIZE = 4;
+	
+	private static final IClientLevel LEVEL = (IClientLevel) Proxy.newProxyInstance(IClientLevel.class.getClassLoader(),
+			new Class<?>[] {IClientLevel.class}, (proxy, method, methodArgs) -> {
+				if (method.getName().equals("getMinY")) return 0;
+				throw new UnsupportedOperationException(method.getName());
+			});
+	
+	private File saveDir;
+	private File file;
+	
+	
+	@BeforeClass
+	public static void registerLoader()
+	{
+		// LodUtil looks up its wrappers when it is first used, which needs the binding to be finished
+		if (!SingletonHandler.getBindingFinished())
+		{
+			SingletonHandler.finishBinding();
+		}
+		if (RenderSourceLoader.getLoader(ColumnRenderSource.class, ColumnRenderSource.LATEST_VERSION) == null)
+		{
+			new ColumnRenderLoader();
+		}
+	}
+	
+	@Before
+	public void createSaveDir() throws IOException
+	{
+		saveDir = Files.createTempDirectory("dhRenderCache").toFile();
+		file = new File(saveDir, POS.serialize() + ".lod");
+	}
+	
+	@After
+	public void deleteSaveDir()
+	{
+		File[] files = saveDir.listFiles();
+		if (files != null)
+		{
+			for (File child : files)
+				child.delete();
+		}
+		saveDir.delete();
+	}
+	
+	
+	
+	@Test
+	public void RoundTripKeepsEverySlice() throws Exception
+	{
+		ColumnRenderSource written = createFilledSource();
+		writeFile(written);
+		
+		ColumnRenderSource read = (ColumnRenderSource) openFile().loadOrGetCached(Runnable::run).get();
+		Assert.assertFalse(read.isPartiallyLoaded());
+		assertColumnsEqual(written, read, VERTICAL_SIZE);
+	}
+	
+	@Test
+	public void PartialLoadOnlyReadsTheTopSlices() throws Exception
+	{
+		ColumnRenderSource written = createFilledSource();
+		writeFile(written);
+		
+		ColumnRenderSource read = (ColumnRenderSource) openFile().loadOrGetCached(Runnable::run, 1).get();
+		Assert.assertTrue(read.isPartiallyLoaded());
+		assertColumnsEqual(written, read, 1);
+		Assert.assertEquals(ColumnFormat.EMPTY_DATA, read.getData(3, 5, 1));
+	}
+	
+	@Test
+	public void LoadingTheRestKeepsColumnsChangedSinceThePartialLoad() throws Exception
+	{
+		ColumnRenderSource written = createFilledSource();
+		writeFile(written);
+		
+		RenderMetaFile metaFile = openFile();
+		ColumnRenderSource read = (ColumnRenderSource) metaFile.loadOrGetCached(Runnable::run, 1).get();
+		read.clear(7, 9);
+		
+		Assert.assertTrue(metaFile.loadRemainingIfPartial());
+		Assert.assertFalse(read.isPartiallyLoaded());
+		for (int i = 0; i < VERTICAL_SIZE; i++)
+		{
+			Assert.assertEquals(ColumnFormat.EMPTY_DATA, read.getData(7, 9, i));
+		}
+		Assert.assertEquals(written.getData(7, 8, VERTICAL_SIZE - 1), read.getData(7, 8, VERTICAL_SIZE - 1));
+		Assert.assertEquals(written.getData(3, 5, VERTICAL_SIZE - 1), read.getData(3, 5, VERTICAL_SIZE - 1));
+	}
+	
+	@Test
+	public void LoadingTheRestReportsAChange() throws Exception
+	{
+		writeFile(createFilledSource());
+		
+		RenderMetaFile metaFile = openFile();
+		ColumnRenderSource read = (ColumnRenderSource) metaFile.loadOrGetCached(Runnable::run, 1).get();
+		AtomicInteger changes = new AtomicInteger();
+		read.setChangeListener(changes::incrementAndGet);
+		
+		Assert.assertTrue(metaFile.loadRemainingIfPartial());
+		// The buffer has to be rebuilt with the lower slices, but the file already has them
+		Assert.assertEquals(1, changes.get());
+		Assert.assertFalse(read.hasUnsavedChanges());
+	}
+	
+	@Test
+	public void EvictSkipsTheWriteIfTheRestCantBeRead() throws Exception
+	{
+		writeFile(createFilledSource());
+		
+		RenderMetaFile metaFile = openFile();
+		ColumnRenderSource read = (ColumnRenderSource) metaFile.loadOrGetCached(Runnable::run, 1).get();
+		read.markBufferDirty();
+		Assert.assertTrue(file.delete());
+		
+		Assert.assertSame(read, metaFile.evict());
+		metaFile.saveEvicted(read);
+		// Writing it would have saved the partial source as if it had no lower slices
+		Assert.assertFalse(file.exists());
+	}
+	
+	
+	
+	//================//
+	// helper methods //
+	//================//
+	
+	private static ColumnRenderSource createFilledSource()
+	{
+		ColumnRenderSource source = new ColumnRenderSource(POS, VERTICAL_SIZE, 0);
+		for (int x = 0; x < ColumnRenderSource.SECTION_SIZE; x++)
+		{
+			for (int z = 0; z < ColumnRenderSource.SECTION_SIZE; z++)
+			{
+				for (int i = 0; i < VERTICAL_SIZE; i++)
+				{
+					int height = 200 - i * 40 - (x + z) % 8;
+					source.addData(ColumnFormat.createDataPoint(height, height - 20, 0xFF00FF00 + x * 256 + z, (byte) 0x7C, 2), x, z, i);
+				}
+			}
+		}
+		return source;
+	}
+	
+	/** Writes the source through a new file, the same way a source built from its children is cached. */
+	private void writeFile(LodRenderSource source) throws Exception
+	{
+		RenderMetaFile metaFile = new RenderMetaFile((pos, timestamp) -> true, null, (pos) -> source, null, LEVEL, file, POS);
+		Assert.assertSame(source, metaFile.loadOrGetCached(Runnable::run).get());
+		Assert.assertTrue(file.exists());
+	}
+	
+	private RenderMetaFile openFile() throws IOException
+	{
+		return new RenderMetaFile((pos, timestamp) -> true, null, (pos) -> null, null, LEVEL, file);
+	}
+	
+	private static void assertColumnsEqual(ColumnRenderSource expected, ColumnRenderSource actual, int slices)
+	{
+		for (int x = 0; x < ColumnRenderSource.SECTION_SIZE; x++)
+		{
+			for (int z = 0; z < ColumnRenderSource.SECTION_SIZE; z++)
+			{
+				for (int i = 0; i < slices; i++)
+				{
+					Assert.assertEquals("column " + x + ", " + z + " slice " + i, expected.getData(x, z, i), actual.getData(x, z, i));
+				}
+			}
+		}
+	}
+
+}
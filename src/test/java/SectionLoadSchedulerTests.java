@@ -0,0 +1,176 @@
+/*
+ *    This file is part of the Distant Horizons mod (formerly the LOD Mod),
+ *    licensed under the GNU LGPL v3 License.
+ *
+ *    Copyright (C) 2020-2022  James Seibel
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU Lesser General Public License as published by
+ *    the Free Software Foundation, version 3.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the GNU Lesser General Public License
+ *    along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+import com.seibel.lod.core.a7.pos.DhBlockPos2D;
+import com.seibel.lod.core.a7.pos.DhSectionPos;
+import com.seibel.lod.core.a7.render.LodRenderSection;
+import com.seibel.lod.core.a7.render.SectionLoadScheduler;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * @version 2022-9-13
+ */
+public class SectionLoadSchedulerTests
+{
+	private static final long MILLIS = 1_000_000L;
+	
+	
+	@Test
+	public void NearestSectionsLoadFirst()
+	{
+		FakeRenderSourceProvider provider = new FakeRenderSourceProvider();
+		SectionLoadScheduler scheduler = new SectionLoadScheduler(provider, 2);
+		for (int x = 5; x >= 0; x--)
+		{
+			scheduler.requestLoad(new LodRenderSection(new DhSectionPos((byte) 6, x, 0)));
+		}
+		
+		scheduler.tick(new DhBlockPos2D(0, 0));
+		Assert.assertEquals(Arrays.asList(0, 1), readXs(provider));
+		Assert.assertEquals(2, scheduler.getInFlightCount());
+		Assert.assertEquals(4, scheduler.getQueuedCount());
+		
+		// Nothing starts until a load finishes
+		scheduler.tick(new DhBlockPos2D(0, 0));
+		Assert.assertEquals(2, readXs(provider).size());
+		
+		// The queue follows the player
+		provider.completeAllReads();
+		scheduler.tick(new DhBlockPos2D(64 * 6, 0));
+		Assert.assertEquals(Arrays.asList(0, 1, 5, 4), readXs(provider));
+	}
+	
+	@Test
+	public void CoarseSectionsAreNotStarved()
+	{
+		FakeRenderSourceProvider provider = new FakeRenderSourceProvider();
+		SectionLoadScheduler scheduler = new SectionLoadScheduler(provider, 1);
+		// Both are over a thousand blocks away, but the coarse one is only a little over its width away
+		scheduler.requestLoad(new LodRenderSection(new DhSectionPos((byte) 6, 15, 0)));
+		scheduler.requestLoad(new LodRenderSection(new DhSectionPos((byte) 10, 0, 0)));
+		
+		scheduler.tick(new DhBlockPos2D(-512, 0));
+		Assert.assertEquals(Arrays.asList(0), readXs(provider));
+	}
+	
+	@Test
+	public void CancelledSectionsAreNeverRead()
+	{
+		FakeRenderSourceProvider provider = new FakeRenderSourceProvider();
+		SectionLoadScheduler scheduler = new SectionLoadScheduler(provider, 8);
+		LodRenderSection kept = new LodRenderSection(new DhSectionPos((byte) 6, 1, 0));
+		LodRenderSection cancelled = new LodRenderSection(new DhSectionPos((byte) 6, 0, 0));
+		scheduler.requestLoad(kept);
+		scheduler.requestLoad(cancelled);
+		// Requesting again doesn't queue it twice
+		scheduler.requestLoad(kept);
+		scheduler.cancel(cancelled);
+		
+		scheduler.tick(new DhBlockPos2D(0, 0));
+		Assert.assertEquals(Arrays.asList(1), readXs(provider));
+		Assert.assertEquals(0, scheduler.getQueuedCount());
+	}
+	
+	@Test
+	public void FailedLoadsAreRetriedLaterAndLaterEachTime()
+	{
+		FakeRenderSourceProvider provider = new FakeRenderSourceProvider();
+		TestScheduler scheduler = new TestScheduler(provider);
+		LodRenderSection section = new LodRenderSection(new DhSectionPos((byte) 6, 0, 0));
+		DhBlockPos2D playerPos = new DhBlockPos2D(0, 0);
+		scheduler.requestLoad(section);
+		scheduler.tick(playerPos);
+		Assert.assertEquals(1, provider.reads.size());
+		
+		failLoad(provider, section, scheduler);
+		scheduler.tick(playerPos);
+		Assert.assertEquals(1, provider.reads.size());
+		Assert.assertEquals(1, scheduler.getQueuedCount());
+		scheduler.clock += 1000 * MILLIS;
+		scheduler.tick(playerPos);
+		Assert.assertEquals(2, provider.reads.size());
+		
+		// The second failure in a row waits twice as long
+		failLoad(provider, section, scheduler);
+		scheduler.clock += 1000 * MILLIS;
+		scheduler.tick(playerPos);
+		Assert.assertEquals(2, provider.reads.size());
+		scheduler.clock += 1000 * MILLIS;
+		scheduler.tick(playerPos);
+		Assert.assertEquals(3, provider.reads.size());
+	}
+	
+	@Test
+	public void CancelledRetriesAreNeverRead()
+	{
+		FakeRenderSourceProvider provider = new FakeRenderSourceProvider();
+		TestScheduler scheduler = new TestScheduler(provider);
+		LodRenderSection section = new LodRenderSection(new DhSectionPos((byte) 6, 0, 0));
+		scheduler.requestLoad(section);
+		scheduler.tick(new DhBlockPos2D(0, 0));
+		
+		failLoad(provider, section, scheduler);
+		scheduler.cancel(section);
+		scheduler.clock += 1000 * MILLIS;
+		scheduler.tick(new DhBlockPos2D(0, 0));
+		Assert.assertEquals(1, provider.reads.size());
+		Assert.assertEquals(0, scheduler.getQueuedCount());
+	}
+	
+	
+	
+	/** Fails the section's pending read and asks for it to be loaded again, like the tree does when it ticks the section. */
+	private static void failLoad(FakeRenderSourceProvider provider, LodRenderSection section, SectionLoadScheduler scheduler)
+	{
+		provider.getLastPendingRead().completeExceptionally(new RuntimeException("Test read failure"));
+		section.tick(null);
+		scheduler.requestLoad(section);
+	}
+	
+	private static ArrayList<Integer> readXs(FakeRenderSourceProvider provider)
+	{
+		ArrayList<Integer> xs = new ArrayList<>();
+		for (DhSectionPos pos : provider.reads)
+		{
+			xs.add(pos.sectionX);
+		}
+		return xs;
+	}
+	
+	
+	
+	private static class TestScheduler extends SectionLoadScheduler
+	{
+		long clock = 0;
+		
+		TestScheduler(FakeRenderSourceProvider provider)
+		{
+			super(provider, 8);
+		}
+		
+		@Override
+		protected long nowNanos() { return clock; }
+	
+	}
+	
+}
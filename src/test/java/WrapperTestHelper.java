@@ -0,0 +1,67 @@
+/*
+ *    This file is part of the Distant Horizons mod (formerly the LOD Mod),
+ *    licensed under the GNU LGPL v3 License.
+ *
+ *    Copyright (C) 2020-2022  James Seibel
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU Lesser General Public License as published by
+ *    the Free Software Foundation, version 3.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the GNU Lesser General Public License
+ *    along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+import com.seibel.lod.core.handlers.dependencyInjection.SingletonHandler;
+import com.seibel.lod.core.wrapperInterfaces.IWrapperFactory;
+import com.seibel.lod.core.wrapperInterfaces.block.IBlockStateWrapper;
+
+import java.lang.reflect.Proxy;
+
+/**
+ * Fake wrappers for the tests and benchmarks that build LOD data without Minecraft.
+ *
+ * @version 2022-9-21
+ */
+public class WrapperTestHelper
+{
+	
+	/**
+	 * Binds a wrapper factory that deserializes block states into {@link NamedBlockState}s and
+	 * finishes the binding, unless another test already did.
+	 * Anything else it is asked to deserialize throws an {@link UnsupportedOperationException}.
+	 */
+	public static void bindWrapperFactory()
+	{
+		if (!SingletonHandler.getBindingFinished())
+		{
+			SingletonHandler.bind(IWrapperFactory.class, Proxy.newProxyInstance(IWrapperFactory.class.getClassLoader(),
+					new Class<?>[] {IWrapperFactory.class}, (proxy, method, methodArgs) -> {
+						if (method.getName().equals("deserializeBlockStateWrapper")) return new NamedBlockState((String) methodArgs[0]);
+						if (method.isDefault()) return null;
+						throw new UnsupportedOperationException(method.getName());
+					}));
+			SingletonHandler.finishBinding();
+		}
+	}
+	
+	
+	
+	/** A block state that is only its name. */
+	public static final class NamedBlockState implements IBlockStateWrapper
+	{
+		private final String name;
+		
+		public NamedBlockState(String name) { this.name = name; }
+		
+		@Override
+		public String serialize() { return name; }
+		
+	}
+	
+}